@@ -49,6 +49,9 @@ public abstract class Attribute implements Cloneable, Node {
 
     private static final Map<String, Object> readers = new HashMap<>();
 
+    /** Tags of the known attributes by name. */
+    private static final Map<String, Byte> TAGS = new HashMap<>();
+
     /**
      * Empty array.
      *
@@ -56,6 +59,12 @@ public abstract class Attribute implements Cloneable, Node {
      */
     public static final Attribute[] EMPTY_ATTRIBUTE_ARRAY = {};
 
+    static {
+        for (byte i = 0; i < Const.KNOWN_ATTRIBUTES; i++) {
+            TAGS.put(Const.getAttributeName(i), Byte.valueOf(i));
+        }
+    }
+
     /**
      * Add an Attribute reader capable of parsing (user-defined) attributes named "name". You should not add readers for the
      * standard attributes such as "LineNumberTable", because those are handled internally.
@@ -75,11 +84,32 @@ public abstract class Attribute implements Cloneable, Node {
      *
      * @param name the name of the attribute as stored in the class file
      * @param r the reader object
+     * @see ClassParser#addAttributeReader(String, UnknownAttributeReader)
      */
     public static void addAttributeReader(final String name, final UnknownAttributeReader r) {
         readers.put(name, r);
     }
 
+    private static Object getAttributeReader(final String name, final ConstantPool constant_pool) {
+        final Map<String, UnknownAttributeReader> parserReaders = constant_pool.getAttributeReaders();
+        if (parserReaders != null) {
+            final UnknownAttributeReader r = parserReaders.get(name);
+            if (r != null) {
+                return r;
+            }
+        }
+        return readers.get(name);
+    }
+
+    /**
+     * @param name attribute name
+     * @return the tag of the known attribute with the given name, or {@link Const#ATTR_UNKNOWN}
+     */
+    static byte getAttributeTag(final String name) {
+        final Byte tag = TAGS.get(name);
+        return tag == null ? Const.ATTR_UNKNOWN : tag.byteValue();
+    }
+
     protected static void println(final String msg) {
         if (debug) {
             System.err.println(msg);
@@ -100,27 +130,19 @@ public abstract class Attribute implements Cloneable, Node {
      * @since 6.0
      */
     public static Attribute readAttribute(final DataInput file, final ConstantPool constant_pool) throws IOException {
-        byte tag = Const.ATTR_UNKNOWN; // Unknown attribute
         // Get class name from constant pool via `name_index' indirection
         final int name_index = file.readUnsignedShort();
         final ConstantUtf8 c = (ConstantUtf8) constant_pool.getConstant(name_index, Const.CONSTANT_Utf8);
-        final String name = c.getBytes();
+        // Find known attribute, the constant remembers it for further attributes with the same name
+        final byte tag = c.getAttributeTag();
 
         // Length of data in bytes
         final int length = file.readInt();
 
-        // Compare strings to find known attribute
-        for (byte i = 0; i < Const.KNOWN_ATTRIBUTES; i++) {
-            if (name.equals(Const.getAttributeName(i))) {
-                tag = i; // found!
-                break;
-            }
-        }
-
         // Call proper constructor, depending on `tag'
         switch (tag) {
         case Const.ATTR_UNKNOWN:
-            final Object r = readers.get(name);
+            final Object r = getAttributeReader(c.getBytes(), constant_pool);
             if (r instanceof UnknownAttributeReader) {
                 return ((UnknownAttributeReader) r).createAttribute(name_index, length, file, constant_pool);
             }
@@ -0,0 +1,618 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.classfile;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.util.ByteCursor;
+
+/**
+ * Reads a class file without building a {@link JavaClass}: {@link #accept(ClassFileVisitor)} reports its parts to a
+ * {@link ClassFileVisitor} directly from the bytes. Only the offsets of the constants are computed up front; constants,
+ * fields, methods and attributes are turned into objects only when the visitor asks for them, which makes the reader
+ * suited to scanning many classes for a few facts, e.g. the classes they refer to.
+ * <p>
+ * The array is not copied and must not be modified while the reader is in use.
+ * </p>
+ *
+ * @see ClassParser
+ * @since 6.6.1
+ */
+public final class ClassFileReader {
+
+    /** Offset of the constant pool count in a class file. */
+    private static final int CONSTANT_POOL_COUNT_OFFSET = 8;
+
+    private static int constantLength(final byte[] classFile, final byte tag, final int offset) {
+        switch (tag) {
+        case Const.CONSTANT_Utf8:
+            return 2 + u2(classFile, offset);
+        case Const.CONSTANT_Class:
+        case Const.CONSTANT_String:
+        case Const.CONSTANT_MethodType:
+        case Const.CONSTANT_Module:
+        case Const.CONSTANT_Package:
+            return 2;
+        case Const.CONSTANT_MethodHandle:
+            return 3;
+        case Const.CONSTANT_Integer:
+        case Const.CONSTANT_Float:
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref:
+        case Const.CONSTANT_NameAndType:
+        case Const.CONSTANT_Dynamic:
+        case Const.CONSTANT_InvokeDynamic:
+            return 4;
+        case Const.CONSTANT_Long:
+        case Const.CONSTANT_Double:
+            return 8;
+        default:
+            throw new ClassFormatException("Invalid byte tag in constant pool: " + tag);
+        }
+    }
+
+    private static boolean isBranch(final int opcode) {
+        return opcode >= Const.IFEQ && opcode <= Const.LOOKUPSWITCH && opcode != Const.RET || opcode == Const.IFNULL || opcode == Const.IFNONNULL
+            || opcode == Const.GOTO_W || opcode == Const.JSR_W;
+    }
+
+    private static int s2(final byte[] bytes, final int pos) {
+        return (short) (bytes[pos] << 8 | bytes[pos + 1] & 0xff);
+    }
+
+    /**
+     * Returns the offset after a switch's jump table, saturated so an oversized table reads as truncated code.
+     */
+    private static int switchEnd(final int tableOffset, final long tableLength) {
+        return (int) Math.min(tableOffset + tableLength, Integer.MAX_VALUE);
+    }
+
+    private static int u2(final byte[] bytes, final int pos) {
+        return (bytes[pos] & 0xff) << 8 | bytes[pos + 1] & 0xff;
+    }
+
+    private static int u4(final byte[] bytes, final int pos) {
+        return bytes[pos] << 24 | (bytes[pos + 1] & 0xff) << 16 | (bytes[pos + 2] & 0xff) << 8 | bytes[pos + 3] & 0xff;
+    }
+
+    private final byte[] classFile;
+
+    /** Tag of each constant, 0 for unused entries. */
+    private final byte[] tags;
+
+    /** Offset of each constant's contents, following its tag. */
+    private final int[] offsets;
+
+    /** Offset of the access flags that follow the constant pool. */
+    private final int end;
+
+    private ConstantPool constantPool;
+
+    /** Range of the field or method being visited, start is -1 outside of visitField and visitMethod. */
+    private int memberStart = -1;
+    private int memberEnd;
+    private boolean memberIsMethod;
+
+    /** Range of the attribute being visited, start is -1 outside of visitAttribute. */
+    private int attributeStart = -1;
+    private int attributeEnd;
+
+    /**
+     * Creates a reader for a class file and locates its constants.
+     *
+     * @param classFile the bytes of a class file, which are not copied
+     * @throws ClassFormatException if the bytes are not a class file or its constant pool is malformed
+     */
+    public ClassFileReader(final byte[] classFile) {
+        this.classFile = classFile;
+        try {
+            if (u4(classFile, 0) != Const.JVM_CLASSFILE_MAGIC) {
+                throw new ClassFormatException("Not a Java .class file");
+            }
+            final int count = u2(classFile, CONSTANT_POOL_COUNT_OFFSET);
+            tags = new byte[count];
+            offsets = new int[count];
+            int pos = CONSTANT_POOL_COUNT_OFFSET + 2;
+            for (int i = 1; i < count; i++) {
+                final byte tag = classFile[pos];
+                tags[i] = tag;
+                offsets[i] = pos + 1;
+                pos += 1 + constantLength(classFile, tag, pos + 1);
+                if (tag == Const.CONSTANT_Long || tag == Const.CONSTANT_Double) {
+                    i++;
+                }
+            }
+            end = pos;
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw new ClassFormatException("Truncated class file", e);
+        }
+    }
+
+    /**
+     * Reports the parts of the class file to a visitor: first the header, then the constants, fields, methods and
+     * attributes of the class in the order of the file, and finally the end.
+     *
+     * @param visitor the visitor
+     * @throws ClassFormatException if the class file is malformed
+     */
+    public void accept(final ClassFileVisitor visitor) {
+        try {
+            int pos = end;
+            final int interfaceCount = u2(classFile, pos + 6);
+            final int[] interfaces = new int[interfaceCount];
+            for (int i = 0; i < interfaceCount; i++) {
+                interfaces[i] = u2(classFile, pos + 8 + 2 * i);
+            }
+            visitor.visitClass(u2(classFile, 6), u2(classFile, 4), u2(classFile, pos), u2(classFile, pos + 2), u2(classFile, pos + 4), interfaces);
+            for (int i = 1; i < tags.length; i++) {
+                if (tags[i] != 0) {
+                    visitor.visitConstant(i, tags[i]);
+                }
+            }
+            pos += 8 + 2 * interfaceCount;
+            pos = members(visitor, pos, false);
+            pos = members(visitor, pos, true);
+            attributes(visitor, pos, false);
+            visitor.visitEnd();
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw new ClassFormatException("Truncated class file", e);
+        } finally {
+            memberStart = -1;
+            attributeStart = -1;
+        }
+    }
+
+    /**
+     * Walks a table of attributes, only skipping it if the visitor is null.
+     *
+     * @return the offset following the table
+     */
+    private int attributes(final ClassFileVisitor visitor, final int start, final boolean method) {
+        final int count = u2(classFile, start);
+        int pos = start + 2;
+        for (int i = 0; i < count; i++) {
+            final int nameIndex = u2(classFile, pos);
+            final int length = u4(classFile, pos + 2);
+            final int next = pos + 6 + length;
+            if (length < 0 || next > classFile.length) {
+                throw new ClassFormatException("Truncated attribute at offset " + pos);
+            }
+            if (visitor != null) {
+                if (method && isUtf8(nameIndex, "Code")) {
+                    code(visitor, pos + 6, next);
+                } else {
+                    attributeStart = pos;
+                    attributeEnd = next;
+                    visitor.visitAttribute(nameIndex, length);
+                    attributeStart = -1;
+                }
+            }
+            pos = next;
+        }
+        return pos;
+    }
+
+    private void code(final ClassFileVisitor visitor, final int start, final int next) {
+        final int codeLength = u4(classFile, start + 4);
+        if (!visitor.visitCode(u2(classFile, start), u2(classFile, start + 2), codeLength)) {
+            return;
+        }
+        final int code = start + 8;
+        if (codeLength < 0 || code + codeLength > next) {
+            throw new ClassFormatException("Truncated code at offset " + start);
+        }
+        int offset = 0;
+        while (offset < codeLength) {
+            final int nextOffset = instruction(visitor, code, offset);
+            if (nextOffset <= offset) {
+                throw new ClassFormatException("Malformed instruction at offset " + offset);
+            }
+            offset = nextOffset;
+        }
+        if (offset != codeLength) {
+            throw new ClassFormatException("Truncated code at offset " + start);
+        }
+        int pos = code + codeLength;
+        final int handlers = u2(classFile, pos);
+        pos += 2;
+        for (int i = 0; i < handlers; i++, pos += 8) {
+            visitor.visitExceptionHandler(u2(classFile, pos), u2(classFile, pos + 2), u2(classFile, pos + 4), u2(classFile, pos + 6));
+        }
+        if (attributes(visitor, pos, false) != next) {
+            throw new ClassFormatException("Malformed Code attribute at offset " + start);
+        }
+    }
+
+    /**
+     * Gets the attribute being visited, which is read on each call.
+     *
+     * @return the attribute reported by the current call of {@link ClassFileVisitor#visitAttribute(int, int)}
+     * @throws IllegalStateException if no attribute is being visited
+     * @throws ClassFormatException if the attribute is malformed
+     */
+    public Attribute getAttribute() {
+        if (attributeStart < 0) {
+            throw new IllegalStateException("No attribute is being visited");
+        }
+        try {
+            return Attribute.readAttribute(input(attributeStart, attributeEnd), getConstantPool());
+        } catch (final IOException e) {
+            throw new ClassFormatException("Malformed attribute: " + e, e);
+        }
+    }
+
+    /**
+     * Gets the contents of the attribute being visited without reading the attribute, e.g. to look up the constants an
+     * attribute refers to.
+     *
+     * @return a read-only, big-endian buffer of the contents following the attribute's name index and length
+     * @throws IllegalStateException if no attribute is being visited
+     */
+    public ByteBuffer getAttributeContents() {
+        if (attributeStart < 0) {
+            throw new IllegalStateException("No attribute is being visited");
+        }
+        return ByteBuffer.wrap(classFile, attributeStart + 6, attributeEnd - attributeStart - 6).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the offset of the attribute being visited, e.g. to patch the constant indices found in its contents.
+     *
+     * @return the offset of the attribute's name index in the class file; its contents start 6 bytes later
+     * @throws IllegalStateException if no attribute is being visited
+     */
+    public int getAttributeOffset() {
+        if (attributeStart < 0) {
+            throw new IllegalStateException("No attribute is being visited");
+        }
+        return attributeStart;
+    }
+
+    /**
+     * Gets the name of a class constant.
+     *
+     * @param index the index of a class constant
+     * @return the name in internal form, e.g. {@code java/lang/String}
+     * @throws ClassFormatException if the constant is not a class constant
+     */
+    public String getClassName(final int index) {
+        return getUtf8(u2(classFile, offset(index, Const.CONSTANT_Class)));
+    }
+
+    /**
+     * Reads a constant. Once {@link #getConstantPool()} has been called, the constant is taken from that pool.
+     *
+     * @param index the index of the constant
+     * @return the constant
+     * @throws ClassFormatException if the index is not that of a constant
+     */
+    public Constant getConstant(final int index) {
+        if (constantPool != null) {
+            return constantPool.getConstant(index);
+        }
+        final int offset = offset(index, (byte) 0);
+        try {
+            return Constant.readConstant(input(offset - 1, offset + constantLength(classFile, tags[index], offset)));
+        } catch (final IOException e) {
+            throw new ClassFormatException("Malformed constant " + index + ": " + e, e);
+        }
+    }
+
+    /**
+     * @return the number of entries of the constant pool, including the unused entry 0.
+     */
+    public int getConstantCount() {
+        return tags.length;
+    }
+
+    /**
+     * @param index the index of a constant
+     * @return the offset of the constant's tag in the class file
+     * @throws ClassFormatException if the index is not that of a constant
+     */
+    public int getConstantOffset(final int index) {
+        return offset(index, (byte) 0) - 1;
+    }
+
+    /**
+     * Reads the whole constant pool on the first call, as needed for the objects the reader materializes.
+     *
+     * @return the constant pool
+     * @throws ClassFormatException if the constant pool is malformed
+     */
+    public ConstantPool getConstantPool() {
+        if (constantPool == null) {
+            try {
+                constantPool = new ConstantPool(input(CONSTANT_POOL_COUNT_OFFSET, end));
+            } catch (final IOException e) {
+                throw new ClassFormatException("Malformed constant pool: " + e, e);
+            }
+        }
+        return constantPool;
+    }
+
+    /**
+     * @return the offset of the access flags of the class in the class file, which follow the constant pool
+     */
+    public int getConstantPoolEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the field being visited, which is read on each call.
+     *
+     * @return the field reported by the current call of {@link ClassFileVisitor#visitField(int, int, int)}, or of
+     *         {@link ClassFileVisitor#visitAttribute(int, int)} for one of its attributes
+     * @throws IllegalStateException if no field is being visited
+     * @throws ClassFormatException if the field is malformed
+     */
+    public Field getField() {
+        if (memberStart < 0 || memberIsMethod) {
+            throw new IllegalStateException("No field is being visited");
+        }
+        try {
+            return new Field(input(memberStart, memberEnd), getConstantPool());
+        } catch (final IOException e) {
+            throw new ClassFormatException("Malformed field: " + e, e);
+        }
+    }
+
+    /**
+     * Gets the method being visited, which is read on each call.
+     *
+     * @return the method reported by the current call of {@link ClassFileVisitor#visitMethod(int, int, int)}, or of a
+     *         visitor method for its code or attributes
+     * @throws IllegalStateException if no method is being visited
+     * @throws ClassFormatException if the method is malformed
+     */
+    public Method getMethod() {
+        if (memberStart < 0 || !memberIsMethod) {
+            throw new IllegalStateException("No method is being visited");
+        }
+        try {
+            return new Method(input(memberStart, memberEnd), getConstantPool());
+        } catch (final IOException e) {
+            throw new ClassFormatException("Malformed method: " + e, e);
+        }
+    }
+
+    /**
+     * Gets a constant pool index stored in a constant without reading the constant, e.g. the descriptor index of a
+     * name and type constant.
+     *
+     * @param index the index of a constant that refers to other constants
+     * @param n 0 for the first index stored in the constant, 1 for the second of those constants that store two, e.g.
+     *        the name and type index of a field reference. Dynamic and invoke dynamic constants only accept 1, as their
+     *        first index is that of a bootstrap method, not a constant.
+     * @return the n-th index stored in the constant
+     * @throws ClassFormatException if the constant does not refer to other constants
+     * @throws IllegalArgumentException if the constant stores fewer than n + 1 constant pool indices
+     */
+    public int getReferencedIndex(final int index, final int n) {
+        int offset = offset(index, (byte) 0);
+        final int count;
+        switch (tags[index]) {
+        case Const.CONSTANT_Class:
+        case Const.CONSTANT_String:
+        case Const.CONSTANT_MethodType:
+        case Const.CONSTANT_Module:
+        case Const.CONSTANT_Package:
+            count = 1;
+            break;
+        case Const.CONSTANT_MethodHandle:
+            offset++; // Skip the reference kind
+            count = 1;
+            break;
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref:
+        case Const.CONSTANT_NameAndType:
+        case Const.CONSTANT_Dynamic:
+        case Const.CONSTANT_InvokeDynamic:
+            count = 2;
+            break;
+        default:
+            throw new ClassFormatException("Constant " + index + " of type " + Const.getConstantName(tags[index]) + " does not refer to other constants");
+        }
+        if (n < 0 || n >= count) {
+            throw new IllegalArgumentException("Invalid index " + n + " of " + Const.getConstantName(tags[index]));
+        }
+        if (n == 0 && (tags[index] == Const.CONSTANT_Dynamic || tags[index] == Const.CONSTANT_InvokeDynamic)) {
+            throw new IllegalArgumentException("Index 0 of " + Const.getConstantName(tags[index]) + " is a bootstrap method index");
+        }
+        return u2(classFile, offset + 2 * n);
+    }
+
+    /**
+     * @param index the index of a constant
+     * @return the tag of the constant, 0 for the unused entries 0 and those following long and double constants
+     * @throws ClassFormatException if the index is out of range
+     */
+    public byte getTag(final int index) {
+        if (index < 0 || index >= tags.length) {
+            throw new ClassFormatException("Invalid constant pool index: " + index);
+        }
+        return tags[index];
+    }
+
+    /**
+     * Decodes a UTF-8 constant.
+     *
+     * @param index the index of a UTF-8 constant
+     * @return the string
+     * @throws ClassFormatException if the constant is not a UTF-8 constant or malformed
+     */
+    public String getUtf8(final int index) {
+        final int offset = offset(index, Const.CONSTANT_Utf8);
+        try {
+            return ConstantUtf8.decode(Arrays.copyOfRange(classFile, offset + 2, offset + 2 + u2(classFile, offset)));
+        } catch (final UTFDataFormatException e) {
+            throw new ClassFormatException("Malformed UTF-8 constant " + index + ": " + e.getMessage(), e);
+        }
+    }
+
+    private DataInputStream input(final int start, final int end) {
+        return new DataInputStream(new ByteCursor(classFile, start, end - start));
+    }
+
+    private int instruction(final ClassFileVisitor visitor, final int code, final int offset) {
+        final int pos = code + offset;
+        final short opcode = (short) (classFile[pos] & 0xff);
+        final int base = code + offset + 1 + (3 - (offset & 3)); // Switch operands after the padding
+        switch (opcode) {
+        case Const.WIDE: {
+            final short modified = (short) (classFile[pos + 1] & 0xff);
+            visitor.visitInstruction(offset, modified, u2(classFile, pos + 2));
+            return offset + (modified == Const.IINC ? 6 : 4);
+        }
+        case Const.TABLESWITCH: {
+            final int low = u4(classFile, base + 4);
+            final int high = u4(classFile, base + 8);
+            if (high < low) {
+                throw new ClassFormatException("Invalid tableswitch bounds " + low + ".." + high + " at offset " + offset);
+            }
+            visitor.visitInstruction(offset, opcode, offset + u4(classFile, base));
+            return switchEnd(base - code + 12, 4L * ((long) high - low + 1));
+        }
+        case Const.LOOKUPSWITCH: {
+            final int npairs = u4(classFile, base + 4);
+            if (npairs < 0) {
+                throw new ClassFormatException("Invalid lookupswitch pair count " + npairs + " at offset " + offset);
+            }
+            visitor.visitInstruction(offset, opcode, offset + u4(classFile, base));
+            return switchEnd(base - code + 8, 8L * npairs);
+        }
+        case Const.GOTO_W:
+        case Const.JSR_W:
+            visitor.visitInstruction(offset, opcode, offset + u4(classFile, pos + 1));
+            return offset + 5;
+        default:
+            final int operands = Const.getNoOfOperands(opcode);
+            if (operands < 0 && opcode != Const.IMPDEP1 && opcode != Const.IMPDEP2) {
+                throw new ClassFormatException("Illegal opcode " + opcode + " at offset " + offset);
+            }
+            visitor.visitInstruction(offset, opcode, operand(opcode, pos, offset));
+            return offset + 1 + Math.max(operands, 0);
+        }
+    }
+
+    /**
+     * Tests whether a constant is a UTF-8 constant holding the given ASCII string, without decoding it.
+     */
+    private boolean isUtf8(final int index, final String ascii) {
+        if (index <= 0 || index >= tags.length || tags[index] != Const.CONSTANT_Utf8) {
+            return false;
+        }
+        final int offset = offsets[index];
+        final int length = ascii.length();
+        if (u2(classFile, offset) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (classFile[offset + 2 + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int members(final ClassFileVisitor visitor, final int start, final boolean method) {
+        final int count = u2(classFile, start);
+        int pos = start + 2;
+        for (int i = 0; i < count; i++) {
+            final int next = attributes(null, pos + 6, false);
+            memberStart = pos;
+            memberEnd = next;
+            memberIsMethod = method;
+            final int accessFlags = u2(classFile, pos);
+            final int nameIndex = u2(classFile, pos + 2);
+            final int signatureIndex = u2(classFile, pos + 4);
+            if (method ? visitor.visitMethod(accessFlags, nameIndex, signatureIndex) : visitor.visitField(accessFlags, nameIndex, signatureIndex)) {
+                attributes(visitor, pos + 6, method);
+            }
+            memberStart = -1;
+            pos = next;
+        }
+        return pos;
+    }
+
+    private int offset(final int index, final byte tag) {
+        if (getTag(index) == 0 || tag != 0 && tags[index] != tag) {
+            throw new ClassFormatException("Invalid constant pool index " + index + (tag == 0 ? "" : ", expected constant of type " + Const.getConstantName(tag)));
+        }
+        return offsets[index];
+    }
+
+    private int operand(final short opcode, final int pos, final int offset) {
+        if (isBranch(opcode)) {
+            return offset + s2(classFile, pos + 1);
+        }
+        if (opcode >= Const.ILOAD_0 && opcode <= Const.ALOAD_3) {
+            return (opcode - Const.ILOAD_0) & 3;
+        }
+        if (opcode >= Const.ISTORE_0 && opcode <= Const.ASTORE_3) {
+            return (opcode - Const.ISTORE_0) & 3;
+        }
+        switch (opcode) {
+        case Const.BIPUSH:
+            return classFile[pos + 1];
+        case Const.SIPUSH:
+            return s2(classFile, pos + 1);
+        case Const.LDC:
+        case Const.NEWARRAY:
+        case Const.ILOAD:
+        case Const.LLOAD:
+        case Const.FLOAD:
+        case Const.DLOAD:
+        case Const.ALOAD:
+        case Const.ISTORE:
+        case Const.LSTORE:
+        case Const.FSTORE:
+        case Const.DSTORE:
+        case Const.ASTORE:
+        case Const.IINC:
+        case Const.RET:
+            return classFile[pos + 1] & 0xff;
+        case Const.LDC_W:
+        case Const.LDC2_W:
+        case Const.GETSTATIC:
+        case Const.PUTSTATIC:
+        case Const.GETFIELD:
+        case Const.PUTFIELD:
+        case Const.INVOKEVIRTUAL:
+        case Const.INVOKESPECIAL:
+        case Const.INVOKESTATIC:
+        case Const.INVOKEINTERFACE:
+        case Const.INVOKEDYNAMIC:
+        case Const.NEW:
+        case Const.ANEWARRAY:
+        case Const.CHECKCAST:
+        case Const.INSTANCEOF:
+        case Const.MULTIANEWARRAY:
+            return u2(classFile, pos + 1);
+        default:
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.classfile;
+
+/**
+ * Receives the parts of a class file from a {@link ClassFileReader} in the order they occur in the file, except that the
+ * header comes first. All references to constants are passed as constant pool indices, which the reader resolves on
+ * request. The methods of this class do nothing, and those deciding whether to descend into a part return false, so
+ * subclasses override what they are interested in.
+ *
+ * @see ClassFileReader#accept(ClassFileVisitor)
+ * @since 6.6.1
+ */
+public abstract class ClassFileVisitor {
+
+    /**
+     * Visits an attribute of the class, a field, a method or a Code attribute, except the Code attribute itself. The
+     * attribute object is available from {@link ClassFileReader#getAttribute()} during this call.
+     *
+     * @param nameIndex the index of the name of the attribute
+     * @param length the length of the attribute's contents
+     */
+    public void visitAttribute(final int nameIndex, final int length) {
+        // empty
+    }
+
+    /**
+     * Visits the header of the class.
+     *
+     * @param major major version
+     * @param minor minor version
+     * @param accessFlags access flags of the class
+     * @param classIndex index of the class constant of this class
+     * @param superclassIndex index of the class constant of the super class, 0 for java.lang.Object
+     * @param interfaceIndices indices of the class constants of the interfaces
+     */
+    public void visitClass(final int major, final int minor, final int accessFlags, final int classIndex, final int superclassIndex,
+        final int[] interfaceIndices) {
+        // empty
+    }
+
+    /**
+     * Visits the Code attribute of a method.
+     *
+     * @param maxStack maximum stack size
+     * @param maxLocals maximum number of local variables
+     * @param codeLength length of the byte code
+     * @return whether to visit the instructions, exception handlers and attributes of the code
+     */
+    public boolean visitCode(final int maxStack, final int maxLocals, final int codeLength) {
+        return false;
+    }
+
+    /**
+     * Visits an entry of the constant pool, in the order of the pool.
+     *
+     * @param index the index of the constant
+     * @param tag the tag of the constant
+     */
+    public void visitConstant(final int index, final byte tag) {
+        // empty
+    }
+
+    /**
+     * Visits the end of the class file.
+     */
+    public void visitEnd() {
+        // empty
+    }
+
+    /**
+     * Visits an entry of the exception table of a Code attribute.
+     *
+     * @param startPc start of the protected code
+     * @param endPc end of the protected code, exclusive
+     * @param handlerPc start of the handler
+     * @param catchTypeIndex index of the class constant of the exception caught, 0 for any exception
+     */
+    public void visitExceptionHandler(final int startPc, final int endPc, final int handlerPc, final int catchTypeIndex) {
+        // empty
+    }
+
+    /**
+     * Visits a field. The field object is available from {@link ClassFileReader#getField()} during this call.
+     *
+     * @param accessFlags access flags
+     * @param nameIndex index of the name
+     * @param signatureIndex index of the signature
+     * @return whether to visit the attributes of the field
+     */
+    public boolean visitField(final int accessFlags, final int nameIndex, final int signatureIndex) {
+        return false;
+    }
+
+    /**
+     * Visits an instruction of a Code attribute. The main operand is what
+     * {@link org.apache.bcel.generic.CompactInstructionList#getOperand(int)} returns, except that the target of a branch is
+     * given as a byte code offset: the index of the constant of instructions referring to a constant, the index of the
+     * local variable of instructions accessing one, the value of BIPUSH and SIPUSH, the type of NEWARRAY and the (default)
+     * target of branches; for other instructions it is 0.
+     *
+     * @param offset the byte code offset of the instruction
+     * @param opcode the opcode, which for an instruction modified by WIDE is the opcode of the modified instruction
+     * @param operand the main operand
+     */
+    public void visitInstruction(final int offset, final short opcode, final int operand) {
+        // empty
+    }
+
+    /**
+     * Visits a method. The method object is available from {@link ClassFileReader#getMethod()} during this call.
+     *
+     * @param accessFlags access flags
+     * @param nameIndex index of the name
+     * @param signatureIndex index of the signature
+     * @return whether to visit the code and the other attributes of the method
+     */
+    public boolean visitMethod(final int accessFlags, final int nameIndex, final int signatureIndex) {
+        return false;
+    }
+}
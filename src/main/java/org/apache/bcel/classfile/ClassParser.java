@@ -22,6 +22,9 @@ import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -55,6 +58,7 @@ public final class ClassParser {
     private Method[] methods; // methods defined in the class
     private Attribute[] attributes; // attributes defined in the class
     private final boolean isZip; // Loaded from zip file
+    private Map<String, UnknownAttributeReader> attributeReaders; // readers of non-standard attributes
 
     /**
      * Parses class from the given stream.
@@ -98,6 +102,22 @@ public final class ClassParser {
         this.fileName = fileName;
     }
 
+    /**
+     * Adds a reader capable of parsing (user-defined) attributes named "name" in the classes this parser reads. Unlike
+     * {@link Attribute#addAttributeReader(String, UnknownAttributeReader)}, the reader does not affect other parsers, and
+     * it takes precedence over a reader added there for the same name.
+     *
+     * @param name the name of the attribute as stored in the class file
+     * @param reader the reader object
+     * @since 6.6.1
+     */
+    public void addAttributeReader(final String name, final UnknownAttributeReader reader) {
+        if (attributeReaders == null) {
+            attributeReaders = new HashMap<>();
+        }
+        attributeReaders.put(name, reader);
+    }
+
     /**
      * Parses the given Java class file and return an object that represents the contained data, i.e., constants, methods,
      * fields and commands. A <em>ClassFormatException</em> is raised, if the file is not a valid .class file. (This does
@@ -108,6 +128,23 @@ public final class ClassParser {
      * @throws ClassFormatException if a class is malformed or cannot be interpreted as a class file
      */
     public JavaClass parse() throws IOException, ClassFormatException {
+        return parse(null);
+    }
+
+    /**
+     * Parses the given Java class file like {@link #parse()}, but lets a filter decide after the constant pool and the
+     * class header whether the rest of the class is parsed. Rejected classes cost little more than reading their
+     * constant pool: neither their fields, methods nor attributes are read, and a {@link DataInputStream} passed to the
+     * parser, which is read without further buffering, is left after the interfaces of the class.
+     *
+     * @param filter tests a class that holds the version, constant pool, access flags, name, super class and interfaces of
+     *        the class file, but no fields, methods or attributes; null to accept every class
+     * @return Class object representing the parsed class file, or null if the filter rejected the class
+     * @throws IOException if an I/O error occurs.
+     * @throws ClassFormatException if a class is malformed or cannot be interpreted as a class file
+     * @since 6.6.1
+     */
+    public JavaClass parse(final Predicate<? super JavaClass> filter) throws IOException, ClassFormatException {
         ZipFile zip = null;
         try {
             if (fileOwned) {
@@ -136,6 +173,10 @@ public final class ClassParser {
             readClassInfo();
             // Get interface information, i.e., implemented interfaces
             readInterfaces();
+            if (filter != null && !filter.test(new JavaClass(classNameIndex, superclassNameIndex, fileName, major, minor, accessFlags, constantPool,
+                interfaces, null, null, null, isZip ? JavaClass.ZIP : JavaClass.FILE))) {
+                return null;
+            }
             /****************** Read class fields and methods ***************/
             // Read class fields, i.e., the variables of the class
             readFields();
@@ -158,6 +199,9 @@ public final class ClassParser {
             // }
             // }
         } finally {
+            if (constantPool != null) {
+                constantPool.setAttributeReaders(null);
+            }
             // Read everything of interest, so close the file
             if (fileOwned) {
                 try {
@@ -224,6 +268,7 @@ public final class ClassParser {
      */
     private void readConstantPool() throws IOException, ClassFormatException {
         constantPool = new ConstantPool(dataInputStream);
+        constantPool.setAttributeReaders(attributeReaders);
     }
 
     /**
@@ -20,6 +20,7 @@ package org.apache.bcel.classfile;
 import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Map;
 
 import org.apache.bcel.Const;
 import org.apache.bcel.generic.ConstantPoolGen;
@@ -65,6 +66,9 @@ public class ConstantPool implements Cloneable, Node {
 
     private Constant[] constantPool;
 
+    /** Readers of non-standard attributes of the parser reading the class, if it has any. */
+    private Map<String, UnknownAttributeReader> attributeReaders;
+
     /**
      * @param constantPool Array of constants
      */
@@ -283,6 +287,13 @@ public class ConstantPool implements Cloneable, Node {
         return c;
     }
 
+    /**
+     * @return the readers of non-standard attributes the class parser has been given, or null
+     */
+    Map<String, UnknownAttributeReader> getAttributeReaders() {
+        return attributeReaders;
+    }
+
     /**
      * @return Array of constants.
      * @see Constant
@@ -291,6 +302,43 @@ public class ConstantPool implements Cloneable, Node {
         return constantPool;
     }
 
+    /**
+     * @return the number of bytes {@link #dump(DataOutputStream)} writes, assuming the constants have known types.
+     */
+    int getDumpSize() {
+        final int count = Math.min(constantPool.length, ConstantPoolGen.CONSTANT_POOL_SIZE - 1);
+        int size = 2;
+        for (int i = 1; i < count; i++) {
+            final Constant c = constantPool[i];
+            if (c == null) {
+                continue;
+            }
+            switch (c.getTag()) {
+            case Const.CONSTANT_Utf8:
+                size += 3 + ((ConstantUtf8) c).getEncodedLength();
+                break;
+            case Const.CONSTANT_Class:
+            case Const.CONSTANT_String:
+            case Const.CONSTANT_MethodType:
+            case Const.CONSTANT_Module:
+            case Const.CONSTANT_Package:
+                size += 3;
+                break;
+            case Const.CONSTANT_MethodHandle:
+                size += 4;
+                break;
+            case Const.CONSTANT_Long:
+            case Const.CONSTANT_Double:
+                size += 9;
+                break;
+            default:
+                size += 5;
+                break;
+            }
+        }
+        return size;
+    }
+
     /**
      * Gets string from constant pool and bypass the indirection of `ConstantClass' and `ConstantString' objects. I.e. these
      * classes have an index field that points to another entry of the constant pool of type `ConstantUtf8' which contains
@@ -343,6 +391,14 @@ public class ConstantPool implements Cloneable, Node {
         return constantPool == null ? 0 : constantPool.length;
     }
 
+    /**
+     * @param attributeReaders the readers of non-standard attributes, which take precedence over the readers added to
+     *        {@link Attribute}, or null
+     */
+    void setAttributeReaders(final Map<String, UnknownAttributeReader> attributeReaders) {
+        this.attributeReaders = attributeReaders;
+    }
+
     /**
      * @param constant Constant to set
      */
@@ -20,6 +20,8 @@ package org.apache.bcel.classfile;
 import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -38,6 +40,9 @@ import org.apache.bcel.Const;
  * <li>{@value #SYS_PROP_CACHE_MAX_ENTRY_SIZE} (since 6.0): The maximum size of the values to cache, by default 200, 0
  * disables caching. Values larger than this are <em>not</em> cached.</li>
  * <li>{@value #SYS_PROP_STATISTICS} (since 6.0): Prints statistics on the console when the JVM exits.</li>
+ * <li>{@value #SYS_PROP_LAZY} (since 6.6.1): Keeps the modified UTF-8 bytes of constants read from class files and
+ * decodes them on the first call of {@link #getBytes()}, by default false. Malformed bytes are then only reported by that
+ * call. This does not apply if caching is enabled.</li>
  * </ul>
  * <p>
  * Here is a sample Maven invocation with caching disabled:
@@ -92,6 +97,12 @@ public final class ConstantUtf8 extends Constant {
     private static final String SYS_PROP_CACHE_MAX_ENTRIES = "bcel.maxcached";
     private static final String SYS_PROP_CACHE_MAX_ENTRY_SIZE = "bcel.maxcached.size";
     private static final String SYS_PROP_STATISTICS = "bcel.statistics";
+    private static final String SYS_PROP_LAZY = "bcel.utf8.lazy";
+
+    private static final boolean LAZY = Boolean.getBoolean(SYS_PROP_LAZY);
+
+    /** Value of {@link #attributeTag} before it has been resolved. */
+    private static final byte UNRESOLVED = Byte.MIN_VALUE;
 
     static {
         if (Cache.BCEL_STATISTICS) {
@@ -113,6 +124,79 @@ public final class ConstantUtf8 extends Constant {
         hits = considered = skipped = created = 0;
     }
 
+    /**
+     * Decodes modified UTF-8 as {@link DataInput#readUTF()} does. Strings that are pure ASCII, as almost all strings of
+     * class files are, are created from the bytes in one step.
+     *
+     * @param bytes the encoded string without its length
+     * @return the decoded string
+     * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+     */
+    static String decode(final byte[] bytes) throws UTFDataFormatException {
+        final int length = bytes.length;
+        int count = 0;
+        while (count < length && bytes[count] >= 0) {
+            count++;
+        }
+        if (count == length) {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        final char[] chars = new char[length];
+        for (int i = 0; i < count; i++) {
+            chars[i] = (char) bytes[i];
+        }
+        int n = count;
+        while (count < length) {
+            final int c = bytes[count] & 0xff;
+            switch (c >> 4) {
+            case 0:
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 5:
+            case 6:
+            case 7:
+                // 0xxxxxxx
+                count++;
+                chars[n++] = (char) c;
+                break;
+            case 12:
+            case 13: {
+                // 110x xxxx 10xx xxxx
+                count += 2;
+                if (count > length) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                final int c2 = bytes[count - 1];
+                if ((c2 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + count);
+                }
+                chars[n++] = (char) ((c & 0x1F) << 6 | c2 & 0x3F);
+                break;
+            }
+            case 14: {
+                // 1110 xxxx 10xx xxxx 10xx xxxx
+                count += 3;
+                if (count > length) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                final int c2 = bytes[count - 2];
+                final int c3 = bytes[count - 1];
+                if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (count - 1));
+                }
+                chars[n++] = (char) ((c & 0x0F) << 12 | (c2 & 0x3F) << 6 | c3 & 0x3F);
+                break;
+            }
+            default:
+                // 10xx xxxx, 1111 xxxx
+                throw new UTFDataFormatException("malformed input around byte " + count);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
     /**
      * Gets a new or cached instance of the given value.
      * <p>
@@ -153,7 +237,11 @@ public final class ConstantUtf8 extends Constant {
      * @since 6.0
      */
     public static ConstantUtf8 getInstance(final DataInput dataInput) throws IOException {
-        return getInstance(dataInput.readUTF());
+        final byte[] bytes = readBytes(dataInput);
+        if (LAZY && !Cache.isEnabled()) {
+            return new ConstantUtf8(bytes);
+        }
+        return getInstance(decode(bytes));
     }
 
     /**
@@ -179,7 +267,23 @@ public final class ConstantUtf8 extends Constant {
             Cache.MAX_ENTRY_SIZE);
     }
 
-    private final String value;
+    /**
+     * @return the modified UTF-8 bytes of a string as written by {@link DataOutputStream#writeUTF(String)}, without its
+     *         length.
+     */
+    private static byte[] readBytes(final DataInput dataInput) throws IOException {
+        final byte[] bytes = new byte[dataInput.readUnsignedShort()];
+        dataInput.readFully(bytes);
+        return bytes;
+    }
+
+    /** The String value, or the modified UTF-8 bytes it has not been decoded from yet. */
+    private Object value;
+
+    /**
+     * Tag of the attribute named by this constant, resolved when the constant is first used as an attribute name.
+     */
+    private byte attributeTag = UNRESOLVED;
 
     /**
      * Initializes from another object.
@@ -198,7 +302,18 @@ public final class ConstantUtf8 extends Constant {
      */
     ConstantUtf8(final DataInput dataInput) throws IOException {
         super(Const.CONSTANT_Utf8);
-        value = dataInput.readUTF();
+        value = decode(readBytes(dataInput));
+        created++;
+    }
+
+    /**
+     * Initializes instance from modified UTF-8 bytes, which are decoded on demand.
+     *
+     * @param bytes the bytes, which are not copied
+     */
+    ConstantUtf8(final byte[] bytes) {
+        super(Const.CONSTANT_Utf8);
+        value = bytes;
         created++;
     }
 
@@ -231,14 +346,60 @@ public final class ConstantUtf8 extends Constant {
     @Override
     public void dump(final DataOutputStream file) throws IOException {
         file.writeByte(super.getTag());
-        file.writeUTF(value);
+        final Object v = value;
+        if (v instanceof byte[]) {
+            final byte[] bytes = (byte[]) v;
+            file.writeShort(bytes.length);
+            file.write(bytes);
+        } else {
+            file.writeUTF((String) v);
+        }
+    }
+
+    /**
+     * Gets the tag of the attribute named by this constant. It is looked up once, as the value is immutable.
+     *
+     * @return the tag of the known attribute with this name, or {@link Const#ATTR_UNKNOWN}
+     */
+    byte getAttributeTag() {
+        if (attributeTag == UNRESOLVED) {
+            attributeTag = Attribute.getAttributeTag(getBytes());
+        }
+        return attributeTag;
     }
 
     /**
      * @return Data converted to string.
      */
     public String getBytes() {
-        return value;
+        final Object v = value;
+        if (v instanceof String) {
+            return (String) v;
+        }
+        try {
+            final String decoded = decode((byte[]) v);
+            value = decoded;
+            return decoded;
+        } catch (final UTFDataFormatException e) {
+            throw new ClassFormatException(e.toString(), e);
+        }
+    }
+
+    /**
+     * @return the number of bytes of the modified UTF-8 encoding, without the length.
+     */
+    int getEncodedLength() {
+        final Object v = value;
+        if (v instanceof byte[]) {
+            return ((byte[]) v).length;
+        }
+        final String string = (String) v;
+        int length = 0;
+        for (int j = 0; j < string.length(); j++) {
+            final char ch = string.charAt(j);
+            length += ch >= 0x0001 && ch <= 0x007F ? 1 : ch <= 0x07FF ? 2 : 3;
+        }
+        return length;
     }
 
     /**
@@ -255,6 +416,6 @@ public final class ConstantUtf8 extends Constant {
      */
     @Override
     public String toString() {
-        return super.toString() + "(\"" + Utility.replace(value, "\n", "\\n") + "\")";
+        return super.toString() + "(\"" + Utility.replace(getBytes(), "\n", "\\n") + "\")";
     }
 }
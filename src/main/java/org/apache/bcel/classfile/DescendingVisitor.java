@@ -17,33 +17,56 @@
  */
 package org.apache.bcel.classfile;
 
-import java.util.Objects;
-import java.util.Stack;
-import java.util.stream.Stream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Predicate;
 
 /**
  * Traverses a JavaClass with another Visitor object 'piggy-backed' that is applied to all components of a JavaClass
  * object. I.e. this class supplies the traversal strategy, other classes can make use of it.
- *
+ * <p>
+ * The traversal can be pruned: a predicate given to the constructor decides for each node whether its children are
+ * traversed, e.g. {@code node -> !(node instanceof Code)} skips everything inside Code attributes, and the piggy-backed
+ * visitor can call {@link #skipChildren()} to skip the children of the node it is visiting.
+ * </p>
  */
 public class DescendingVisitor implements Visitor {
     private final JavaClass clazz;
 
     private final Visitor visitor;
 
-    private final Stack<Object> stack = new Stack<>();
+    private final Predicate<? super Node> descend;
+
+    /** Path from the current node (head) to the class (tail). */
+    private final Deque<Object> stack = new ArrayDeque<>();
+
+    private boolean skipChildren;
 
     /**
      * @param clazz Class to traverse
      * @param visitor visitor object to apply to all components
      */
     public DescendingVisitor(final JavaClass clazz, final Visitor visitor) {
+        this(clazz, visitor, node -> true);
+    }
+
+    /**
+     * @param clazz Class to traverse
+     * @param visitor visitor object to apply to all components
+     * @param descend decides, after the visitor has been applied to a node, whether to traverse the node's children
+     * @since 6.6.1
+     */
+    public DescendingVisitor(final JavaClass clazz, final Visitor visitor, final Predicate<? super Node> descend) {
         this.clazz = clazz;
         this.visitor = visitor;
+        this.descend = descend;
     }
 
     private <E extends Node> void accept(final E[] node) {
-        Stream.of(node).forEach(e -> e.accept(this));
+        for (final E e : node) {
+            e.accept(this);
+        }
     }
 
     /**
@@ -65,11 +88,25 @@ public class DescendingVisitor implements Visitor {
      * @return container of current entitity, i.e., predecessor during traversal
      */
     public Object predecessor(final int level) {
-        final int size = stack.size();
-        if (size < 2 || level < 0) {
+        if (level < 0 || stack.size() < level + 2) {
             return null;
         }
-        return stack.elementAt(size - (level + 2)); // size - 1 == current
+        final Iterator<Object> path = stack.iterator();
+        path.next(); // current
+        for (int i = 0; i < level; i++) {
+            path.next();
+        }
+        return path.next();
+    }
+
+    /**
+     * Skips the children of the current node. The piggy-backed visitor calls this while visiting a node whose contents it
+     * does not need, e.g. a LineNumberTable.
+     *
+     * @since 6.6.1
+     */
+    public void skipChildren() {
+        skipChildren = true;
     }
 
     /**
@@ -79,14 +116,26 @@ public class DescendingVisitor implements Visitor {
         clazz.accept(this);
     }
 
+    /**
+     * Applies the visitor to a node.
+     *
+     * @return whether to traverse the node's children
+     */
+    private boolean visitAndDescend(final Node node) {
+        skipChildren = false;
+        node.accept(visitor);
+        return !skipChildren && descend.test(node);
+    }
+
     /**
      * @since 6.0
      */
     @Override
     public void visitAnnotation(final Annotations annotation) {
         stack.push(annotation);
-        annotation.accept(visitor);
-        accept(annotation.getAnnotationEntries());
+        if (visitAndDescend(annotation)) {
+            accept(annotation.getAnnotationEntries());
+        }
         stack.pop();
     }
 
@@ -128,9 +177,10 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitCode(final Code code) {
         stack.push(code);
-        code.accept(visitor);
-        accept(code.getExceptionTable());
-        accept(code.getAttributes());
+        if (visitAndDescend(code)) {
+            accept(code.getExceptionTable());
+            accept(code.getAttributes());
+        }
         stack.pop();
     }
 
@@ -257,8 +307,13 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitConstantPool(final ConstantPool cp) {
         stack.push(cp);
-        cp.accept(visitor);
-        Stream.of(cp.getConstantPool()).filter(Objects::nonNull).forEach(e -> e.accept(this));
+        if (visitAndDescend(cp)) {
+            for (final Constant constant : cp.getConstantPool()) {
+                if (constant != null) {
+                    constant.accept(this);
+                }
+            }
+        }
         stack.pop();
     }
 
@@ -310,8 +365,9 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitField(final Field field) {
         stack.push(field);
-        field.accept(visitor);
-        accept(field.getAttributes());
+        if (visitAndDescend(field)) {
+            accept(field.getAttributes());
+        }
         stack.pop();
     }
 
@@ -325,19 +381,21 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitInnerClasses(final InnerClasses ic) {
         stack.push(ic);
-        ic.accept(visitor);
-        accept(ic.getInnerClasses());
+        if (visitAndDescend(ic)) {
+            accept(ic.getInnerClasses());
+        }
         stack.pop();
     }
 
     @Override
     public void visitJavaClass(final JavaClass clazz) {
         stack.push(clazz);
-        clazz.accept(visitor);
-        accept(clazz.getFields());
-        accept(clazz.getMethods());
-        accept(clazz.getAttributes());
-        clazz.getConstantPool().accept(this);
+        if (visitAndDescend(clazz)) {
+            accept(clazz.getFields());
+            accept(clazz.getMethods());
+            accept(clazz.getAttributes());
+            clazz.getConstantPool().accept(this);
+        }
         stack.pop();
     }
 
@@ -351,8 +409,9 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitLineNumberTable(final LineNumberTable table) {
         stack.push(table);
-        table.accept(visitor);
-        accept(table.getLineNumberTable());
+        if (visitAndDescend(table)) {
+            accept(table.getLineNumberTable());
+        }
         stack.pop();
     }
 
@@ -366,8 +425,9 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitLocalVariableTable(final LocalVariableTable table) {
         stack.push(table);
-        table.accept(visitor);
-        accept(table.getLocalVariableTable());
+        if (visitAndDescend(table)) {
+            accept(table.getLocalVariableTable());
+        }
         stack.pop();
     }
 
@@ -384,8 +444,9 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitMethod(final Method method) {
         stack.push(method);
-        method.accept(visitor);
-        accept(method.getAttributes());
+        if (visitAndDescend(method)) {
+            accept(method.getAttributes());
+        }
         stack.pop();
     }
 
@@ -405,8 +466,11 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitMethodParameters(final MethodParameters obj) {
         stack.push(obj);
-        obj.accept(visitor);
-        Stream.of(obj.getParameters()).forEach(e -> e.accept(this));
+        if (visitAndDescend(obj)) {
+            for (final MethodParameter parameter : obj.getParameters()) {
+                parameter.accept(this);
+            }
+        }
         stack.pop();
     }
 
@@ -414,11 +478,12 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitModule(final Module obj) {
         stack.push(obj);
-        obj.accept(visitor);
-        accept(obj.getRequiresTable());
-        accept(obj.getExportsTable());
-        accept(obj.getOpensTable());
-        accept(obj.getProvidesTable());
+        if (visitAndDescend(obj)) {
+            accept(obj.getRequiresTable());
+            accept(obj.getExportsTable());
+            accept(obj.getOpensTable());
+            accept(obj.getProvidesTable());
+        }
         stack.pop();
     }
 
@@ -521,8 +586,9 @@ public class DescendingVisitor implements Visitor {
     @Override
     public void visitStackMap(final StackMap table) {
         stack.push(table);
-        table.accept(visitor);
-        accept(table.getStackMap());
+        if (visitAndDescend(table)) {
+            accept(table.getStackMap());
+        }
         stack.pop();
     }
 
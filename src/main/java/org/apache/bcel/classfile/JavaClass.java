@@ -17,14 +17,15 @@
  */
 package org.apache.bcel.classfile;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -34,6 +35,7 @@ import org.apache.bcel.Const;
 import org.apache.bcel.generic.Type;
 import org.apache.bcel.util.BCELComparator;
 import org.apache.bcel.util.ClassQueue;
+import org.apache.bcel.util.SizedDataOutputStream;
 import org.apache.bcel.util.SyntheticRepository;
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -85,6 +87,19 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
         return bcelComparator;
     }
 
+    /**
+     * @return the number of bytes the given attributes occupy in a class file, excluding their count.
+     */
+    private static int getDumpSize(final Attribute[] attributes) {
+        int size = 0;
+        if (attributes != null) {
+            for (final Attribute attribute : attributes) {
+                size += 6 + attribute.getLength();
+            }
+        }
+        return size;
+    }
+
     private static String indent(final Object obj) {
         final StringTokenizer tok = new StringTokenizer(obj.toString(), "\n");
         final StringBuilder buf = new StringBuilder();
@@ -94,6 +109,10 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
         return buf.toString();
     }
 
+    private static boolean isMethod(final Method method, final java.lang.reflect.Method m, final String signature) {
+        return m.getName().equals(method.getName()) && m.getModifiers() == method.getModifiers() && signature.equals(method.getSignature());
+    }
+
     /**
      * @param comparator Comparison strategy object
      */
@@ -115,6 +134,8 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
     private String[] interfaceNames;
     private Field[] fields; // Fields, i.e., variables of class
     private Method[] methods; // methods defined in the class
+    private transient Map<String, Method> methodIndex; // first method by name and signature, for methodIndexed
+    private transient Method[] methodIndexed;
     private Attribute[] attributes; // attributes defined in the class
 
     private AnnotationEntry[] annotations; // annotations defined on the class
@@ -436,20 +457,12 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
      * @return class in binary format
      */
     public byte[] getBytes() {
-        final ByteArrayOutputStream s = new ByteArrayOutputStream();
-        final DataOutputStream ds = new DataOutputStream(s);
-        try {
+        try (SizedDataOutputStream ds = new SizedDataOutputStream(getDumpSize())) {
             dump(ds);
+            return ds.toByteArray();
         } catch (final IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                ds.close();
-            } catch (final IOException e2) {
-                e2.printStackTrace();
-            }
+            throw new IllegalStateException(e.toString(), e);
         }
-        return s.toByteArray();
     }
 
     /**
@@ -473,6 +486,22 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
         return constantPool;
     }
 
+    /**
+     * @return the number of bytes {@link #dump(DataOutputStream)} writes, so that {@link #getBytes()} need not grow its
+     *         buffer; the attribute lengths are taken as they are.
+     */
+    private int getDumpSize() {
+        int size = 8 + constantPool.getDumpSize() + 8 + 2 * interfaces.length + 2;
+        for (final Field field : fields) {
+            size += 8 + getDumpSize(field.getAttributes());
+        }
+        size += 2;
+        for (final Method method : methods) {
+            size += 8 + getDumpSize(method.getAttributes());
+        }
+        return size + 2 + getDumpSize(attributes);
+    }
+
     /**
      * @return Fields, i.e., variables of the class. Like the JVM spec mandates for the classfile format, these fields are
      *         those specific to this class, and not those of the superclass or superinterfaces.
@@ -522,15 +551,25 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
     }
 
     /**
+     * Looks up the method by name and signature in an index, which is built on the first call and again after
+     * {@link #setMethods(Method[])}. A method that has been renamed in place through {@link Method#setNameIndex(int)} or
+     * {@link Method#setSignatureIndex(int)} since then is only found by its new name once the methods are set again.
+     *
      * @return A {@link Method} corresponding to java.lang.reflect.Method if any
      */
     public Method getMethod(final java.lang.reflect.Method m) {
-        for (final Method method : methods) {
-            if (m.getName().equals(method.getName()) && m.getModifiers() == method.getModifiers() && Type.getSignature(m).equals(method.getSignature())) {
-                return method;
-            }
+        final String signature = Type.getSignature(m);
+        final String key = m.getName() + signature;
+        if (methodIndex == null || methodIndexed != methods) {
+            indexMethods();
         }
-        return null;
+        Method method = methodIndex.get(key);
+        if (method != null && !key.equals(method.getName() + method.getSignature())) {
+            // Renamed in place since it was indexed
+            indexMethods();
+            method = methodIndex.get(key);
+        }
+        return method != null && isMethod(method, m, signature) ? method : null;
     }
 
     /**
@@ -648,6 +687,18 @@ public class JavaClass extends AccessFlags implements Cloneable, Node, Comparabl
         return false;
     }
 
+    /**
+     * Indexes the first method of each name and signature.
+     */
+    private void indexMethods() {
+        final Map<String, Method> index = new HashMap<>(methods.length * 2);
+        for (final Method method : methods) {
+            index.putIfAbsent(method.getName() + method.getSignature(), method);
+        }
+        methodIndex = index;
+        methodIndexed = methods;
+    }
+
     /**
      * Equivalent to runtime "instanceof" operator.
      *
@@ -20,8 +20,8 @@ package org.apache.bcel.classfile;
 import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.bcel.Const;
 
@@ -37,14 +37,13 @@ import org.apache.bcel.Const;
  */
 public final class Unknown extends Attribute {
 
-    private static final Map<String, Unknown> unknownAttributes = new HashMap<>();
+    private static final Map<String, Unknown> unknownAttributes = new ConcurrentHashMap<>();
 
     /**
      * @return array of unknown attributes, but just one for each kind.
      */
     static Unknown[] getUnknownAttributes() {
-        final Unknown[] unknowns = new Unknown[unknownAttributes.size()];
-        unknownAttributes.values().toArray(unknowns);
+        final Unknown[] unknowns = unknownAttributes.values().toArray(new Unknown[0]);
         unknownAttributes.clear();
         return unknowns;
     }
@@ -106,6 +106,9 @@ public abstract class CPInstruction extends Instruction implements TypedInstruct
      */
     @Override
     public void setIndex(final int index) { // TODO could be package-protected?
+        if (InstructionFlyweights.isShared(this)) {
+            throw new ClassGenException("Shared instruction can not be modified, use a copy: " + this);
+        }
         if (index < 0) {
             throw new ClassGenException("Negative index value: " + index);
         }
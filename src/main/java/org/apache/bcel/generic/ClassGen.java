@@ -17,15 +17,22 @@
  */
 package org.apache.bcel.generic;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.AccessFlags;
 import org.apache.bcel.classfile.AnnotationEntry;
 import org.apache.bcel.classfile.Annotations;
 import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.ClassParser;
 import org.apache.bcel.classfile.ConstantPool;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
@@ -37,6 +44,11 @@ import org.apache.bcel.util.BCELComparator;
 
 /**
  * Template class for building up a java class. May be initialized with an existing java class (file).
+ * <p>
+ * Fields and methods are looked up by name and signature in an index. A field or method must therefore not be renamed,
+ * or have its signature changed, through {@link Field#setNameIndex(int)} or {@link Field#setSignatureIndex(int)} while it
+ * is part of a ClassGen; replace it with a renamed copy instead.
+ * </p>
  *
  * @see JavaClass
  */
@@ -86,6 +98,8 @@ public class ClassGen extends AccessFlags implements Cloneable {
     // ArrayLists instead of arrays to gather fields, methods, etc.
     private final List<Field> fieldList = new ArrayList<>();
     private final List<Method> methodList = new ArrayList<>();
+    private final MemberIndex<Field> fieldIndex = new MemberIndex<>(fieldList, false);
+    private final MemberIndex<Method> methodIndex = new MemberIndex<>(methodList, true);
 
     private final List<Attribute> attributeList = new ArrayList<>();
 
@@ -95,6 +109,8 @@ public class ClassGen extends AccessFlags implements Cloneable {
 
     private List<ClassObserver> observers;
 
+    private boolean compactConstantPool;
+
     /**
      * Initialize with existing class.
      *
@@ -215,6 +231,7 @@ public class ClassGen extends AccessFlags implements Cloneable {
      */
     public void addField(final Field f) {
         fieldList.add(f);
+        fieldIndex.add(f);
     }
 
     /**
@@ -233,6 +250,7 @@ public class ClassGen extends AccessFlags implements Cloneable {
      */
     public void addMethod(final Method m) {
         methodList.add(m);
+        methodIndex.add(m);
     }
 
     /**
@@ -255,31 +273,25 @@ public class ClassGen extends AccessFlags implements Cloneable {
     }
 
     public boolean containsField(final Field f) {
-        return fieldList.contains(f);
+        return fieldIndex.indexOf(f) >= 0;
     }
 
     /**
+     * Looks up a field by name. Like the other lookups of members, this takes constant time on average.
+     *
      * @return field object with given name, or null
      */
     public Field containsField(final String name) {
-        for (final Field f : fieldList) {
-            if (f.getName().equals(name)) {
-                return f;
-            }
-        }
-        return null;
+        final List<Field> fields = fieldIndex.get(name, null);
+        return fields.isEmpty() ? null : fields.get(0);
     }
 
     /**
      * @return method object with given name and signature, or null
      */
     public Method containsMethod(final String name, final String signature) {
-        for (final Method m : methodList) {
-            if (m.getName().equals(name) && m.getSignature().equals(signature)) {
-                return m;
-            }
-        }
-        return null;
+        final List<Method> methods = methodIndex.get(name, signature);
+        return methods.isEmpty() ? null : methods.get(0);
     }
 
     /**
@@ -339,6 +351,9 @@ public class ClassGen extends AccessFlags implements Cloneable {
     }
 
     /**
+     * If {@link #setCompactConstantPool(boolean) enabled}, constants the class does not refer to are removed from the
+     * constant pool of the returned class, while the constant pool of this ClassGen is left unchanged.
+     *
      * @return the (finally) built up Java class object.
      */
     public JavaClass getJavaClass() {
@@ -357,8 +372,22 @@ public class ClassGen extends AccessFlags implements Cloneable {
         }
         // Must be last since the above calls may still add something to it
         final ConstantPool cp = this.cp.getFinalConstantPool();
-        return new JavaClass(classNameIndex, superclassNameIndex, fileName, major, minor, super.getAccessFlags(), cp, interfaces, fields, methods,
-            attributes);
+        final JavaClass javaClass = new JavaClass(classNameIndex, superclassNameIndex, fileName, major, minor, super.getAccessFlags(), cp, interfaces,
+            fields, methods, attributes);
+        if (!compactConstantPool) {
+            return javaClass;
+        }
+        final byte[] compacted = ConstantPoolCompactor.compact(javaClass.getBytes());
+        if (compacted == null) {
+            return javaClass;
+        }
+        try {
+            final JavaClass parsed = new ClassParser(new ByteArrayInputStream(compacted), fileName).parse();
+            return new JavaClass(parsed.getClassNameIndex(), parsed.getSuperclassNameIndex(), fileName, major, minor, super.getAccessFlags(),
+                parsed.getConstantPool(), parsed.getInterfaceIndices(), parsed.getFields(), parsed.getMethods(), parsed.getAttributes());
+        } catch (final IOException e) {
+            throw new ClassGenException("Can not read compacted class " + className + ": " + e, e);
+        }
     }
 
     /**
@@ -401,6 +430,14 @@ public class ClassGen extends AccessFlags implements Cloneable {
         return bcelComparator.hashCode(this);
     }
 
+    /**
+     * @return whether {@link #getJavaClass()} removes unused constants
+     * @since 6.6.1
+     */
+    public boolean isCompactConstantPool() {
+        return compactConstantPool;
+    }
+
     /**
      * Remove an attribute from this class.
      *
@@ -416,7 +453,10 @@ public class ClassGen extends AccessFlags implements Cloneable {
      * @param f field to remove
      */
     public void removeField(final Field f) {
-        fieldList.remove(f);
+        final int i = fieldIndex.indexOf(f);
+        if (i >= 0) {
+            fieldIndex.remove(fieldList.remove(i));
+        }
     }
 
     /**
@@ -434,7 +474,10 @@ public class ClassGen extends AccessFlags implements Cloneable {
      * @param m method to remove
      */
     public void removeMethod(final Method m) {
-        methodList.remove(m);
+        final int i = methodIndex.indexOf(m);
+        if (i >= 0) {
+            methodIndex.remove(methodList.remove(i));
+        }
     }
 
     /**
@@ -453,11 +496,11 @@ public class ClassGen extends AccessFlags implements Cloneable {
         if (new_ == null) {
             throw new ClassGenException("Replacement method must not be null");
         }
-        final int i = fieldList.indexOf(old);
+        final int i = fieldIndex.indexOf(old);
         if (i < 0) {
-            fieldList.add(new_);
+            addField(new_);
         } else {
-            fieldList.set(i, new_);
+            fieldIndex.replace(fieldList.set(i, new_), new_, i);
         }
     }
 
@@ -468,11 +511,11 @@ public class ClassGen extends AccessFlags implements Cloneable {
         if (new_ == null) {
             throw new ClassGenException("Replacement method must not be null");
         }
-        final int i = methodList.indexOf(old);
+        final int i = methodIndex.indexOf(old);
         if (i < 0) {
-            methodList.add(new_);
+            addMethod(new_);
         } else {
-            methodList.set(i, new_);
+            methodIndex.replace(methodList.set(i, new_), new_, i);
         }
     }
 
@@ -486,6 +529,18 @@ public class ClassGen extends AccessFlags implements Cloneable {
         this.className = cp.getConstantPool().getConstantString(classNameIndex, Const.CONSTANT_Class).replace('/', '.');
     }
 
+    /**
+     * Sets whether {@link #getJavaClass()} removes the constants that the class does not refer to, e.g. those only used
+     * by removed methods, and renumbers the others. This makes the class smaller, but costs a pass over the class file.
+     * The constant pool is left as it is if the class has attributes whose constant pool references are not known.
+     *
+     * @param compactConstantPool whether to remove unused constants
+     * @since 6.6.1
+     */
+    public void setCompactConstantPool(final boolean compactConstantPool) {
+        this.compactConstantPool = compactConstantPool;
+    }
+
     public void setConstantPool(final ConstantPoolGen constant_pool) {
         cp = constant_pool;
     }
@@ -500,11 +555,12 @@ public class ClassGen extends AccessFlags implements Cloneable {
     }
 
     public void setMethodAt(final Method method, final int pos) {
-        methodList.set(pos, method);
+        methodIndex.replace(methodList.set(pos, method), method, pos);
     }
 
     public void setMethods(final Method[] methods) {
         methodList.clear();
+        methodIndex.clear();
         for (final Method method : methods) {
             addMethod(method);
         }
@@ -529,6 +585,71 @@ public class ClassGen extends AccessFlags implements Cloneable {
         superClassName = cp.getConstantPool().getConstantString(superclassNameIndex, Const.CONSTANT_Class).replace('/', '.');
     }
 
+    /**
+     * Transforms all methods of this class in parallel and replaces them by the results. Each method is handed to the
+     * transformer as a lazily decoded {@link MethodGen} with its own copy of the constant pool, so that the transformations
+     * may add constants concurrently. Once all of them have completed, the constants they added are merged into the
+     * constant pool of this class in the order of the methods, which makes the result independent of the scheduling, and
+     * the instructions are renumbered accordingly. If a transformation fails, this class is left unchanged.
+     * <p>
+     * The instructions, annotations and attributes of the returned methods are moved to the class pool with
+     * {@link MethodGen#replaceConstantPool(ConstantPoolGen, int[])}, except for attributes whose constant pool references
+     * are not known, which must not refer to constants that were added during the transformation. The transformer must
+     * not access this ClassGen.
+     * </p>
+     *
+     * @param transformer called with each method, returns the method to replace it with, which must use the given
+     *        constant pool, or null to remove the method
+     * @param executor runs the transformations
+     * @throws ClassGenException if a returned method uses another constant pool
+     * @since 6.6.1
+     */
+    public void transformMethods(final Function<MethodGen, MethodGen> transformer, final Executor executor) {
+        final Method[] methods = getMethods();
+        final int from = cp.getSize();
+        final List<CompletableFuture<MethodGen>> results = new ArrayList<>(methods.length);
+        for (final Method method : methods) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                final ConstantPoolGen copy = new ConstantPoolGen(cp);
+                final MethodGen mg = transformer.apply(new MethodGen(method, className, copy, true));
+                if (mg != null && mg.getConstantPool() != copy) {
+                    throw new ClassGenException("Transformed method " + mg.getName() + " does not use the constant pool it was given");
+                }
+                return mg;
+            }, executor));
+        }
+        // Wait for all transformations, which read the constant pool, before failing
+        final MethodGen[] transformed = new MethodGen[methods.length];
+        CompletionException failure = null;
+        for (int i = 0; i < methods.length; i++) {
+            try {
+                transformed[i] = results.get(i).join();
+            } catch (final CompletionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) failure.getCause();
+            }
+            if (failure.getCause() instanceof Error) {
+                throw (Error) failure.getCause();
+            }
+            throw failure;
+        }
+        final List<Method> kept = new ArrayList<>(methods.length);
+        for (final MethodGen mg : transformed) {
+            if (mg == null) {
+                continue;
+            }
+            mg.replaceConstantPool(cp, cp.mergeFrom(mg.getConstantPool(), from), false);
+            kept.add(mg.getMethod());
+        }
+        setMethods(kept.toArray(Method.EMPTY_ARRAY));
+    }
+
     /**
      * Look for attributes representing annotations and unpack them.
      */
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.generic;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.util.ByteSequence;
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * Read-only, array-backed view of byte code, meant as a light-weight alternative to {@link InstructionList} when code
+ * is inspected rather than modified, e.g. for large methods. The opcode, the main operand and the byte offset of each
+ * instruction are held in parallel primitive arrays; branch targets are stored as instruction indices. No
+ * {@link InstructionHandle} objects are created, instruction objects are decoded on demand only by
+ * {@link #getInstruction(int)}, and {@link #getInstructionList()} converts to a modifiable list.
+ *
+ * @see MethodGen#getCompactInstructionList()
+ * @since 6.6.1
+ */
+public final class CompactInstructionList {
+
+    /**
+     * @return the length of the instruction at the given offset.
+     */
+    private static int getLength(final byte[] code, final int pos) {
+        final int opcode = code[pos] & 0xff;
+        switch (opcode) {
+        case Const.WIDE:
+            return (code[pos + 1] & 0xff) == Const.IINC ? 6 : 4;
+        case Const.TABLESWITCH: {
+            final int base = pos + 1 + (3 - (pos & 3)); // Skip padding
+            return base - pos + 12 + 4 * (readInt(code, base + 8) - readInt(code, base + 4) + 1);
+        }
+        case Const.LOOKUPSWITCH: {
+            final int base = pos + 1 + (3 - (pos & 3));
+            return base - pos + 8 + 8 * readInt(code, base + 4);
+        }
+        default:
+            final int operands = Const.getNoOfOperands(opcode);
+            if (operands < 0 && opcode != Const.IMPDEP1 && opcode != Const.IMPDEP2) {
+                throw new ClassGenException("Illegal opcode detected: " + opcode);
+            }
+            return 1 + Math.max(operands, 0);
+        }
+    }
+
+    private static boolean isBranch(final short opcode) {
+        return opcode >= Const.IFEQ && opcode <= Const.LOOKUPSWITCH && opcode != Const.RET || opcode == Const.IFNULL || opcode == Const.IFNONNULL
+            || opcode == Const.GOTO_W || opcode == Const.JSR_W;
+    }
+
+    private static int readInt(final byte[] code, final int pos) {
+        return code[pos] << 24 | (code[pos + 1] & 0xff) << 16 | (code[pos + 2] & 0xff) << 8 | code[pos + 3] & 0xff;
+    }
+
+    private static int readShort(final byte[] code, final int pos) {
+        return (short) (code[pos] << 8 | code[pos + 1] & 0xff);
+    }
+
+    private static int readUnsignedShort(final byte[] code, final int pos) {
+        return (code[pos] & 0xff) << 8 | code[pos + 1] & 0xff;
+    }
+
+    private final byte[] code;
+
+    /** Byte offset of each instruction, followed by the length of the code. */
+    private final int[] positions;
+
+    /** Opcode of each instruction; for wide instructions the opcode of the modified instruction. */
+    private final short[] opcodes;
+
+    /** Main operand of each instruction, see {@link #getOperand(int)}. */
+    private final int[] operands;
+
+    /**
+     * Initializes the view from a byte array, which is not copied and must not be modified afterwards.
+     *
+     * @param code byte array containing the instructions
+     * @throws ClassGenException if the code is malformed
+     */
+    public CompactInstructionList(final byte[] code) {
+        this.code = code;
+        int[] pos = new int[Math.min(code.length, 16) + 1];
+        int count = 0;
+        int offset = 0;
+        try {
+            while (offset < code.length) {
+                if (count + 1 == pos.length) {
+                    pos = Arrays.copyOf(pos, Math.min(pos.length << 1, code.length + 1));
+                }
+                pos[count++] = offset;
+                offset += getLength(code, offset);
+            }
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw new ClassGenException("Truncated code", e);
+        }
+        if (offset != code.length) {
+            throw new ClassGenException("Truncated code");
+        }
+        pos[count] = offset;
+        positions = pos.length == count + 1 ? pos : Arrays.copyOf(pos, count + 1);
+        opcodes = new short[count];
+        operands = new int[count];
+        for (int i = 0; i < count; i++) {
+            final int p = positions[i];
+            final short opcode = (short) (code[p] & 0xff);
+            if (opcode == Const.WIDE) {
+                opcodes[i] = (short) (code[p + 1] & 0xff);
+                operands[i] = readUnsignedShort(code, p + 2);
+            } else {
+                opcodes[i] = opcode;
+                operands[i] = readOperand(i, opcode, p);
+            }
+        }
+    }
+
+    /**
+     * Initializes the view from the byte code of an instruction list.
+     *
+     * @param il instruction list, whose positions are updated
+     */
+    public CompactInstructionList(final InstructionList il) {
+        this(il.getByteCode());
+    }
+
+    /**
+     * @return a copy of the byte code.
+     */
+    public byte[] getByteCode() {
+        return code.clone();
+    }
+
+    /**
+     * Decodes the instruction at the given index. Branch instructions are returned without target handles, their targets
+     * are available from {@link #getTarget(int)} and {@link #getTargets(int)}.
+     *
+     * @param index the index of the instruction
+     * @return a new instruction object, or a shared instance for instructions without operands
+     */
+    public Instruction getInstruction(final int index) {
+        try (ByteSequence bytes = new ByteSequence(code)) {
+            bytes.skipBytes(positions[index]);
+            return Instruction.readInstruction(bytes);
+        } catch (final IOException e) {
+            throw new ClassGenException(e.toString(), e);
+        }
+    }
+
+    /**
+     * @return a new instruction list holding the same code.
+     */
+    public InstructionList getInstructionList() {
+        return new InstructionList(code);
+    }
+
+    /**
+     * @param index the index of the instruction
+     * @return the opcode, which for an instruction modified by WIDE is the opcode of the modified instruction
+     */
+    public short getOpcode(final int index) {
+        return opcodes[index];
+    }
+
+    /**
+     * Gets the main operand of an instruction, i.e., the value the corresponding {@link Instruction} object returns for
+     * it: the local variable index of local variable instructions including those with an implicit index such as ILOAD_0,
+     * and of IINC and RET; the constant pool index of {@link CPInstruction}s; the value of BIPUSH and SIPUSH; the type of
+     * NEWARRAY; and the index of the (default) target instruction of {@link BranchInstruction}s. Further operands are
+     * available from {@link #getInstruction(int)}; for other instructions this is 0.
+     *
+     * @param index the index of the instruction
+     * @return the main operand
+     */
+    public int getOperand(final int index) {
+        return operands[index];
+    }
+
+    /**
+     * @param index the index of the instruction
+     * @return the byte code offset of the instruction
+     */
+    public int getPosition(final int index) {
+        return positions[index];
+    }
+
+    /**
+     * @param index the index of a branch instruction
+     * @return the index of the target instruction, which for switches is the default target, or -1 if the instruction
+     *         is not a branch
+     */
+    public int getTarget(final int index) {
+        return isBranch(opcodes[index]) ? operands[index] : -1;
+    }
+
+    /**
+     * @param index the index of the instruction
+     * @return the indices of the case targets of a TABLESWITCH or LOOKUPSWITCH instruction in the order of its match
+     *         values, an empty array for other instructions
+     */
+    public int[] getTargets(final int index) {
+        final int pos = positions[index];
+        final int base = pos + 1 + (3 - (pos & 3));
+        final int[] targets;
+        switch (opcodes[index]) {
+        case Const.TABLESWITCH:
+            targets = new int[readInt(code, base + 8) - readInt(code, base + 4) + 1];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = indexOfTarget(index, readInt(code, base + 12 + 4 * i));
+            }
+            return targets;
+        case Const.LOOKUPSWITCH:
+            targets = new int[readInt(code, base + 4)];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = indexOfTarget(index, readInt(code, base + 12 + 8 * i));
+            }
+            return targets;
+        default:
+            return ArrayUtils.EMPTY_INT_ARRAY;
+        }
+    }
+
+    /**
+     * @param position a byte code offset
+     * @return the index of the instruction at the given offset, or -1 if no instruction starts there
+     */
+    public int indexOf(final int position) {
+        final int index = Arrays.binarySearch(positions, 0, opcodes.length, position);
+        return index < 0 ? -1 : index;
+    }
+
+    private int indexOfTarget(final int index, final int offset) {
+        final int target = indexOf(positions[index] + offset);
+        if (target < 0) {
+            throw new ClassGenException("Couldn't find target for branch at " + positions[index]);
+        }
+        return target;
+    }
+
+    /**
+     * @return the length of the code in bytes.
+     */
+    public int length() {
+        return positions[opcodes.length];
+    }
+
+    private int readOperand(final int index, final short opcode, final int pos) {
+        if (isBranch(opcode)) {
+            final int base = pos + 1 + (3 - (pos & 3));
+            switch (opcode) {
+            case Const.TABLESWITCH:
+            case Const.LOOKUPSWITCH:
+                return indexOfTarget(index, readInt(code, base));
+            case Const.GOTO_W:
+            case Const.JSR_W:
+                return indexOfTarget(index, readInt(code, pos + 1));
+            default:
+                return indexOfTarget(index, readShort(code, pos + 1));
+            }
+        }
+        if (opcode >= Const.ILOAD_0 && opcode <= Const.ALOAD_3) {
+            return (opcode - Const.ILOAD_0) & 3;
+        }
+        if (opcode >= Const.ISTORE_0 && opcode <= Const.ASTORE_3) {
+            return (opcode - Const.ISTORE_0) & 3;
+        }
+        switch (opcode) {
+        case Const.BIPUSH:
+            return code[pos + 1];
+        case Const.SIPUSH:
+            return readShort(code, pos + 1);
+        case Const.LDC:
+        case Const.NEWARRAY:
+        case Const.ILOAD:
+        case Const.LLOAD:
+        case Const.FLOAD:
+        case Const.DLOAD:
+        case Const.ALOAD:
+        case Const.ISTORE:
+        case Const.LSTORE:
+        case Const.FSTORE:
+        case Const.DSTORE:
+        case Const.ASTORE:
+        case Const.IINC:
+        case Const.RET:
+            return code[pos + 1] & 0xff;
+        case Const.LDC_W:
+        case Const.LDC2_W:
+        case Const.GETSTATIC:
+        case Const.PUTSTATIC:
+        case Const.GETFIELD:
+        case Const.PUTFIELD:
+        case Const.INVOKEVIRTUAL:
+        case Const.INVOKESPECIAL:
+        case Const.INVOKESTATIC:
+        case Const.INVOKEINTERFACE:
+        case Const.INVOKEDYNAMIC:
+        case Const.NEW:
+        case Const.ANEWARRAY:
+        case Const.CHECKCAST:
+        case Const.INSTANCEOF:
+        case Const.MULTIANEWARRAY:
+            return readUnsignedShort(code, pos + 1);
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * @return the number of instructions.
+     */
+    public int size() {
+        return opcodes.length;
+    }
+}
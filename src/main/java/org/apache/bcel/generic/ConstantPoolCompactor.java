@@ -0,0 +1,635 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.generic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.util.ByteSequence;
+
+/**
+ * Removes the constants a class file does not refer to from its constant pool and renumbers the others. The class file
+ * is walked twice: once to mark the constants referenced by the class, its fields, methods, code and attributes, and
+ * once to write it with the new indices. Since constants keep their order, indices only decrease, so an LDC
+ * instruction remains valid.
+ *
+ * @see ClassGen#setCompactConstantPool(boolean)
+ */
+final class ConstantPoolCompactor {
+
+    /**
+     * Thrown if the class file contains an attribute whose references are unknown, so that no constant can be dropped
+     * safely.
+     */
+    private static final class UnknownAttributeException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnknownAttributeException(final String name) {
+            super(name);
+        }
+    }
+
+    /** Offset of the constant pool count in a class file. */
+    private static final int CONSTANT_POOL_COUNT_OFFSET = 8;
+
+    /**
+     * Compacts the constant pool of the given class file.
+     *
+     * @param classFile the bytes of a class file
+     * @return the compacted class file, or null if there is nothing to drop or the class has attributes whose references
+     *         are unknown
+     */
+    static byte[] compact(final byte[] classFile) {
+        try {
+            final ConstantPoolCompactor compactor = new ConstantPoolCompactor(classFile);
+            compactor.walkClass(null);
+            final int count = compactor.renumber();
+            if (count == compactor.tags.length) {
+                return null;
+            }
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(classFile.length);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.write(classFile, 0, CONSTANT_POOL_COUNT_OFFSET);
+            out.writeShort(count);
+            compactor.writeConstantPool(out);
+            compactor.walkClass(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (final UnknownAttributeException e) {
+            return null;
+        } catch (final IOException e) {
+            throw new ClassGenException("Can not compact constant pool: " + e, e);
+        }
+    }
+
+    private final byte[] classFile;
+
+    /** Tag of each constant, 0 for unused entries. */
+    private final byte[] tags;
+
+    /** Offset of each constant's contents, following its tag. */
+    private final int[] offsets;
+
+    /** Offset of the access flags that follow the constant pool. */
+    private final int end;
+
+    /** While marking, whether each constant is referenced; afterwards, the new index of each constant or 0. */
+    private final int[] map;
+
+    private DataInputStream in;
+
+    private DataOutputStream out;
+
+    private ConstantPoolCompactor(final byte[] classFile) throws IOException {
+        this.classFile = classFile;
+        final int count = (classFile[CONSTANT_POOL_COUNT_OFFSET] & 0xff) << 8 | classFile[CONSTANT_POOL_COUNT_OFFSET + 1] & 0xff;
+        tags = new byte[count];
+        offsets = new int[count];
+        map = new int[count];
+        int pos = CONSTANT_POOL_COUNT_OFFSET + 2;
+        for (int i = 1; i < count; i++) {
+            final byte tag = classFile[pos];
+            tags[i] = tag;
+            offsets[i] = pos + 1;
+            pos += 1 + constantLength(tag, pos + 1);
+            if (tag == Const.CONSTANT_Long || tag == Const.CONSTANT_Double) {
+                i++;
+            }
+        }
+        end = pos;
+    }
+
+    private void annotation() throws IOException {
+        cp(); // type
+        final int pairs = u2();
+        for (int i = 0; i < pairs; i++) {
+            cp(); // name
+            elementValue();
+        }
+    }
+
+    private void attributes() throws IOException, UnknownAttributeException {
+        final int count = u2();
+        for (int i = 0; i < count; i++) {
+            final int nameIndex = in.readUnsignedShort();
+            reference(nameIndex);
+            if (out != null) {
+                out.writeShort(map[nameIndex]);
+            }
+            final String name = utf8(nameIndex);
+            final int length = u4();
+            switch (name) {
+            case "ConstantValue":
+            case "ModuleMainClass":
+            case "NestHost":
+            case "Signature":
+            case "SourceFile":
+                cp();
+                break;
+            case "Deprecated":
+            case "LineNumberTable":
+            case "SourceDebugExtension":
+            case "Synthetic":
+                copy(length);
+                break;
+            case "Exceptions":
+            case "ModulePackages":
+            case "NestMembers":
+            case "PermittedSubclasses":
+                cps(u2());
+                break;
+            case "Code":
+                code();
+                break;
+            case "InnerClasses":
+                for (int j = u2(); j > 0; j--) {
+                    cp(); // inner class
+                    cpOrZero(); // outer class
+                    cpOrZero(); // inner name
+                    u2(); // access flags
+                }
+                break;
+            case "EnclosingMethod":
+                cp(); // class
+                cpOrZero(); // method
+                break;
+            case "LocalVariableTable":
+            case "LocalVariableTypeTable":
+                for (int j = u2(); j > 0; j--) {
+                    u2(); // start pc
+                    u2(); // length
+                    cp(); // name
+                    cp(); // signature
+                    u2(); // index
+                }
+                break;
+            case "StackMapTable":
+                stackMapTable();
+                break;
+            case "RuntimeVisibleAnnotations":
+            case "RuntimeInvisibleAnnotations":
+                for (int j = u2(); j > 0; j--) {
+                    annotation();
+                }
+                break;
+            case "RuntimeVisibleParameterAnnotations":
+            case "RuntimeInvisibleParameterAnnotations":
+                for (int j = u1(); j > 0; j--) {
+                    for (int k = u2(); k > 0; k--) {
+                        annotation();
+                    }
+                }
+                break;
+            case "RuntimeVisibleTypeAnnotations":
+            case "RuntimeInvisibleTypeAnnotations":
+                for (int j = u2(); j > 0; j--) {
+                    typeAnnotation();
+                }
+                break;
+            case "AnnotationDefault":
+                elementValue();
+                break;
+            case "BootstrapMethods":
+                for (int j = u2(); j > 0; j--) {
+                    cp(); // method handle
+                    cps(u2()); // arguments
+                }
+                break;
+            case "MethodParameters":
+                for (int j = u1(); j > 0; j--) {
+                    cpOrZero(); // name
+                    u2(); // access flags
+                }
+                break;
+            case "Module":
+                module();
+                break;
+            case "Record":
+                for (int j = u2(); j > 0; j--) {
+                    cp(); // name
+                    cp(); // descriptor
+                    attributes();
+                }
+                break;
+            default:
+                throw new UnknownAttributeException(name);
+            }
+        }
+    }
+
+    private void code() throws IOException, UnknownAttributeException {
+        u2(); // max stack
+        u2(); // max locals
+        final byte[] code = new byte[u4()];
+        in.readFully(code);
+        try (ByteSequence bytes = new ByteSequence(code)) {
+            while (bytes.available() > 0) {
+                final int pos = bytes.getIndex();
+                final Instruction i = Instruction.readInstruction(bytes);
+                if (i instanceof CPInstruction) {
+                    final int index = ((CPInstruction) i).getIndex();
+                    reference(index);
+                    if (out != null) {
+                        if (i.getOpcode() == Const.LDC) {
+                            code[pos + 1] = (byte) map[index];
+                        } else {
+                            code[pos + 1] = (byte) (map[index] >> 8);
+                            code[pos + 2] = (byte) map[index];
+                        }
+                    }
+                }
+            }
+        }
+        if (out != null) {
+            out.write(code);
+        }
+        for (int i = u2(); i > 0; i--) {
+            u2(); // start pc
+            u2(); // end pc
+            u2(); // handler pc
+            cpOrZero(); // catch type
+        }
+        attributes();
+    }
+
+    /**
+     * @return the length of the contents of a constant, following its tag
+     */
+    private int constantLength(final byte tag, final int offset) {
+        switch (tag) {
+        case Const.CONSTANT_Utf8:
+            return 2 + ((classFile[offset] & 0xff) << 8 | classFile[offset + 1] & 0xff);
+        case Const.CONSTANT_Class:
+        case Const.CONSTANT_String:
+        case Const.CONSTANT_MethodType:
+        case Const.CONSTANT_Module:
+        case Const.CONSTANT_Package:
+            return 2;
+        case Const.CONSTANT_MethodHandle:
+            return 3;
+        case Const.CONSTANT_Integer:
+        case Const.CONSTANT_Float:
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref:
+        case Const.CONSTANT_NameAndType:
+        case Const.CONSTANT_Dynamic:
+        case Const.CONSTANT_InvokeDynamic:
+            return 4;
+        case Const.CONSTANT_Long:
+        case Const.CONSTANT_Double:
+            return 8;
+        default:
+            throw new ClassGenException("Invalid constant pool tag " + tag + " at offset " + (offset - 1));
+        }
+    }
+
+    private void copy(final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        if (out != null) {
+            out.write(bytes);
+        }
+    }
+
+    private void cp() throws IOException {
+        final int index = in.readUnsignedShort();
+        reference(index);
+        if (out != null) {
+            out.writeShort(map[index]);
+        }
+    }
+
+    private void cpOrZero() throws IOException {
+        final int index = in.readUnsignedShort();
+        if (index != 0) {
+            reference(index);
+        }
+        if (out != null) {
+            out.writeShort(map[index]);
+        }
+    }
+
+    private void cps(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            cp();
+        }
+    }
+
+    private void elementValue() throws IOException {
+        final int tag = u1();
+        switch (tag) {
+        case 'e':
+            cp(); // type
+            cp(); // constant name
+            break;
+        case '@':
+            annotation();
+            break;
+        case '[':
+            for (int i = u2(); i > 0; i--) {
+                elementValue();
+            }
+            break;
+        default: // Constants and classes
+            cp();
+            break;
+        }
+    }
+
+    private void module() throws IOException {
+        cp(); // name
+        u2(); // flags
+        cpOrZero(); // version
+        for (int i = u2(); i > 0; i--) { // requires
+            cp();
+            u2();
+            cpOrZero();
+        }
+        for (int n = 0; n < 2; n++) { // exports, opens
+            for (int i = u2(); i > 0; i--) {
+                cp();
+                u2();
+                cps(u2());
+            }
+        }
+        cps(u2()); // uses
+        for (int i = u2(); i > 0; i--) { // provides
+            cp();
+            cps(u2());
+        }
+    }
+
+    /**
+     * Marks the given constant and the constants it refers to as referenced, while marking.
+     */
+    private void reference(final int index) {
+        if (out != null) {
+            return;
+        }
+        final Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(index);
+        while (!pending.isEmpty()) {
+            final int i = pending.pop();
+            if (i <= 0 || i >= tags.length || tags[i] == 0) {
+                throw new ClassGenException("Invalid constant pool index " + i);
+            }
+            if (map[i] != 0) {
+                continue;
+            }
+            map[i] = 1;
+            final int offset = offsets[i];
+            switch (tags[i]) {
+            case Const.CONSTANT_Class:
+            case Const.CONSTANT_String:
+            case Const.CONSTANT_MethodType:
+            case Const.CONSTANT_Module:
+            case Const.CONSTANT_Package:
+                pending.push(u2(offset));
+                break;
+            case Const.CONSTANT_Fieldref:
+            case Const.CONSTANT_Methodref:
+            case Const.CONSTANT_InterfaceMethodref:
+            case Const.CONSTANT_NameAndType:
+                pending.push(u2(offset));
+                pending.push(u2(offset + 2));
+                break;
+            case Const.CONSTANT_MethodHandle:
+                pending.push(u2(offset + 1));
+                break;
+            case Const.CONSTANT_Dynamic:
+            case Const.CONSTANT_InvokeDynamic:
+                pending.push(u2(offset + 2)); // The bootstrap method is kept with the BootstrapMethods attribute
+                break;
+            default: // No references
+                break;
+            }
+        }
+    }
+
+    /**
+     * Assigns the new indices to the referenced constants, keeping their order.
+     *
+     * @return the new constant pool count
+     */
+    private int renumber() {
+        int next = 1;
+        for (int i = 1; i < tags.length; i++) {
+            if (map[i] != 0) {
+                map[i] = next;
+                next += tags[i] == Const.CONSTANT_Long || tags[i] == Const.CONSTANT_Double ? 2 : 1;
+            }
+        }
+        return next;
+    }
+
+    private void stackMapTable() throws IOException {
+        for (int i = u2(); i > 0; i--) {
+            final int frameType = u1();
+            if (frameType <= Const.SAME_FRAME_MAX) {
+                continue;
+            }
+            if (frameType <= Const.SAME_LOCALS_1_STACK_ITEM_FRAME_MAX) {
+                verificationType();
+            } else if (frameType == Const.SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
+                u2();
+                verificationType();
+            } else if (frameType >= Const.CHOP_FRAME && frameType <= Const.SAME_FRAME_EXTENDED) {
+                u2();
+            } else if (frameType >= Const.APPEND_FRAME && frameType <= Const.APPEND_FRAME_MAX) {
+                u2();
+                for (int j = frameType - Const.SAME_FRAME_EXTENDED; j > 0; j--) {
+                    verificationType();
+                }
+            } else if (frameType == Const.FULL_FRAME) {
+                u2();
+                for (int n = 0; n < 2; n++) { // locals, stack
+                    for (int j = u2(); j > 0; j--) {
+                        verificationType();
+                    }
+                }
+            } else {
+                throw new ClassGenException("Invalid stack map frame type " + frameType);
+            }
+        }
+    }
+
+    private void typeAnnotation() throws IOException {
+        final int targetType = u1();
+        switch (targetType) {
+        case 0x00: // type parameter of a class
+        case 0x01: // type parameter of a method
+        case 0x16: // formal parameter
+            u1();
+            break;
+        case 0x10: // super type
+        case 0x17: // throws
+        case 0x42: // exception parameter
+        case 0x43: // instanceof
+        case 0x44: // new
+        case 0x45: // constructor reference
+        case 0x46: // method reference
+            u2();
+            break;
+        case 0x11: // bound of a class type parameter
+        case 0x12: // bound of a method type parameter
+            u1();
+            u1();
+            break;
+        case 0x13: // field
+        case 0x14: // return type
+        case 0x15: // receiver
+            break;
+        case 0x40: // local variable
+        case 0x41: // resource variable
+            copy(u2() * 6);
+            break;
+        case 0x47: // cast
+        case 0x48: // constructor invocation type argument
+        case 0x49: // method invocation type argument
+        case 0x4A: // constructor reference type argument
+        case 0x4B: // method reference type argument
+            u2();
+            u1();
+            break;
+        default:
+            throw new ClassGenException("Invalid type annotation target type " + targetType);
+        }
+        copy(u1() * 2); // type path
+        annotation();
+    }
+
+    private int u1() throws IOException {
+        final int value = in.readUnsignedByte();
+        if (out != null) {
+            out.writeByte(value);
+        }
+        return value;
+    }
+
+    private int u2() throws IOException {
+        final int value = in.readUnsignedShort();
+        if (out != null) {
+            out.writeShort(value);
+        }
+        return value;
+    }
+
+    private int u2(final int offset) {
+        return (classFile[offset] & 0xff) << 8 | classFile[offset + 1] & 0xff;
+    }
+
+    private int u4() throws IOException {
+        final int value = in.readInt();
+        if (out != null) {
+            out.writeInt(value);
+        }
+        return value;
+    }
+
+    private String utf8(final int index) throws IOException {
+        if (tags[index] != Const.CONSTANT_Utf8) {
+            throw new ClassGenException("Constant pool entry " + index + " is not a Utf8 constant");
+        }
+        try (DataInputStream utf8 = new DataInputStream(new ByteArrayInputStream(classFile, offsets[index], classFile.length - offsets[index]))) {
+            return utf8.readUTF();
+        }
+    }
+
+    private void verificationType() throws IOException {
+        final int tag = u1();
+        if (tag == Const.ITEM_Object) {
+            cp();
+        } else if (tag == Const.ITEM_NewObject) {
+            u2(); // offset
+        }
+    }
+
+    /**
+     * Walks the class file following the constant pool, marking the referenced constants if out is null and writing it
+     * with the new indices otherwise.
+     */
+    private void walkClass(final DataOutputStream out) throws IOException, UnknownAttributeException {
+        this.out = out;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile, end, classFile.length - end))) {
+            this.in = in;
+            u2(); // access flags
+            cp(); // this class
+            cpOrZero(); // super class
+            cps(u2()); // interfaces
+            for (int n = 0; n < 2; n++) { // fields, methods
+                for (int i = u2(); i > 0; i--) {
+                    u2(); // access flags
+                    cp(); // name
+                    cp(); // signature
+                    attributes();
+                }
+            }
+            attributes();
+        }
+    }
+
+    /**
+     * Writes the referenced constants with their references renumbered.
+     */
+    private void writeConstantPool(final DataOutputStream out) throws IOException {
+        for (int i = 1; i < tags.length; i++) {
+            if (map[i] == 0) {
+                continue;
+            }
+            final byte tag = tags[i];
+            final int offset = offsets[i];
+            out.writeByte(tag);
+            switch (tag) {
+            case Const.CONSTANT_Class:
+            case Const.CONSTANT_String:
+            case Const.CONSTANT_MethodType:
+            case Const.CONSTANT_Module:
+            case Const.CONSTANT_Package:
+                out.writeShort(map[u2(offset)]);
+                break;
+            case Const.CONSTANT_Fieldref:
+            case Const.CONSTANT_Methodref:
+            case Const.CONSTANT_InterfaceMethodref:
+            case Const.CONSTANT_NameAndType:
+                out.writeShort(map[u2(offset)]);
+                out.writeShort(map[u2(offset + 2)]);
+                break;
+            case Const.CONSTANT_MethodHandle:
+                out.writeByte(classFile[offset]);
+                out.writeShort(map[u2(offset + 1)]);
+                break;
+            case Const.CONSTANT_Dynamic:
+            case Const.CONSTANT_InvokeDynamic:
+                out.writeShort(u2(offset));
+                out.writeShort(map[u2(offset + 2)]);
+                break;
+            default: // Utf8 and numbers
+                out.write(classFile, offset, constantLength(tag, offset));
+                break;
+            }
+        }
+    }
+}
@@ -17,10 +17,11 @@
  */
 package org.apache.bcel.generic;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.bcel.Const;
+import org.apache.bcel.classfile.BootstrapMethod;
 import org.apache.bcel.classfile.Constant;
 import org.apache.bcel.classfile.ConstantCP;
 import org.apache.bcel.classfile.ConstantClass;
@@ -32,8 +33,12 @@ import org.apache.bcel.classfile.ConstantInteger;
 import org.apache.bcel.classfile.ConstantInterfaceMethodref;
 import org.apache.bcel.classfile.ConstantInvokeDynamic;
 import org.apache.bcel.classfile.ConstantLong;
+import org.apache.bcel.classfile.ConstantMethodHandle;
+import org.apache.bcel.classfile.ConstantMethodType;
 import org.apache.bcel.classfile.ConstantMethodref;
+import org.apache.bcel.classfile.ConstantModule;
 import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPackage;
 import org.apache.bcel.classfile.ConstantPool;
 import org.apache.bcel.classfile.ConstantString;
 import org.apache.bcel.classfile.ConstantUtf8;
@@ -49,24 +54,102 @@ import org.apache.bcel.classfile.ConstantUtf8;
  */
 public class ConstantPoolGen {
 
-    private static class Index {
+    public static final int CONSTANT_POOL_SIZE = 65536;
+    private static final int DEFAULT_BUFFER_SIZE = 256;
 
-        final int index;
+    /** Initial number of slots of the lookup table, a power of two. */
+    private static final int DEFAULT_TABLE_SIZE = 64;
 
-        Index(final int i) {
-            index = i;
+    /**
+     * Hashes the lookup key of a constant. Class names are hashed the same whether their packages are separated by dots
+     * or slashes.
+     */
+    private static int hash(final byte tag, final String a, final String b, final String c, final long bits) {
+        int h = tag;
+        switch (tag) {
+        case Const.CONSTANT_Class:
+            h = 31 * h + internalHash(a);
+            break;
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref:
+            h = ((31 * h + internalHash(a)) * 31 + b.hashCode()) * 31 + c.hashCode();
+            break;
+        case Const.CONSTANT_NameAndType:
+            h = (31 * h + a.hashCode()) * 31 + b.hashCode();
+            break;
+        case Const.CONSTANT_String:
+        case Const.CONSTANT_Utf8:
+            h = 31 * h + a.hashCode();
+            break;
+        default: // Numbers and index keys
+            h = 31 * h + Long.hashCode(bits);
+            break;
         }
+        h *= 0x9E3779B9;
+        return h ^ h >>> 16;
     }
 
-    public static final int CONSTANT_POOL_SIZE = 65536;
-    private static final int DEFAULT_BUFFER_SIZE = 256;
+    /**
+     * @return the lookup key of a method handle, method type, dynamic constant, module or package, made of the indices of
+     *         the constants it refers to, or -1 for other constants
+     */
+    private static long indexKey(final Constant constant) {
+        switch (constant.getTag()) {
+        case Const.CONSTANT_MethodHandle: {
+            final ConstantMethodHandle h = (ConstantMethodHandle) constant;
+            return (long) h.getReferenceKind() << 32 | h.getReferenceIndex();
+        }
+        case Const.CONSTANT_MethodType:
+            return ((ConstantMethodType) constant).getDescriptorIndex();
+        case Const.CONSTANT_Dynamic: {
+            final ConstantDynamic d = (ConstantDynamic) constant;
+            return (long) d.getBootstrapMethodAttrIndex() << 32 | d.getNameAndTypeIndex();
+        }
+        case Const.CONSTANT_InvokeDynamic: {
+            final ConstantInvokeDynamic d = (ConstantInvokeDynamic) constant;
+            return (long) d.getBootstrapMethodAttrIndex() << 32 | d.getNameAndTypeIndex();
+        }
+        case Const.CONSTANT_Module:
+            return ((ConstantModule) constant).getNameIndex();
+        case Const.CONSTANT_Package:
+            return ((ConstantPackage) constant).getNameIndex();
+        default:
+            return -1;
+        }
+    }
 
-    private static final String METHODREF_DELIM = ":";
+    /**
+     * @return whether the given class names are equal once their packages are separated by slashes.
+     */
+    private static boolean internalEquals(final String internalName, final String name) {
+        final int length = name.length();
+        if (internalName.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c1 = internalName.charAt(i);
+            final char c2 = name.charAt(i);
+            if (c1 != c2 && (c1 == '.' ? '/' : c1) != (c2 == '.' ? '/' : c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-    private static final String IMETHODREF_DELIM = "#";
+    /**
+     * @return the hash code the class name has once its packages are separated by slashes.
+     */
+    private static int internalHash(final String name) {
+        int h = 0;
+        final int length = name.length();
+        for (int i = 0; i < length; i++) {
+            final char c = name.charAt(i);
+            h = 31 * h + (c == '.' ? '/' : c);
+        }
+        return h;
+    }
 
-    private static final String FIELDREF_DELIM = "&";
-    private static final String NAT_DELIM = "%"; // Name and Type
     /**
      * @deprecated (since 6.0) will be made private; do not access directly, use getter/setter
      */
@@ -84,15 +167,15 @@ public class ConstantPoolGen {
     @Deprecated
     protected int index = 1; // First entry (0) used by JVM
 
-    private final Map<String, Index> stringTable = new HashMap<>();
-
-    private final Map<String, Index> classTable = new HashMap<>();
-
-    private final Map<String, Index> utf8Table = new HashMap<>();
-
-    private final Map<String, Index> natTable = new HashMap<>();
+    /**
+     * Open addressing table from the hash of each constant's lookup key to the index of the first such constant. The key
+     * is made of the constant's tag and the strings it refers to, or the bits of a number, so that looking up a constant
+     * allocates nothing. Each slot takes two entries, the hash and the constant pool index; index 0 marks a free slot.
+     */
+    private int[] table = new int[DEFAULT_TABLE_SIZE * 2];
 
-    private final Map<String, Index> cpTable = new HashMap<>();
+    /** Number of occupied slots in the table. */
+    private int tableCount;
 
     /**
      * Create empty constant pool.
@@ -108,8 +191,6 @@ public class ConstantPoolGen {
      * @param cs array of given constants, new ones will be appended
      */
     public ConstantPoolGen(final Constant[] cs) {
-        final StringBuilder sb = new StringBuilder(DEFAULT_BUFFER_SIZE);
-
         size = Math.min(Math.max(DEFAULT_BUFFER_SIZE, cs.length + 64), CONSTANT_POOL_SIZE);
         constants = new Constant[size];
 
@@ -118,103 +199,13 @@ public class ConstantPoolGen {
             index = cs.length;
         }
 
+        int tableSize = DEFAULT_TABLE_SIZE;
+        while (tableSize < index * 2) {
+            tableSize <<= 1;
+        }
+        table = new int[tableSize * 2];
         for (int i = 1; i < index; i++) {
-            final Constant c = constants[i];
-            if (c instanceof ConstantString) {
-                final ConstantString s = (ConstantString) c;
-                final ConstantUtf8 u8 = (ConstantUtf8) constants[s.getStringIndex()];
-                final String key = u8.getBytes();
-                if (!stringTable.containsKey(key)) {
-                    stringTable.put(key, new Index(i));
-                }
-            } else if (c instanceof ConstantClass) {
-                final ConstantClass s = (ConstantClass) c;
-                final ConstantUtf8 u8 = (ConstantUtf8) constants[s.getNameIndex()];
-                final String key = u8.getBytes();
-                if (!classTable.containsKey(key)) {
-                    classTable.put(key, new Index(i));
-                }
-            } else if (c instanceof ConstantNameAndType) {
-                final ConstantNameAndType n = (ConstantNameAndType) c;
-                final ConstantUtf8 u8 = (ConstantUtf8) constants[n.getNameIndex()];
-                final ConstantUtf8 u8_2 = (ConstantUtf8) constants[n.getSignatureIndex()];
-
-                sb.append(u8.getBytes());
-                sb.append(NAT_DELIM);
-                sb.append(u8_2.getBytes());
-                final String key = sb.toString();
-                sb.delete(0, sb.length());
-
-                if (!natTable.containsKey(key)) {
-                    natTable.put(key, new Index(i));
-                }
-            } else if (c instanceof ConstantUtf8) {
-                final ConstantUtf8 u = (ConstantUtf8) c;
-                final String key = u.getBytes();
-                if (!utf8Table.containsKey(key)) {
-                    utf8Table.put(key, new Index(i));
-                }
-            } else if (c instanceof ConstantCP) {
-                final ConstantCP m = (ConstantCP) c;
-                String className;
-                ConstantUtf8 u8;
-
-                if (c instanceof ConstantInvokeDynamic) {
-                    className = Integer.toString(((ConstantInvokeDynamic) m).getBootstrapMethodAttrIndex());
-                } else if (c instanceof ConstantDynamic) {
-                    className = Integer.toString(((ConstantDynamic) m).getBootstrapMethodAttrIndex());
-                } else {
-                    final ConstantClass clazz = (ConstantClass) constants[m.getClassIndex()];
-                    u8 = (ConstantUtf8) constants[clazz.getNameIndex()];
-                    className = u8.getBytes().replace('/', '.');
-                }
-
-                final ConstantNameAndType n = (ConstantNameAndType) constants[m.getNameAndTypeIndex()];
-                u8 = (ConstantUtf8) constants[n.getNameIndex()];
-                final String method_name = u8.getBytes();
-                u8 = (ConstantUtf8) constants[n.getSignatureIndex()];
-                final String signature = u8.getBytes();
-
-                // Since name cannot begin with digit, we can use METHODREF_DELIM without fear of duplicates
-                String delim = METHODREF_DELIM;
-                if (c instanceof ConstantInterfaceMethodref) {
-                    delim = IMETHODREF_DELIM;
-                } else if (c instanceof ConstantFieldref) {
-                    delim = FIELDREF_DELIM;
-                }
-
-                sb.append(className);
-                sb.append(delim);
-                sb.append(method_name);
-                sb.append(delim);
-                sb.append(signature);
-                final String key = sb.toString();
-                sb.delete(0, sb.length());
-
-                if (!cpTable.containsKey(key)) {
-                    cpTable.put(key, new Index(i));
-                }
-            } else if (c == null) { // entries may be null
-                // nothing to do
-            } else if (c instanceof ConstantInteger) {
-                // nothing to do
-            } else if (c instanceof ConstantLong) {
-                // nothing to do
-            } else if (c instanceof ConstantFloat) {
-                // nothing to do
-            } else if (c instanceof ConstantDouble) {
-                // nothing to do
-            } else if (c instanceof org.apache.bcel.classfile.ConstantMethodType) {
-                // TODO should this be handled somehow?
-            } else if (c instanceof org.apache.bcel.classfile.ConstantMethodHandle) {
-                // TODO should this be handled somehow?
-            } else if (c instanceof org.apache.bcel.classfile.ConstantModule) {
-                // TODO should this be handled somehow?
-            } else if (c instanceof org.apache.bcel.classfile.ConstantPackage) {
-                // TODO should this be handled somehow?
-            } else {
-                assert false : "Unexpected constant type: " + c.getClass().getName();
-            }
+            indexConstant(i);
         }
     }
 
@@ -225,6 +216,19 @@ public class ConstantPoolGen {
         this(cp.getConstantPool());
     }
 
+    /**
+     * Initialize with a copy of the given pool, which takes time linear in its size but does not hash its constants again.
+     * The copy may be used by another thread, provided that the given pool is not modified while it is being copied; the
+     * constants themselves are shared.
+     */
+    ConstantPoolGen(final ConstantPoolGen base) {
+        size = base.size;
+        constants = base.constants.clone();
+        index = base.index;
+        table = base.table.clone();
+        tableCount = base.tableCount;
+    }
+
     /**
      * Add a reference to an array class (e.g. String[][]) as needed by MULTIANEWARRAY instruction, e.g. to the
      * ConstantPool.
@@ -265,9 +269,7 @@ public class ConstantPoolGen {
         final ConstantClass c = new ConstantClass(addUtf8(clazz));
         ret = index;
         constants[index++] = c;
-        if (!classTable.containsKey(clazz)) {
-            classTable.put(clazz, new Index(ret));
-        }
+        put(hash(Const.CONSTANT_Class, clazz, null, null, 0), ret);
         return ret;
     }
 
@@ -346,6 +348,7 @@ public class ConstantPoolGen {
         ret = index;
         constants[index] = new ConstantDouble(n);
         index += 2; // Wastes one entry according to spec
+        put(hash(Const.CONSTANT_Double, null, null, null, Double.doubleToLongBits(n)), ret);
         return ret;
     }
 
@@ -369,10 +372,7 @@ public class ConstantPoolGen {
         nameAndTypeIndex = addNameAndType(field_name, signature);
         ret = index;
         constants[index++] = new ConstantFieldref(classIndex, nameAndTypeIndex);
-        final String key = className + FIELDREF_DELIM + field_name + FIELDREF_DELIM + signature;
-        if (!cpTable.containsKey(key)) {
-            cpTable.put(key, new Index(ret));
-        }
+        put(hash(Const.CONSTANT_Fieldref, className, field_name, signature, 0), ret);
         return ret;
     }
 
@@ -390,6 +390,7 @@ public class ConstantPoolGen {
         adjustSize();
         ret = index;
         constants[index++] = new ConstantFloat(n);
+        put(hash(Const.CONSTANT_Float, null, null, null, Float.floatToIntBits(n)), ret);
         return ret;
     }
 
@@ -407,6 +408,7 @@ public class ConstantPoolGen {
         adjustSize();
         ret = index;
         constants[index++] = new ConstantInteger(n);
+        put(hash(Const.CONSTANT_Integer, null, null, null, n), ret);
         return ret;
     }
 
@@ -434,10 +436,7 @@ public class ConstantPoolGen {
         nameAndTypeIndex = addNameAndType(method_name, signature);
         ret = index;
         constants[index++] = new ConstantInterfaceMethodref(classIndex, nameAndTypeIndex);
-        final String key = className + IMETHODREF_DELIM + method_name + IMETHODREF_DELIM + signature;
-        if (!cpTable.containsKey(key)) {
-            cpTable.put(key, new Index(ret));
-        }
+        put(hash(Const.CONSTANT_InterfaceMethodref, className, method_name, signature, 0), ret);
         return ret;
     }
 
@@ -456,6 +455,7 @@ public class ConstantPoolGen {
         ret = index;
         constants[index] = new ConstantLong(n);
         index += 2; // Wastes one entry according to spec
+        put(hash(Const.CONSTANT_Long, null, null, null, n), ret);
         return ret;
     }
 
@@ -483,10 +483,7 @@ public class ConstantPoolGen {
         classIndex = addClass(className);
         ret = index;
         constants[index++] = new ConstantMethodref(classIndex, nameAndTypeIndex);
-        final String key = className + METHODREF_DELIM + method_name + METHODREF_DELIM + signature;
-        if (!cpTable.containsKey(key)) {
-            cpTable.put(key, new Index(ret));
-        }
+        put(hash(Const.CONSTANT_Methodref, className, method_name, signature, 0), ret);
         return ret;
     }
 
@@ -509,10 +506,7 @@ public class ConstantPoolGen {
         signature_index = addUtf8(signature);
         ret = index;
         constants[index++] = new ConstantNameAndType(name_index, signature_index);
-        final String key = name + NAT_DELIM + signature;
-        if (!natTable.containsKey(key)) {
-            natTable.put(key, new Index(ret));
-        }
+        put(hash(Const.CONSTANT_NameAndType, name, signature, null, 0), ret);
         return ret;
     }
 
@@ -532,9 +526,7 @@ public class ConstantPoolGen {
         final ConstantString s = new ConstantString(utf8);
         ret = index;
         constants[index++] = s;
-        if (!stringTable.containsKey(str)) {
-            stringTable.put(str, new Index(ret));
-        }
+        put(hash(Const.CONSTANT_String, str, null, null, 0), ret);
         return ret;
     }
 
@@ -552,9 +544,25 @@ public class ConstantPoolGen {
         adjustSize();
         ret = index;
         constants[index++] = new ConstantUtf8(n);
-        if (!utf8Table.containsKey(n)) {
-            utf8Table.put(n, new Index(ret));
+        put(hash(Const.CONSTANT_Utf8, n, null, null, 0), ret);
+        return ret;
+    }
+
+    /**
+     * Adds a constant that refers to other constants by index only, see {@link #indexKey(Constant)}, unless an equal
+     * one is already in there.
+     */
+    private int addIndexed(final Constant c) {
+        final long key = indexKey(c);
+        final int hash = hash(c.getTag(), null, null, null, key);
+        final int found = find(hash, c.getTag(), null, null, null, key);
+        if (found != -1) {
+            return found;
         }
+        adjustSize();
+        final int ret = index;
+        constants[index++] = c;
+        put(hash, ret);
         return ret;
     }
 
@@ -579,6 +587,26 @@ public class ConstantPoolGen {
         }
     }
 
+    /**
+     * @return the index of the first constant with the given lookup key, or -1 if there is none.
+     */
+    private int find(final byte tag, final String a, final String b, final String c, final long bits) {
+        return find(hash(tag, a, b, c, bits), tag, a, b, c, bits);
+    }
+
+    private int find(final int hash, final byte tag, final String a, final String b, final String c, final long bits) {
+        final int mask = (table.length >> 1) - 1;
+        for (int slot = hash & mask;; slot = slot + 1 & mask) {
+            final int i = table[slot << 1 | 1];
+            if (i == 0) {
+                return -1;
+            }
+            if (table[slot << 1] == hash && matches(i, tag, a, b, c, bits)) {
+                return i;
+            }
+        }
+    }
+
     /**
      * @param i index in constant pool
      * @return constant pool entry at index i
@@ -610,6 +638,83 @@ public class ConstantPoolGen {
         return index;
     }
 
+    /**
+     * Adds the constant at the given index to the lookup table unless an equal constant is already in there.
+     */
+    private void indexConstant(final int i) {
+        final Constant constant = constants[i];
+        if (constant == null) { // entries may be null
+            return;
+        }
+        final byte tag = constant.getTag();
+        String a = null;
+        String b = null;
+        String c = null;
+        long bits = 0;
+        switch (tag) {
+        case Const.CONSTANT_Class:
+            a = utf8(((ConstantClass) constant).getNameIndex());
+            break;
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref: {
+            final ConstantCP m = (ConstantCP) constant;
+            final ConstantNameAndType n = (ConstantNameAndType) constants[m.getNameAndTypeIndex()];
+            a = utf8(((ConstantClass) constants[m.getClassIndex()]).getNameIndex());
+            b = utf8(n.getNameIndex());
+            c = utf8(n.getSignatureIndex());
+            break;
+        }
+        case Const.CONSTANT_NameAndType: {
+            final ConstantNameAndType n = (ConstantNameAndType) constant;
+            a = utf8(n.getNameIndex());
+            b = utf8(n.getSignatureIndex());
+            break;
+        }
+        case Const.CONSTANT_String:
+            a = utf8(((ConstantString) constant).getStringIndex());
+            break;
+        case Const.CONSTANT_Utf8:
+            a = ((ConstantUtf8) constant).getBytes();
+            break;
+        case Const.CONSTANT_Double:
+            bits = Double.doubleToLongBits(((ConstantDouble) constant).getBytes());
+            break;
+        case Const.CONSTANT_Float:
+            bits = Float.floatToIntBits(((ConstantFloat) constant).getBytes());
+            break;
+        case Const.CONSTANT_Integer:
+            bits = ((ConstantInteger) constant).getBytes();
+            break;
+        case Const.CONSTANT_Long:
+            bits = ((ConstantLong) constant).getBytes();
+            break;
+        default:
+            bits = indexKey(constant);
+            if (bits == -1) {
+                return;
+            }
+            break;
+        }
+        final int hash = hash(tag, a, b, c, bits);
+        if (find(hash, tag, a, b, c, bits) == -1) {
+            put(hash, i);
+        }
+    }
+
+    /**
+     * Stores the given entry in the first free slot of the lookup table.
+     */
+    private void insert(final int hash, final int i) {
+        final int mask = (table.length >> 1) - 1;
+        int slot = hash & mask;
+        while (table[slot << 1 | 1] != 0) {
+            slot = slot + 1 & mask;
+        }
+        table[slot << 1] = hash;
+        table[slot << 1 | 1] = i;
+    }
+
     /**
      * Look for ConstantClass in ConstantPool named `str'.
      *
@@ -617,8 +722,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupClass(final String str) {
-        final Index index = classTable.get(str.replace('.', '/'));
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_Class, str, null, null, 0);
     }
 
     /**
@@ -628,16 +732,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupDouble(final double n) {
-        final long bits = Double.doubleToLongBits(n);
-        for (int i = 1; i < index; i++) {
-            if (constants[i] instanceof ConstantDouble) {
-                final ConstantDouble c = (ConstantDouble) constants[i];
-                if (Double.doubleToLongBits(c.getBytes()) == bits) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return find(Const.CONSTANT_Double, null, null, null, Double.doubleToLongBits(n));
     }
 
     /**
@@ -649,8 +744,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupFieldref(final String className, final String fieldName, final String signature) {
-        final Index index = cpTable.get(className + FIELDREF_DELIM + fieldName + FIELDREF_DELIM + signature);
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_Fieldref, className, fieldName, signature, 0);
     }
 
     /**
@@ -660,16 +754,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupFloat(final float n) {
-        final int bits = Float.floatToIntBits(n);
-        for (int i = 1; i < index; i++) {
-            if (constants[i] instanceof ConstantFloat) {
-                final ConstantFloat c = (ConstantFloat) constants[i];
-                if (Float.floatToIntBits(c.getBytes()) == bits) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return find(Const.CONSTANT_Float, null, null, null, Float.floatToIntBits(n));
     }
 
     /**
@@ -679,15 +764,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupInteger(final int n) {
-        for (int i = 1; i < index; i++) {
-            if (constants[i] instanceof ConstantInteger) {
-                final ConstantInteger c = (ConstantInteger) constants[i];
-                if (c.getBytes() == n) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return find(Const.CONSTANT_Integer, null, null, null, n);
     }
 
     public int lookupInterfaceMethodref(final MethodGen method) {
@@ -703,8 +780,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupInterfaceMethodref(final String className, final String method_name, final String signature) {
-        final Index index = cpTable.get(className + IMETHODREF_DELIM + method_name + IMETHODREF_DELIM + signature);
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_InterfaceMethodref, className, method_name, signature, 0);
     }
 
     /**
@@ -714,15 +790,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupLong(final long n) {
-        for (int i = 1; i < index; i++) {
-            if (constants[i] instanceof ConstantLong) {
-                final ConstantLong c = (ConstantLong) constants[i];
-                if (c.getBytes() == n) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return find(Const.CONSTANT_Long, null, null, null, n);
     }
 
     public int lookupMethodref(final MethodGen method) {
@@ -738,8 +806,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupMethodref(final String className, final String method_name, final String signature) {
-        final Index index = cpTable.get(className + METHODREF_DELIM + method_name + METHODREF_DELIM + signature);
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_Methodref, className, method_name, signature, 0);
     }
 
     /**
@@ -750,8 +817,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupNameAndType(final String name, final String signature) {
-        final Index index = natTable.get(name + NAT_DELIM + signature);
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_NameAndType, name, signature, null, 0);
     }
 
     /**
@@ -761,8 +827,7 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupString(final String str) {
-        final Index index = stringTable.get(str);
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_String, str, null, null, 0);
     }
 
     /**
@@ -772,8 +837,244 @@ public class ConstantPoolGen {
      * @return index on success, -1 otherwise
      */
     public int lookupUtf8(final String n) {
-        final Index index = utf8Table.get(n);
-        return index != null ? index.index : -1;
+        return find(Const.CONSTANT_Utf8, n, null, null, 0);
+    }
+
+    /**
+     * @return whether the constant at the given index has the given lookup key.
+     */
+    private boolean matches(final int i, final byte tag, final String a, final String b, final String c, final long bits) {
+        final Constant constant = constants[i];
+        if (constant == null || constant.getTag() != tag) {
+            return false;
+        }
+        switch (tag) {
+        case Const.CONSTANT_Class:
+            return internalEquals(utf8(((ConstantClass) constant).getNameIndex()), a);
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref: {
+            final ConstantCP m = (ConstantCP) constant;
+            final ConstantNameAndType n = (ConstantNameAndType) constants[m.getNameAndTypeIndex()];
+            return utf8(n.getNameIndex()).equals(b) && utf8(n.getSignatureIndex()).equals(c)
+                && internalEquals(utf8(((ConstantClass) constants[m.getClassIndex()]).getNameIndex()), a);
+        }
+        case Const.CONSTANT_NameAndType: {
+            final ConstantNameAndType n = (ConstantNameAndType) constant;
+            return utf8(n.getNameIndex()).equals(a) && utf8(n.getSignatureIndex()).equals(b);
+        }
+        case Const.CONSTANT_String:
+            return utf8(((ConstantString) constant).getStringIndex()).equals(a);
+        case Const.CONSTANT_Utf8:
+            return ((ConstantUtf8) constant).getBytes().equals(a);
+        case Const.CONSTANT_Double:
+            return Double.doubleToLongBits(((ConstantDouble) constant).getBytes()) == bits;
+        case Const.CONSTANT_Float:
+            return Float.floatToIntBits(((ConstantFloat) constant).getBytes()) == bits;
+        case Const.CONSTANT_Integer:
+            return ((ConstantInteger) constant).getBytes() == bits;
+        case Const.CONSTANT_Long:
+            return ((ConstantLong) constant).getBytes() == bits;
+        default:
+            return indexKey(constant) == bits;
+        }
+    }
+
+    /**
+     * Adds all constants of the given constant pool to this one in a single pass. Constants that are already in this pool
+     * are reused, all others are appended. The returned map can be applied to instructions with
+     * {@link InstructionList#replaceConstantPool(int[])}, and to whole methods with
+     * {@link MethodGen#replaceConstantPool(ConstantPoolGen, int[])}.
+     * <p>
+     * Dynamic constants refer to the bootstrap methods of their class, so pools that contain them have to be merged with
+     * {@link #mergeFrom(ConstantPool, BootstrapMethod[], List)}.
+     * </p>
+     *
+     * @param cp the constant pool to merge into this one
+     * @return a map from each index of the given pool to the index of the same constant in this pool, 0 for unused entries
+     * @throws ClassGenException if the given pool contains dynamic constants
+     * @since 6.6.1
+     */
+    public int[] mergeFrom(final ConstantPool cp) {
+        return mergeFrom(cp, null, null);
+    }
+
+    /**
+     * Adds all constants of the given constant pool to this one in a single pass, like {@link #mergeFrom(ConstantPool)}.
+     * The bootstrap methods that dynamic constants refer to are merged as well: each is added to the given list, unless
+     * an equal one is already in there, and the dynamic constant is made to refer to its position in the list.
+     *
+     * @param cp the constant pool to merge into this one
+     * @param bootstrapMethods the bootstrap methods of the class of the given pool, or null if it has none
+     * @param mergedBootstrapMethods the bootstrap methods of the class of this pool, to which the others are added, or null
+     *        if the given pool contains no dynamic constants
+     * @return a map from each index of the given pool to the index of the same constant in this pool, 0 for unused entries
+     * @throws ClassGenException if the given pool contains dynamic constants but no bootstrap methods are given
+     * @since 6.6.1
+     */
+    public int[] mergeFrom(final ConstantPool cp, final BootstrapMethod[] bootstrapMethods, final List<BootstrapMethod> mergedBootstrapMethods) {
+        final Constant[] cs = cp.getConstantPool();
+        if (bootstrapMethods == null || mergedBootstrapMethods == null) {
+            for (final Constant c : cs) {
+                if (c != null && (c.getTag() == Const.CONSTANT_Dynamic || c.getTag() == Const.CONSTANT_InvokeDynamic)) {
+                    throw new ClassGenException("Bootstrap methods are needed to merge " + c);
+                }
+            }
+        }
+        final int[] map = new int[cs.length];
+        for (int i = 1; i < cs.length; i++) {
+            mergeFrom(cs, i, map, bootstrapMethods, mergedBootstrapMethods);
+        }
+        return map;
+    }
+
+    /**
+     * Adds the constants that have been appended to a copy of this pool since it was made, see
+     * {@link #ConstantPoolGen(ConstantPoolGen)}. The constants of the copy below the given index must be those of this pool.
+     * Both pools belong to the same class, so dynamic constants keep their bootstrap method index.
+     *
+     * @param copy a copy of this pool
+     * @param from the size of this pool when the copy was made
+     * @return a map from each index of the copy to the index of the same constant in this pool
+     */
+    int[] mergeFrom(final ConstantPoolGen copy, final int from) {
+        final int[] map = new int[copy.index];
+        for (int i = 1; i < from; i++) {
+            map[i] = i;
+        }
+        for (int i = from; i < copy.index; i++) {
+            mergeFrom(copy.constants, i, map, null, null);
+        }
+        return map;
+    }
+
+    /**
+     * Merges the given bootstrap method, and the constants it refers to, and returns its index in the merged list.
+     */
+    private int mergeFrom(final Constant[] cs, final BootstrapMethod bootstrapMethod, final int[] map, final BootstrapMethod[] bootstrapMethods,
+        final List<BootstrapMethod> mergedBootstrapMethods) {
+        final int ref = mergeFrom(cs, bootstrapMethod.getBootstrapMethodRef(), map, bootstrapMethods, mergedBootstrapMethods);
+        final int[] arguments = bootstrapMethod.getBootstrapArguments().clone();
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = mergeFrom(cs, arguments[i], map, bootstrapMethods, mergedBootstrapMethods);
+        }
+        for (int i = 0; i < mergedBootstrapMethods.size(); i++) {
+            final BootstrapMethod merged = mergedBootstrapMethods.get(i);
+            if (merged.getBootstrapMethodRef() == ref && Arrays.equals(merged.getBootstrapArguments(), arguments)) {
+                return i;
+            }
+        }
+        mergedBootstrapMethods.add(new BootstrapMethod(ref, arguments));
+        return mergedBootstrapMethods.size() - 1;
+    }
+
+    /**
+     * Merges the constant at the given index, and the constants it refers to, unless they have already been merged. Without
+     * merged bootstrap methods, dynamic constants keep their bootstrap method index.
+     */
+    private int mergeFrom(final Constant[] cs, final int i, final int[] map, final BootstrapMethod[] bootstrapMethods,
+        final List<BootstrapMethod> mergedBootstrapMethods) {
+        if (map[i] != 0 || cs[i] == null) {
+            return map[i];
+        }
+        final Constant c = cs[i];
+        final int ret;
+        switch (c.getTag()) {
+        case Const.CONSTANT_Utf8:
+            ret = addUtf8(((ConstantUtf8) c).getBytes());
+            break;
+        case Const.CONSTANT_String:
+            ret = addString(((ConstantUtf8) cs[((ConstantString) c).getStringIndex()]).getBytes());
+            break;
+        case Const.CONSTANT_Class:
+            ret = addClass_(((ConstantUtf8) cs[((ConstantClass) c).getNameIndex()]).getBytes());
+            break;
+        case Const.CONSTANT_NameAndType: {
+            final ConstantNameAndType n = (ConstantNameAndType) c;
+            ret = addNameAndType(((ConstantUtf8) cs[n.getNameIndex()]).getBytes(), ((ConstantUtf8) cs[n.getSignatureIndex()]).getBytes());
+            break;
+        }
+        case Const.CONSTANT_Fieldref:
+        case Const.CONSTANT_Methodref:
+        case Const.CONSTANT_InterfaceMethodref: {
+            final ConstantCP m = (ConstantCP) c;
+            final ConstantNameAndType n = (ConstantNameAndType) cs[m.getNameAndTypeIndex()];
+            final String className = ((ConstantUtf8) cs[((ConstantClass) cs[m.getClassIndex()]).getNameIndex()]).getBytes();
+            final String name = ((ConstantUtf8) cs[n.getNameIndex()]).getBytes();
+            final String signature = ((ConstantUtf8) cs[n.getSignatureIndex()]).getBytes();
+            if (c.getTag() == Const.CONSTANT_Fieldref) {
+                ret = addFieldref(className, name, signature);
+            } else if (c.getTag() == Const.CONSTANT_Methodref) {
+                ret = addMethodref(className, name, signature);
+            } else {
+                ret = addInterfaceMethodref(className, name, signature);
+            }
+            break;
+        }
+        case Const.CONSTANT_Integer:
+            ret = addInteger(((ConstantInteger) c).getBytes());
+            break;
+        case Const.CONSTANT_Float:
+            ret = addFloat(((ConstantFloat) c).getBytes());
+            break;
+        case Const.CONSTANT_Long:
+            ret = addLong(((ConstantLong) c).getBytes());
+            break;
+        case Const.CONSTANT_Double:
+            ret = addDouble(((ConstantDouble) c).getBytes());
+            break;
+        case Const.CONSTANT_MethodHandle: {
+            final ConstantMethodHandle h = (ConstantMethodHandle) c;
+            ret = addIndexed(
+                new ConstantMethodHandle(h.getReferenceKind(), mergeFrom(cs, h.getReferenceIndex(), map, bootstrapMethods, mergedBootstrapMethods)));
+            break;
+        }
+        case Const.CONSTANT_MethodType:
+            ret = addIndexed(
+                new ConstantMethodType(mergeFrom(cs, ((ConstantMethodType) c).getDescriptorIndex(), map, bootstrapMethods, mergedBootstrapMethods)));
+            break;
+        case Const.CONSTANT_Dynamic: {
+            final ConstantDynamic d = (ConstantDynamic) c;
+            final int bootstrapMethod = mergedBootstrapMethods == null ? d.getBootstrapMethodAttrIndex()
+                : mergeFrom(cs, bootstrapMethods[d.getBootstrapMethodAttrIndex()], map, bootstrapMethods, mergedBootstrapMethods);
+            ret = addIndexed(new ConstantDynamic(bootstrapMethod, mergeFrom(cs, d.getNameAndTypeIndex(), map, bootstrapMethods, mergedBootstrapMethods)));
+            break;
+        }
+        case Const.CONSTANT_InvokeDynamic: {
+            final ConstantInvokeDynamic d = (ConstantInvokeDynamic) c;
+            final int bootstrapMethod = mergedBootstrapMethods == null ? d.getBootstrapMethodAttrIndex()
+                : mergeFrom(cs, bootstrapMethods[d.getBootstrapMethodAttrIndex()], map, bootstrapMethods, mergedBootstrapMethods);
+            ret = addIndexed(
+                new ConstantInvokeDynamic(bootstrapMethod, mergeFrom(cs, d.getNameAndTypeIndex(), map, bootstrapMethods, mergedBootstrapMethods)));
+            break;
+        }
+        case Const.CONSTANT_Module:
+            ret = addIndexed(new ConstantModule(mergeFrom(cs, ((ConstantModule) c).getNameIndex(), map, bootstrapMethods, mergedBootstrapMethods)));
+            break;
+        case Const.CONSTANT_Package:
+            ret = addIndexed(new ConstantPackage(mergeFrom(cs, ((ConstantPackage) c).getNameIndex(), map, bootstrapMethods, mergedBootstrapMethods)));
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown constant type " + c);
+        }
+        map[i] = ret;
+        return ret;
+    }
+
+    /**
+     * Adds the constant at the given index to the lookup table, which must not contain an equal constant yet.
+     */
+    private void put(final int hash, final int i) {
+        if (++tableCount > table.length >> 2) {
+            final int[] old = table;
+            table = new int[old.length << 1];
+            for (int slot = 0; slot < old.length; slot += 2) {
+                if (old[slot + 1] != 0) {
+                    insert(old[slot], old[slot + 1]);
+                }
+            }
+        }
+        insert(hash, i);
     }
 
     /**
@@ -797,4 +1098,8 @@ public class ConstantPoolGen {
         }
         return buf.toString();
     }
+
+    private String utf8(final int i) {
+        return ((ConstantUtf8) constants[i]).getBytes();
+    }
 }
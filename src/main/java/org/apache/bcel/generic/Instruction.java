@@ -19,6 +19,7 @@ package org.apache.bcel.generic;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.ConstantPool;
@@ -34,6 +35,112 @@ public abstract class Instruction implements Cloneable {
 
     private static InstructionComparator cmp = InstructionComparator.DEFAULT;
 
+    /**
+     * Creates the instruction objects for all opcodes that are not in {@link InstructionConst}, indexed by opcode. The
+     * objects are completed by {@link #initFromFile(ByteSequence, boolean)}.
+     */
+    private static final Supplier<Instruction>[] FACTORIES = newFactories();
+
+    static {
+        FACTORIES[Const.BIPUSH] = BIPUSH::new;
+        FACTORIES[Const.SIPUSH] = SIPUSH::new;
+        FACTORIES[Const.LDC] = LDC::new;
+        FACTORIES[Const.LDC_W] = LDC_W::new;
+        FACTORIES[Const.LDC2_W] = LDC2_W::new;
+        FACTORIES[Const.ILOAD] = ILOAD::new;
+        FACTORIES[Const.LLOAD] = LLOAD::new;
+        FACTORIES[Const.FLOAD] = FLOAD::new;
+        FACTORIES[Const.DLOAD] = DLOAD::new;
+        FACTORIES[Const.ALOAD] = ALOAD::new;
+        FACTORIES[Const.ILOAD_0] = () -> new ILOAD(0);
+        FACTORIES[Const.ILOAD_1] = () -> new ILOAD(1);
+        FACTORIES[Const.ILOAD_2] = () -> new ILOAD(2);
+        FACTORIES[Const.ILOAD_3] = () -> new ILOAD(3);
+        FACTORIES[Const.LLOAD_0] = () -> new LLOAD(0);
+        FACTORIES[Const.LLOAD_1] = () -> new LLOAD(1);
+        FACTORIES[Const.LLOAD_2] = () -> new LLOAD(2);
+        FACTORIES[Const.LLOAD_3] = () -> new LLOAD(3);
+        FACTORIES[Const.FLOAD_0] = () -> new FLOAD(0);
+        FACTORIES[Const.FLOAD_1] = () -> new FLOAD(1);
+        FACTORIES[Const.FLOAD_2] = () -> new FLOAD(2);
+        FACTORIES[Const.FLOAD_3] = () -> new FLOAD(3);
+        FACTORIES[Const.DLOAD_0] = () -> new DLOAD(0);
+        FACTORIES[Const.DLOAD_1] = () -> new DLOAD(1);
+        FACTORIES[Const.DLOAD_2] = () -> new DLOAD(2);
+        FACTORIES[Const.DLOAD_3] = () -> new DLOAD(3);
+        FACTORIES[Const.ALOAD_0] = () -> new ALOAD(0);
+        FACTORIES[Const.ALOAD_1] = () -> new ALOAD(1);
+        FACTORIES[Const.ALOAD_2] = () -> new ALOAD(2);
+        FACTORIES[Const.ALOAD_3] = () -> new ALOAD(3);
+        FACTORIES[Const.ISTORE] = ISTORE::new;
+        FACTORIES[Const.LSTORE] = LSTORE::new;
+        FACTORIES[Const.FSTORE] = FSTORE::new;
+        FACTORIES[Const.DSTORE] = DSTORE::new;
+        FACTORIES[Const.ASTORE] = ASTORE::new;
+        FACTORIES[Const.ISTORE_0] = () -> new ISTORE(0);
+        FACTORIES[Const.ISTORE_1] = () -> new ISTORE(1);
+        FACTORIES[Const.ISTORE_2] = () -> new ISTORE(2);
+        FACTORIES[Const.ISTORE_3] = () -> new ISTORE(3);
+        FACTORIES[Const.LSTORE_0] = () -> new LSTORE(0);
+        FACTORIES[Const.LSTORE_1] = () -> new LSTORE(1);
+        FACTORIES[Const.LSTORE_2] = () -> new LSTORE(2);
+        FACTORIES[Const.LSTORE_3] = () -> new LSTORE(3);
+        FACTORIES[Const.FSTORE_0] = () -> new FSTORE(0);
+        FACTORIES[Const.FSTORE_1] = () -> new FSTORE(1);
+        FACTORIES[Const.FSTORE_2] = () -> new FSTORE(2);
+        FACTORIES[Const.FSTORE_3] = () -> new FSTORE(3);
+        FACTORIES[Const.DSTORE_0] = () -> new DSTORE(0);
+        FACTORIES[Const.DSTORE_1] = () -> new DSTORE(1);
+        FACTORIES[Const.DSTORE_2] = () -> new DSTORE(2);
+        FACTORIES[Const.DSTORE_3] = () -> new DSTORE(3);
+        FACTORIES[Const.ASTORE_0] = () -> new ASTORE(0);
+        FACTORIES[Const.ASTORE_1] = () -> new ASTORE(1);
+        FACTORIES[Const.ASTORE_2] = () -> new ASTORE(2);
+        FACTORIES[Const.ASTORE_3] = () -> new ASTORE(3);
+        FACTORIES[Const.IINC] = IINC::new;
+        FACTORIES[Const.IFEQ] = IFEQ::new;
+        FACTORIES[Const.IFNE] = IFNE::new;
+        FACTORIES[Const.IFLT] = IFLT::new;
+        FACTORIES[Const.IFGE] = IFGE::new;
+        FACTORIES[Const.IFGT] = IFGT::new;
+        FACTORIES[Const.IFLE] = IFLE::new;
+        FACTORIES[Const.IF_ICMPEQ] = IF_ICMPEQ::new;
+        FACTORIES[Const.IF_ICMPNE] = IF_ICMPNE::new;
+        FACTORIES[Const.IF_ICMPLT] = IF_ICMPLT::new;
+        FACTORIES[Const.IF_ICMPGE] = IF_ICMPGE::new;
+        FACTORIES[Const.IF_ICMPGT] = IF_ICMPGT::new;
+        FACTORIES[Const.IF_ICMPLE] = IF_ICMPLE::new;
+        FACTORIES[Const.IF_ACMPEQ] = IF_ACMPEQ::new;
+        FACTORIES[Const.IF_ACMPNE] = IF_ACMPNE::new;
+        FACTORIES[Const.GOTO] = GOTO::new;
+        FACTORIES[Const.JSR] = JSR::new;
+        FACTORIES[Const.RET] = RET::new;
+        FACTORIES[Const.TABLESWITCH] = TABLESWITCH::new;
+        FACTORIES[Const.LOOKUPSWITCH] = LOOKUPSWITCH::new;
+        FACTORIES[Const.GETSTATIC] = GETSTATIC::new;
+        FACTORIES[Const.PUTSTATIC] = PUTSTATIC::new;
+        FACTORIES[Const.GETFIELD] = GETFIELD::new;
+        FACTORIES[Const.PUTFIELD] = PUTFIELD::new;
+        FACTORIES[Const.INVOKEVIRTUAL] = INVOKEVIRTUAL::new;
+        FACTORIES[Const.INVOKESPECIAL] = INVOKESPECIAL::new;
+        FACTORIES[Const.INVOKESTATIC] = INVOKESTATIC::new;
+        FACTORIES[Const.INVOKEINTERFACE] = INVOKEINTERFACE::new;
+        FACTORIES[Const.INVOKEDYNAMIC] = INVOKEDYNAMIC::new;
+        FACTORIES[Const.NEW] = NEW::new;
+        FACTORIES[Const.NEWARRAY] = NEWARRAY::new;
+        FACTORIES[Const.ANEWARRAY] = ANEWARRAY::new;
+        FACTORIES[Const.CHECKCAST] = CHECKCAST::new;
+        FACTORIES[Const.INSTANCEOF] = INSTANCEOF::new;
+        FACTORIES[Const.MULTIANEWARRAY] = MULTIANEWARRAY::new;
+        FACTORIES[Const.IFNULL] = IFNULL::new;
+        FACTORIES[Const.IFNONNULL] = IFNONNULL::new;
+        FACTORIES[Const.GOTO_W] = GOTO_W::new;
+        FACTORIES[Const.JSR_W] = JSR_W::new;
+        FACTORIES[Const.BREAKPOINT] = BREAKPOINT::new;
+        FACTORIES[Const.IMPDEP1] = IMPDEP1::new;
+        FACTORIES[Const.IMPDEP2] = IMPDEP2::new;
+    }
+
     /**
      * Get Comparator object used in the equals() method to determine equality of instructions.
      *
@@ -67,6 +174,11 @@ public abstract class Instruction implements Cloneable {
         return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
     }
 
+    @SuppressWarnings("unchecked") // Generic array creation
+    private static Supplier<Instruction>[] newFactories() {
+        return (Supplier<Instruction>[]) new Supplier<?>[256];
+    }
+
     /**
      * Read an instruction from (byte code) input stream and return the appropiate object.
      * <p>
@@ -78,315 +190,45 @@ public abstract class Instruction implements Cloneable {
      */
     // @since 6.0 no longer final
     public static Instruction readInstruction(final ByteSequence bytes) throws IOException {
+        return readInstruction(bytes, false);
+    }
+
+    /**
+     * Read an instruction from (byte code) input stream and return the appropiate object.
+     * <p>
+     * If the Instruction is defined in {@link InstructionConst}, then the singleton instance is returned. If
+     * <code>shared</code> is true, the same applies to the most common instructions with an operand, i.e. non-wide local
+     * variable instructions, BIPUSH, SIPUSH of byte values and LDC. These shared instances can not be modified, use
+     * {@link #copy()} to get a modifiable instruction.
+     * </p>
+     *
+     * @param bytes input stream bytes
+     * @param shared whether shared instances of instructions with operands may be returned
+     * @return instruction object being read
+     * @see InstructionConst#getInstruction(int)
+     * @since 6.6.1
+     */
+    public static Instruction readInstruction(final ByteSequence bytes, final boolean shared) throws IOException {
         boolean wide = false;
         short opcode = (short) bytes.readUnsignedByte();
-        Instruction obj = null;
         if (opcode == Const.WIDE) { // Read next opcode after wide byte
             wide = true;
             opcode = (short) bytes.readUnsignedByte();
+        } else if (shared) {
+            final Instruction flyweight = InstructionFlyweights.read(opcode, bytes);
+            if (flyweight != null) {
+                return flyweight;
+            }
         }
         final Instruction instruction = InstructionConst.getInstruction(opcode);
         if (instruction != null) {
             return instruction; // Used predefined immutable object, if available
         }
-
-        switch (opcode) {
-        case Const.BIPUSH:
-            obj = new BIPUSH();
-            break;
-        case Const.SIPUSH:
-            obj = new SIPUSH();
-            break;
-        case Const.LDC:
-            obj = new LDC();
-            break;
-        case Const.LDC_W:
-            obj = new LDC_W();
-            break;
-        case Const.LDC2_W:
-            obj = new LDC2_W();
-            break;
-        case Const.ILOAD:
-            obj = new ILOAD();
-            break;
-        case Const.LLOAD:
-            obj = new LLOAD();
-            break;
-        case Const.FLOAD:
-            obj = new FLOAD();
-            break;
-        case Const.DLOAD:
-            obj = new DLOAD();
-            break;
-        case Const.ALOAD:
-            obj = new ALOAD();
-            break;
-        case Const.ILOAD_0:
-            obj = new ILOAD(0);
-            break;
-        case Const.ILOAD_1:
-            obj = new ILOAD(1);
-            break;
-        case Const.ILOAD_2:
-            obj = new ILOAD(2);
-            break;
-        case Const.ILOAD_3:
-            obj = new ILOAD(3);
-            break;
-        case Const.LLOAD_0:
-            obj = new LLOAD(0);
-            break;
-        case Const.LLOAD_1:
-            obj = new LLOAD(1);
-            break;
-        case Const.LLOAD_2:
-            obj = new LLOAD(2);
-            break;
-        case Const.LLOAD_3:
-            obj = new LLOAD(3);
-            break;
-        case Const.FLOAD_0:
-            obj = new FLOAD(0);
-            break;
-        case Const.FLOAD_1:
-            obj = new FLOAD(1);
-            break;
-        case Const.FLOAD_2:
-            obj = new FLOAD(2);
-            break;
-        case Const.FLOAD_3:
-            obj = new FLOAD(3);
-            break;
-        case Const.DLOAD_0:
-            obj = new DLOAD(0);
-            break;
-        case Const.DLOAD_1:
-            obj = new DLOAD(1);
-            break;
-        case Const.DLOAD_2:
-            obj = new DLOAD(2);
-            break;
-        case Const.DLOAD_3:
-            obj = new DLOAD(3);
-            break;
-        case Const.ALOAD_0:
-            obj = new ALOAD(0);
-            break;
-        case Const.ALOAD_1:
-            obj = new ALOAD(1);
-            break;
-        case Const.ALOAD_2:
-            obj = new ALOAD(2);
-            break;
-        case Const.ALOAD_3:
-            obj = new ALOAD(3);
-            break;
-        case Const.ISTORE:
-            obj = new ISTORE();
-            break;
-        case Const.LSTORE:
-            obj = new LSTORE();
-            break;
-        case Const.FSTORE:
-            obj = new FSTORE();
-            break;
-        case Const.DSTORE:
-            obj = new DSTORE();
-            break;
-        case Const.ASTORE:
-            obj = new ASTORE();
-            break;
-        case Const.ISTORE_0:
-            obj = new ISTORE(0);
-            break;
-        case Const.ISTORE_1:
-            obj = new ISTORE(1);
-            break;
-        case Const.ISTORE_2:
-            obj = new ISTORE(2);
-            break;
-        case Const.ISTORE_3:
-            obj = new ISTORE(3);
-            break;
-        case Const.LSTORE_0:
-            obj = new LSTORE(0);
-            break;
-        case Const.LSTORE_1:
-            obj = new LSTORE(1);
-            break;
-        case Const.LSTORE_2:
-            obj = new LSTORE(2);
-            break;
-        case Const.LSTORE_3:
-            obj = new LSTORE(3);
-            break;
-        case Const.FSTORE_0:
-            obj = new FSTORE(0);
-            break;
-        case Const.FSTORE_1:
-            obj = new FSTORE(1);
-            break;
-        case Const.FSTORE_2:
-            obj = new FSTORE(2);
-            break;
-        case Const.FSTORE_3:
-            obj = new FSTORE(3);
-            break;
-        case Const.DSTORE_0:
-            obj = new DSTORE(0);
-            break;
-        case Const.DSTORE_1:
-            obj = new DSTORE(1);
-            break;
-        case Const.DSTORE_2:
-            obj = new DSTORE(2);
-            break;
-        case Const.DSTORE_3:
-            obj = new DSTORE(3);
-            break;
-        case Const.ASTORE_0:
-            obj = new ASTORE(0);
-            break;
-        case Const.ASTORE_1:
-            obj = new ASTORE(1);
-            break;
-        case Const.ASTORE_2:
-            obj = new ASTORE(2);
-            break;
-        case Const.ASTORE_3:
-            obj = new ASTORE(3);
-            break;
-        case Const.IINC:
-            obj = new IINC();
-            break;
-        case Const.IFEQ:
-            obj = new IFEQ();
-            break;
-        case Const.IFNE:
-            obj = new IFNE();
-            break;
-        case Const.IFLT:
-            obj = new IFLT();
-            break;
-        case Const.IFGE:
-            obj = new IFGE();
-            break;
-        case Const.IFGT:
-            obj = new IFGT();
-            break;
-        case Const.IFLE:
-            obj = new IFLE();
-            break;
-        case Const.IF_ICMPEQ:
-            obj = new IF_ICMPEQ();
-            break;
-        case Const.IF_ICMPNE:
-            obj = new IF_ICMPNE();
-            break;
-        case Const.IF_ICMPLT:
-            obj = new IF_ICMPLT();
-            break;
-        case Const.IF_ICMPGE:
-            obj = new IF_ICMPGE();
-            break;
-        case Const.IF_ICMPGT:
-            obj = new IF_ICMPGT();
-            break;
-        case Const.IF_ICMPLE:
-            obj = new IF_ICMPLE();
-            break;
-        case Const.IF_ACMPEQ:
-            obj = new IF_ACMPEQ();
-            break;
-        case Const.IF_ACMPNE:
-            obj = new IF_ACMPNE();
-            break;
-        case Const.GOTO:
-            obj = new GOTO();
-            break;
-        case Const.JSR:
-            obj = new JSR();
-            break;
-        case Const.RET:
-            obj = new RET();
-            break;
-        case Const.TABLESWITCH:
-            obj = new TABLESWITCH();
-            break;
-        case Const.LOOKUPSWITCH:
-            obj = new LOOKUPSWITCH();
-            break;
-        case Const.GETSTATIC:
-            obj = new GETSTATIC();
-            break;
-        case Const.PUTSTATIC:
-            obj = new PUTSTATIC();
-            break;
-        case Const.GETFIELD:
-            obj = new GETFIELD();
-            break;
-        case Const.PUTFIELD:
-            obj = new PUTFIELD();
-            break;
-        case Const.INVOKEVIRTUAL:
-            obj = new INVOKEVIRTUAL();
-            break;
-        case Const.INVOKESPECIAL:
-            obj = new INVOKESPECIAL();
-            break;
-        case Const.INVOKESTATIC:
-            obj = new INVOKESTATIC();
-            break;
-        case Const.INVOKEINTERFACE:
-            obj = new INVOKEINTERFACE();
-            break;
-        case Const.INVOKEDYNAMIC:
-            obj = new INVOKEDYNAMIC();
-            break;
-        case Const.NEW:
-            obj = new NEW();
-            break;
-        case Const.NEWARRAY:
-            obj = new NEWARRAY();
-            break;
-        case Const.ANEWARRAY:
-            obj = new ANEWARRAY();
-            break;
-        case Const.CHECKCAST:
-            obj = new CHECKCAST();
-            break;
-        case Const.INSTANCEOF:
-            obj = new INSTANCEOF();
-            break;
-        case Const.MULTIANEWARRAY:
-            obj = new MULTIANEWARRAY();
-            break;
-        case Const.IFNULL:
-            obj = new IFNULL();
-            break;
-        case Const.IFNONNULL:
-            obj = new IFNONNULL();
-            break;
-        case Const.GOTO_W:
-            obj = new GOTO_W();
-            break;
-        case Const.JSR_W:
-            obj = new JSR_W();
-            break;
-        case Const.BREAKPOINT:
-            obj = new BREAKPOINT();
-            break;
-        case Const.IMPDEP1:
-            obj = new IMPDEP1();
-            break;
-        case Const.IMPDEP2:
-            obj = new IMPDEP2();
-            break;
-        default:
+        final Supplier<Instruction> factory = FACTORIES[opcode];
+        if (factory == null) {
             throw new ClassGenException("Illegal opcode detected: " + opcode);
-
         }
-
+        final Instruction obj = factory.get();
         if (wide && !(obj instanceof LocalVariableInstruction || obj instanceof IINC || obj instanceof RET)) {
             throw new ClassGenException("Illegal opcode after wide: " + opcode);
         }
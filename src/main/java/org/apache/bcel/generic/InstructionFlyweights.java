@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.generic;
+
+import java.io.IOException;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.util.ByteSequence;
+
+/**
+ * Shared instances of the most common instructions with an operand: non-wide local variable instructions, BIPUSH,
+ * SIPUSH of byte values and LDC. This complements {@link InstructionConst}, which only holds instructions without
+ * operands. Since the operands of these instances are fixed, modifying them is rejected; {@link Instruction#copy()}
+ * returns a modifiable instance.
+ *
+ * @see Instruction#readInstruction(ByteSequence, boolean)
+ */
+final class InstructionFlyweights {
+
+    /**
+     * Creates the instances on first use only.
+     */
+    private static final class Holder {
+
+        /**
+         * Indexed by opcode and then by operand byte; instructions without operand, such as ILOAD_0, have a single entry.
+         * SIPUSH is indexed by value + 128.
+         */
+        private static final Instruction[][] TABLE = new Instruction[256][];
+
+        static {
+            final byte[] code = new byte[(Const.ALOAD - Const.ILOAD + 1 + Const.ASTORE - Const.ISTORE + 1 + 2) * 256 * 2 + 256 * 3
+                + (Const.ALOAD_3 - Const.ILOAD_0 + 1 + Const.ASTORE_3 - Const.ISTORE_0 + 1)];
+            int pos = 0;
+            for (int opcode = 0; opcode < 256; opcode++) {
+                if (hasByteOperand(opcode)) {
+                    TABLE[opcode] = new Instruction[256];
+                    for (int operand = 0; operand < 256; operand++) {
+                        code[pos++] = (byte) opcode;
+                        code[pos++] = (byte) operand;
+                    }
+                } else if (opcode == Const.SIPUSH) {
+                    TABLE[opcode] = new Instruction[256];
+                    for (int value = Byte.MIN_VALUE; value <= Byte.MAX_VALUE; value++) {
+                        code[pos++] = (byte) opcode;
+                        code[pos++] = (byte) (value >> 8);
+                        code[pos++] = (byte) value;
+                    }
+                } else if (opcode >= Const.ILOAD_0 && opcode <= Const.ALOAD_3 || opcode >= Const.ISTORE_0 && opcode <= Const.ASTORE_3) {
+                    TABLE[opcode] = new Instruction[1];
+                    code[pos++] = (byte) opcode;
+                }
+            }
+            // Decode them like any other code so that the instances are identical to unshared ones.
+            try (ByteSequence bytes = new ByteSequence(code)) {
+                while (bytes.available() > 0) {
+                    final Instruction i = Instruction.readInstruction(bytes, false);
+                    TABLE[i.getOpcode()][slot(i)] = i;
+                }
+            } catch (final IOException e) {
+                throw new ClassGenException(e.toString(), e);
+            }
+            initialized = true;
+        }
+    }
+
+    /** Whether the Holder has been initialized, so that {@link #isShared(Instruction)} need not initialize it. */
+    private static volatile boolean initialized;
+
+    private static boolean hasByteOperand(final int opcode) {
+        return opcode >= Const.ILOAD && opcode <= Const.ALOAD || opcode >= Const.ISTORE && opcode <= Const.ASTORE || opcode == Const.BIPUSH
+            || opcode == Const.LDC;
+    }
+
+    /**
+     * @return true if the given instruction is one of the shared instances.
+     */
+    static boolean isShared(final Instruction i) {
+        if (!initialized) {
+            return false;
+        }
+        final int opcode = i.getOpcode();
+        if (opcode < 0 || Holder.TABLE[opcode] == null) {
+            return false;
+        }
+        final int slot = slot(i);
+        return slot >= 0 && slot < Holder.TABLE[opcode].length && Holder.TABLE[opcode][slot] == i;
+    }
+
+    /**
+     * Reads the operand of the given opcode and returns the shared instance, if there is one.
+     *
+     * @param opcode the opcode, which has already been read
+     * @param bytes the byte code, positioned at the operand
+     * @return the shared instruction or null if there is none for this opcode, in which case nothing has been read
+     */
+    static Instruction read(final short opcode, final ByteSequence bytes) throws IOException {
+        final Instruction[] row = Holder.TABLE[opcode];
+        if (row == null) {
+            return null;
+        }
+        if (row.length == 1) {
+            return row[0];
+        }
+        if (opcode == Const.SIPUSH) {
+            final short value = bytes.readShort();
+            if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                return new SIPUSH(value);
+            }
+            return row[value - Byte.MIN_VALUE];
+        }
+        return row[bytes.readUnsignedByte()];
+    }
+
+    /**
+     * @return the index of the given instruction within its row of the table.
+     */
+    private static int slot(final Instruction i) {
+        if (i instanceof LocalVariableInstruction) {
+            return i.getLength() == 1 ? 0 : ((LocalVariableInstruction) i).getIndex();
+        }
+        if (i instanceof CPInstruction) {
+            return ((CPInstruction) i).getIndex();
+        }
+        if (i instanceof BIPUSH) {
+            return ((BIPUSH) i).getValue().intValue() & 0xff;
+        }
+        if (i instanceof SIPUSH) {
+            return ((SIPUSH) i).getValue().intValue() - Byte.MIN_VALUE;
+        }
+        return -1;
+    }
+
+    private InstructionFlyweights() {
+    } // non-instantiable
+}
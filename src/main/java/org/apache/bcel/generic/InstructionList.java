@@ -17,20 +17,21 @@
  */
 package org.apache.bcel.generic;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.Constant;
 import org.apache.bcel.util.ByteSequence;
-import org.apache.commons.lang3.ArrayUtils;
+import org.apache.bcel.util.SizedDataOutputStream;
 
 /**
  * This class is a container for a list of <a href="Instruction.html">Instruction</a> objects. Instructions can be
@@ -106,6 +107,19 @@ public class InstructionList implements Iterable<InstructionHandle> {
      * @param code byte array containing the instructions
      */
     public InstructionList(final byte[] code) {
+        this(code, false);
+    }
+
+    /**
+     * Initialize instruction list from byte array. If <code>shared</code> is true, common instructions with operands are
+     * not allocated per occurrence but shared, see {@link Instruction#readInstruction(ByteSequence, boolean)}; such a list
+     * is meant for inspection, and its instructions need to be replaced by copies before they can be modified.
+     *
+     * @param code byte array containing the instructions
+     * @param shared whether shared instances of instructions with operands may be used
+     * @since 6.6.1
+     */
+    public InstructionList(final byte[] code, final boolean shared) {
         int count = 0; // Contains actual length
         int[] pos;
         InstructionHandle[] ihs;
@@ -122,7 +136,7 @@ public class InstructionList implements Iterable<InstructionHandle> {
                 /*
                  * Read one instruction from the byte stream, the byte position is set accordingly.
                  */
-                final Instruction i = Instruction.readInstruction(bytes);
+                final Instruction i = Instruction.readInstruction(bytes, shared);
                 InstructionHandle ih;
                 if (i instanceof BranchInstruction) {
                     ih = append((BranchInstruction) i);
@@ -377,7 +391,50 @@ public class InstructionList implements Iterable<InstructionHandle> {
         return append(end, il); // was end.instruction
     }
 
-    private void clear() {
+    /**
+     * Starts recording edits that are applied to this list in one pass, which is much faster than editing it instruction
+     * by instruction when there are many edits.
+     *
+     * @return a new, empty batch of edits of this list
+     * @since 6.6.1
+     */
+    public InstructionListBatch batch() {
+        return new InstructionListBatch(this);
+    }
+
+    /**
+     * Ensures that all branch instructions are held by a BranchHandle and that their targets belong to this list. Targets
+     * are looked up among the handles of this list by identity, so the check takes linear time.
+     */
+    private void checkBranchTargets() {
+        final Set<InstructionHandle> handles = Collections.newSetFromMap(new IdentityHashMap<>(length));
+        for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
+            handles.add(ih);
+        }
+        for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
+            final Instruction i = ih.getInstruction();
+            if (i instanceof BranchInstruction) { // target instruction within list?
+                InstructionHandle target = ((BranchInstruction) i).getTarget();
+                if (!handles.contains(target)) {
+                    throw new ClassGenException("Branch target of " + Const.getOpcodeName(i.getOpcode()) + ":" + target + " not in instruction list");
+                }
+                if (i instanceof Select) {
+                    for (final InstructionHandle t : ((Select) i).getTargets()) {
+                        target = t;
+                        if (!handles.contains(target)) {
+                            throw new ClassGenException("Branch target of " + Const.getOpcodeName(i.getOpcode()) + ":" + target + " not in instruction list");
+                        }
+                    }
+                }
+                if (!(ih instanceof BranchHandle)) {
+                    throw new ClassGenException(
+                        "Branch instruction " + Const.getOpcodeName(i.getOpcode()) + ":" + target + " not contained in BranchHandle.");
+                }
+            }
+        }
+    }
+
+    void clear() {
         start = end = null;
         length = 0;
     }
@@ -569,19 +626,16 @@ public class InstructionList implements Iterable<InstructionHandle> {
     public byte[] getByteCode() {
         // Update position indices of instructions
         setPositions();
-        final ByteArrayOutputStream b = new ByteArrayOutputStream();
-        final DataOutputStream out = new DataOutputStream(b);
-        try {
+        final int size = end == null ? 0 : end.getPosition() + end.getInstruction().getLength();
+        try (SizedDataOutputStream out = new SizedDataOutputStream(size)) {
             for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
                 final Instruction i = ih.getInstruction();
                 i.dump(out); // Traverse list
             }
-            out.flush();
+            return out.toByteArray();
         } catch (final IOException e) {
-            System.err.println(e);
-            return ArrayUtils.EMPTY_BYTE_ARRAY;
+            throw new ClassGenException(e.toString(), e);
         }
-        return b.toByteArray();
     }
 
     /**
@@ -993,6 +1047,15 @@ public class InstructionList implements Iterable<InstructionHandle> {
         }
     }
 
+    /**
+     * Sets the handles of this list after they have been linked by an {@link InstructionListBatch}.
+     */
+    void relink(final InstructionHandle start, final InstructionHandle end, final int length) {
+        this.start = start;
+        this.end = end;
+        this.length = length;
+    }
+
     /**
      * Remove from instruction `prev' to instruction `next' both contained in this list. Throws TargetLostException when one
      * of the removed instruction handles is still being targeted.
@@ -1065,13 +1128,43 @@ public class InstructionList implements Iterable<InstructionHandle> {
         for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
             final Instruction i = ih.getInstruction();
             if (i instanceof CPInstruction) {
-                final CPInstruction ci = (CPInstruction) i;
+                CPInstruction ci = (CPInstruction) i;
                 final Constant c = old_cp.getConstant(ci.getIndex());
+                if (InstructionFlyweights.isShared(ci)) {
+                    ci = (CPInstruction) ci.copy();
+                    ih.setInstruction(ci);
+                }
                 ci.setIndex(new_cp.addConstant(c, old_cp));
             }
         }
     }
 
+    /**
+     * Replace all references to a constant pool according to the given map, e.g. as returned by
+     * {@link ConstantPoolGen#mergeFrom(org.apache.bcel.classfile.ConstantPool)}. Only the instructions are changed, use
+     * {@link MethodGen#replaceConstantPool(ConstantPoolGen, int[])} to move a whole method.
+     *
+     * @param map the new index for each old constant pool index
+     * @since 6.6.1
+     */
+    public void replaceConstantPool(final int[] map) {
+        for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
+            final Instruction i = ih.getInstruction();
+            if (i instanceof CPInstruction) {
+                CPInstruction ci = (CPInstruction) i;
+                final int index = map[ci.getIndex()];
+                if (index == 0) {
+                    throw new ClassGenException("Constant pool index not mapped: " + ci.getIndex());
+                }
+                if (InstructionFlyweights.isShared(ci)) {
+                    ci = (CPInstruction) ci.copy();
+                    ih.setInstruction(ci);
+                }
+                ci.setIndex(index);
+            }
+        }
+    }
+
     public void setPositions() { // TODO could be package-protected? (some test code would need to be repackaged)
         setPositions(false);
     }
@@ -1085,34 +1178,11 @@ public class InstructionList implements Iterable<InstructionHandle> {
         int max_additional_bytes = 0;
         int additional_bytes = 0;
         int index = 0;
-        int count = 0;
-        final int[] pos = new int[length];
         /*
          * Pass 0: Sanity checks
          */
         if (check) {
-            for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
-                final Instruction i = ih.getInstruction();
-                if (i instanceof BranchInstruction) { // target instruction within list?
-                    Instruction inst = ((BranchInstruction) i).getTarget().getInstruction();
-                    if (!contains(inst)) {
-                        throw new ClassGenException("Branch target of " + Const.getOpcodeName(i.getOpcode()) + ":" + inst + " not in instruction list");
-                    }
-                    if (i instanceof Select) {
-                        final InstructionHandle[] targets = ((Select) i).getTargets();
-                        for (final InstructionHandle target : targets) {
-                            inst = target.getInstruction();
-                            if (!contains(inst)) {
-                                throw new ClassGenException("Branch target of " + Const.getOpcodeName(i.getOpcode()) + ":" + inst + " not in instruction list");
-                            }
-                        }
-                    }
-                    if (!(ih instanceof BranchHandle)) {
-                        throw new ClassGenException(
-                            "Branch instruction " + Const.getOpcodeName(i.getOpcode()) + ":" + inst + " not contained in BranchHandle.");
-                    }
-                }
-            }
+            checkBranchTargets();
         }
         /*
          * Pass 1: Set position numbers and sum up the maximum number of bytes an instruction may be shifted.
@@ -1120,7 +1190,6 @@ public class InstructionList implements Iterable<InstructionHandle> {
         for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
             final Instruction i = ih.getInstruction();
             ih.setPosition(index);
-            pos[count++] = index;
             /*
              * Get an estimate about how many additional bytes may be added, because BranchInstructions may have variable length
              * depending on the target offset (short vs. int) or alignment issues (TABLESWITCH and LOOKUPSWITCH).
@@ -1138,24 +1207,17 @@ public class InstructionList implements Iterable<InstructionHandle> {
             index += i.getLength();
         }
         /*
-         * Pass 2: Expand the variable-length (Branch)Instructions depending on the target offset (short or int) and ensure that
-         * branch targets are within this list.
+         * Pass 2: Expand the variable-length (Branch)Instructions depending on the target offset (short or int). Since the
+         * decision is based on the maximum shift, a single pass suffices, and each instruction is at its final position once
+         * the preceding ones have been expanded.
          */
+        final int[] pos = new int[length];
+        int count = 0;
         for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
             additional_bytes += ih.updatePosition(additional_bytes, max_additional_bytes);
+            pos[count++] = ih.getPosition();
         }
-        /*
-         * Pass 3: Update position numbers (which may have changed due to the preceding expansions), like pass 1.
-         */
-        index = count = 0;
-        for (InstructionHandle ih = start; ih != null; ih = ih.getNext()) {
-            final Instruction i = ih.getInstruction();
-            ih.setPosition(index);
-            pos[count++] = index;
-            index += i.getLength();
-        }
-        bytePositions = new int[count]; // Trim to proper size
-        System.arraycopy(pos, 0, bytePositions, 0, count);
+        bytePositions = pos;
     }
 
     /**
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.generic;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records insertions, replacements and deletions at the handles of an {@link InstructionList} and applies all of them
+ * in one pass over the list when {@link #commit()} is called. Until then the list is not modified.
+ * <p>
+ * Unlike {@link InstructionList#delete(InstructionHandle)}, deleting does not throw {@link TargetLostException}: the
+ * targeters of a deleted or replaced handle, i.e. branches, exception handlers, local variables and line numbers, are
+ * redirected to the first instruction that takes its place, which is the first replacement instruction or else the next
+ * instruction of the resulting list, or its last instruction if there is none. The end of an exception handler range or
+ * local variable scope is instead redirected to the last replacement instruction or else the previous instruction, so
+ * that the range does not grow, unless nothing of the range is left. As with
+ * {@link InstructionList#insert(InstructionHandle, InstructionList)}, targeters of a handle that code is inserted before
+ * keep pointing to that handle.
+ * </p>
+ *
+ * @see InstructionList#batch()
+ * @since 6.6.1
+ */
+public final class InstructionListBatch {
+
+    /**
+     * The list being linked by {@link #commit()}.
+     */
+    private static final class Chain {
+
+        private InstructionHandle first;
+        private InstructionHandle last;
+        private int length;
+        private final List<InstructionHandle> removed = new ArrayList<>();
+        /** The handle taking the place of each removed handle, once it is known. */
+        private final List<InstructionHandle> successors = new ArrayList<>();
+        /** The last handle linked in place of or before each removed handle, which takes its place as the end of a range. */
+        private final List<InstructionHandle> predecessors = new ArrayList<>();
+        /** The positions of the successors and predecessors in the chain, which tell whether a range is left empty. */
+        private final List<Integer> successorPositions = new ArrayList<>();
+        private final List<Integer> predecessorPositions = new ArrayList<>();
+
+        void finish() {
+            if (last != null) {
+                last.setNext(null);
+            }
+            while (successors.size() < removed.size()) {
+                successors.add(last);
+                successorPositions.add(length - 1);
+            }
+        }
+
+        void link(final InstructionHandle ih) {
+            while (successors.size() < removed.size()) {
+                successors.add(ih);
+                successorPositions.add(length);
+            }
+            if (last == null) {
+                first = ih;
+                ih.setPrev(null);
+            } else {
+                last.setNext(ih);
+                ih.setPrev(last);
+            }
+            last = ih;
+            length++;
+        }
+
+        void link(final InstructionList list) {
+            InstructionHandle next;
+            for (InstructionHandle ih = list.getStart(); ih != null; ih = next) {
+                next = ih.getNext();
+                link(ih);
+            }
+            list.clear();
+        }
+
+        void link(final List<InstructionList> lists) {
+            for (final InstructionList list : lists) {
+                link(list);
+            }
+        }
+
+        /**
+         * @return the new start and end of a range, given the indices of the removed handles
+         */
+        InstructionHandle[] range(final InstructionHandle start, final InstructionHandle end, final Map<InstructionHandle, Integer> indices) {
+            final Integer s = indices.get(start);
+            final Integer e = indices.get(end);
+            if (e == null) {
+                return new InstructionHandle[] {s == null ? start : successors.get(s), end};
+            }
+            final InstructionHandle predecessor = predecessors.get(e);
+            if (predecessor == null || s != null && successorPositions.get(s) > predecessorPositions.get(e)) {
+                // Nothing of the range is left, so it is moved to the instruction that follows it
+                return new InstructionHandle[] {successors.get(e), successors.get(e)};
+            }
+            return new InstructionHandle[] {s == null ? start : successors.get(s), predecessor};
+        }
+
+        void remove(final InstructionHandle ih, final InstructionList replacement) {
+            removed.add(ih);
+            if (replacement != null) {
+                link(replacement);
+            }
+            predecessors.add(last);
+            predecessorPositions.add(length - 1);
+        }
+    }
+
+    /**
+     * The edits recorded at one handle.
+     */
+    private static final class Edit {
+
+        private final List<InstructionList> before = new ArrayList<>(1);
+        private List<InstructionList> after;
+        private boolean removed;
+        private InstructionList replacement;
+    }
+
+    private final InstructionList il;
+
+    private final Map<InstructionHandle, Edit> edits = new IdentityHashMap<>();
+
+    InstructionListBatch(final InstructionList il) {
+        this.il = il;
+    }
+
+    /**
+     * Appends an instruction after the given handle.
+     *
+     * @param ih handle of this list
+     * @param i instruction to append
+     * @return this batch
+     */
+    public InstructionListBatch append(final InstructionHandle ih, final Instruction i) {
+        return append(ih, new InstructionList(i));
+    }
+
+    /**
+     * Appends a list after the given handle. The list is consumed on commit; lists appended at the same handle follow each
+     * other in the order they were recorded, and follow the replacement of the handle, if any.
+     *
+     * @param ih handle of this list
+     * @param list instructions to append
+     * @return this batch
+     */
+    public InstructionListBatch append(final InstructionHandle ih, final InstructionList list) {
+        final Edit edit = edit(ih, list);
+        if (edit.after == null) {
+            edit.after = new ArrayList<>(1);
+        }
+        edit.after.add(list);
+        return this;
+    }
+
+    /**
+     * Applies the recorded edits to the list, redirects the targeters of removed handles, disposes these handles and
+     * notifies the observers of the list once. The batch is empty afterwards.
+     *
+     * @throws ClassGenException if an edited handle is not contained in the list or the list would become empty while
+     *         some removed handle is still targeted
+     */
+    public void commit() {
+        if (edits.isEmpty()) {
+            return;
+        }
+        int found = 0;
+        boolean empty = true;
+        for (InstructionHandle ih = il.getStart(); ih != null; ih = ih.getNext()) {
+            final Edit edit = edits.get(ih);
+            if (edit != null) {
+                found++;
+                empty &= edit.removed && isEmpty(edit.before) && isEmpty(edit.after) && (edit.replacement == null || edit.replacement.isEmpty());
+            } else {
+                empty = false;
+            }
+        }
+        if (found != edits.size()) {
+            throw new ClassGenException("Edited instruction handle is not contained in this list");
+        }
+        if (empty) {
+            // Only the branches of this list, which are all removed, may target its handles
+            for (final InstructionHandle ih : edits.keySet()) {
+                for (final InstructionTargeter t : ih.getTargeters()) {
+                    if (!(t instanceof BranchInstruction)) {
+                        throw new ClassGenException("Deleting all instructions of a list while " + ih + " is still targeted by " + t);
+                    }
+                }
+            }
+        }
+        // Relink the list in one pass; removed handles are taken over by the next handle that is linked
+        final Chain chain = new Chain();
+        InstructionHandle next;
+        for (InstructionHandle ih = il.getStart(); ih != null; ih = next) {
+            next = ih.getNext();
+            final Edit edit = edits.get(ih);
+            if (edit == null) {
+                chain.link(ih);
+                continue;
+            }
+            chain.link(edit.before);
+            if (edit.removed) {
+                chain.remove(ih, edit.replacement);
+            } else {
+                chain.link(ih);
+            }
+            if (edit.after != null) {
+                chain.link(edit.after);
+            }
+        }
+        chain.finish();
+        il.relink(chain.first, chain.last, chain.length);
+        edits.clear();
+        // Branches being removed release their targets first, so that they are not redirected themselves
+        for (final InstructionHandle ih : chain.removed) {
+            ih.getInstruction().dispose();
+        }
+        // Both ends of a range are redirected at once, so that it is known whether anything of the range is left
+        final Map<InstructionHandle, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < chain.removed.size(); i++) {
+            indices.put(chain.removed.get(i), i);
+        }
+        for (final InstructionHandle ih : chain.removed) {
+            for (final InstructionTargeter t : ih.getTargeters()) {
+                if (t instanceof CodeExceptionGen) {
+                    final CodeExceptionGen c = (CodeExceptionGen) t;
+                    final InstructionHandle[] range = chain.range(c.getStartPC(), c.getEndPC(), indices);
+                    c.setStartPC(range[0]);
+                    c.setEndPC(range[1]);
+                } else if (t instanceof LocalVariableGen) {
+                    final LocalVariableGen l = (LocalVariableGen) t;
+                    final InstructionHandle[] range = chain.range(l.getStart(), l.getEnd(), indices);
+                    l.setStart(range[0]);
+                    l.setEnd(range[1]);
+                }
+            }
+        }
+        for (int i = 0; i < chain.removed.size(); i++) {
+            final InstructionHandle ih = chain.removed.get(i);
+            for (final InstructionTargeter t : ih.getTargeters()) {
+                t.updateTarget(ih, chain.successors.get(i));
+            }
+            ih.dispose();
+        }
+        il.update();
+    }
+
+    /**
+     * Deletes the given handle.
+     *
+     * @param ih handle of this list
+     * @return this batch
+     * @throws ClassGenException if the handle has already been deleted or replaced in this batch
+     */
+    public InstructionListBatch delete(final InstructionHandle ih) {
+        remove(ih, null);
+        return this;
+    }
+
+    /**
+     * Inserts an instruction before the given handle.
+     *
+     * @param ih handle of this list
+     * @param i instruction to insert
+     * @return this batch
+     */
+    public InstructionListBatch insert(final InstructionHandle ih, final Instruction i) {
+        return insert(ih, new InstructionList(i));
+    }
+
+    /**
+     * Inserts a list before the given handle. The list is consumed on commit; lists inserted at the same handle follow each
+     * other in the order they were recorded.
+     *
+     * @param ih handle of this list
+     * @param list instructions to insert
+     * @return this batch
+     */
+    public InstructionListBatch insert(final InstructionHandle ih, final InstructionList list) {
+        edit(ih, list).before.add(list);
+        return this;
+    }
+
+    /**
+     * @return whether no edits have been recorded since the last commit
+     */
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /**
+     * Replaces the given handle by an instruction, which gets a new handle.
+     *
+     * @param ih handle of this list
+     * @param i replacement instruction
+     * @return this batch
+     * @throws ClassGenException if the handle has already been deleted or replaced in this batch
+     */
+    public InstructionListBatch replace(final InstructionHandle ih, final Instruction i) {
+        return replace(ih, new InstructionList(i));
+    }
+
+    /**
+     * Replaces the given handle by a list, which is consumed on commit.
+     *
+     * @param ih handle of this list
+     * @param list replacement instructions
+     * @return this batch
+     * @throws ClassGenException if the handle has already been deleted or replaced in this batch
+     */
+    public InstructionListBatch replace(final InstructionHandle ih, final InstructionList list) {
+        remove(ih, list);
+        return this;
+    }
+
+    private Edit edit(final InstructionHandle ih, final InstructionList list) {
+        if (ih == null) {
+            throw new ClassGenException("Editing at null handle");
+        }
+        if (list == il) {
+            throw new ClassGenException("Inserting a list into itself");
+        }
+        return edits.computeIfAbsent(ih, k -> new Edit());
+    }
+
+    private boolean isEmpty(final List<InstructionList> lists) {
+        if (lists != null) {
+            for (final InstructionList list : lists) {
+                if (!list.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void remove(final InstructionHandle ih, final InstructionList replacement) {
+        final Edit edit = edit(ih, replacement);
+        if (edit.removed) {
+            throw new ClassGenException("Instruction handle has already been deleted or replaced: " + ih);
+        }
+        edit.removed = true;
+        edit.replacement = replacement;
+    }
+}
@@ -165,6 +165,9 @@ public abstract class LocalVariableInstruction extends Instruction implements Ty
      */
     @Override
     public void setIndex(final int n) { // TODO could be package-protected?
+        if (InstructionFlyweights.isShared(this)) {
+            throw new ClassGenException("Shared instruction can not be modified, use a copy: " + this);
+        }
         if (n < 0 || n > Const.MAX_SHORT) {
             throw new ClassGenException("Illegal value: " + n);
         }
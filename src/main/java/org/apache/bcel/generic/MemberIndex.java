@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.generic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.FieldOrMethod;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.util.BCELComparator;
+
+/**
+ * Index of the fields or methods of a {@link ClassGen} by name, and by signature for methods. The index is built on the
+ * first lookup and then maintained by the ClassGen, so that looking up members takes constant instead of linear time.
+ * Members must not be renamed while they are indexed.
+ *
+ * @param <T> Field or Method
+ */
+final class MemberIndex<T extends FieldOrMethod> {
+
+    private final List<T> members;
+    private final boolean bySignature;
+
+    /** Members by key in list order, as the first one is looked up by name, or null if the index has not been built. */
+    private Map<String, List<T>> index;
+
+    /** Position in the list of the first occurrence of each member, or null if it has to be built again. */
+    private Map<T, Integer> positions;
+
+    /**
+     * @param members the members to index, which the owner keeps in sync with the index
+     * @param bySignature whether the members are methods, which are distinguished by their signature, too
+     */
+    MemberIndex(final List<T> members, final boolean bySignature) {
+        this.members = members;
+        this.bySignature = bySignature;
+    }
+
+    /**
+     * Adds a member that has been appended to the list.
+     */
+    void add(final T member) {
+        if (member == null) {
+            return;
+        }
+        if (index != null) {
+            index.computeIfAbsent(key(member), k -> new ArrayList<>(1)).add(member);
+        }
+        if (positions != null) {
+            positions.putIfAbsent(member, members.size() - 1);
+        }
+    }
+
+    /**
+     * Forgets the index after the list has been replaced entirely.
+     */
+    void clear() {
+        index = null;
+        positions = null;
+    }
+
+    /**
+     * @return the members with the given name and, for methods, signature
+     */
+    List<T> get(final String name, final String signature) {
+        if (index == null) {
+            index = new HashMap<>(members.size() * 2);
+            for (final T member : members) {
+                if (member != null) {
+                    index.computeIfAbsent(key(member), k -> new ArrayList<>(1)).add(member);
+                }
+            }
+        }
+        return index.getOrDefault(bySignature ? name + signature : name, Collections.emptyList());
+    }
+
+    /**
+     * @return whether members are compared with the default comparator, which is declared in their class and only finds
+     *         members with the same name and signature equal
+     */
+    private boolean hasDefaultComparator() {
+        final BCELComparator comparator = bySignature ? Method.getComparator() : Field.getComparator();
+        return comparator.getClass().getEnclosingClass() == (bySignature ? Method.class : Field.class);
+    }
+
+    /**
+     * Gets the position of a member in the list, where members are equal as by {@link Object#equals(Object)}. With the
+     * default comparator, only members with the same name and signature are compared, otherwise all of them.
+     *
+     * @return the position of the first member found that equals the given one, or -1
+     */
+    int indexOf(final T member) {
+        if (member == null || !hasDefaultComparator()) {
+            return members.indexOf(member);
+        }
+        int found = -1;
+        for (final T candidate : get(member.getName(), member.getSignature())) {
+            if (candidate.equals(member)) {
+                final int position = position(candidate);
+                if (position >= 0 && (found < 0 || position < found)) {
+                    found = position;
+                }
+            }
+        }
+        return found;
+    }
+
+    private String key(final T member) {
+        return bySignature ? member.getName() + member.getSignature() : member.getName();
+    }
+
+    /**
+     * @return the position of the first occurrence of the given member, or -1 if it is not in the list
+     */
+    private int position(final T member) {
+        if (positions != null) {
+            final Integer position = positions.get(member);
+            if (position != null && members.get(position) == member) {
+                return position;
+            }
+        }
+        positions = new IdentityHashMap<>(members.size() * 2);
+        for (int i = 0; i < members.size(); i++) {
+            positions.putIfAbsent(members.get(i), i);
+        }
+        final Integer position = positions.get(member);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Removes a member that has been removed from the list, which moves the members that followed it.
+     */
+    void remove(final T member) {
+        positions = null;
+        removeFromIndex(member);
+    }
+
+    private void removeFromIndex(final T member) {
+        if (index != null && member != null) {
+            final String key = key(member);
+            final List<T> list = index.get(key);
+            if (list != null) {
+                for (int i = 0; i < list.size(); i++) {
+                    if (list.get(i) == member) {
+                        list.remove(i);
+                        break;
+                    }
+                }
+                if (list.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces a member that has been replaced in the list at the given position.
+     */
+    void replace(final T old, final T member, final int position) {
+        if (positions != null) {
+            // A copy of the old member that follows is found again when the positions are built again
+            positions.remove(old, position);
+            if (member != null) {
+                final Integer previous = positions.get(member);
+                if (previous == null || previous > position) {
+                    positions.put(member, position);
+                }
+            }
+        }
+        removeFromIndex(old);
+        if (index != null && member != null) {
+            final List<T> list = index.computeIfAbsent(key(member), k -> new ArrayList<>(1));
+            int i = list.size();
+            while (i > 0 && position(list.get(i - 1)) > position) {
+                i--;
+            }
+            list.add(i, member);
+        }
+    }
+}
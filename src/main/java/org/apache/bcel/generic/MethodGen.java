@@ -26,11 +26,13 @@ import java.util.Objects;
 import java.util.Stack;
 
 import org.apache.bcel.Const;
+import org.apache.bcel.classfile.AnnotationDefault;
 import org.apache.bcel.classfile.AnnotationEntry;
 import org.apache.bcel.classfile.Annotations;
 import org.apache.bcel.classfile.Attribute;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.CodeException;
+import org.apache.bcel.classfile.ConstantPool;
 import org.apache.bcel.classfile.ExceptionTable;
 import org.apache.bcel.classfile.LineNumber;
 import org.apache.bcel.classfile.LineNumberTable;
@@ -38,9 +40,16 @@ import org.apache.bcel.classfile.LocalVariable;
 import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.LocalVariableTypeTable;
 import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.MethodParameter;
+import org.apache.bcel.classfile.MethodParameters;
 import org.apache.bcel.classfile.ParameterAnnotationEntry;
 import org.apache.bcel.classfile.ParameterAnnotations;
 import org.apache.bcel.classfile.RuntimeVisibleParameterAnnotations;
+import org.apache.bcel.classfile.Signature;
+import org.apache.bcel.classfile.StackMap;
+import org.apache.bcel.classfile.StackMapEntry;
+import org.apache.bcel.classfile.StackMapType;
+import org.apache.bcel.classfile.Synthetic;
 import org.apache.bcel.classfile.Utility;
 import org.apache.bcel.util.BCELComparator;
 
@@ -115,11 +124,71 @@ public class MethodGen extends FieldGenOrMethodGen {
     };
 
     private static byte[] getByteCodes(final Method method) {
+        return getCode(method).getCode();
+    }
+
+    private static Code getCode(final Method method) {
         final Code code = method.getCode();
         if (code == null) {
             throw new IllegalStateException(String.format("The method '%s' has no code.", method));
         }
-        return code.getCode();
+        return code;
+    }
+
+    private static boolean hasCode(final Method method) {
+        return (method.getAccessFlags() & (Const.ACC_ABSTRACT | Const.ACC_NATIVE)) == 0;
+    }
+
+    /**
+     * @return a copy of the given attribute that refers to the given constant pool according to the map, or the attribute
+     *         itself if its constant pool references are not known and strict is false
+     */
+    private static Attribute replaceConstantPool(final Attribute a, final ConstantPoolGen cp, final int[] map, final boolean strict) {
+        final ConstantPool pool = cp.getConstantPool();
+        final Attribute c;
+        if (a instanceof Signature) {
+            c = a.copy(pool);
+            ((Signature) c).setSignatureIndex(map[((Signature) a).getSignatureIndex()]);
+        } else if (a instanceof LocalVariableTypeTable) {
+            c = a.copy(pool);
+            for (final LocalVariable l : ((LocalVariableTypeTable) c).getLocalVariableTypeTable()) {
+                l.setNameIndex(map[l.getNameIndex()]);
+                l.setSignatureIndex(map[l.getSignatureIndex()]);
+                l.setConstantPool(pool);
+            }
+        } else if (a instanceof StackMap) {
+            c = a.copy(pool);
+            for (final StackMapEntry e : ((StackMap) c).getStackMap()) {
+                for (final StackMapType[] types : new StackMapType[][] {e.getTypesOfLocals(), e.getTypesOfStackItems()}) {
+                    for (final StackMapType t : types) {
+                        if (t.getType() == Const.ITEM_Object) {
+                            t.setIndex(map[t.getIndex()]);
+                        }
+                        t.setConstantPool(pool);
+                    }
+                }
+                e.setConstantPool(pool);
+            }
+        } else if (a instanceof MethodParameters) {
+            c = a.copy(pool);
+            for (final MethodParameter p : ((MethodParameters) c).getParameters()) {
+                if (p.getNameIndex() != 0) { // Parameter without name
+                    p.setNameIndex(map[p.getNameIndex()]);
+                }
+            }
+        } else if (a instanceof AnnotationDefault) {
+            c = new AnnotationDefault(a.getNameIndex(), a.getLength(),
+                ElementValueGen.copy(((AnnotationDefault) a).getDefaultValue(), cp, true).getElementValue(), pool);
+        } else if (a instanceof org.apache.bcel.classfile.Deprecated || a instanceof Synthetic) {
+            c = a.copy(pool);
+        } else if (strict) {
+            throw new ClassGenException("Constant pool references of attribute " + a.getName() + " are not known");
+        } else {
+            return a;
+        }
+        c.setNameIndex(map[a.getNameIndex()]);
+        c.setConstantPool(pool); // Not all copies take the given pool
+        return c;
     }
 
     /**
@@ -215,6 +284,11 @@ public class MethodGen extends FieldGenOrMethodGen {
     private int maxStack;
     private InstructionList il;
 
+    /**
+     * The method whose code has not been decoded yet, or null.
+     */
+    private Method undecodedMethod;
+
     private boolean stripAttributes;
     private LocalVariableTypeTable localVariableTypeTable;
     private final List<LocalVariableGen> variableList = new ArrayList<>();
@@ -252,8 +326,17 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @param il instruction list associated with this method, may be null only for abstract or native methods
      * @param cp constant pool
      */
-    public MethodGen(final int accessFlags, final Type returnType, final Type[] argTypes, String[] argNames, final String methodName, final String className,
-        final InstructionList il, final ConstantPoolGen cp) {
+    public MethodGen(final int accessFlags, final Type returnType, final Type[] argTypes, final String[] argNames, final String methodName,
+        final String className, final InstructionList il, final ConstantPoolGen cp) {
+        this(accessFlags, returnType, argTypes, argNames, methodName, className, il, cp, null);
+    }
+
+    /**
+     * Declare method, see above. If undecodedMethod is given, il is null and the local variables are declared once the code
+     * of that method is decoded.
+     */
+    private MethodGen(final int accessFlags, final Type returnType, final Type[] argTypes, String[] argNames, final String methodName, final String className,
+        final InstructionList il, final ConstantPoolGen cp, final Method undecodedMethod) {
         super(accessFlags);
         setType(returnType);
         setArgumentTypes(argTypes);
@@ -262,7 +345,8 @@ public class MethodGen extends FieldGenOrMethodGen {
         setClassName(className);
         setInstructionList(il);
         setConstantPool(cp);
-        final boolean abstract_ = isAbstract() || isNative();
+        this.undecodedMethod = undecodedMethod;
+        final boolean abstract_ = isAbstract() || isNative() || undecodedMethod != null;
         InstructionHandle start = null;
         final InstructionHandle end = null;
         if (!abstract_) {
@@ -309,56 +393,38 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @param cp constant pool
      */
     public MethodGen(final Method method, final String className, final ConstantPoolGen cp) {
+        this(method, className, cp, false);
+    }
+
+    /**
+     * Instantiate from existing method. If <code>lazy</code> is true, the byte code is not decoded into an
+     * {@link InstructionList}, together with exception handlers, line numbers and local variables, before any of these are
+     * accessed. If that never happens, {@link #getMethod()} passes the original <code>Code</code> attribute through
+     * unchanged, apart from the maximum stack size and number of local variables.
+     *
+     * @param method method
+     * @param className class name containing this method
+     * @param cp constant pool
+     * @param lazy whether to decode the code on first access only
+     * @since 6.6.1
+     */
+    public MethodGen(final Method method, final String className, final ConstantPoolGen cp, final boolean lazy) {
         this(method.getAccessFlags(), Type.getReturnType(method.getSignature()), Type.getArgumentTypes(method.getSignature()),
             null /* may be overridden anyway */
-            , method.getName(), className,
-            (method.getAccessFlags() & (Const.ACC_ABSTRACT | Const.ACC_NATIVE)) == 0 ? new InstructionList(getByteCodes(method)) : null, cp);
+            , method.getName(), className, !lazy && hasCode(method) ? new InstructionList(getByteCodes(method)) : null, cp,
+            lazy && hasCode(method) ? method : null);
+        if (lazy && hasCode(method)) {
+            getCode(method); // Fail early like the eager case
+        }
         final Attribute[] attributes = method.getAttributes();
         for (final Attribute attribute : attributes) {
-            Attribute a = attribute;
+            final Attribute a = attribute;
             if (a instanceof Code) {
-                final Code c = (Code) a;
-                setMaxStack(c.getMaxStack());
-                setMaxLocals(c.getMaxLocals());
-                final CodeException[] ces = c.getExceptionTable();
-                if (ces != null) {
-                    for (final CodeException ce : ces) {
-                        final int type = ce.getCatchType();
-                        ObjectType cType = null;
-                        if (type > 0) {
-                            final String cen = method.getConstantPool().getConstantString(type, Const.CONSTANT_Class);
-                            cType = ObjectType.getInstance(cen);
-                        }
-                        final int end_pc = ce.getEndPC();
-                        final int length = getByteCodes(method).length;
-                        InstructionHandle end;
-                        if (length == end_pc) { // May happen, because end_pc is exclusive
-                            end = il.getEnd();
-                        } else {
-                            end = il.findHandle(end_pc);
-                            end = end.getPrev(); // Make it inclusive
-                        }
-                        addExceptionHandler(il.findHandle(ce.getStartPC()), end, il.findHandle(ce.getHandlerPC()), cType);
-                    }
-                }
-                final Attribute[] c_attributes = c.getAttributes();
-                for (final Attribute c_attribute : c_attributes) {
-                    a = c_attribute;
-                    if (a instanceof LineNumberTable) {
-                        final LineNumber[] ln = ((LineNumberTable) a).getLineNumberTable();
-                        for (final LineNumber l : ln) {
-                            final InstructionHandle ih = il.findHandle(l.getStartPC());
-                            if (ih != null) {
-                                addLineNumber(ih, l.getLineNumber());
-                            }
-                        }
-                    } else if (a instanceof LocalVariableTable) {
-                        updateLocalVariableTable((LocalVariableTable) a);
-                    } else if (a instanceof LocalVariableTypeTable) {
-                        this.localVariableTypeTable = (LocalVariableTypeTable) a.copy(cp.getConstantPool());
-                    } else {
-                        addCodeAttribute(a);
-                    }
+                if (undecodedMethod != null) {
+                    setMaxStack(((Code) a).getMaxStack());
+                    setMaxLocals(((Code) a).getMaxLocals());
+                } else {
+                    readCode((Code) a, method.getConstantPool());
                 }
             } else if (a instanceof ExceptionTable) {
                 final String[] names = ((ExceptionTable) a).getExceptionNames();
@@ -395,6 +461,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @param a attribute to be added
      */
     public void addCodeAttribute(final Attribute a) {
+        decodeCode();
         codeAttrsList.add(a);
     }
 
@@ -419,6 +486,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      */
     public CodeExceptionGen addExceptionHandler(final InstructionHandle startPc, final InstructionHandle endPc, final InstructionHandle handlerPc,
         final ObjectType catchType) {
+        decodeCode();
         if (startPc == null || endPc == null || handlerPc == null) {
             throw new ClassGenException("Exception handler target is null instruction");
         }
@@ -435,6 +503,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @see LineNumber
      */
     public LineNumberGen addLineNumber(final InstructionHandle ih, final int srcLine) {
+        decodeCode();
         final LineNumberGen l = new LineNumberGen(ih, srcLine);
         lineNumberList.add(l);
         return l;
@@ -483,6 +552,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      */
     public LocalVariableGen addLocalVariable(final String name, final Type type, final int slot, final InstructionHandle start, final InstructionHandle end,
         final int orig_index) {
+        decodeCode();
         final byte t = type.getType();
         if (t != Const.T_ADDRESS) {
             final int add = type.getSize();
@@ -697,11 +767,27 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @return all attributes of this method.
      */
     public Attribute[] getCodeAttributes() {
+        decodeCode();
         final Attribute[] attributes = new Attribute[codeAttrsList.size()];
         codeAttrsList.toArray(attributes);
         return attributes;
     }
 
+    /**
+     * Gets a read-only, array-backed view of the code, which is much smaller than the instruction list for large methods.
+     * If this object was created lazily and its code has not been decoded, the view is built from the original byte code
+     * without decoding it; otherwise it reflects the current instruction list.
+     *
+     * @return the code or null if this method has none
+     * @since 6.6.1
+     */
+    public CompactInstructionList getCompactInstructionList() {
+        if (undecodedMethod != null) {
+            return new CompactInstructionList(getByteCodes(undecodedMethod));
+        }
+        return il == null ? null : new CompactInstructionList(il);
+    }
+
     /**
      * @return code exceptions for `Code' attribute
      */
@@ -719,6 +805,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @return array of declared exception handlers
      */
     public CodeExceptionGen[] getExceptionHandlers() {
+        decodeCode();
         final CodeExceptionGen[] cg = new CodeExceptionGen[exceptionList.size()];
         exceptionList.toArray(cg);
         return cg;
@@ -746,6 +833,7 @@ public class MethodGen extends FieldGenOrMethodGen {
     }
 
     public InstructionList getInstructionList() {
+        decodeCode();
         return il;
     }
 
@@ -753,6 +841,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @return array of line numbers
      */
     public LineNumberGen[] getLineNumbers() {
+        decodeCode();
         final LineNumberGen[] lg = new LineNumberGen[lineNumberList.size()];
         lineNumberList.toArray(lg);
         return lg;
@@ -762,6 +851,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @return `LineNumberTable' attribute of all the local variables of this method.
      */
     public LineNumberTable getLineNumberTable(final ConstantPoolGen cp) {
+        decodeCode();
         final int size = lineNumberList.size();
         final LineNumber[] ln = new LineNumber[size];
         for (int i = 0; i < size; i++) {
@@ -777,6 +867,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @return array of declared local variables sorted by index
      */
     public LocalVariableGen[] getLocalVariables() {
+        decodeCode();
         final int size = variableList.size();
         final LocalVariableGen[] lg = new LocalVariableGen[size];
         variableList.toArray(lg);
@@ -811,6 +902,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * @return `LocalVariableTypeTable' attribute of this method.
      */
     public LocalVariableTypeTable getLocalVariableTypeTable() {
+        decodeCode();
         return localVariableTypeTable;
     }
 
@@ -824,7 +916,8 @@ public class MethodGen extends FieldGenOrMethodGen {
 
     /**
      * Get method object. Never forget to call setMaxStack() or setMaxStack(max), respectively, before calling this method
-     * (the same applies for max locals).
+     * (the same applies for max locals). If this object was created lazily and its code has not been decoded, the original
+     * code is used.
      *
      * @return method object
      */
@@ -860,7 +953,7 @@ public class MethodGen extends FieldGenOrMethodGen {
         if (!lineNumberList.isEmpty() && !stripAttributes) {
             addCodeAttribute(lnt = getLineNumberTable(cp));
         }
-        final Attribute[] codeAttrs = getCodeAttributes();
+        final Attribute[] codeAttrs = codeAttrsList.toArray(Attribute.EMPTY_ATTRIBUTE_ARRAY);
         /*
          * Each attribute causes 6 additional header bytes
          */
@@ -884,6 +977,16 @@ public class MethodGen extends FieldGenOrMethodGen {
                 2 + attrs_len, // attributes
                 maxStack, maxLocals, byteCode, cExc, codeAttrs, cp.getConstantPool());
             addAttribute(code);
+        } else if (undecodedMethod != null) {
+            for (final Attribute a : getAttributes()) {
+                if (a instanceof Code) {
+                    removeAttribute(a);
+                }
+            }
+            code = (Code) getCode(undecodedMethod).copy(cp.getConstantPool());
+            code.setMaxStack(maxStack);
+            code.setMaxLocals(maxLocals);
+            addAttribute(code);
         }
         final Attribute[] annotations = addRuntimeAnnotationsAsAttribute(cp);
         final Attribute[] parameterAnnotations = addRuntimeParameterAnnotationsAsAttribute(cp);
@@ -934,6 +1037,13 @@ public class MethodGen extends FieldGenOrMethodGen {
         return bcelComparator.hashCode(this);
     }
 
+    /**
+     * @return whether this object was created lazily and its code has not been decoded yet
+     */
+    boolean isCodeUndecoded() {
+        return undecodedMethod != null;
+    }
+
     private List<AnnotationEntryGen> makeMutableVersion(final AnnotationEntry[] mutableArray) {
         final List<AnnotationEntryGen> result = new ArrayList<>();
         for (final AnnotationEntry element : mutableArray) {
@@ -946,6 +1056,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove a code attribute.
      */
     public void removeCodeAttribute(final Attribute a) {
+        decodeCode();
         codeAttrsList.remove(a);
     }
 
@@ -953,6 +1064,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove all code attributes.
      */
     public void removeCodeAttributes() {
+        decodeCode();
         localVariableTypeTable = null;
         codeAttrsList.clear();
     }
@@ -968,6 +1080,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove an exception handler.
      */
     public void removeExceptionHandler(final CodeExceptionGen c) {
+        decodeCode();
         exceptionList.remove(c);
     }
 
@@ -975,6 +1088,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove all line numbers.
      */
     public void removeExceptionHandlers() {
+        decodeCode();
         exceptionList.clear();
     }
 
@@ -989,6 +1103,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove a line number.
      */
     public void removeLineNumber(final LineNumberGen l) {
+        decodeCode();
         lineNumberList.remove(l);
     }
 
@@ -996,6 +1111,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove all line numbers.
      */
     public void removeLineNumbers() {
+        decodeCode();
         lineNumberList.clear();
     }
 
@@ -1004,6 +1120,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * argument.
      */
     public void removeLocalVariable(final LocalVariableGen l) {
+        decodeCode();
         l.dispose();
         variableList.remove(l);
     }
@@ -1012,6 +1129,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove all local variables.
      */
     public void removeLocalVariables() {
+        decodeCode();
         for (final LocalVariableGen lv : variableList) {
             lv.dispose();
         }
@@ -1022,6 +1140,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Remove the LocalVariableTypeTable
      */
     public void removeLocalVariableTypeTable() {
+        decodeCode();
         localVariableTypeTable = null;
     }
 
@@ -1030,6 +1149,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * instructions, local variables and exception handlers.
      */
     public void removeNOPs() {
+        decodeCode();
         if (il != null) {
             InstructionHandle next;
             /*
@@ -1073,6 +1193,65 @@ public class MethodGen extends FieldGenOrMethodGen {
         }
     }
 
+    /**
+     * Moves this method to another constant pool, once its constants have been added to that pool, e.g. with
+     * {@link ConstantPoolGen#mergeFrom(ConstantPool)}. The instructions, the annotations and the attributes of the method
+     * and its code are changed to refer to the new pool according to the given map.
+     *
+     * @param cp the constant pool to use from now on
+     * @param map the new index for each index of the current constant pool
+     * @throws ClassGenException if the method has an attribute whose constant pool references are not known, e.g. an
+     *         {@link org.apache.bcel.classfile.Unknown} one
+     * @since 6.6.1
+     */
+    public void replaceConstantPool(final ConstantPoolGen cp, final int[] map) {
+        decodeCode();
+        replaceConstantPool(cp, map, true);
+    }
+
+    /**
+     * Moves this method to another constant pool like {@link #replaceConstantPool(ConstantPoolGen, int[])}. Unless strict,
+     * undecoded code and attributes whose constant pool references are not known are kept as they are, which is only
+     * correct if the map keeps the indices they refer to.
+     */
+    void replaceConstantPool(final ConstantPoolGen cp, final int[] map, final boolean strict) {
+        ensureExistingParameterAnnotationsUnpacked();
+        // Copy the attributes first, so that the method is left unchanged if one of them is not known
+        final Attribute[] attributes = getAttributes();
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = replaceConstantPool(attributes[i], cp, map, strict);
+        }
+        final Attribute[] codeAttributes = codeAttrsList.toArray(Attribute.EMPTY_ATTRIBUTE_ARRAY);
+        for (int i = 0; i < codeAttributes.length; i++) {
+            codeAttributes[i] = replaceConstantPool(codeAttributes[i], cp, map, strict);
+        }
+        final LocalVariableTypeTable typeTable = localVariableTypeTable == null ? null
+            : (LocalVariableTypeTable) replaceConstantPool(localVariableTypeTable, cp, map, strict);
+        if (il != null) {
+            il.replaceConstantPool(map);
+        }
+        removeAttributes();
+        for (final Attribute a : attributes) {
+            addAttribute(a);
+        }
+        codeAttrsList.clear();
+        codeAttrsList.addAll(Arrays.asList(codeAttributes));
+        localVariableTypeTable = typeTable;
+        final AnnotationEntryGen[] annotations = getAnnotationEntries();
+        removeAnnotationEntries();
+        for (final AnnotationEntryGen a : annotations) {
+            addAnnotationEntry(new AnnotationEntryGen(a.getAnnotation(), cp, true));
+        }
+        if (hasParameterAnnotations) {
+            for (final List<AnnotationEntryGen> l : paramAnnotations) {
+                if (l != null) {
+                    l.replaceAll(a -> new AnnotationEntryGen(a.getAnnotation(), cp, true));
+                }
+            }
+        }
+        setConstantPool(cp);
+    }
+
     public void setArgumentName(final int i, final String name) {
         argNames[i] = name;
     }
@@ -1094,14 +1273,18 @@ public class MethodGen extends FieldGenOrMethodGen {
     }
 
     public void setInstructionList(final InstructionList il) { // TODO could be package-protected?
+        decodeCode();
         this.il = il;
     }
 
     /**
-     * Compute maximum number of local variables.
+     * Compute maximum number of local variables. The code of a lazily created object is not decoded for this, it keeps
+     * the maximum of the original code.
      */
     public void setMaxLocals() { // TODO could be package-protected? (some tests would need repackaging)
-        if (il != null) {
+        if (undecodedMethod != null) {
+            maxLocals = getCode(undecodedMethod).getMaxLocals();
+        } else if (il != null) {
             int max = isStatic() ? 0 : 1;
             if (argTypes != null) {
                 for (final Type argType : argTypes) {
@@ -1131,10 +1314,13 @@ public class MethodGen extends FieldGenOrMethodGen {
     }
 
     /**
-     * Computes max. stack size by performing control flow analysis.
+     * Computes max. stack size by performing control flow analysis. The code of a lazily created object is not decoded
+     * for this, it keeps the maximum of the original code.
      */
     public void setMaxStack() { // TODO could be package-protected? (some tests would need repackaging)
-        if (il != null) {
+        if (undecodedMethod != null) {
+            maxStack = getCode(undecodedMethod).getMaxStack();
+        } else if (il != null) {
             maxStack = getMaxStack(super.getConstantPool(), il, getExceptionHandlers());
         } else {
             maxStack = 0;
@@ -1156,6 +1342,7 @@ public class MethodGen extends FieldGenOrMethodGen {
      * Do not/Do produce attributes code attributesLineNumberTable and LocalVariableTable, like javac -O
      */
     public void stripAttributes(final boolean flag) {
+        decodeCode();
         stripAttributes = flag;
     }
 
@@ -1169,7 +1356,8 @@ public class MethodGen extends FieldGenOrMethodGen {
     public final String toString() {
         final String access = Utility.accessToString(super.getAccessFlags());
         String signature = Type.getMethodSignature(super.getType(), argTypes);
-        signature = Utility.methodSignatureToString(signature, super.getName(), access, true, getLocalVariableTable(super.getConstantPool()));
+        final LocalVariableTable lvt = undecodedMethod != null ? undecodedMethod.getLocalVariableTable() : getLocalVariableTable(super.getConstantPool());
+        signature = Utility.methodSignatureToString(signature, super.getName(), access, true, lvt);
         final StringBuilder buf = new StringBuilder(signature);
         for (final Attribute a : getAttributes()) {
             if (!(a instanceof Code || a instanceof ExceptionTable)) {
@@ -1197,6 +1385,84 @@ public class MethodGen extends FieldGenOrMethodGen {
         }
     }
 
+    /**
+     * Creates exception handlers, line numbers, local variables and code attributes from the given Code attribute; the
+     * instruction list must have been created from its byte code.
+     */
+    private void readCode(final Code c, final ConstantPool methodCp) {
+        setMaxStack(c.getMaxStack());
+        setMaxLocals(c.getMaxLocals());
+        final CodeException[] ces = c.getExceptionTable();
+        if (ces != null) {
+            for (final CodeException ce : ces) {
+                final int type = ce.getCatchType();
+                ObjectType cType = null;
+                if (type > 0) {
+                    final String cen = methodCp.getConstantString(type, Const.CONSTANT_Class);
+                    cType = ObjectType.getInstance(cen);
+                }
+                final int end_pc = ce.getEndPC();
+                final int length = c.getCode().length;
+                InstructionHandle end;
+                if (length == end_pc) { // May happen, because end_pc is exclusive
+                    end = il.getEnd();
+                } else {
+                    end = il.findHandle(end_pc);
+                    end = end.getPrev(); // Make it inclusive
+                }
+                addExceptionHandler(il.findHandle(ce.getStartPC()), end, il.findHandle(ce.getHandlerPC()), cType);
+            }
+        }
+        final Attribute[] c_attributes = c.getAttributes();
+        for (final Attribute a : c_attributes) {
+            if (a instanceof LineNumberTable) {
+                final LineNumber[] ln = ((LineNumberTable) a).getLineNumberTable();
+                for (final LineNumber l : ln) {
+                    final InstructionHandle ih = il.findHandle(l.getStartPC());
+                    if (ih != null) {
+                        addLineNumber(ih, l.getLineNumber());
+                    }
+                }
+            } else if (a instanceof LocalVariableTable) {
+                updateLocalVariableTable((LocalVariableTable) a);
+            } else if (a instanceof LocalVariableTypeTable) {
+                this.localVariableTypeTable = (LocalVariableTypeTable) a.copy(super.getConstantPool().getConstantPool());
+            } else {
+                addCodeAttribute(a);
+            }
+        }
+    }
+
+    /**
+     * Decodes the code of the method this object was lazily created from, if that has not happened yet. The implicit
+     * `this' and the arguments are declared as local variables as by the constructor, while the maximum stack size and
+     * number of local variables keep their current values.
+     */
+    private void decodeCode() {
+        if (undecodedMethod == null) {
+            return;
+        }
+        final Method method = undecodedMethod;
+        undecodedMethod = null;
+        final int stack = maxStack;
+        final int locals = maxLocals;
+        il = new InstructionList(getByteCodes(method));
+        final InstructionHandle start = il.getStart();
+        int slot = 0;
+        if (!isStatic() && className != null) {
+            addLocalVariable("this", ObjectType.getInstance(className), slot++, start, null);
+        }
+        if (argTypes != null) {
+            for (int i = 0; i < argTypes.length; i++) {
+                addLocalVariable(argNames[i], argTypes[i], slot, start, null);
+                slot += argTypes[i].getSize();
+            }
+        }
+        readCode(getCode(method), method.getConstantPool());
+        maxStack = stack;
+        maxLocals = locals;
+    }
+
     private void updateLocalVariableTable(final LocalVariableTable a) {
         final LocalVariable[] lv = a.getLocalVariableTable();
         removeLocalVariables();
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.util;
+
+import java.io.InputStream;
+
+/**
+ * Unsynchronized input stream over a range of a byte array. Unlike {@link java.io.ByteArrayInputStream}, none of its
+ * methods are synchronized, as byte code is decoded by one thread at a time. It backs {@link ByteSequence}, which decodes
+ * byte code through it.
+ * <p>
+ * The array is not copied, and indices are relative to the start of the range.
+ * </p>
+ *
+ * @since 6.6.1
+ */
+public final class ByteCursor extends InputStream {
+
+    private final byte[] bytes;
+    private final int start;
+    private final int end;
+    private int index;
+    private int mark;
+
+    /**
+     * Creates a cursor over a whole array.
+     *
+     * @param bytes the bytes to read
+     */
+    public ByteCursor(final byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Creates a cursor over a range of an array.
+     *
+     * @param bytes the bytes to read
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    public ByteCursor(final byte[] bytes, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + bytes.length);
+        }
+        this.bytes = bytes;
+        this.start = offset;
+        this.end = offset + length;
+        this.index = offset;
+        this.mark = offset;
+    }
+
+    @Override
+    public int available() {
+        return end - index;
+    }
+
+    /**
+     * @return the index of the next byte to read
+     */
+    public int getIndex() {
+        return index - start;
+    }
+
+    /**
+     * Remembers the current index for {@link #reset()}.
+     *
+     * @param readLimit ignored, as all bytes stay available
+     */
+    @Override
+    public void mark(final int readLimit) {
+        mark = index;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public int read() {
+        return index < end ? bytes[index++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (index >= end) {
+            return -1;
+        }
+        final int count = Math.min(len, end - index);
+        System.arraycopy(bytes, index, b, off, count);
+        index += count;
+        return count;
+    }
+
+    /**
+     * Goes back to the index remembered by {@link #mark(int)}, or to the start if none has been remembered.
+     */
+    @Override
+    public void reset() {
+        index = mark;
+    }
+
+    @Override
+    public long skip(final long n) {
+        final int count = (int) Math.max(0, Math.min(n, end - index));
+        index += count;
+        return count;
+    }
+
+    void unreadByte() {
+        if (index > start) {
+            index--;
+        }
+    }
+}
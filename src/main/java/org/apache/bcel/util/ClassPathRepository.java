@@ -17,8 +17,8 @@
  */
 package org.apache.bcel.util;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.bcel.classfile.JavaClass;
 
@@ -31,7 +31,7 @@ import org.apache.bcel.classfile.JavaClass;
  */
 public class ClassPathRepository extends AbstractClassPathRepository {
 
-    private final Map<String, JavaClass> loadedClasses = new HashMap<>(); // CLASSNAME X JAVACLASS
+    private final Map<String, JavaClass> loadedClasses = new ConcurrentHashMap<>(); // CLASSNAME X JAVACLASS
 
     public ClassPathRepository(final ClassPath classPath) {
         super(classPath);
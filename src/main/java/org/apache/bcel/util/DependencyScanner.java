@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.classfile.ClassFileReader;
+import org.apache.bcel.classfile.ClassFileVisitor;
+import org.apache.bcel.classfile.ClassFormatException;
+
+/**
+ * Finds the classes a class depends on without parsing it into a {@link org.apache.bcel.classfile.JavaClass}. The
+ * dependencies are read with a {@link ClassFileReader} from
+ * <ul>
+ * <li>the class constants, which cover super types, thrown and caught exceptions, nest members and all classes whose
+ * members the code uses;</li>
+ * <li>the descriptors of fields and methods, both of the class and of the members it refers to, and of method
+ * types;</li>
+ * <li>the generic signatures of the class, its fields and its methods.</li>
+ * </ul>
+ * Code and other attributes are skipped, so classes only mentioned in annotations or debug information are not found.
+ * Array types contribute their element class. Names are fully qualified, with '$' separating nested classes, e.g.
+ * {@code java.util.Map$Entry}.
+ * <p>
+ * {@link #scan(Predicate, String...)} expands the dependencies breadth first over a {@link ClassPath}, reading the
+ * classes of each level in parallel.
+ * </p>
+ *
+ * @since 6.6.1
+ */
+public final class DependencyScanner {
+
+    /**
+     * Collects the dependencies of one class.
+     */
+    private static final class Collector extends ClassFileVisitor {
+
+        private final ClassFileReader reader;
+        private final Set<String> names = new TreeSet<>();
+        private int classIndex;
+
+        Collector(final ClassFileReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void visitAttribute(final int nameIndex, final int length) {
+            if ("Signature".equals(reader.getUtf8(nameIndex))) {
+                addSignatureTypes(reader.getUtf8(reader.getAttributeContents().getChar(0)), names);
+            }
+        }
+
+        @Override
+        public void visitClass(final int major, final int minor, final int accessFlags, final int classIndex, final int superclassIndex,
+            final int[] interfaceIndices) {
+            this.classIndex = classIndex;
+        }
+
+        @Override
+        public void visitConstant(final int index, final byte tag) {
+            switch (tag) {
+            case Const.CONSTANT_Class: {
+                final String name = reader.getClassName(index);
+                if (name.charAt(0) == '[') {
+                    addSignatureTypes(name, names); // Array classes are named by their descriptor
+                } else {
+                    names.add(name.replace('/', '.'));
+                }
+                break;
+            }
+            case Const.CONSTANT_NameAndType:
+                addSignatureTypes(reader.getUtf8(reader.getReferencedIndex(index, 1)), names);
+                break;
+            case Const.CONSTANT_MethodType:
+                addSignatureTypes(reader.getUtf8(reader.getReferencedIndex(index, 0)), names);
+                break;
+            default:
+                break;
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            names.remove(reader.getClassName(classIndex).replace('/', '.'));
+        }
+
+        @Override
+        public boolean visitField(final int accessFlags, final int nameIndex, final int signatureIndex) {
+            addSignatureTypes(reader.getUtf8(signatureIndex), names);
+            return true;
+        }
+
+        @Override
+        public boolean visitMethod(final int accessFlags, final int nameIndex, final int signatureIndex) {
+            addSignatureTypes(reader.getUtf8(signatureIndex), names);
+            return true;
+        }
+    }
+
+    /**
+     * Adds the classes named in a descriptor or generic signature, e.g. {@code <T:Ljava/lang/Object;>(Ljava/util/List<TT;>;)V}.
+     *
+     * @param signature a field or method descriptor, or a class, field or method signature
+     * @param names receives fully qualified class names
+     * @throws ClassFormatException if the signature is malformed
+     */
+    static void addSignatureTypes(final String signature, final Set<String> names) {
+        try {
+            int i = 0;
+            if (signature.charAt(0) == '<') {
+                i = typeParameters(signature, 1, names);
+            }
+            while (i < signature.length()) {
+                switch (signature.charAt(i)) {
+                case '(':
+                case ')':
+                case '^':
+                    i++;
+                    break;
+                default:
+                    i = type(signature, i, names);
+                    break;
+                }
+            }
+        } catch (final StringIndexOutOfBoundsException e) {
+            throw new ClassFormatException("Malformed signature: " + signature, e);
+        }
+    }
+
+    /**
+     * Reads a class type signature starting with 'L'.
+     *
+     * @return the index following the terminating ';'
+     */
+    private static int classType(final String signature, final int start, final Set<String> names) {
+        final StringBuilder name = new StringBuilder();
+        int i = start + 1;
+        while (true) {
+            final char c = signature.charAt(i);
+            switch (c) {
+            case ';':
+                names.add(name.toString());
+                return i + 1;
+            case '<':
+                i = typeArguments(signature, i + 1, names);
+                break;
+            case '.':
+                // Nested class of a parameterized type
+                names.add(name.toString());
+                name.append('$');
+                i++;
+                break;
+            case '/':
+                name.append('.');
+                i++;
+                break;
+            default:
+                name.append(c);
+                i++;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Dependencies of one class.
+     *
+     * @param classFile the bytes of a class file
+     * @return the fully qualified names of the classes the class refers to, sorted, without the class itself
+     * @throws ClassFormatException if the class file is malformed
+     */
+    public static Set<String> getDependencies(final byte[] classFile) {
+        final ClassFileReader reader = new ClassFileReader(classFile);
+        final Collector collector = new Collector(reader);
+        reader.accept(collector);
+        return collector.names;
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a field, array or type variable signature, or a primitive type or void.
+     *
+     * @return the index following the type
+     */
+    private static int type(final String signature, final int start, final Set<String> names) {
+        int i = start;
+        while (signature.charAt(i) == '[') {
+            i++;
+        }
+        switch (signature.charAt(i)) {
+        case 'L':
+            return classType(signature, i, names);
+        case 'T':
+            return signature.indexOf(';', i) + 1;
+        default:
+            return i + 1;
+        }
+    }
+
+    private static int typeArguments(final String signature, final int start, final Set<String> names) {
+        int i = start;
+        while (signature.charAt(i) != '>') {
+            switch (signature.charAt(i)) {
+            case '*':
+                i++;
+                break;
+            case '+':
+            case '-':
+                i = type(signature, i + 1, names);
+                break;
+            default:
+                i = type(signature, i, names);
+                break;
+            }
+        }
+        return i + 1;
+    }
+
+    private static int typeParameters(final String signature, final int start, final Set<String> names) {
+        int i = start;
+        while (signature.charAt(i) != '>') {
+            i = signature.indexOf(':', i); // Skip the identifier
+            // The class bound may be empty, interface bounds follow with another ':'
+            while (signature.charAt(i) == ':') {
+                i++;
+                if (signature.charAt(i) != ':' && signature.charAt(i) != '>') {
+                    i = type(signature, i, names);
+                }
+            }
+        }
+        return i + 1;
+    }
+
+    private final ClassPath classPath;
+
+    private final int threads;
+
+    /**
+     * @param classPath the class path to look up classes
+     * @param threads the number of classes to read concurrently
+     */
+    public DependencyScanner(final ClassPath classPath, final int threads) {
+        this.classPath = classPath;
+        this.threads = Math.max(1, threads);
+    }
+
+    private Set<String> read(final String className) throws IOException {
+        final byte[] bytes;
+        try (InputStream in = classPath.getInputStream(className)) {
+            bytes = readFully(in);
+        } catch (final IOException e) {
+            return null; // Not on the class path
+        }
+        try {
+            return getDependencies(bytes);
+        } catch (final ClassFormatException e) {
+            throw new IOException("Malformed class file of " + className + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Computes the dependencies of the given classes and, breadth first, of the dependencies accepted by the predicate.
+     * All classes of one level are read in parallel. Every class is read once, however often it is referenced.
+     *
+     * @param include decides by fully qualified name whether the dependencies of a referenced class are computed too,
+     *        e.g. {@code name -> !name.startsWith("java.")}. The given classes are always included.
+     * @param classNames the fully qualified names of the classes to start with
+     * @return the dependencies of each class found on the class path, keyed and sorted by class name; the classes that
+     *         were included but could not be found are missing from the keys
+     * @throws IOException if a class file is malformed, or the scan was interrupted
+     */
+    public Map<String, Set<String>> scan(final Predicate<String> include, final String... classNames) throws IOException {
+        final Map<String, Set<String>> result = new TreeMap<>();
+        final Set<String> seen = new HashSet<>();
+        List<String> level = new ArrayList<>();
+        for (final String className : classNames) {
+            if (seen.add(className)) {
+                level.add(className);
+            }
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            while (!level.isEmpty()) {
+                final List<Future<Set<String>>> futures = new ArrayList<>(level.size());
+                for (final String className : level) {
+                    futures.add(executor.submit(() -> read(className)));
+                }
+                final List<String> next = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    final Set<String> dependencies;
+                    try {
+                        dependencies = futures.get(i).get();
+                    } catch (final ExecutionException e) {
+                        throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while scanning " + level.get(i));
+                    }
+                    if (dependencies == null) {
+                        continue;
+                    }
+                    result.put(level.get(i), Collections.unmodifiableSet(dependencies));
+                    for (final String dependency : dependencies) {
+                        if (include.test(dependency) && seen.add(dependency)) {
+                            next.add(dependency);
+                        }
+                    }
+                }
+                level = next;
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
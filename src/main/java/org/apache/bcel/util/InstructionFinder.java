@@ -59,6 +59,7 @@ import org.apache.bcel.generic.InstructionList;
  *
  * @see org.apache.bcel.generic.Instruction
  * @see InstructionList
+ * @see InstructionMatcher
  */
 public class InstructionFinder {
 
@@ -196,6 +197,25 @@ public class InstructionFinder {
         return buf.toString();
     }
 
+    /**
+     * Gets the opcodes an instruction name or alias of the pattern language stands for.
+     *
+     * @param name symbolic name, where case is ignored
+     * @return flags indexed by opcode
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    static boolean[] getOpcodes(final String name) {
+        final String chars = mapName(name.toLowerCase(Locale.ENGLISH));
+        final boolean[] opcodes = new boolean[NO_OPCODES];
+        for (int i = 0; i < chars.length(); i++) {
+            final char ch = chars.charAt(i);
+            if (ch >= OFFSET) {
+                opcodes[ch - OFFSET] = true;
+            }
+        }
+        return opcodes;
+    }
+
     /**
      * Convert opcode number to char.
      */
@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.generic.CompactInstructionList;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+
+/**
+ * Finds instruction patterns like {@link InstructionFinder} does, but compiles them into a deterministic automaton over
+ * opcodes once, which then searches code without encoding it as a string or backtracking. Several patterns are searched
+ * together. A matcher is immutable and may be shared between threads.
+ * <p>
+ * The automaton is run from each instruction where a pattern may still start a match, until no such pattern can match
+ * any more. Instructions inside earlier matches of all patterns are skipped, so a run of instructions matched by
+ * {@code "(ALOAD|ILOAD)+"} is read once. A pattern that fails only after a long run of instructions, however, reads
+ * the run again from each of its instructions, which takes time proportional to the square of its length.
+ * </p>
+ * <p>
+ * The patterns use the instruction names and aliases of {@link InstructionFinder#search(String, InstructionHandle,
+ * InstructionFinder.CodeConstraint)} with grouping by parentheses, alternation by {@code |} and the quantifiers
+ * {@code *}, {@code +} and {@code ?}. Other regular expression constructs are not supported.
+ * </p>
+ * <p>
+ * At each instruction, the longest match of each pattern starting there is reported, unless it overlaps with the
+ * previous match of the same pattern, so each pattern yields a sequence of non-overlapping matches like
+ * {@link InstructionFinder} does. Unlike regular expressions, alternatives are not tried in order, so a pattern such as
+ * {@code "(ILOAD|ILOAD IADD)"} matches both instructions where they occur. Empty matches are not reported.
+ * </p>
+ *
+ * <pre>
+ * InstructionMatcher matcher = InstructionMatcher.compile("IfInstruction ICONST_0 GOTO ICONST_1", "ILOAD ISTORE");
+ * InstructionListBatch batch = il.batch();
+ * matcher.search(il, (pattern, first, last) -&gt; ...);
+ * batch.commit();
+ * </pre>
+ *
+ * @see InstructionFinder
+ * @since 6.6.1
+ */
+public final class InstructionMatcher {
+
+    /**
+     * Receives the matches found in a {@link CompactInstructionList} or byte code.
+     */
+    @FunctionalInterface
+    public interface IndexMatchConsumer {
+
+        /**
+         * @param pattern the index of the pattern that matched
+         * @param start the index of the first instruction of the match
+         * @param end the index after the last instruction of the match
+         */
+        void found(int pattern, int start, int end);
+    }
+
+    /**
+     * Receives the matches found in an {@link InstructionList}. The list must not be modified before the search is
+     * complete; edits can be recorded in an {@link org.apache.bcel.generic.InstructionListBatch} and committed afterwards.
+     */
+    @FunctionalInterface
+    public interface HandleMatchConsumer {
+
+        /**
+         * @param pattern the index of the pattern that matched
+         * @param first the first instruction of the match
+         * @param last the last instruction of the match
+         */
+        void found(int pattern, InstructionHandle first, InstructionHandle last);
+    }
+
+    /**
+     * Nondeterministic automaton built from the patterns, see {@link #compile(String...)}.
+     */
+    private static final class Nfa {
+
+        /** Opcodes of the transition of each state, or null if it has only epsilon transitions. */
+        private final List<boolean[]> symbols = new ArrayList<>();
+        private final List<Integer> targets = new ArrayList<>();
+        private final List<List<Integer>> epsilons = new ArrayList<>();
+        /** The pattern each state accepts, or -1. */
+        private final List<Integer> accepts = new ArrayList<>();
+
+        void epsilon(final int from, final int to) {
+            epsilons.get(from).add(to);
+        }
+
+        int newState() {
+            symbols.add(null);
+            targets.add(-1);
+            epsilons.add(new ArrayList<>(2));
+            accepts.add(-1);
+            return symbols.size() - 1;
+        }
+
+        /**
+         * Adds the epsilon closure of the given state to the set.
+         */
+        void closure(final int state, final BitSet set) {
+            if (!set.get(state)) {
+                set.set(state);
+                for (final int next : epsilons.get(state)) {
+                    closure(next, set);
+                }
+            }
+        }
+
+        int size() {
+            return symbols.size();
+        }
+    }
+
+    /**
+     * Parses one pattern into the automaton.
+     */
+    private static final class Parser {
+
+        private final String pattern;
+        private final Nfa nfa;
+        private int pos;
+
+        Parser(final String pattern, final Nfa nfa) {
+            this.pattern = pattern;
+            this.nfa = nfa;
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at index " + pos + " of pattern: " + pattern);
+        }
+
+        /**
+         * @return the start and end state of the alternatives at the current position
+         */
+        int[] parseAlternatives() {
+            int[] fragment = parseSequence();
+            if (peek() == '|') {
+                final int start = nfa.newState();
+                final int end = nfa.newState();
+                nfa.epsilon(start, fragment[0]);
+                nfa.epsilon(fragment[1], end);
+                while (peek() == '|') {
+                    pos++;
+                    fragment = parseSequence();
+                    nfa.epsilon(start, fragment[0]);
+                    nfa.epsilon(fragment[1], end);
+                }
+                return new int[] {start, end};
+            }
+            return fragment;
+        }
+
+        private int[] parseAtom() {
+            final char ch = peek();
+            if (ch == '(') {
+                pos++;
+                final int[] fragment = parseAlternatives();
+                if (peek() != ')') {
+                    throw error("Missing )");
+                }
+                pos++;
+                return fragment;
+            }
+            if (!Character.isLetterOrDigit(ch)) {
+                throw error("Unsupported character '" + ch + "'");
+            }
+            final int begin = pos;
+            while (pos < pattern.length() && (Character.isLetterOrDigit(pattern.charAt(pos)) || pattern.charAt(pos) == '_')) {
+                pos++;
+            }
+            final int start = nfa.newState();
+            final int end = nfa.newState();
+            nfa.symbols.set(start, InstructionFinder.getOpcodes(pattern.substring(begin, pos)));
+            nfa.targets.set(start, end);
+            return new int[] {start, end};
+        }
+
+        private int[] parseSequence() {
+            final int start = nfa.newState();
+            int end = start;
+            for (char ch = peek(); ch != 0 && ch != '|' && ch != ')'; ch = peek()) {
+                int[] fragment = parseAtom();
+                for (char q = peek(); q == '*' || q == '+' || q == '?'; q = peek()) {
+                    pos++;
+                    fragment = quantify(fragment, q);
+                }
+                nfa.epsilon(end, fragment[0]);
+                end = fragment[1];
+            }
+            return new int[] {start, end};
+        }
+
+        /**
+         * @return the next character that is not white space, or 0 at the end of the pattern
+         */
+        private char peek() {
+            while (pos < pattern.length() && Character.isWhitespace(pattern.charAt(pos))) {
+                pos++;
+            }
+            return pos < pattern.length() ? pattern.charAt(pos) : 0;
+        }
+
+        private int[] quantify(final int[] fragment, final char quantifier) {
+            final int start = nfa.newState();
+            final int end = nfa.newState();
+            nfa.epsilon(start, fragment[0]);
+            nfa.epsilon(fragment[1], end);
+            if (quantifier != '+') {
+                nfa.epsilon(start, end);
+            }
+            if (quantifier != '?') {
+                nfa.epsilon(fragment[1], fragment[0]);
+            }
+            return new int[] {start, end};
+        }
+    }
+
+    private static final int[] NO_PATTERNS = {};
+
+    /**
+     * Compiles patterns into a matcher.
+     *
+     * @param patterns the instruction patterns, where case is ignored
+     * @return the matcher, which reports matches with the index of the pattern in the given array
+     * @throws IllegalArgumentException if a pattern is malformed or uses an unknown instruction name
+     */
+    public static InstructionMatcher compile(final String... patterns) {
+        final Nfa nfa = new Nfa();
+        final int start = nfa.newState();
+        for (int p = 0; p < patterns.length; p++) {
+            final Parser parser = new Parser(patterns[p], nfa);
+            final int[] fragment = parser.parseAlternatives();
+            if (parser.peek() != 0) {
+                throw parser.error("Unbalanced )");
+            }
+            nfa.epsilon(start, fragment[0]);
+            nfa.accepts.set(fragment[1], p);
+        }
+        return new InstructionMatcher(patterns, nfa, start);
+    }
+
+    /**
+     * Finds the patterns that may start a match at an instruction, as it follows their previous matches.
+     *
+     * @param next the index after the previous match of each pattern
+     * @param start the index of the instruction
+     * @param usable receives the patterns
+     * @return whether there are any
+     */
+    private static boolean usable(final int[] next, final int start, final BitSet usable) {
+        usable.clear();
+        for (int p = 0; p < next.length; p++) {
+            if (next[p] <= start) {
+                usable.set(p);
+            }
+        }
+        return !usable.isEmpty();
+    }
+
+    private final String[] patterns;
+
+    /** Equivalence class of each opcode; opcodes of a class cause the same transitions. */
+    private final int[] classes = new int[256];
+
+    /** Next state by state and opcode class, -1 if no pattern can match any more. The start state is 0. */
+    private final int[][] transitions;
+
+    /** Patterns that match when reaching each state, in ascending order. */
+    private final int[][] accepts;
+
+    /** Patterns that can still match from each state. */
+    private final BitSet[] live;
+
+    private InstructionMatcher(final String[] patterns, final Nfa nfa, final int start) {
+        this.patterns = patterns.clone();
+        // Partition the opcodes by the transitions they take part in
+        final Map<BitSet, Integer> signatures = new HashMap<>();
+        for (int opcode = 0; opcode < classes.length; opcode++) {
+            final BitSet signature = new BitSet();
+            for (int s = 0; s < nfa.size(); s++) {
+                final boolean[] symbols = nfa.symbols.get(s);
+                if (symbols != null && symbols[opcode]) {
+                    signature.set(s);
+                }
+            }
+            final Integer known = signatures.putIfAbsent(signature, signatures.size());
+            classes[opcode] = known != null ? known.intValue() : signatures.size() - 1;
+        }
+        final int[] representatives = new int[signatures.size()];
+        for (int opcode = classes.length - 1; opcode >= 0; opcode--) {
+            representatives[classes[opcode]] = opcode;
+        }
+        // Subset construction
+        final List<BitSet> states = new ArrayList<>();
+        final Map<BitSet, Integer> ids = new HashMap<>();
+        final List<int[]> rows = new ArrayList<>();
+        final BitSet initial = new BitSet();
+        nfa.closure(start, initial);
+        states.add(initial);
+        ids.put(initial, 0);
+        for (int d = 0; d < states.size(); d++) {
+            final BitSet state = states.get(d);
+            final int[] row = new int[representatives.length];
+            for (int c = 0; c < representatives.length; c++) {
+                final BitSet next = new BitSet();
+                for (int s = state.nextSetBit(0); s >= 0; s = state.nextSetBit(s + 1)) {
+                    final boolean[] symbols = nfa.symbols.get(s);
+                    if (symbols != null && symbols[representatives[c]]) {
+                        nfa.closure(nfa.targets.get(s), next);
+                    }
+                }
+                if (next.isEmpty()) {
+                    row[c] = -1;
+                } else {
+                    Integer id = ids.get(next);
+                    if (id == null) {
+                        id = states.size();
+                        states.add(next);
+                        ids.put(next, id);
+                    }
+                    row[c] = id.intValue();
+                }
+            }
+            rows.add(row);
+        }
+        transitions = rows.toArray(new int[rows.size()][]);
+        accepts = new int[states.size()][];
+        for (int d = 0; d < accepts.length; d++) {
+            final BitSet state = states.get(d);
+            final BitSet accepted = new BitSet();
+            for (int s = state.nextSetBit(0); s >= 0; s = state.nextSetBit(s + 1)) {
+                if (nfa.accepts.get(s) >= 0) {
+                    accepted.set(nfa.accepts.get(s));
+                }
+            }
+            accepts[d] = accepted.isEmpty() ? NO_PATTERNS : accepted.stream().toArray();
+        }
+        live = new BitSet[states.size()];
+        for (int d = 0; d < live.length; d++) {
+            live[d] = new BitSet();
+            for (final int p : accepts[d]) {
+                live[d].set(p);
+            }
+        }
+        for (boolean changed = true; changed;) {
+            changed = false;
+            for (int d = 0; d < live.length; d++) {
+                final int cardinality = live[d].cardinality();
+                for (final int target : transitions[d]) {
+                    if (target >= 0) {
+                        live[d].or(live[target]);
+                    }
+                }
+                changed |= live[d].cardinality() != cardinality;
+            }
+        }
+    }
+
+    /**
+     * @param index the index of a pattern
+     * @return the pattern as given to {@link #compile(String...)}
+     */
+    public String getPattern(final int index) {
+        return patterns[index];
+    }
+
+    /**
+     * @return the number of patterns
+     */
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    /**
+     * @return the number of states of the automaton
+     */
+    int getStateCount() {
+        return transitions.length;
+    }
+
+    /**
+     * Searches byte code for all patterns.
+     *
+     * @param code the byte code of a method
+     * @param consumer receives the matches in the order of their start, and of the patterns for the same start, where
+     *        indices are those of the instructions in the code
+     * @throws org.apache.bcel.generic.ClassGenException if the code is malformed
+     */
+    public void search(final byte[] code, final IndexMatchConsumer consumer) {
+        search(new CompactInstructionList(code), consumer);
+    }
+
+    /**
+     * Searches code for all patterns.
+     *
+     * @param code the code to search
+     * @param consumer receives the matches in the order of their start, and of the patterns for the same start
+     */
+    public void search(final CompactInstructionList code, final IndexMatchConsumer consumer) {
+        final int size = code.size();
+        final int[] ends = new int[patterns.length];
+        final int[] next = new int[patterns.length];
+        final BitSet usable = new BitSet(patterns.length);
+        for (int start = 0; start < size; start++) {
+            if (!usable(next, start, usable)) {
+                continue;
+            }
+            boolean found = false;
+            int state = 0;
+            for (int i = start; i < size; i++) {
+                state = transitions[state][classes[code.getOpcode(i)]];
+                if (state < 0 || !live[state].intersects(usable)) {
+                    break;
+                }
+                for (final int p : accepts[state]) {
+                    ends[p] = i + 1;
+                    found = true;
+                }
+            }
+            if (found) {
+                for (int p = 0; p < ends.length; p++) {
+                    if (ends[p] > start) {
+                        if (start >= next[p]) {
+                            consumer.found(p, start, ends[p]);
+                            next[p] = ends[p];
+                        }
+                        ends[p] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches an instruction list for all patterns.
+     *
+     * @param il the list to search, which must not be modified during the search
+     * @param consumer receives the matches in the order of their start, and of the patterns for the same start
+     */
+    public void search(final InstructionList il, final HandleMatchConsumer consumer) {
+        final int[] ends = new int[patterns.length];
+        final InstructionHandle[] lasts = new InstructionHandle[patterns.length];
+        final int[] next = new int[patterns.length];
+        final BitSet usable = new BitSet(patterns.length);
+        int start = 0;
+        for (InstructionHandle first = il.getStart(); first != null; first = first.getNext(), start++) {
+            if (!usable(next, start, usable)) {
+                continue;
+            }
+            boolean found = false;
+            int state = 0;
+            int i = start;
+            for (InstructionHandle ih = first; ih != null; ih = ih.getNext(), i++) {
+                state = transitions[state][classes[ih.getInstruction().getOpcode()]];
+                if (state < 0 || !live[state].intersects(usable)) {
+                    break;
+                }
+                for (final int p : accepts[state]) {
+                    ends[p] = i + 1;
+                    lasts[p] = ih;
+                    found = true;
+                }
+            }
+            if (found) {
+                for (int p = 0; p < ends.length; p++) {
+                    if (ends[p] > start) {
+                        if (start >= next[p]) {
+                            consumer.found(p, first, lasts[p]);
+                            next[p] = ends[p];
+                        }
+                        ends[p] = 0;
+                        lasts[p] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InstructionMatcher" + Arrays.toString(patterns);
+    }
+}
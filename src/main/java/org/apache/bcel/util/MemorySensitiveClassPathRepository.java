@@ -18,8 +18,8 @@
 package org.apache.bcel.util;
 
 import java.lang.ref.SoftReference;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.bcel.classfile.JavaClass;
 
@@ -33,7 +33,7 @@ import org.apache.bcel.classfile.JavaClass;
  */
 public class MemorySensitiveClassPathRepository extends AbstractClassPathRepository {
 
-    private final Map<String, SoftReference<JavaClass>> loadedClasses = new HashMap<>(); // CLASSNAME X JAVACLASS
+    private final Map<String, SoftReference<JavaClass>> loadedClasses = new ConcurrentHashMap<>(); // CLASSNAME X JAVACLASS
 
     public MemorySensitiveClassPathRepository(final ClassPath path) {
         super(path);
@@ -0,0 +1,691 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.classfile.ClassFileReader;
+import org.apache.bcel.classfile.ClassFileVisitor;
+import org.apache.bcel.classfile.ClassFormatException;
+
+/**
+ * Moves classes from one package to another, as done when shading dependencies into an application. Only the UTF-8
+ * constants that name classes in relocated packages are rewritten: class names, the descriptors of members, record
+ * components, member references, method types, annotations and type annotations, generic signatures, the types of
+ * local variables and, optionally, string constants and the string values of annotations. All other bytes of a class
+ * file are copied as they are, so a class is neither parsed into a {@link org.apache.bcel.classfile.JavaClass} nor
+ * dumped again.
+ * <p>
+ * Packages are relocated with their sub packages; of nested relocated packages the longest one applies. The constants
+ * of module descriptors are not relocated.
+ * </p>
+ *
+ * @since 6.6.1
+ */
+public final class PackageRelocator {
+
+    /**
+     * Finds the UTF-8 constants of a class that hold class names, descriptors, signatures and strings, and the offsets
+     * of the annotation string values that refer to them.
+     */
+    private static final class Roles extends ClassFileVisitor {
+
+        private final ClassFileReader reader;
+        private final byte[] roles;
+        private final List<Integer> stringOffsets = new ArrayList<>();
+        /** Offset of the contents of the attribute being visited, to which buffer positions are relative. */
+        private int contentsOffset;
+
+        Roles(final ClassFileReader reader) {
+            this.reader = reader;
+            this.roles = new byte[reader.getConstantCount()];
+        }
+
+        private void annotation(final ByteBuffer contents) {
+            roles[contents.getChar()] |= DESCRIPTOR;
+            for (int pairs = contents.getChar(); pairs > 0; pairs--) {
+                contents.getChar(); // Element name
+                elementValue(contents);
+            }
+        }
+
+        private void annotations(final ByteBuffer contents) {
+            for (int count = contents.getChar(); count > 0; count--) {
+                annotation(contents);
+            }
+        }
+
+        /**
+         * Finds the roles of the constants an attribute refers to, including those of the attributes nested in record
+         * components.
+         *
+         * @param contents the contents of the attribute, positioned at their start
+         */
+        private void attribute(final String name, final ByteBuffer contents) {
+            switch (name) {
+            case "Signature":
+                roles[contents.getChar()] |= DESCRIPTOR;
+                break;
+            case "LocalVariableTable":
+            case "LocalVariableTypeTable":
+                for (int count = contents.getChar(); count > 0; count--) {
+                    skip(contents, 6); // Start, length and name
+                    roles[contents.getChar()] |= DESCRIPTOR;
+                    contents.getChar(); // Local variable index
+                }
+                break;
+            case "RuntimeVisibleAnnotations":
+            case "RuntimeInvisibleAnnotations":
+                annotations(contents);
+                break;
+            case "RuntimeVisibleParameterAnnotations":
+            case "RuntimeInvisibleParameterAnnotations":
+                for (int count = contents.get() & 0xff; count > 0; count--) {
+                    annotations(contents);
+                }
+                break;
+            case "RuntimeVisibleTypeAnnotations":
+            case "RuntimeInvisibleTypeAnnotations":
+                for (int count = contents.getChar(); count > 0; count--) {
+                    typeAnnotation(contents);
+                }
+                break;
+            case "AnnotationDefault":
+                elementValue(contents);
+                break;
+            case "Record":
+                for (int count = contents.getChar(); count > 0; count--) {
+                    contents.getChar(); // Name
+                    roles[contents.getChar()] |= DESCRIPTOR;
+                    for (int attributes = contents.getChar(); attributes > 0; attributes--) {
+                        final String nested = reader.getUtf8(contents.getChar());
+                        final int length = contents.getInt();
+                        final ByteBuffer nestedContents = contents.duplicate();
+                        nestedContents.limit(contents.position() + length);
+                        attribute(nested, nestedContents);
+                        skip(contents, length);
+                    }
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        private void elementValue(final ByteBuffer contents) {
+            switch (contents.get()) {
+            case '@':
+                annotation(contents);
+                break;
+            case '[':
+                for (int count = contents.getChar(); count > 0; count--) {
+                    elementValue(contents);
+                }
+                break;
+            case 'c':
+                roles[contents.getChar()] |= DESCRIPTOR;
+                break;
+            case 'e':
+                roles[contents.getChar()] |= DESCRIPTOR;
+                contents.getChar(); // Constant name
+                break;
+            case 's':
+                // Refers to the UTF-8 constant directly, which may have to point to an appended one
+                stringOffsets.add(contentsOffset + contents.position());
+                roles[contents.getChar()] |= STRING;
+                break;
+            default:
+                contents.getChar(); // Constant value, which is not a UTF-8 constant
+                break;
+            }
+        }
+
+        private static void skip(final ByteBuffer contents, final int count) {
+            contents.position(contents.position() + count);
+        }
+
+        private void typeAnnotation(final ByteBuffer contents) {
+            final int targetType = contents.get() & 0xff;
+            switch (targetType) {
+            case 0x00: // Type parameters
+            case 0x01:
+            case 0x16: // Formal parameters
+                contents.get();
+                break;
+            case 0x10: // Super types
+            case 0x11: // Type parameter bounds
+            case 0x12:
+            case 0x17: // Throws
+            case 0x42: // Catch
+            case 0x43: // Offsets of instanceof, new and method references
+            case 0x44:
+            case 0x45:
+            case 0x46:
+                contents.getChar();
+                break;
+            case 0x13: // Fields, return and receiver types
+            case 0x14:
+            case 0x15:
+                break;
+            case 0x40: // Local variables
+            case 0x41:
+                skip(contents, 6 * contents.getChar());
+                break;
+            case 0x47: // Type arguments of casts, constructor and method calls and references
+            case 0x48:
+            case 0x49:
+            case 0x4A:
+            case 0x4B:
+                contents.getChar();
+                contents.get();
+                break;
+            default:
+                throw new ClassFormatException("Unknown type annotation target type " + targetType);
+            }
+            skip(contents, 2 * (contents.get() & 0xff)); // Type path
+            annotation(contents);
+        }
+
+        @Override
+        public void visitAttribute(final int nameIndex, final int length) {
+            final String name = reader.getUtf8(nameIndex);
+            contentsOffset = reader.getAttributeOffset() + 6;
+            try {
+                attribute(name, reader.getAttributeContents());
+            } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new ClassFormatException("Malformed " + name + " attribute", e);
+            }
+        }
+
+        @Override
+        public boolean visitCode(final int maxStack, final int maxLocals, final int codeLength) {
+            return true; // For the local variable tables
+        }
+
+        @Override
+        public void visitConstant(final int index, final byte tag) {
+            switch (tag) {
+            case Const.CONSTANT_Class:
+                roles[reader.getReferencedIndex(index, 0)] |= CLASS;
+                break;
+            case Const.CONSTANT_NameAndType:
+                roles[reader.getReferencedIndex(index, 1)] |= DESCRIPTOR;
+                break;
+            case Const.CONSTANT_MethodType:
+                roles[reader.getReferencedIndex(index, 0)] |= DESCRIPTOR;
+                break;
+            case Const.CONSTANT_String:
+                roles[reader.getReferencedIndex(index, 0)] |= STRING;
+                break;
+            default:
+                break;
+            }
+        }
+
+        @Override
+        public boolean visitField(final int accessFlags, final int nameIndex, final int signatureIndex) {
+            roles[signatureIndex] |= DESCRIPTOR;
+            return true;
+        }
+
+        @Override
+        public boolean visitMethod(final int accessFlags, final int nameIndex, final int signatureIndex) {
+            roles[signatureIndex] |= DESCRIPTOR;
+            return true;
+        }
+    }
+
+    /**
+     * An entry of an archive, whose contents may still be relocated.
+     */
+    private static final class Pending {
+
+        private final ZipEntry entry;
+        private final Future<byte[]> contents;
+
+        Pending(final ZipEntry entry, final Future<byte[]> contents) {
+            this.entry = entry;
+            this.contents = contents;
+        }
+    }
+
+    /** Role of a UTF-8 constant that is the name of a class constant. */
+    private static final byte CLASS = 1;
+
+    /** Role of a UTF-8 constant that is a descriptor or a generic signature. */
+    private static final byte DESCRIPTOR = 2;
+
+    /** Role of a UTF-8 constant that is the value of a string constant or of an annotation element. */
+    private static final byte STRING = 4;
+
+    /**
+     * Relocates the packages of the classes and resources in a jar file.
+     *
+     * @param args the input jar, the output jar, and one or more relocations of the form {@code from=to}, e.g.
+     *        {@code org.objectweb.asm=shaded.org.objectweb.asm}
+     * @throws IOException if a jar cannot be read or written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: PackageRelocator <in.jar> <out.jar> <package=relocated.package>...");
+            return;
+        }
+        final Map<String, String> packages = new HashMap<>();
+        for (int i = 2; i < args.length; i++) {
+            final int eq = args[i].indexOf('=');
+            packages.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]));
+            OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+            new PackageRelocator(packages, false).relocate(in, out, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static String relocate(final String name, final char separator, final Map<String, String> packages) {
+        for (int i = name.lastIndexOf(separator); i > 0; i = name.lastIndexOf(separator, i - 1)) {
+            final String target = packages.get(name.substring(0, i));
+            if (target != null) {
+                return target + name.substring(i);
+            }
+        }
+        return name;
+    }
+
+    /** Relocated packages in internal form, e.g. {@code com/example}. */
+    private final Map<String, String> internalPackages = new HashMap<>();
+
+    /** Relocated packages with their trailing '/', prefixed with 'L', as they start class types in signatures. */
+    private final String[] signaturePrefixes;
+
+    private final Map<String, String> packages = new HashMap<>();
+
+    private final boolean relocateStrings;
+
+    /**
+     * @param packages the packages to relocate, mapped to their new names, both fully qualified, e.g.
+     *        {@code com.example} to {@code shaded.com.example}
+     * @param relocateStrings whether to relocate string constants that are names of classes or resources, in dotted or
+     *        internal form, e.g. {@code "com.example.Plugin"} or {@code "com/example/messages.properties"}, or
+     *        descriptors
+     * @throws IllegalArgumentException if a package name is empty
+     */
+    public PackageRelocator(final Map<String, String> packages, final boolean relocateStrings) {
+        final List<String> prefixes = new ArrayList<>();
+        for (final Map.Entry<String, String> entry : packages.entrySet()) {
+            if (entry.getKey().isEmpty() || entry.getValue().isEmpty()) {
+                throw new IllegalArgumentException("Cannot relocate the unnamed package: " + entry);
+            }
+            final String from = entry.getKey().replace('.', '/');
+            this.packages.put(entry.getKey(), entry.getValue());
+            internalPackages.put(from, entry.getValue().replace('.', '/'));
+            prefixes.add('L' + from + '/');
+        }
+        this.signaturePrefixes = prefixes.toArray(new String[prefixes.size()]);
+        this.relocateStrings = relocateStrings;
+    }
+
+    private int classType(final String signature, final int start, final StringBuilder out) {
+        int i = start + 1;
+        while (";<.".indexOf(signature.charAt(i)) < 0) {
+            i++;
+        }
+        out.append('L').append(relocate(signature.substring(start + 1, i), '/', internalPackages));
+        while (true) {
+            final char c = signature.charAt(i);
+            if (c == ';') {
+                out.append(c);
+                return i + 1;
+            }
+            if (c == '<') {
+                out.append(c);
+                i = typeArguments(signature, i + 1, out);
+            } else {
+                // Simple names of nested classes of parameterized types
+                out.append(c);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Relocates the packages of the classes and resources in an archive such as a jar file. The entries are copied in
+     * their order; the class files among them are relocated in parallel, and the names of all entries are relocated as
+     * paths in internal form. The streams are not closed.
+     *
+     * @param in the archive to read
+     * @param out receives the relocated archive
+     * @param threads the number of class files to relocate concurrently
+     * @throws IOException if the archive cannot be read or written, a class file is malformed, or the copying was
+     *         interrupted
+     */
+    public void relocate(final InputStream in, final OutputStream out, final int threads) throws IOException {
+        final ZipInputStream zipIn = new ZipInputStream(in);
+        final ZipOutputStream zipOut = new ZipOutputStream(out);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        // Bounds the entries held in memory while keeping all threads busy
+        final int window = 4 * Math.max(1, threads);
+        final Deque<Pending> pending = new ArrayDeque<>(window);
+        try {
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                final String name = entry.getName();
+                final ZipEntry relocated = new ZipEntry(relocate(name, '/', internalPackages));
+                relocated.setTime(entry.getTime());
+                if (entry.getMethod() == ZipEntry.STORED) {
+                    relocated.setMethod(ZipEntry.STORED); // E.g. nested archives, which must stay uncompressed
+                }
+                final byte[] contents = readFully(zipIn);
+                pending.add(new Pending(relocated, name.endsWith(".class") && !name.endsWith("module-info.class")
+                    ? executor.submit(() -> relocate(contents)) : CompletableFuture.completedFuture(contents)));
+                if (pending.size() >= window) {
+                    write(pending.remove(), zipOut);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.remove(), zipOut);
+            }
+            zipOut.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Relocates the packages of the classes a class file refers to, including the class itself.
+     *
+     * @param classFile the bytes of a class file, which are not modified
+     * @return the relocated class file, or the given array if nothing was relocated
+     * @throws ClassFormatException if the class file is malformed, or a relocated constant is too long
+     */
+    public byte[] relocate(final byte[] classFile) {
+        final ClassFileReader reader = new ClassFileReader(classFile);
+        final Roles visitor = new Roles(reader);
+        reader.accept(visitor);
+        final byte[] roles = visitor.roles;
+        final int count = roles.length;
+        final String[] values = new String[count];
+        // Strings whose value must differ from that of the shared UTF-8 constant point to an appended one
+        final int[] stringIndices = new int[count];
+        final List<String> appended = new ArrayList<>();
+        boolean changed = false;
+        for (int i = 1; i < count; i++) {
+            if (roles[i] == 0) {
+                continue;
+            }
+            final String value = reader.getUtf8(i);
+            String relocated = value;
+            if ((roles[i] & CLASS) != 0 && !value.isEmpty() && value.charAt(0) != '[') {
+                relocated = relocate(value, '/', internalPackages);
+            } else if ((roles[i] & (CLASS | DESCRIPTOR)) != 0) {
+                relocated = relocateSignature(value);
+            }
+            if ((roles[i] & STRING) != 0) {
+                final String string = relocateStrings ? relocateString(value) : value;
+                if (roles[i] == STRING) {
+                    relocated = string;
+                } else if (!string.equals(relocated)) {
+                    stringIndices[i] = count + appended.size();
+                    appended.add(string);
+                    changed = true;
+                }
+            }
+            if (!relocated.equals(value)) {
+                values[i] = relocated;
+                changed = true;
+            }
+        }
+        return changed ? write(classFile, reader, values, stringIndices, appended, visitor.stringOffsets) : classFile;
+    }
+
+    /**
+     * Relocates a class name, e.g. one to be loaded by reflection.
+     *
+     * @param className a fully qualified class name, e.g. {@code com.example.Plugin}
+     * @return the relocated name, or the given name if its package is not relocated
+     */
+    public String relocateClassName(final String className) {
+        return relocate(className, '.', packages);
+    }
+
+    /**
+     * Relocates the classes named in a descriptor or generic signature.
+     *
+     * @param signature a field or method descriptor, or a class, field or method signature
+     * @return the relocated signature, or the given one if it names no class in a relocated package
+     * @throws ClassFormatException if the signature is malformed
+     */
+    public String relocateSignature(final String signature) {
+        boolean relocated = false;
+        for (final String prefix : signaturePrefixes) {
+            if (signature.contains(prefix)) {
+                relocated = true;
+                break;
+            }
+        }
+        if (!relocated) {
+            return signature;
+        }
+        final StringBuilder out = new StringBuilder(signature.length() + 16);
+        try {
+            int i = 0;
+            if (signature.charAt(0) == '<') {
+                out.append('<');
+                i = typeParameters(signature, 1, out);
+            }
+            while (i < signature.length()) {
+                final char c = signature.charAt(i);
+                if (c == '(' || c == ')' || c == '^') {
+                    out.append(c);
+                    i++;
+                } else {
+                    i = type(signature, i, out);
+                }
+            }
+        } catch (final StringIndexOutOfBoundsException e) {
+            throw new ClassFormatException("Malformed signature: " + signature, e);
+        }
+        return out.toString();
+    }
+
+    private String relocateString(final String string) {
+        if (string.indexOf('/') < 0) {
+            return relocate(string, '.', packages);
+        }
+        if ("(<L[".indexOf(string.charAt(0)) >= 0) {
+            // Descriptors, e.g. those compared when deserializing lambdas
+            try {
+                return relocateSignature(string);
+            } catch (final ClassFormatException e) {
+                return string;
+            }
+        }
+        return relocate(string, '/', internalPackages);
+    }
+
+    private int type(final String signature, final int start, final StringBuilder out) {
+        int i = start;
+        while (signature.charAt(i) == '[') {
+            out.append('[');
+            i++;
+        }
+        switch (signature.charAt(i)) {
+        case 'L':
+            return classType(signature, i, out);
+        case 'T': {
+            final int end = signature.indexOf(';', i) + 1;
+            out.append(signature, i, end);
+            return end;
+        }
+        default:
+            out.append(signature.charAt(i));
+            return i + 1;
+        }
+    }
+
+    private int typeArguments(final String signature, final int start, final StringBuilder out) {
+        int i = start;
+        while (signature.charAt(i) != '>') {
+            final char c = signature.charAt(i);
+            if (c == '*') {
+                out.append(c);
+                i++;
+            } else if (c == '+' || c == '-') {
+                out.append(c);
+                i = type(signature, i + 1, out);
+            } else {
+                i = type(signature, i, out);
+            }
+        }
+        out.append('>');
+        return i + 1;
+    }
+
+    private int typeParameters(final String signature, final int start, final StringBuilder out) {
+        int i = start;
+        while (signature.charAt(i) != '>') {
+            final int colon = signature.indexOf(':', i); // Copy the identifier
+            out.append(signature, i, colon);
+            i = colon;
+            // The class bound may be empty, interface bounds follow with another ':'
+            while (signature.charAt(i) == ':') {
+                out.append(':');
+                i++;
+                if (signature.charAt(i) != ':' && signature.charAt(i) != '>') {
+                    i = type(signature, i, out);
+                }
+            }
+        }
+        out.append('>');
+        return i + 1;
+    }
+
+    /**
+     * Copies the class file, replacing the relocated UTF-8 constants, pointing string constants and the string values of
+     * annotations to the appended UTF-8 constants, and appending these to the constant pool.
+     */
+    private byte[] write(final byte[] classFile, final ClassFileReader reader, final String[] values, final int[] stringIndices,
+        final List<String> appended, final List<Integer> stringOffsets) {
+        final int count = values.length;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(classFile.length + 256);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.write(classFile, 0, 8);
+            if (count + appended.size() > 0xffff) {
+                throw new ClassFormatException("Too many constants after relocation");
+            }
+            out.writeShort(count + appended.size());
+            int pos = 10;
+            for (int i = 1; i < count; i++) {
+                final byte tag = reader.getTag(i);
+                if (tag == Const.CONSTANT_Utf8 && values[i] != null) {
+                    final int offset = reader.getConstantOffset(i);
+                    out.write(classFile, pos, offset - pos);
+                    out.writeByte(tag);
+                    out.writeUTF(values[i]);
+                    pos = offset + 3 + ((classFile[offset + 1] & 0xff) << 8 | classFile[offset + 2] & 0xff);
+                } else if (tag == Const.CONSTANT_String && stringIndices[reader.getReferencedIndex(i, 0)] != 0) {
+                    final int offset = reader.getConstantOffset(i);
+                    out.write(classFile, pos, offset - pos);
+                    out.writeByte(tag);
+                    out.writeShort(stringIndices[reader.getReferencedIndex(i, 0)]);
+                    pos = offset + 3;
+                }
+            }
+            final int end = reader.getConstantPoolEnd();
+            out.write(classFile, pos, end - pos);
+            for (final String string : appended) {
+                out.writeByte(Const.CONSTANT_Utf8);
+                out.writeUTF(string);
+            }
+            final byte[] rest = Arrays.copyOfRange(classFile, end, classFile.length);
+            for (final int offset : stringOffsets) {
+                final int index = stringIndices[(classFile[offset] & 0xff) << 8 | classFile[offset + 1] & 0xff];
+                if (index != 0) {
+                    rest[offset - end] = (byte) (index >>> 8);
+                    rest[offset - end + 1] = (byte) index;
+                }
+            }
+            out.write(rest);
+        } catch (final UTFDataFormatException e) {
+            throw new ClassFormatException("Relocated constant too long: " + e.getMessage(), e);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e); // A ByteArrayOutputStream does not throw
+        }
+        return bytes.toByteArray();
+    }
+
+    private void write(final Pending pending, final ZipOutputStream out) throws IOException {
+        final byte[] contents;
+        try {
+            contents = pending.contents.get();
+        } catch (final ExecutionException e) {
+            throw new IOException("Cannot relocate " + pending.entry.getName() + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while relocating " + pending.entry.getName());
+        }
+        final ZipEntry entry = pending.entry;
+        if (entry.getMethod() == ZipEntry.STORED) {
+            final CRC32 crc = new CRC32();
+            crc.update(contents);
+            entry.setSize(contents.length);
+            entry.setCompressedSize(contents.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(contents);
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.util;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Data output stream into a byte array whose size is known in advance, e.g. to dump a class or byte code. The array is
+ * not synchronized, grows only if the size was underestimated and is returned without a copy if it has been filled
+ * exactly.
+ *
+ * @since 6.6.1
+ */
+public final class SizedDataOutputStream extends DataOutputStream {
+
+    private static final class ByteArrayStream extends OutputStream {
+
+        private byte[] buf;
+        private int count;
+
+        ByteArrayStream(final int size) {
+            buf = new byte[size];
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, buf.length << 1));
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(final int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+    }
+
+    private final ByteArrayStream byteStream;
+
+    /**
+     * @param size the expected number of bytes
+     */
+    public SizedDataOutputStream(final int size) {
+        super(new ByteArrayStream(size));
+        byteStream = (ByteArrayStream) out;
+    }
+
+    /**
+     * @return the bytes written, which is the internal array if exactly the expected number of bytes has been written
+     */
+    public byte[] toByteArray() {
+        return byteStream.count == byteStream.buf.length ? byteStream.buf : Arrays.copyOf(byteStream.buf, byteStream.count);
+    }
+}
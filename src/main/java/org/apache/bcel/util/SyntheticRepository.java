@@ -41,7 +41,7 @@ public class SyntheticRepository extends MemorySensitiveClassPathRepository {
         return getInstance(ClassPath.SYSTEM_CLASS_PATH);
     }
 
-    public static SyntheticRepository getInstance(final ClassPath classPath) {
+    public static synchronized SyntheticRepository getInstance(final ClassPath classPath) {
         SyntheticRepository rep = instances.get(classPath);
         if (rep == null) {
             rep = new SyntheticRepository(classPath);
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.verifier;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+
+/**
+ * Verifies a set of classes and, transitively, all classes referenced from their constant pools, running passes 1 to 3b
+ * on each class exactly once. The classes are verified in parallel on a work-stealing {@link ForkJoinPool}: each class
+ * is a task that reads the class, schedules the referenced classes not seen before, and verifies the class. As every
+ * class is scheduled at most once, reference cycles end the discovery without recursion.
+ * <p>
+ * Classes are looked up in the {@link Repository}, and the verifiers are those of the {@link VerifierFactory}, so results
+ * of passes shared with other verifications are reused.
+ * </p>
+ *
+ * @see VerificationCache
+ * @since 6.6.1
+ */
+public class ClosureVerifier {
+
+    /**
+     * Verifies one class and forks the verification of the classes it refers to.
+     */
+    private final class Task extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String className;
+
+        Task(final CountedCompleter<?> completer, final String className) {
+            super(completer);
+            this.className = className;
+        }
+
+        @Override
+        public void compute() {
+            JavaClass jc = null;
+            try {
+                jc = Repository.lookupClass(className);
+            } catch (final ClassNotFoundException e) {
+                // Let pass 1 report it.
+            }
+            if (jc != null) {
+                VerificationCache.forEachReferencedClass(jc, this::schedule);
+            }
+            VerificationCache.Entry entry;
+            try {
+                entry = VerificationCache.runPasses(className, jc, null);
+            } catch (final RuntimeException e) {
+                // The verifier gave up on the class, e.g. on a construct it does not support.
+                entry = new VerificationCache.Entry(null, VerificationResult.VR_NOTYET, VerificationResult.VR_NOTYET, new VerificationResult[0],
+                    new VerificationResult[0], new String[] {"Verification aborted: " + e}, false);
+            }
+            results.put(className, entry);
+            tryComplete();
+        }
+
+        void schedule(final String name) {
+            if (include.test(name) && scheduled.add(name)) {
+                addToPendingCount(1);
+                new Task(this, name).fork();
+            }
+        }
+    }
+
+    /**
+     * Verifies the transitive closure of the classes given as arguments and prints the classes that do not pass. Only
+     * classes whose names do not start with "java." or "javax." are included.
+     */
+    public static void main(final String[] args) {
+        final String[] classNames = args.clone();
+        for (int i = 0; i < classNames.length; i++) {
+            if (classNames[i].endsWith(".class")) {
+                classNames[i] = classNames[i].substring(0, classNames[i].length() - ".class".length());
+            }
+            classNames[i] = classNames[i].replace('/', '.');
+        }
+        final ClosureVerifier verifier = new ClosureVerifier(Runtime.getRuntime().availableProcessors(),
+            name -> !name.startsWith("java.") && !name.startsWith("javax."));
+        final Map<String, VerificationCache.Entry> results = verifier.verify(classNames);
+        int rejected = 0;
+        for (final Map.Entry<String, VerificationCache.Entry> result : results.entrySet()) {
+            final VerificationCache.Entry entry = result.getValue();
+            if (!entry.isOK()) {
+                rejected++;
+                System.out.println(result.getKey() + ":");
+                System.out.println("Pass 1: " + entry.getPass1());
+                System.out.println("Pass 2: " + entry.getPass2());
+                for (int i = 0; i < entry.getMethodCount(); i++) {
+                    System.out.println("Pass 3a, method " + i + ": " + entry.getPass3a(i));
+                    System.out.println("Pass 3b, method " + i + ": " + entry.getPass3b(i));
+                }
+                for (final String message : entry.getMessages()) {
+                    System.out.println(message);
+                }
+            }
+        }
+        System.out.println(results.size() + " classes verified, " + rejected + " rejected.");
+    }
+
+    private final int parallelism;
+
+    private final Predicate<String> include;
+
+    private Set<String> scheduled;
+
+    private Map<String, VerificationCache.Entry> results;
+
+    /**
+     * @param parallelism the maximum number of classes to verify concurrently.
+     * @param include decides by fully qualified name whether a referenced class is verified, e.g. to leave out the
+     *        classes of the Java runtime. The classes passed to {@link #verify(String...)} are always verified.
+     */
+    public ClosureVerifier(final int parallelism, final Predicate<String> include) {
+        this.parallelism = Math.max(1, parallelism);
+        this.include = include;
+    }
+
+    /**
+     * @return the maximum number of classes verified concurrently.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Verifies the given classes and, transitively, the classes they refer to. Classes that cannot be found are reported
+     * as rejected by pass 1; if the verifier gives up on a class, the class is reported with passes not yet run and a
+     * message saying why.
+     *
+     * @param classNames the fully qualified names of the classes to start with.
+     * @return the results for each verified class, keyed and sorted by class name.
+     */
+    public synchronized Map<String, VerificationCache.Entry> verify(final String... classNames) {
+        scheduled = ConcurrentHashMap.newKeySet();
+        results = new ConcurrentHashMap<>();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new CountedCompleter<Void>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public void compute() {
+                    for (final String className : classNames) {
+                        if (scheduled.add(className)) {
+                            addToPendingCount(1);
+                            new Task(this, className).fork();
+                        }
+                    }
+                    tryComplete();
+                }
+            });
+            return new TreeMap<>(results);
+        } finally {
+            pool.shutdownNow();
+            scheduled = null;
+            results = null;
+        }
+    }
+}
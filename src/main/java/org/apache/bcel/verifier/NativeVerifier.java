@@ -17,22 +17,77 @@
  */
 package org.apache.bcel.verifier;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
 /**
  * The NativeVerifier class implements a main(String[] args) method that's roughly compatible to the one in the Verifier
  * class, but that uses the JVM's internal verifier for its class file verification. This can be used for comparison
  * runs between the JVM-internal verifier and JustIce.
- *
+ * <p>
+ * Whole jar files can be verified in process with {@link #verifyJar(File, ClassLoader, int)}.
+ * </p>
  */
 public abstract class NativeVerifier {
 
     /**
-     * Works only on the first argument.
+     * Defines the classes of a jar file itself instead of delegating to its parent first, so that classes of the jar that
+     * are also visible to the parent are still defined, and hence verified, here.
+     */
+    private static final class IsolatedClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        IsolatedClassLoader(final ClassLoader parent, final Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    final byte[] bytes = classes.get(name);
+                    if (bytes == null) {
+                        return super.loadClass(name, resolve);
+                    }
+                    c = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+    }
+
+    /**
+     * Works only on the first argument. If it names a jar file, all classes of that jar are verified.
      */
     public static void main(final String[] args) {
         if (args.length != 1) {
             System.out.println("Verifier front-end: need exactly one argument.");
             System.exit(1);
         }
+        if (args[0].endsWith(".jar")) {
+            mainJar(args[0]);
+        }
         final int dotclasspos = args[0].lastIndexOf(".class");
         if (dotclasspos != -1) {
             args[0] = args[0].substring(0, dotclasspos);
@@ -60,6 +115,108 @@ public abstract class NativeVerifier {
         System.exit(0);
     }
 
+    private static void mainJar(final String jarFileName) {
+        final Map<String, VerificationResult> results;
+        try {
+            results = verifyJar(new File(jarFileName), ClassLoader.getSystemClassLoader(), Runtime.getRuntime().availableProcessors());
+        } catch (final IOException e) {
+            System.out.println("NativeVerifier: Cannot read '" + jarFileName + "': " + e);
+            System.exit(1);
+            return;
+        }
+        int rejected = 0;
+        for (final Map.Entry<String, VerificationResult> entry : results.entrySet()) {
+            if (entry.getValue().getStatus() != VerificationResult.VERIFIED_OK) {
+                rejected++;
+                System.out.println("NativeVerifier: '" + entry.getKey() + "': " + entry.getValue().getMessage());
+            }
+        }
+        System.out.println("NativeVerifier: " + results.size() + " class files verified, " + rejected + " rejected.");
+        System.exit(rejected == 0 ? 0 : 1);
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Loads and links the named class in a fresh class loader, which makes the JVM verify it, but does not initialize it.
+     */
+    private static VerificationResult verifyClass(final String className, final Map<String, byte[]> classes, final ClassLoader parent) {
+        try {
+            final Class<?> c = Class.forName(className, false, new IsolatedClassLoader(parent, classes));
+            // Reflecting on the members links the class first.
+            c.getDeclaredConstructors();
+            return VerificationResult.VR_OK;
+        } catch (final LinkageError | ClassNotFoundException | SecurityException e) {
+            return new VerificationResult(VerificationResult.VERIFIED_REJECTED, e.toString());
+        }
+    }
+
+    /**
+     * Verifies all classes of a jar file with the JVM's internal verifier, in parallel and without spawning a JVM per
+     * class. Every class is defined in its own throwaway class loader, together with the classes of the jar it needs for
+     * linking; classes not contained in the jar are loaded through the given parent. Classes are linked but never
+     * initialized, so no static initializers are run.
+     * <p>
+     * Note that errors the JVM raises for dependencies which cannot be loaded are reported as rejections as well.
+     * </p>
+     *
+     * @param jarFile the jar file whose classes to verify.
+     * @param parent the class loader for classes not contained in the jar.
+     * @param threads the number of classes to verify concurrently.
+     * @return the result for each class, keyed and sorted by class name.
+     * @throws IOException if the jar file cannot be read.
+     * @since 6.6.1
+     */
+    public static Map<String, VerificationResult> verifyJar(final File jarFile, final ClassLoader parent, final int threads) throws IOException {
+        final Map<String, byte[]> classes = new HashMap<>();
+        try (ZipFile zip = new ZipFile(jarFile)) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                // Skip multi-release versions and module descriptors, which cannot be defined.
+                if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    classes.put(name.substring(0, name.length() - ".class".length()).replace('/', '.'), readFully(in));
+                }
+            }
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            final List<String> classNames = new ArrayList<>(classes.keySet());
+            final List<Future<VerificationResult>> futures = new ArrayList<>(classNames.size());
+            for (final String className : classNames) {
+                futures.add(executor.submit(() -> verifyClass(className, classes, parent)));
+            }
+            final Map<String, VerificationResult> results = new TreeMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                VerificationResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (final ExecutionException e) {
+                    result = new VerificationResult(VerificationResult.VERIFIED_REJECTED, e.getCause().toString());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while verifying " + jarFile);
+                }
+                results.put(classNames.get(i), result);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * This class must not be instantiated.
      */
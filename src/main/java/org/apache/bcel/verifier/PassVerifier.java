@@ -50,7 +50,7 @@ public abstract class PassVerifier {
      *
      * @see #getMessages()
      */
-    public void addMessage(final String message) {
+    public synchronized void addMessage(final String message) {
         messages.add(message);
     }
 
@@ -63,7 +63,7 @@ public abstract class PassVerifier {
      * @see #addMessage(String)
      * @see #do_verify()
      */
-    public String[] getMessages() {
+    public synchronized String[] getMessages() {
         verify(); // create messages if not already done (cached!)
         return messages.toArray(ArrayUtils.EMPTY_STRING_ARRAY);
     }
@@ -72,12 +72,12 @@ public abstract class PassVerifier {
      * This method runs a verification pass conforming to the Java Virtual Machine Specification, 2nd edition, on a class
      * file. PassVerifier instances perform caching; i.e. if the verify() method once determined a VerificationResult, then
      * this result may be returned after every invocation of this method instead of running the verification pass anew;
-     * likewise with the result of getMessages().
+     * likewise with the result of getMessages(). Threads asking for the result concurrently wait for a single run.
      *
      * @see #getMessages()
      * @see #addMessage(String)
      */
-    public VerificationResult verify() {
+    public synchronized VerificationResult verify() {
         if (verificationResult == null) {
             verificationResult = do_verify();
         }
@@ -24,7 +24,9 @@ import org.apache.bcel.classfile.JavaClass;
  * This class has a main method implementing a demonstration program of how to use the VerifierFactoryObserver. It
  * transitively verifies all class files encountered; this may take up a lot of time and, more notably, memory.
  *
+ * @deprecated Use {@link ClosureVerifier}, which verifies each class of the closure once and in parallel.
  */
+@Deprecated
 public class TransitiveHull implements VerifierFactoryObserver {
 
     /**
@@ -57,7 +59,6 @@ public class TransitiveHull implements VerifierFactoryObserver {
     /* Implementing VerifierFactoryObserver. */
     @Override
     public void update(final String classname) {
-        System.gc(); // avoid swapping if possible.
         for (int i = 0; i < indent; i++) {
             System.out.print(" ");
         }
@@ -0,0 +1,520 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.verifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantMethodType;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.Utility;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.Type;
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * An opt-in, persistent store of the {@link VerificationResult}s of passes 1 to 3b.
+ * <p>
+ * Results are keyed by a fingerprint of the class: a digest of its bytes combined with the digests of its supertypes,
+ * of every class referenced from its constant pool and of every class named in the descriptors of its members, of the
+ * members it refers to and of its method types (including the supertypes of all those), as these are the classes the
+ * verification passes consult. A class is only verified again if its own bytes or any of these dependencies changed.
+ * All classes are looked up in the {@link Repository}.
+ * </p>
+ * <p>
+ * The digest of each dependency is computed once per session, which ends when the cache is saved or cleared. Classes
+ * that change in the repository during a session are therefore only noticed by the next one.
+ * </p>
+ *
+ * @see Verifier
+ * @since 6.6.1
+ */
+public class VerificationCache {
+
+    /**
+     * The cached results for one class.
+     */
+    public static final class Entry {
+
+        private final String fingerprint;
+        private final VerificationResult pass1;
+        private final VerificationResult pass2;
+        private final VerificationResult[] pass3a;
+        private final VerificationResult[] pass3b;
+        private final String[] messages;
+        private final boolean cached;
+
+        Entry(final String fingerprint, final VerificationResult pass1, final VerificationResult pass2, final VerificationResult[] pass3a,
+            final VerificationResult[] pass3b, final String[] messages, final boolean cached) {
+            this.fingerprint = fingerprint;
+            this.pass1 = pass1;
+            this.pass2 = pass2;
+            this.pass3a = pass3a;
+            this.pass3b = pass3b;
+            this.messages = messages;
+            this.cached = cached;
+        }
+
+        /**
+         * @return the fingerprint of the class and its dependencies the results were computed for.
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return the (warning) messages collected during verification.
+         */
+        public String[] getMessages() {
+            return messages.clone();
+        }
+
+        /**
+         * @return the number of methods pass 3a and 3b results are available for; zero if pass 2 did not succeed.
+         */
+        public int getMethodCount() {
+            return pass3a.length;
+        }
+
+        /**
+         * @return the result of pass 1.
+         */
+        public VerificationResult getPass1() {
+            return pass1;
+        }
+
+        /**
+         * @return the result of pass 2.
+         */
+        public VerificationResult getPass2() {
+            return pass2;
+        }
+
+        /**
+         * @param methodNo the method index.
+         * @return the result of pass 3a for the given method.
+         */
+        public VerificationResult getPass3a(final int methodNo) {
+            return pass3a[methodNo];
+        }
+
+        /**
+         * @param methodNo the method index.
+         * @return the result of pass 3b for the given method.
+         */
+        public VerificationResult getPass3b(final int methodNo) {
+            return pass3b[methodNo];
+        }
+
+        /**
+         * @return true if all passes returned {@link VerificationResult#VERIFIED_OK}.
+         */
+        public boolean isOK() {
+            if (pass1.getStatus() != VerificationResult.VERIFIED_OK || pass2.getStatus() != VerificationResult.VERIFIED_OK) {
+                return false;
+            }
+            for (int i = 0; i < pass3a.length; i++) {
+                if (pass3a[i].getStatus() != VerificationResult.VERIFIED_OK || pass3b[i].getStatus() != VerificationResult.VERIFIED_OK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true if this entry was taken from the cache, false if the class has just been verified.
+         */
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    /** Identifies the persistent format. */
+    private static final int MAGIC = 0xBCE1CAC4;
+
+    /** Bumped whenever the persistent format or the fingerprint computation changes. */
+    private static final int VERSION = 2;
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final byte[] MISSING = "<missing>".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Passes the names of the classes referenced from the constant pool of a class to an action, of array classes the
+     * name of their element class. Names may be passed more than once.
+     *
+     * @param jc the class whose constant pool is scanned.
+     * @param action receives the fully qualified class names.
+     */
+    static void forEachReferencedClass(final JavaClass jc, final Consumer<String> action) {
+        final ConstantPool cp = jc.getConstantPool();
+        final Constant[] constants = cp.getConstantPool();
+        for (int i = 1; i < constants.length; i++) {
+            // Entries following long and double constants are null.
+            if (constants[i] instanceof ConstantClass) {
+                String name = cp.getConstantString(i, Const.CONSTANT_Class);
+                // Array classes consult their element type only.
+                final int dims = name.lastIndexOf('[') + 1;
+                if (dims > 0) {
+                    if (name.charAt(dims) != 'L') {
+                        continue;
+                    }
+                    name = name.substring(dims + 1, name.length() - 1);
+                }
+                action.accept(Utility.compactClassName(name, false));
+            }
+        }
+    }
+
+    /**
+     * Loads a cache from the given file. If the file does not exist or was written by an incompatible version, an empty
+     * cache is returned.
+     *
+     * @param file the file to load from.
+     * @return the loaded cache.
+     * @throws IOException if the file cannot be read.
+     */
+    public static VerificationCache load(final File file) throws IOException {
+        final VerificationCache cache = new VerificationCache();
+        if (!file.isFile()) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return cache;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String className = readString(in);
+                final String fingerprint = readString(in);
+                final VerificationResult pass1 = readResult(in);
+                final VerificationResult pass2 = readResult(in);
+                final int methods = in.readInt();
+                final VerificationResult[] pass3a = new VerificationResult[methods];
+                final VerificationResult[] pass3b = new VerificationResult[methods];
+                for (int m = 0; m < methods; m++) {
+                    pass3a[m] = readResult(in);
+                    pass3b[m] = readResult(in);
+                }
+                final String[] messages = new String[in.readInt()];
+                for (int m = 0; m < messages.length; m++) {
+                    messages[m] = readString(in);
+                }
+                cache.entries.put(className, new Entry(fingerprint, pass1, pass2, pass3a, pass3b, messages, true));
+            }
+        }
+        return cache;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static VerificationResult readResult(final DataInputStream in) throws IOException {
+        final VerificationResult result = new VerificationResult(in.readByte(), readString(in));
+        // Passes and clients compare against the canonical instances by identity.
+        if (result.equals(VerificationResult.VR_OK)) {
+            return VerificationResult.VR_OK;
+        }
+        if (result.equals(VerificationResult.VR_NOTYET)) {
+            return VerificationResult.VR_NOTYET;
+        }
+        return result;
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeResult(final DataOutputStream out, final VerificationResult result) throws IOException {
+        out.writeByte(result.getStatus());
+        writeString(out, result.getMessage());
+    }
+
+    /**
+     * Writes a string of arbitrary length; verification messages may exceed the limit of
+     * {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static void writeString(final DataOutputStream out, final String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Digests of the dependencies by class name, for the current session. */
+    private final Map<String, byte[]> digests = new HashMap<>();
+
+    /**
+     * Adds the given class and all its supertypes to the set of dependency names.
+     */
+    private void addWithSupertypes(final String className, final Set<String> names) {
+        if (!names.add(className)) {
+            return;
+        }
+        try {
+            final JavaClass jc = Repository.lookupClass(className);
+            if (!"java.lang.Object".equals(className)) {
+                addWithSupertypes(jc.getSuperclassName(), names);
+            }
+            for (final String iface : jc.getInterfaceNames()) {
+                addWithSupertypes(iface, names);
+            }
+        } catch (final ClassNotFoundException e) {
+            // Recorded as missing when digested.
+        }
+    }
+
+    /**
+     * Adds the classes named in a field or method descriptor, and all their supertypes, to the set of dependency names.
+     */
+    private void addDescriptorTypes(final String descriptor, final Set<String> names) {
+        if (descriptor.charAt(0) == '(') {
+            for (final Type type : Type.getArgumentTypes(descriptor)) {
+                addTypeWithSupertypes(type, names);
+            }
+            addTypeWithSupertypes(Type.getReturnType(descriptor), names);
+        } else {
+            addTypeWithSupertypes(Type.getType(descriptor), names);
+        }
+    }
+
+    /**
+     * Adds the class of a reference type, or the element class of an array type, and all its supertypes to the set of
+     * dependency names.
+     */
+    private void addTypeWithSupertypes(final Type type, final Set<String> names) {
+        final Type basicType = type instanceof ArrayType ? ((ArrayType) type).getBasicType() : type;
+        if (basicType instanceof ObjectType) {
+            addWithSupertypes(((ObjectType) basicType).getClassName(), names);
+        }
+    }
+
+    /**
+     * Forgets all cached results, and ends the session.
+     */
+    public void clear() {
+        entries.clear();
+        digests.clear();
+    }
+
+    /**
+     * Returns the digest of the bytes of the named class, or of a marker if it cannot be found. Digests are memoized by
+     * name rather than by {@link JavaClass} instance, as {@link Verifier#main(String[])} clears the repository after each
+     * class.
+     */
+    private byte[] digestOf(final String className) {
+        byte[] digest = digests.get(className);
+        if (digest == null) {
+            try {
+                digest = newDigest().digest(Repository.lookupClass(className).getBytes());
+            } catch (final ClassNotFoundException e) {
+                digest = MISSING;
+            }
+            digests.put(className, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Computes the fingerprint of the given class: a digest of its own bytes and of the bytes of all the classes the
+     * verification passes may consult.
+     *
+     * @param jc the class to compute the fingerprint of.
+     * @return the fingerprint in hexadecimal notation.
+     */
+    public String fingerprint(final JavaClass jc) {
+        final Set<String> dependencies = new TreeSet<>();
+        // The class itself is digested from the given instance, which need not be the one in the repository.
+        dependencies.add(jc.getClassName());
+        addWithSupertypes(jc.getSuperclassName(), dependencies);
+        for (final String iface : jc.getInterfaceNames()) {
+            addWithSupertypes(iface, dependencies);
+        }
+        forEachReferencedClass(jc, name -> addWithSupertypes(name, dependencies));
+        // Pass 3b checks assignability of the types in descriptors, which need not appear as class constants
+        final ConstantPool cp = jc.getConstantPool();
+        for (final Constant constant : cp.getConstantPool()) {
+            // Entries following long and double constants are null.
+            if (constant instanceof ConstantNameAndType) {
+                addDescriptorTypes(((ConstantNameAndType) constant).getSignature(cp), dependencies);
+            } else if (constant instanceof ConstantMethodType) {
+                addDescriptorTypes(((ConstantUtf8) cp.getConstant(((ConstantMethodType) constant).getDescriptorIndex())).getBytes(), dependencies);
+            }
+        }
+        for (final Field field : jc.getFields()) {
+            addDescriptorTypes(field.getSignature(), dependencies);
+        }
+        for (final Method method : jc.getMethods()) {
+            addDescriptorTypes(method.getSignature(), dependencies);
+        }
+        dependencies.remove(jc.getClassName());
+        final MessageDigest md = newDigest();
+        md.update(newDigest().digest(jc.getBytes()));
+        for (final String dependency : dependencies) {
+            md.update(dependency.getBytes(StandardCharsets.UTF_8));
+            md.update(digestOf(dependency));
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (final byte b : md.digest()) {
+            buf.append(Character.forDigit(b >> 4 & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the cached results for the given class if its fingerprint has not changed.
+     *
+     * @param jc the class to look up.
+     * @return the cached entry or null if there is none or it is outdated.
+     */
+    public Entry lookup(final JavaClass jc) {
+        final Entry entry = entries.get(jc.getClassName());
+        if (entry == null || !entry.fingerprint.equals(fingerprint(jc))) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Runs all verification passes on a class. Pass 3a and 3b are only run if pass 2 succeeded.
+     *
+     * @param className the fully qualified name of the class to verify.
+     * @param jc the class, or null if it cannot be found.
+     * @param fingerprint the fingerprint to record, may be null.
+     * @return the results, which are not marked as cached.
+     */
+    static Entry runPasses(final String className, final JavaClass jc, final String fingerprint) {
+        final Verifier verifier = VerifierFactory.getVerifier(className);
+        final VerificationResult pass1 = verifier.doPass1();
+        final VerificationResult pass2 = verifier.doPass2();
+        final int methods = jc != null && pass2 == VerificationResult.VR_OK ? jc.getMethods().length : 0;
+        final VerificationResult[] pass3a = new VerificationResult[methods];
+        final VerificationResult[] pass3b = new VerificationResult[methods];
+        for (int i = 0; i < methods; i++) {
+            pass3a[i] = verifier.doPass3a(i);
+            pass3b[i] = verifier.doPass3b(i);
+        }
+        String[] messages;
+        try {
+            messages = verifier.getMessages();
+        } catch (final ClassNotFoundException e) {
+            messages = ArrayUtils.EMPTY_STRING_ARRAY;
+        }
+        return new Entry(fingerprint, pass1, pass2, pass3a, pass3b, messages, false);
+    }
+
+    /**
+     * Saves this cache to the given file, and ends the session.
+     *
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(final File file) throws IOException {
+        digests.clear();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (final Map.Entry<String, Entry> e : entries.entrySet()) {
+                final Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                writeString(out, entry.fingerprint);
+                writeResult(out, entry.pass1);
+                writeResult(out, entry.pass2);
+                out.writeInt(entry.pass3a.length);
+                for (int m = 0; m < entry.pass3a.length; m++) {
+                    writeResult(out, entry.pass3a[m]);
+                    writeResult(out, entry.pass3b[m]);
+                }
+                out.writeInt(entry.messages.length);
+                for (final String message : entry.messages) {
+                    writeString(out, message);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached classes.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the results of all verification passes for the given class, either from the cache if neither the class nor
+     * its dependencies changed, or by verifying it. Pass 3a and 3b are only run if pass 2 succeeded, just like
+     * {@link Verifier#main(String[])} does. Classes that cannot be found are verified but never cached.
+     *
+     * @param className the fully qualified name of the class to verify.
+     * @return the (possibly cached) results.
+     */
+    public Entry verify(final String className) {
+        JavaClass jc = null;
+        String fingerprint = null;
+        try {
+            jc = Repository.lookupClass(className);
+            fingerprint = fingerprint(jc);
+            final Entry entry = entries.get(className);
+            if (entry != null && entry.fingerprint.equals(fingerprint)) {
+                return entry;
+            }
+        } catch (final ClassNotFoundException e) {
+            // Let pass 1 report it.
+        }
+        final Entry entry = runPasses(className, jc, fingerprint);
+        if (fingerprint != null) {
+            entries.put(className, new Entry(fingerprint, entry.pass1, entry.pass2, entry.pass3a, entry.pass3b, entry.messages, true));
+        }
+        return entry;
+    }
+}
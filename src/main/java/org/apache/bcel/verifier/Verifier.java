@@ -17,6 +17,8 @@
  */
 package org.apache.bcel.verifier;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -36,7 +38,7 @@ import org.apache.commons.lang3.ArrayUtils;
  * pass-2-verification includes pass-1-verification.
  *
  * A Verifier creates PassVerifier instances to perform the actual verification. Verifier instances are usually
- * generated by the VerifierFactory.
+ * generated by the VerifierFactory. They may be used by several threads, each pass of a class is run once.
  *
  * @see VerifierFactory
  * @see PassVerifier
@@ -48,9 +50,24 @@ public class Verifier {
      * used. You should supply command-line arguments which are fully qualified namea of the classes to verify. These class
      * files must be somewhere in your CLASSPATH (refer to Sun's documentation for questions about this) or you must have
      * put the classes into the BCEL Repository yourself (via 'addClass(JavaClass)').
+     * <p>
+     * If the system property {@code bcel.verifier.cache} names a file, results are kept in a {@link VerificationCache}
+     * stored in that file, and classes whose bytes and dependencies did not change since the last run are not verified
+     * again.
+     * </p>
      */
     public static void main(final String[] args) {
         System.out.println("JustIce by Enver Haase, (C) 2001-2002.\n<http://bcel.sourceforge.net>\n<https://commons.apache.org/bcel>\n");
+        final String cacheFileName = System.getProperty("bcel.verifier.cache");
+        VerificationCache cache = null;
+        if (cacheFileName != null) {
+            try {
+                cache = VerificationCache.load(new File(cacheFileName));
+            } catch (final IOException e) {
+                e.printStackTrace();
+                cache = new VerificationCache();
+            }
+        }
         for (int index = 0; index < args.length; index++) {
             try {
                 if (args[index].endsWith(".class")) {
@@ -61,13 +78,24 @@ public class Verifier {
                 }
                 args[index] = args[index].replace('/', '.');
                 System.out.println("Now verifying: " + args[index] + "\n");
-                verifyType(args[index]);
+                if (cache != null) {
+                    verifyType(args[index], cache);
+                } else {
+                    verifyType(args[index]);
+                }
                 org.apache.bcel.Repository.clearCache();
                 System.gc();
             } catch (final ClassNotFoundException e) {
                 e.printStackTrace();
             }
         }
+        if (cache != null) {
+            try {
+                cache.save(new File(cacheFileName));
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     static void verifyType(final String fullyQualifiedClassName) throws ClassNotFoundException {
@@ -99,6 +127,35 @@ public class Verifier {
         verifier.flush();
     }
 
+    static void verifyType(final String fullyQualifiedClassName, final VerificationCache cache) throws ClassNotFoundException {
+        final VerificationCache.Entry entry = cache.verify(fullyQualifiedClassName);
+        if (entry.isCached()) {
+            System.out.println("(unchanged since last verification)\n");
+        }
+        System.out.println("Pass 1:\n" + entry.getPass1());
+        System.out.println("Pass 2:\n" + entry.getPass2());
+        if (entry.getMethodCount() > 0) {
+            final JavaClass jc = org.apache.bcel.Repository.lookupClass(fullyQualifiedClassName);
+            for (int i = 0; i < entry.getMethodCount(); i++) {
+                System.out.println("Pass 3a, method number " + i + " ['" + jc.getMethods()[i] + "']:\n" + entry.getPass3a(i));
+                System.out.println("Pass 3b, method number " + i + " ['" + jc.getMethods()[i] + "']:\n" + entry.getPass3b(i));
+            }
+        }
+        System.out.println("Warnings:");
+        final String[] warnings = entry.getMessages();
+        if (warnings.length == 0) {
+            System.out.println("<none>");
+        }
+        for (final String warning : warnings) {
+            System.out.println(warning);
+        }
+        System.out.println("\n");
+        if (!entry.isCached()) {
+            // avoid swapping.
+            VerifierFactory.getVerifier(fullyQualifiedClassName).flush();
+        }
+    }
+
     /**
      * The name of the class this verifier operates on.
      */
@@ -126,28 +183,38 @@ public class Verifier {
 
     /** Returns the VerificationResult for the given pass. */
     public VerificationResult doPass1() {
-        if (p1v == null) {
-            p1v = new Pass1Verifier(this);
+        final Pass1Verifier pv;
+        synchronized (this) {
+            if (p1v == null) {
+                p1v = new Pass1Verifier(this);
+            }
+            pv = p1v;
         }
-        return p1v.verify();
+        return pv.verify();
     }
 
     /** Returns the VerificationResult for the given pass. */
     public VerificationResult doPass2() {
-        if (p2v == null) {
-            p2v = new Pass2Verifier(this);
+        final Pass2Verifier pv;
+        synchronized (this) {
+            if (p2v == null) {
+                p2v = new Pass2Verifier(this);
+            }
+            pv = p2v;
         }
-        return p2v.verify();
+        return pv.verify();
     }
 
     /** Returns the VerificationResult for the given pass. */
     public VerificationResult doPass3a(final int method_no) {
         final String key = Integer.toString(method_no);
         Pass3aVerifier p3av;
-        p3av = p3avs.get(key);
-        if (p3avs.get(key) == null) {
-            p3av = new Pass3aVerifier(this, method_no);
-            p3avs.put(key, p3av);
+        synchronized (this) {
+            p3av = p3avs.get(key);
+            if (p3avs.get(key) == null) {
+                p3av = new Pass3aVerifier(this, method_no);
+                p3avs.put(key, p3av);
+            }
         }
         return p3av.verify();
     }
@@ -156,10 +223,12 @@ public class Verifier {
     public VerificationResult doPass3b(final int method_no) {
         final String key = Integer.toString(method_no);
         Pass3bVerifier p3bv;
-        p3bv = p3bvs.get(key);
-        if (p3bvs.get(key) == null) {
-            p3bv = new Pass3bVerifier(this, method_no);
-            p3bvs.put(key, p3bv);
+        synchronized (this) {
+            p3bv = p3bvs.get(key);
+            if (p3bvs.get(key) == null) {
+                p3bv = new Pass3bVerifier(this, method_no);
+                p3bvs.put(key, p3bv);
+            }
         }
         return p3bv.verify();
     }
@@ -169,7 +238,7 @@ public class Verifier {
      * class file from BCEL's repository.
      *
      */
-    public void flush() {
+    public synchronized void flush() {
         p1v = null;
         p2v = null;
         p3avs.clear();
@@ -192,27 +261,38 @@ public class Verifier {
      * message originates.
      */
     public String[] getMessages() throws ClassNotFoundException {
+        // The passes are asked outside of the lock, as a pass of another class may be waiting for this verifier.
+        final Pass1Verifier pass1;
+        final Pass2Verifier pass2;
+        final List<Pass3aVerifier> pass3a;
+        final List<Pass3bVerifier> pass3b;
+        synchronized (this) {
+            pass1 = p1v;
+            pass2 = p2v;
+            pass3a = new ArrayList<>(p3avs.values());
+            pass3b = new ArrayList<>(p3bvs.values());
+        }
         final List<String> messages = new ArrayList<>();
-        if (p1v != null) {
-            final String[] p1m = p1v.getMessages();
+        if (pass1 != null) {
+            final String[] p1m = pass1.getMessages();
             for (final String element : p1m) {
                 messages.add("Pass 1: " + element);
             }
         }
-        if (p2v != null) {
-            final String[] p2m = p2v.getMessages();
+        if (pass2 != null) {
+            final String[] p2m = pass2.getMessages();
             for (final String element : p2m) {
                 messages.add("Pass 2: " + element);
             }
         }
-        for (final Pass3aVerifier pv : p3avs.values()) {
+        for (final Pass3aVerifier pv : pass3a) {
             final String[] p3am = pv.getMessages();
             final int meth = pv.getMethodNo();
             for (final String element : p3am) {
                 messages.add("Pass 3a, method " + meth + " ('" + org.apache.bcel.Repository.lookupClass(classname).getMethods()[meth] + "'): " + element);
             }
         }
-        for (final Pass3bVerifier pv : p3bvs.values()) {
+        for (final Pass3bVerifier pv : pass3b) {
             final String[] p3bm = pv.getMessages();
             final int meth = pv.getMethodNo();
             for (final String element : p3bm) {
@@ -61,12 +61,17 @@ public class VerifierFactory {
      * @return the (only) verifier responsible for the class with the given name.
      */
     public static Verifier getVerifier(final String fullyQualifiedClassName) {
-        Verifier v = hashMap.get(fullyQualifiedClassName);
-        if (v == null) {
+        Verifier v;
+        synchronized (hashMap) {
+            v = hashMap.get(fullyQualifiedClassName);
+            if (v != null) {
+                return v;
+            }
             v = new Verifier(fullyQualifiedClassName);
             hashMap.put(fullyQualifiedClassName, v);
-            notify(fullyQualifiedClassName);
         }
+        // Outside of the lock, as observers may verify other classes.
+        notify(fullyQualifiedClassName);
         return v;
     }
 
@@ -75,8 +80,10 @@ public class VerifierFactory {
      * create other Verifier instances and if you want to verify the transitive hull of referenced class files.
      */
     public static Verifier[] getVerifiers() {
-        final Verifier[] vs = new Verifier[hashMap.size()];
-        return hashMap.values().toArray(vs); // Because vs is big enough, vs is used to store the values into and returned!
+        synchronized (hashMap) {
+            final Verifier[] vs = new Verifier[hashMap.size()];
+            return hashMap.values().toArray(vs); // Because vs is big enough, vs is used to store the values into and returned!
+        }
     }
 
     /**
@@ -1105,7 +1105,7 @@ public final class Pass3aVerifier extends PassVerifier {
                 // an instruction, make sure its validity, count its length, find the next
                 // instruction and so on.
                 try {
-                    instructionList = new InstructionList(method.getCode().getCode());
+                    instructionList = new InstructionList(method.getCode().getCode(), true);
                 } catch (final RuntimeException re) {
                     return new VerificationResult(VerificationResult.VERIFIED_REJECTED,
                         "Bad bytecode in the code array of the Code attribute of method '" + tostring(method) + "'.");
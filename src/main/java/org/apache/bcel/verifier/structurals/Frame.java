@@ -17,6 +17,8 @@
  */
 package org.apache.bcel.verifier.structurals;
 
+import java.util.Optional;
+
 /**
  * This class represents a JVM execution frame; that means, a local variable array and an operand stack.
  *
@@ -28,25 +30,42 @@ public class Frame {
      * For instance initialization methods, it is important to remember which instance it is that is not initialized yet. It
      * will be initialized invoking another constructor later. NULL means the instance already *is* initialized.
      *
-     * @deprecated Use the getter/setter to access the field as it may be made private in a later release
+     * @deprecated Use the getter/setter to access the field as it may be made private in a later release. While a thread
+     *             verifies a method, the getter returns the value that thread set, so the field is only read by threads
+     *             that have not set a value.
      */
     @Deprecated
     protected static UninitializedObjectType _this;
 
     /**
-     * @return the _this
+     * The value of {@link #getThis()} for each thread, so that methods can be verified concurrently. Empty means the value
+     * set is null, no value means the thread has not set one.
+     */
+    private static final ThreadLocal<Optional<UninitializedObjectType>> THIS = new ThreadLocal<>();
+
+    /**
+     * Forgets the value set by the current thread, once it has verified a method.
+     */
+    static void clearThis() {
+        THIS.remove();
+    }
+
+    /**
+     * @return the _this of the current thread, or the last one set by any thread if the current thread has not set one
      * @since 6.0
      */
     public static UninitializedObjectType getThis() {
-        return _this;
+        final Optional<UninitializedObjectType> value = THIS.get();
+        return value != null ? value.orElse(null) : _this;
     }
 
     /**
-     * @param _this the _this to set
+     * @param _this the _this to set for the current thread
      * @since 6.0
      */
     public static void setThis(final UninitializedObjectType _this) {
         Frame._this = _this;
+        THIS.set(Optional.ofNullable(_this));
     }
 
     /**
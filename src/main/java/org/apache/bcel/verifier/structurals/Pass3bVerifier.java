@@ -398,6 +398,8 @@ public final class Pass3bVerifier extends PassVerifier {
 
             throw new AssertionViolatedException("Some RuntimeException occured while verify()ing class '" + jc.getClassName() + "', method '"
                 + methods[methodNo] + "'. Original RuntimeException's stack trace:\n---\n" + sw + "---\n", re);
+        } finally {
+            Frame.clearThis();
         }
         return VerificationResult.VR_OK;
     }
@@ -19,31 +19,43 @@ package org.apache.bcel;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.function.Consumer;
 
 import org.apache.bcel.classfile.ClassParser;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.InstructionList;
 import org.apache.bcel.generic.MethodGen;
-import org.apache.commons.collections4.Predicate;
-import org.apache.commons.collections4.iterators.EnumerationIterator;
-import org.apache.commons.collections4.iterators.FilterIterator;
-import org.apache.commons.collections4.iterators.IteratorIterable;
-import org.apache.commons.io.IOUtils;
+import org.apache.bcel.util.ClassPathRepository;
+import org.apache.bcel.util.InstructionFinder;
+import org.apache.bcel.util.SyntheticRepository;
+import org.apache.bcel.verifier.Verifier;
+import org.apache.bcel.verifier.VerifierFactory;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
+/**
+ * Benchmarks of the main use cases of BCEL over the classes of a {@link BenchmarkCorpus}. Run them with
+ * {@code mvn test -Pbenchmark}, which also reports the allocation rate of each benchmark.
+ */
 @BenchmarkMode(Mode.AverageTime)
 @Fork(value = 1, jvmArgs = "-server")
 @Threads(1)
@@ -52,66 +64,85 @@ import org.openjdk.jmh.infra.Blackhole;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 public class BCELBenchmark {
 
-    private JarFile getJarFile() throws IOException {
-        final String javaHome = System.getProperty("java.home");
-        return new JarFile(javaHome + "/lib/rt.jar");
-    }
+    /**
+     * The classes of the corpus, parsed in advance for the benchmarks that start from parsed classes.
+     */
+    @State(Scope.Benchmark)
+    public static class Parsed {
 
-    private Iterable<JarEntry> getClasses(JarFile jar) {
-        return new IteratorIterable<>(new FilterIterator<>(new EnumerationIterator<>(jar.entries()), new Predicate<JarEntry>() {
-            @Override
-            public boolean evaluate(JarEntry entry) {
-                return entry.getName().endsWith(".class");
-            }
-        }));
+        private List<JavaClass> classes;
+
+        @Setup
+        public void setup(final BenchmarkCorpus corpus) throws IOException {
+            classes = corpus.parse();
+        }
     }
 
     /**
-     * Baseline benchmark. Read the classes but don't parse them.
+     * The classes to verify, which are the first classes of the corpus the verifier can deal with, and the repository the
+     * verifier looks them up in.
      */
-    @Benchmark
-    public void baseline(Blackhole bh) throws IOException {
-        JarFile jar = getJarFile();
+    @State(Scope.Benchmark)
+    public static class Verified {
+
+        /** Number of classes to verify, which is small because verifying is slow. */
+        @Param("200")
+        public int verifierLimit;
 
-        for (JarEntry entry : getClasses(jar)) {
-            byte[] bytes = IOUtils.toByteArray(jar.getInputStream(entry));
-            bh.consume(bytes);
+        private final List<String> classNames = new ArrayList<>();
+
+        @Setup
+        public void setup(final BenchmarkCorpus corpus) throws ClassNotFoundException {
+            Repository.setRepository(SyntheticRepository.getInstance(corpus.getClassPath()));
+            for (final String className : corpus.getClassNames()) {
+                if (classNames.size() == verifierLimit) {
+                    break;
+                }
+                try {
+                    verify(className, result -> {});
+                    classNames.add(className);
+                } catch (final RuntimeException e) {
+                    // The verifier does not support all features of recent class files
+                }
+            }
         }
+    }
 
-        jar.close();
+    private static void verify(final String className, final Consumer<Object> consumer) throws ClassNotFoundException {
+        final Verifier verifier = VerifierFactory.getVerifier(className);
+        verifier.flush();
+        consumer.accept(verifier.doPass1());
+        consumer.accept(verifier.doPass2());
+        final int methods = Repository.lookupClass(className).getMethods().length;
+        for (int i = 0; i < methods; i++) {
+            consumer.accept(verifier.doPass3a(i));
+            consumer.accept(verifier.doPass3b(i));
+        }
     }
 
     @Benchmark
-    public void parser(Blackhole bh) throws IOException {
-        JarFile jar = getJarFile();
-
-        for (JarEntry entry : getClasses(jar)) {
-            byte[] bytes = IOUtils.toByteArray(jar.getInputStream(entry));
-
-            JavaClass clazz = new ClassParser(new ByteArrayInputStream(bytes), entry.getName()).parse();
+    public void parser(final BenchmarkCorpus corpus, final Blackhole bh) throws IOException {
+        final List<byte[]> classFiles = corpus.getClassFiles();
+        for (int i = 0; i < classFiles.size(); i++) {
+            final JavaClass clazz = new ClassParser(new ByteArrayInputStream(classFiles.get(i)), corpus.getClassNames().get(i)).parse();
             bh.consume(clazz);
         }
-
-        jar.close();
     }
 
+    /**
+     * Decodes and encodes the code of all methods, recomputing their positions, maximum locals and maximum stack size.
+     */
     @Benchmark
-    public void generator(Blackhole bh) throws IOException {
-        JarFile jar = getJarFile();
-
-        for (JarEntry entry : getClasses(jar)) {
-            byte[] bytes = IOUtils.toByteArray(jar.getInputStream(entry));
+    public void generator(final Parsed parsed, final Blackhole bh) {
+        for (final JavaClass clazz : parsed.classes) {
+            final ClassGen cg = new ClassGen(clazz);
 
-            JavaClass clazz = new ClassParser(new ByteArrayInputStream(bytes), entry.getName()).parse();
-
-            ClassGen cg = new ClassGen(clazz);
-
-            for (Method m : cg.getMethods()) {
-                MethodGen mg = new MethodGen(m, cg.getClassName(), cg.getConstantPool());
-                InstructionList il = mg.getInstructionList();
+            for (final Method m : cg.getMethods()) {
+                final MethodGen mg = new MethodGen(m, cg.getClassName(), cg.getConstantPool());
+                final InstructionList il = mg.getInstructionList();
 
                 if (il != null) {
-                    mg.getInstructionList().setPositions();
+                    il.setPositions();
                     mg.setMaxLocals();
                     mg.setMaxStack();
                 }
@@ -120,7 +151,92 @@ public class BCELBenchmark {
 
             bh.consume(cg.getJavaClass().getBytes());
         }
+    }
+
+    /**
+     * Like {@link #generator(Parsed, Blackhole)}, but the methods are only inspected, so their code is passed through.
+     */
+    @Benchmark
+    public void passThrough(final Parsed parsed, final Blackhole bh) {
+        for (final JavaClass clazz : parsed.classes) {
+            final ClassGen cg = new ClassGen(clazz);
+
+            for (final Method m : cg.getMethods()) {
+                final MethodGen mg = new MethodGen(m, cg.getClassName(), cg.getConstantPool(), true);
+                bh.consume(mg.getMaxStack());
+                cg.replaceMethod(m, mg.getMethod());
+            }
+
+            bh.consume(cg.getJavaClass().getBytes());
+        }
+    }
 
-        jar.close();
+    /**
+     * Computes the maximum stack size of all methods.
+     */
+    @Benchmark
+    public void maxStack(final Parsed parsed, final Blackhole bh) {
+        for (final JavaClass clazz : parsed.classes) {
+            final ConstantPoolGen cp = new ConstantPoolGen(clazz.getConstantPool());
+
+            for (final Method m : clazz.getMethods()) {
+                if (m.getCode() != null) {
+                    final MethodGen mg = new MethodGen(m, clazz.getClassName(), cp);
+                    mg.setMaxStack();
+                    bh.consume(mg.getMaxStack());
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches the code of all methods for field accesses on local variables.
+     */
+    @Benchmark
+    public void instructionFinder(final Parsed parsed, final Blackhole bh) {
+        for (final JavaClass clazz : parsed.classes) {
+            for (final Method m : clazz.getMethods()) {
+                if (m.getCode() != null) {
+                    final InstructionFinder finder = new InstructionFinder(new InstructionList(m.getCode().getCode()));
+                    for (final Iterator<InstructionHandle[]> it = finder.search("LoadInstruction FieldInstruction"); it.hasNext();) {
+                        bh.consume(it.next());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up all classes of the corpus in a new repository, and then their direct super classes and interfaces,
+     * which are mostly cached by then.
+     */
+    @Benchmark
+    public void repository(final BenchmarkCorpus corpus, final Blackhole bh) throws ClassNotFoundException {
+        final ClassPathRepository repository = new ClassPathRepository(corpus.getClassPath());
+        for (final String className : corpus.getClassNames()) {
+            bh.consume(repository.loadClass(className));
+        }
+        for (final String className : corpus.getClassNames()) {
+            final JavaClass clazz = repository.findClass(className);
+            if (!clazz.getSuperclassName().equals(className)) {
+                bh.consume(repository.loadClass(clazz.getSuperclassName()));
+            }
+            for (final String interfaceName : clazz.getInterfaceNames()) {
+                bh.consume(repository.loadClass(interfaceName));
+            }
+        }
+    }
+
+    /**
+     * Runs all passes of the verifier on the classes to verify and all their methods.
+     */
+    @Benchmark
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void verifier(final Verified verified, final Blackhole bh) throws ClassNotFoundException {
+        for (final String className : verified.classNames) {
+            verify(className, bh::consume);
+        }
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bcel;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.ClassPath;
+import org.apache.bcel.util.ModularRuntimeImage;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The class files the benchmarks operate on, read into memory once per trial so that the benchmarks do not measure
+ * I/O. The classes are taken from the modules of the running Java runtime image, and from optional jar files. Use the
+ * JMH parameters to choose them, e.g. {@code -p modules=java.base,java.desktop -p jars=/path/a.jar:/path/b.jar -p limit=1000}.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkCorpus {
+
+    private static String toClassName(final String path) {
+        return path.substring(0, path.length() - ".class".length()).replace('/', '.');
+    }
+
+    private static boolean isClassFile(final String path) {
+        return path.endsWith(".class") && !path.endsWith("module-info.class") && !path.startsWith("META-INF/");
+    }
+
+    /** Comma separated names of the modules of the runtime image to read, or "none". */
+    @Param("java.base")
+    public String modules;
+
+    /** Jar files to read, separated by the path separator. */
+    @Param("")
+    public String jars;
+
+    /** Maximum number of classes to read, or 0 to read all. */
+    @Param("0")
+    public int limit;
+
+    private final List<String> classNames = new ArrayList<>();
+
+    private final List<byte[]> classFiles = new ArrayList<>();
+
+    private void add(final String path, final byte[] bytes) {
+        if (limit <= 0 || classFiles.size() < limit) {
+            classNames.add(toClassName(path));
+            classFiles.add(bytes);
+        }
+    }
+
+    /**
+     * @return the class path to look up the classes of the corpus with, i.e. the system class path followed by the jars.
+     */
+    public ClassPath getClassPath() {
+        return jars.isEmpty() ? ClassPath.SYSTEM_CLASS_PATH : new ClassPath(ClassPath.SYSTEM_CLASS_PATH, jars);
+    }
+
+    /**
+     * @return the class files in the order they were read.
+     */
+    public List<byte[]> getClassFiles() {
+        return classFiles;
+    }
+
+    /**
+     * @return the fully qualified names of the classes in the same order as {@link #getClassFiles()}.
+     */
+    public List<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * Parses all class files of the corpus.
+     *
+     * @return the classes in the same order as {@link #getClassFiles()}
+     */
+    public List<JavaClass> parse() throws IOException {
+        final List<JavaClass> classes = new ArrayList<>(classFiles.size());
+        for (int i = 0; i < classFiles.size(); i++) {
+            classes.add(new ClassParser(new ByteArrayInputStream(classFiles.get(i)), classNames.get(i)).parse());
+        }
+        return classes;
+    }
+
+    private void readJar(final String fileName) throws IOException {
+        try (JarFile jar = new JarFile(fileName)) {
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                if (isClassFile(entry.getName())) {
+                    add(entry.getName(), IOUtils.toByteArray(jar.getInputStream(entry)));
+                }
+            }
+        }
+    }
+
+    private void readModule(final Path module) throws IOException {
+        final List<Path> paths;
+        try (Stream<Path> stream = Files.walk(module)) {
+            paths = stream.filter(p -> isClassFile(module.relativize(p).toString())).sorted().collect(Collectors.toList());
+        }
+        for (final Path path : paths) {
+            add(module.relativize(path).toString(), Files.readAllBytes(path));
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        if (!"none".equals(modules)) {
+            final List<String> names = new ArrayList<>();
+            Collections.addAll(names, modules.split(","));
+            try (ModularRuntimeImage image = new ModularRuntimeImage(System.getProperty("java.home"))) {
+                for (final Path module : image.modules()) {
+                    if (names.contains(module.getFileName().toString())) {
+                        readModule(module);
+                    }
+                }
+            }
+        }
+        if (!jars.isEmpty()) {
+            for (final String jar : jars.split(File.pathSeparator)) {
+                readJar(jar);
+            }
+        }
+        if (classFiles.isEmpty()) {
+            throw new IllegalStateException("No classes found in modules " + modules + " and jars " + jars);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.classfile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.CompactInstructionList;
+import org.apache.bcel.generic.InstructionConst;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class ClassFileReaderTestCase {
+
+    /**
+     * Records what a reader reports as strings, which {@link #expected(JavaClass)} builds from a parsed class.
+     */
+    private static final class Recorder extends ClassFileVisitor {
+
+        private final ClassFileReader reader;
+        private final List<String> events = new ArrayList<>();
+
+        Recorder(final ClassFileReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void visitAttribute(final int nameIndex, final int length) {
+            events.add("attribute " + reader.getAttribute());
+        }
+
+        @Override
+        public void visitClass(final int major, final int minor, final int accessFlags, final int classIndex, final int superclassIndex,
+            final int[] interfaceIndices) {
+            final String[] interfaces = new String[interfaceIndices.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = reader.getClassName(interfaceIndices[i]);
+            }
+            events.add("class " + major + "." + minor + " " + accessFlags + " " + reader.getClassName(classIndex) + " "
+                + (superclassIndex == 0 ? "" : reader.getClassName(superclassIndex)) + " " + Arrays.toString(interfaces));
+        }
+
+        @Override
+        public boolean visitCode(final int maxStack, final int maxLocals, final int codeLength) {
+            events.add("code " + maxStack + " " + maxLocals + " " + codeLength);
+            return true;
+        }
+
+        @Override
+        public void visitConstant(final int index, final byte tag) {
+            events.add("constant " + index + " " + reader.getConstant(index));
+        }
+
+        @Override
+        public void visitEnd() {
+            events.add("end");
+        }
+
+        @Override
+        public void visitExceptionHandler(final int startPc, final int endPc, final int handlerPc, final int catchTypeIndex) {
+            events.add("handler " + startPc + " " + endPc + " " + handlerPc + " " + (catchTypeIndex == 0 ? "" : reader.getClassName(catchTypeIndex)));
+        }
+
+        @Override
+        public boolean visitField(final int accessFlags, final int nameIndex, final int signatureIndex) {
+            events.add("field " + reader.getField());
+            return true;
+        }
+
+        @Override
+        public void visitInstruction(final int offset, final short opcode, final int operand) {
+            events.add("instruction " + offset + " " + opcode + " " + operand);
+        }
+
+        @Override
+        public boolean visitMethod(final int accessFlags, final int nameIndex, final int signatureIndex) {
+            events.add("method " + reader.getMethod());
+            return true;
+        }
+    }
+
+    private static List<String> expected(final JavaClass jc) {
+        final ConstantPool cp = jc.getConstantPool();
+        final List<String> events = new ArrayList<>();
+        final String superclassName = "java.lang.Object".equals(jc.getClassName()) ? "" : jc.getSuperclassName().replace('.', '/');
+        final String[] interfaces = jc.getInterfaceNames().clone();
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = interfaces[i].replace('.', '/');
+        }
+        events.add("class " + jc.getMajor() + "." + jc.getMinor() + " " + jc.getAccessFlags() + " " + jc.getClassName().replace('.', '/') + " "
+            + superclassName + " " + Arrays.toString(interfaces));
+        for (int i = 1; i < cp.getLength(); i++) {
+            if (cp.getConstantPool()[i] != null) {
+                events.add("constant " + i + " " + cp.getConstantPool()[i]);
+            }
+        }
+        for (final Field field : jc.getFields()) {
+            events.add("field " + field);
+            attributes(field.getAttributes(), events);
+        }
+        for (final Method method : jc.getMethods()) {
+            events.add("method " + method);
+            for (final Attribute attribute : method.getAttributes()) {
+                if (attribute instanceof Code) {
+                    final Code code = (Code) attribute;
+                    events.add("code " + code.getMaxStack() + " " + code.getMaxLocals() + " " + code.getCode().length);
+                    final CompactInstructionList list = new CompactInstructionList(code.getCode());
+                    for (int i = 0; i < list.size(); i++) {
+                        final int target = list.getTarget(i);
+                        final int operand = target < 0 ? list.getOperand(i) : list.getPosition(target);
+                        events.add("instruction " + list.getPosition(i) + " " + list.getOpcode(i) + " " + operand);
+                    }
+                    for (final CodeException handler : code.getExceptionTable()) {
+                        final int catchType = handler.getCatchType();
+                        events.add("handler " + handler.getStartPC() + " " + handler.getEndPC() + " " + handler.getHandlerPC() + " "
+                            + (catchType == 0 ? "" : cp.getConstantString(catchType, Const.CONSTANT_Class)));
+                    }
+                    attributes(code.getAttributes(), events);
+                } else {
+                    events.add("attribute " + attribute);
+                }
+            }
+        }
+        attributes(jc.getAttributes(), events);
+        events.add("end");
+        return events;
+    }
+
+    private static void attributes(final Attribute[] attributes, final List<String> events) {
+        for (final Attribute attribute : attributes) {
+            events.add("attribute " + attribute);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {ClassFileReaderTestCase.class, Object.class, String.class, HashMap.class, Thread.State.class})
+    public void testAccept(final Class<?> clazz) throws Exception {
+        final JavaClass jc = Repository.lookupClass(clazz);
+        final ClassFileReader reader = new ClassFileReader(jc.getBytes());
+        final Recorder recorder = new Recorder(reader);
+        reader.accept(recorder);
+        assertEquals(expected(jc), recorder.events);
+    }
+
+    private static byte[] classWithCode(final byte[] code) {
+        final ClassGen cg = new ClassGen("Malformed", "java.lang.Object", "Malformed.java", Const.ACC_PUBLIC, null);
+        final InstructionList il = new InstructionList(InstructionConst.RETURN);
+        final MethodGen mg = new MethodGen(Const.ACC_STATIC, Type.VOID, Type.NO_ARGS, null, "m", "Malformed", il, cg.getConstantPool());
+        mg.setMaxStack();
+        final Method method = mg.getMethod();
+        method.getCode().setCode(code);
+        cg.addMethod(method);
+        return cg.getJavaClass().getBytes();
+    }
+
+    @Test
+    public void testConstants() throws Exception {
+        final JavaClass jc = Repository.lookupClass(ClassFileReaderTestCase.class);
+        final ClassFileReader reader = new ClassFileReader(jc.getBytes());
+        final ConstantPool cp = jc.getConstantPool();
+        assertEquals(cp.getLength(), reader.getConstantCount());
+        for (int i = 1; i < cp.getLength(); i++) {
+            final Constant constant = cp.getConstantPool()[i];
+            assertEquals(constant == null ? 0 : constant.getTag(), reader.getTag(i));
+            if (constant instanceof ConstantUtf8) {
+                assertEquals(((ConstantUtf8) constant).getBytes(), reader.getUtf8(i));
+            } else if (constant instanceof ConstantClass) {
+                assertEquals(((ConstantClass) constant).getBytes(cp), reader.getClassName(i));
+            } else if (constant instanceof ConstantInvokeDynamic) {
+                final int index = i;
+                assertEquals(((ConstantInvokeDynamic) constant).getNameAndTypeIndex(), reader.getReferencedIndex(i, 1));
+                assertThrows(IllegalArgumentException.class, () -> reader.getReferencedIndex(index, 0));
+            } else if (constant instanceof ConstantCP) {
+                assertEquals(((ConstantCP) constant).getClassIndex(), reader.getReferencedIndex(i, 0));
+                assertEquals(((ConstantCP) constant).getNameAndTypeIndex(), reader.getReferencedIndex(i, 1));
+            }
+        }
+        assertEquals(cp.toString(), reader.getConstantPool().toString());
+        assertEquals(10, reader.getConstantOffset(1));
+        assertEquals(jc.getAccessFlags(), (jc.getBytes()[reader.getConstantPoolEnd()] & 0xff) << 8 | jc.getBytes()[reader.getConstantPoolEnd() + 1] & 0xff);
+        final ConstantClass thisClass = (ConstantClass) cp.getConstant(jc.getClassNameIndex());
+        assertEquals(thisClass.getNameIndex(), reader.getReferencedIndex(jc.getClassNameIndex(), 0));
+        assertThrows(IllegalArgumentException.class, () -> reader.getReferencedIndex(jc.getClassNameIndex(), 1));
+        assertThrows(ClassFormatException.class, () -> reader.getReferencedIndex(thisClass.getNameIndex(), 0));
+        assertThrows(ClassFormatException.class, () -> reader.getUtf8(jc.getClassNameIndex()));
+        assertThrows(ClassFormatException.class, () -> reader.getTag(cp.getLength()));
+        assertThrows(IllegalStateException.class, reader::getField);
+        assertThrows(IllegalStateException.class, reader::getAttribute);
+        assertThrows(IllegalStateException.class, reader::getAttributeContents);
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        final byte[] bytes = Repository.lookupClass(ClassFileReaderTestCase.class).getBytes();
+        assertThrows(ClassFormatException.class, () -> new ClassFileReader(new byte[] {1, 2, 3, 4, 0, 0, 0, 52, 0, 1}));
+        assertThrows(ClassFormatException.class, () -> new ClassFileReader(Arrays.copyOf(bytes, 20)));
+        final ClassFileReader truncated = new ClassFileReader(Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(ClassFormatException.class, () -> truncated.accept(new ClassFileVisitor() {
+            // Skips everything
+        }));
+    }
+
+    @Test
+    public void testMalformedSwitch() {
+        // tableswitch with default 0, low 5 and high 0: the table length would be negative
+        final byte[] table = {(byte) Const.TABLESWITCH, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5, 0, 0, 0, 0};
+        // lookupswitch with default 0 and -1 pairs
+        final byte[] lookup = {(byte) Const.LOOKUPSWITCH, 0, 0, 0, 0, 0, 0, 0, -1, -1, -1, -1};
+        for (final byte[] code : new byte[][] {table, lookup}) {
+            final ClassFileReader reader = new ClassFileReader(classWithCode(code));
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(ClassFormatException.class, () -> reader.accept(new ClassFileVisitor() {
+                @Override
+                public boolean visitCode(final int maxStack, final int maxLocals, final int codeLength) {
+                    return true;
+                }
+
+                @Override
+                public boolean visitMethod(final int accessFlags, final int nameIndex, final int signatureIndex) {
+                    return true;
+                }
+            })));
+        }
+    }
+
+    @Test
+    public void testSkipping() throws Exception {
+        final byte[] bytes = Repository.lookupClass(String.class).getBytes();
+        final List<String> methods = new ArrayList<>();
+        final ClassFileReader reader = new ClassFileReader(bytes);
+        reader.accept(new ClassFileVisitor() {
+            @Override
+            public void visitInstruction(final int offset, final short opcode, final int operand) {
+                throw new AssertionError("Code of skipped method visited");
+            }
+
+            @Override
+            public boolean visitMethod(final int accessFlags, final int nameIndex, final int signatureIndex) {
+                methods.add(reader.getUtf8(nameIndex) + reader.getUtf8(signatureIndex));
+                return false;
+            }
+        });
+        final List<String> expected = new ArrayList<>();
+        for (final Method method : Repository.lookupClass(String.class).getMethods()) {
+            expected.add(method.getName() + method.getSignature());
+        }
+        assertArrayEquals(expected.toArray(), methods.toArray());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.classfile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.junit.jupiter.api.Test;
+
+public class ClassParserTestCase {
+
+    private static JavaClass parse(final byte[] bytes, final String name, final UnknownAttributeReader reader) throws Exception {
+        final ClassParser parser = new ClassParser(new ByteArrayInputStream(bytes), "Test.class");
+        if (reader != null) {
+            parser.addAttributeReader(name, reader);
+        }
+        return parser.parse();
+    }
+
+    @Test
+    public void testAttributeReader() throws Exception {
+        final ClassGen cg = new ClassGen(Repository.lookupClass(ClassParserTestCase.class));
+        final ConstantPoolGen cp = cg.getConstantPool();
+        cg.addAttribute(new Unknown(cp.addUtf8("Custom"), 3, new byte[] {1, 2, 3}, cp.getConstantPool()));
+        final byte[] bytes = cg.getJavaClass().getBytes();
+
+        final List<Attribute> read = new ArrayList<>();
+        final UnknownAttributeReader reader = (nameIndex, length, file, constantPool) -> {
+            try {
+                final Attribute attribute = new Unknown(nameIndex, length, file, constantPool);
+                read.add(attribute);
+                return attribute;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        final JavaClass withReader = parse(bytes, "Custom", reader);
+        assertEquals(1, read.size());
+        final Attribute custom = withReader.getAttributes()[withReader.getAttributes().length - 1];
+        assertSame(read.get(0), custom);
+        assertArrayEquals(new byte[] {1, 2, 3}, ((Unknown) custom).getBytes());
+        assertNull(withReader.getConstantPool().getAttributeReaders());
+
+        // The reader is not visible to other parsers
+        final JavaClass withoutReader = parse(bytes, "Custom", null);
+        assertEquals(1, read.size());
+        assertEquals("Custom", ((Unknown) withoutReader.getAttributes()[withoutReader.getAttributes().length - 1]).getName());
+    }
+
+    @Test
+    public void testAttributeTags() throws Exception {
+        for (byte i = 0; i < Const.KNOWN_ATTRIBUTES; i++) {
+            assertEquals(i, new ConstantUtf8(Const.getAttributeName(i)).getAttributeTag());
+        }
+        assertEquals(Const.ATTR_UNKNOWN, new ConstantUtf8("Custom").getAttributeTag());
+
+        final JavaClass jc = Repository.lookupClass(ClassParserTestCase.class);
+        for (final Method m : jc.getMethods()) {
+            final Attribute[] attributes = m.getCode().getAttributes();
+            assertEquals(LineNumberTable.class, attributes[0].getClass());
+            assertEquals(Const.ATTR_LINE_NUMBER_TABLE, attributes[0].getTag());
+        }
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        final JavaClass expected = Repository.lookupClass(ClassParserTestCase.class);
+        final byte[] bytes = expected.getBytes();
+        final List<JavaClass> tested = new ArrayList<>();
+        final DataInputStream rejectedStream = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertNull(new ClassParser(rejectedStream, "Test.class").parse(jc -> {
+            tested.add(jc);
+            return false;
+        }));
+        final JavaClass header = tested.get(0);
+        assertEquals(expected.getClassName(), header.getClassName());
+        assertEquals(expected.getSuperclassName(), header.getSuperclassName());
+        assertArrayEquals(expected.getInterfaceNames(), header.getInterfaceNames());
+        assertEquals(expected.getConstantPool().toString(), header.getConstantPool().toString());
+        assertEquals(0, header.getFields().length + header.getMethods().length + header.getAttributes().length);
+        // Nothing after the interfaces was read
+        final int interfacesEnd = new ClassFileReader(bytes).getConstantPoolEnd() + 8 + 2 * expected.getInterfaceIndices().length;
+        assertEquals(bytes.length - interfacesEnd, rejectedStream.available());
+
+        // A filter looking for a referenced class
+        final JavaClass accepted = new ClassParser(new ByteArrayInputStream(bytes), "Test.class")
+            .parse(jc -> Arrays.stream(jc.getConstantPool().getConstantPool()).anyMatch(
+                c -> c instanceof ConstantClass && "org/apache/bcel/generic/ClassGen".equals(((ConstantClass) c).getBytes(jc.getConstantPool()))));
+        assertNotNull(accepted);
+        assertTrue(accepted.getMethods().length > 0);
+        final String parsed = new ClassParser(new ByteArrayInputStream(bytes), "Test.class").parse().toString();
+        assertEquals(parsed, accepted.toString());
+        assertEquals(parsed, new ClassParser(new ByteArrayInputStream(bytes), "Test.class").parse(null).toString());
+    }
+}
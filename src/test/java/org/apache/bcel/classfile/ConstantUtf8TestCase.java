@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.classfile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class ConstantUtf8TestCase {
+
+    private static final String[] STRINGS = {"", "java/lang/Object", "(Ljava/lang/String;)V", "\u0000", "café", "€߿ࠀ",
+        "😀 x", "￿"};
+
+    private static byte[] encode(final String string) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(string);
+        }
+        return Arrays.copyOfRange(bytes.toByteArray(), 2, bytes.size());
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        for (final String string : STRINGS) {
+            final byte[] bytes = encode(string);
+            assertEquals(string, ConstantUtf8.decode(bytes));
+            final byte[] withLength = new byte[bytes.length + 2];
+            withLength[0] = (byte) (bytes.length >> 8);
+            withLength[1] = (byte) bytes.length;
+            System.arraycopy(bytes, 0, withLength, 2, bytes.length);
+            assertEquals(string, ConstantUtf8.getInstance(new DataInputStream(new ByteArrayInputStream(withLength))).getBytes());
+        }
+        assertThrows(UTFDataFormatException.class, () -> ConstantUtf8.decode(new byte[] {'a', (byte) 0xc3}));
+        assertThrows(UTFDataFormatException.class, () -> ConstantUtf8.decode(new byte[] {(byte) 0xe2, (byte) 0x82, 'a'}));
+        assertThrows(UTFDataFormatException.class, () -> ConstantUtf8.decode(new byte[] {(byte) 0x80}));
+        assertThrows(UTFDataFormatException.class, () -> ConstantUtf8.decode(new byte[] {(byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80}));
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        for (final String string : STRINGS) {
+            final byte[] bytes = encode(string);
+            final ConstantUtf8 lazy = new ConstantUtf8(bytes);
+            assertEquals(bytes.length, lazy.getEncodedLength());
+            final ByteArrayOutputStream dump = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(dump)) {
+                lazy.dump(out);
+            }
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(expected)) {
+                new ConstantUtf8(string).dump(out);
+            }
+            assertArrayEquals(expected.toByteArray(), dump.toByteArray());
+            assertEquals(string, lazy.getBytes());
+            assertEquals(bytes.length, lazy.getEncodedLength());
+            assertEquals(bytes.length, new ConstantUtf8(string).getEncodedLength());
+        }
+        assertThrows(ClassFormatException.class, () -> new ConstantUtf8(new byte[] {(byte) 0xff}).getBytes());
+    }
+}
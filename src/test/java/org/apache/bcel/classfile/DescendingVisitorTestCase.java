@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.classfile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.bcel.Repository;
+import org.junit.jupiter.api.Test;
+
+public class DescendingVisitorTestCase {
+
+    private interface DescendingVisitorFactory {
+        DescendingVisitor create(JavaClass clazz, Visitor visitor);
+    }
+
+    private static final class Counter extends EmptyVisitor {
+
+        private DescendingVisitor carrier;
+        private boolean skipLineNumbers;
+        private int codes;
+        private int constants;
+        private int lineNumbers;
+        private int lineNumberTables;
+
+        @Override
+        public void visitCode(final Code obj) {
+            codes++;
+        }
+
+        @Override
+        public void visitConstantUtf8(final ConstantUtf8 obj) {
+            constants++;
+        }
+
+        @Override
+        public void visitLineNumber(final LineNumber obj) {
+            lineNumbers++;
+            assertSame(obj, carrier.current());
+            assertTrue(carrier.predecessor() instanceof LineNumberTable);
+            assertTrue(carrier.predecessor(1) instanceof Code);
+            assertTrue(carrier.predecessor(2) instanceof Method);
+            assertTrue(carrier.predecessor(3) instanceof JavaClass);
+            assertNull(carrier.predecessor(4));
+        }
+
+        @Override
+        public void visitLineNumberTable(final LineNumberTable obj) {
+            lineNumberTables++;
+            if (skipLineNumbers) {
+                carrier.skipChildren();
+            }
+        }
+    }
+
+    private static Counter count(final JavaClass clazz, final boolean skipLineNumbers, final DescendingVisitorFactory factory) {
+        final Counter counter = new Counter();
+        counter.skipLineNumbers = skipLineNumbers;
+        counter.carrier = factory.create(clazz, counter);
+        counter.carrier.visit();
+        return counter;
+    }
+
+    @Test
+    public void testDescendPredicate() throws Exception {
+        final JavaClass clazz = Repository.lookupClass(DescendingVisitorTestCase.class);
+        final Counter all = count(clazz, false, DescendingVisitor::new);
+        final Counter noCode = count(clazz, false, (c, v) -> new DescendingVisitor(c, v, node -> !(node instanceof Code)));
+        assertEquals(all.codes, noCode.codes);
+        assertEquals(all.lineNumberTables, clazz.getMethods().length);
+        assertEquals(0, noCode.lineNumberTables);
+        assertEquals(all.constants, noCode.constants);
+        final Counter noConstants = count(clazz, false, (c, v) -> new DescendingVisitor(c, v, node -> !(node instanceof ConstantPool)));
+        assertEquals(0, noConstants.constants);
+        assertEquals(all.lineNumbers, noConstants.lineNumbers);
+    }
+
+    @Test
+    public void testSkipChildren() throws Exception {
+        final JavaClass clazz = Repository.lookupClass(DescendingVisitorTestCase.class);
+        final Counter all = count(clazz, false, DescendingVisitor::new);
+        final Counter skipped = count(clazz, true, DescendingVisitor::new);
+        assertTrue(all.lineNumbers > all.lineNumberTables);
+        assertEquals(all.lineNumberTables, skipped.lineNumberTables);
+        assertEquals(0, skipped.lineNumbers);
+        assertEquals(all.codes, skipped.codes);
+        assertEquals(all.constants, skipped.constants);
+    }
+}
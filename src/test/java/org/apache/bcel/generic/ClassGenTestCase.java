@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.generic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.util.BCELComparator;
+import org.junit.jupiter.api.Test;
+
+public class ClassGenTestCase {
+
+    private static final class ByteClassLoader extends ClassLoader {
+
+        ByteClassLoader() {
+            super(ClassGenTestCase.class.getClassLoader());
+        }
+
+        Class<?> define(final JavaClass jc) {
+            final byte[] bytes = jc.getBytes();
+            return defineClass(jc.getClassName(), bytes, 0, bytes.length);
+        }
+    }
+
+    private static void assertSameCode(final Method expected, final Method actual) {
+        assertEquals(expected.toString(), actual.toString());
+        if (expected.getCode() != null) {
+            // Ignore the constant pool indices printed with the instructions
+            assertEquals(expected.getCode().toString().replaceAll("\\(\\d+\\)", ""), actual.getCode().toString().replaceAll("\\(\\d+\\)", ""));
+        }
+    }
+
+    private static byte[] transform(final Executor executor) throws Exception {
+        final ClassGen cg = new ClassGen(Repository.lookupClass(InstructionList.class));
+        cg.transformMethods(mg -> {
+            if (mg.getName().equals("toString")) {
+                return null;
+            }
+            if (mg.getName().startsWith("get")) {
+                return mg; // Passed through undecoded
+            }
+            // Unreachable code does not move the original instructions
+            final InstructionList il = mg.getInstructionList();
+            il.append(new LDC(mg.getConstantPool().addString("transformed " + mg.getName() + mg.getSignature())));
+            il.append(InstructionConst.POP);
+            il.append(InstructionConst.RETURN);
+            return mg;
+        }, executor);
+        return cg.getJavaClass().getBytes();
+    }
+
+    @Test
+    public void testCompactConstantPool() throws Exception {
+        for (final Class<?> cls : new Class<?>[] {ClassGen.class, ConstantPoolGen.class, InstructionList.class, org.apache.bcel.util.ClassPath.class,
+            ClassGenTestCase.class}) {
+            final JavaClass jc = Repository.lookupClass(cls);
+            final ClassGen cg = new ClassGen(jc);
+            cg.setCompactConstantPool(true);
+            assertTrue(cg.getJavaClass().getConstantPool().getLength() <= jc.getConstantPool().getLength(), cls::getName);
+            final Method removed = cg.getMethods()[cg.getMethods().length - 1];
+            cg.removeMethod(removed);
+            final double unused = Math.PI * cls.getName().length(); // not a constant of the tested classes
+            cg.getConstantPool().addDouble(unused);
+            final JavaClass compacted = cg.getJavaClass();
+            assertTrue(compacted.getConstantPool().getLength() < jc.getConstantPool().getLength(), cls::getName);
+            assertEquals(-1, new ConstantPoolGen(compacted.getConstantPool()).lookupDouble(unused), cls::getName);
+            assertEquals(cg.getFileName(), compacted.getFileName());
+            assertEquals(jc.getSourceFileName(), compacted.getSourceFileName());
+            final Method[] methods = compacted.getMethods();
+            for (int i = 0; i < methods.length; i++) {
+                assertSameCode(cg.getMethodAt(i), methods[i]);
+            }
+            assertEquals(Arrays.toString(jc.getAttributes()), Arrays.toString(compacted.getAttributes()));
+            final Class<?> defined = new ByteClassLoader().define(compacted);
+            final long initializers = Arrays.stream(methods).filter(m -> m.getName().equals(Const.STATIC_INITIALIZER_NAME)).count();
+            assertEquals(methods.length - initializers, defined.getDeclaredMethods().length + defined.getDeclaredConstructors().length, cls::getName);
+        }
+    }
+
+    @Test
+    public void testJavaClassMethodIndex() throws Exception {
+        final JavaClass jc = Repository.lookupClass(ClassGen.class);
+        for (final java.lang.reflect.Method m : ClassGen.class.getDeclaredMethods()) {
+            final Method method = jc.getMethod(m);
+            assertEquals(m.getName(), method.getName());
+            assertEquals(Type.getSignature(m), method.getSignature());
+        }
+        final java.lang.reflect.Method getJavaClass = ClassGen.class.getMethod("getJavaClass");
+        final Method[] methods = jc.getMethods().clone();
+        final Method found = jc.getMethod(getJavaClass);
+        jc.setMethods(Arrays.stream(methods).filter(m -> m != found).toArray(Method[]::new));
+        assertNull(jc.getMethod(getJavaClass));
+        jc.setMethods(methods);
+        assertSame(found, jc.getMethod(getJavaClass));
+    }
+
+    @Test
+    public void testMemberIndex() throws Exception {
+        final ClassGen cg = new ClassGen("Members", "java.lang.Object", "Members.java", Const.ACC_PUBLIC, null);
+        final ConstantPoolGen cp = cg.getConstantPool();
+        assertNull(cg.containsMethod("m0", "()V"));
+        final int count = 2000;
+        for (int i = 0; i < count; i++) {
+            assertNull(cg.containsMethod("m" + i, "()V"));
+            cg.addMethod(new MethodGen(Const.ACC_ABSTRACT, Type.VOID, Type.NO_ARGS, null, "m" + i, "Members", null, cp).getMethod());
+            cg.addField(new FieldGen(Const.ACC_PRIVATE, Type.INT, "f" + i, cp).getField());
+        }
+        final Method m1 = cg.containsMethod("m1", "()V");
+        assertSame(cg.getMethodAt(1), m1);
+        assertNull(cg.containsMethod("m1", "(I)V"));
+        final Method overload = new MethodGen(Const.ACC_ABSTRACT, Type.VOID, new Type[] {Type.INT}, null, "m1", "Members", null, cp).getMethod();
+        cg.replaceMethod(m1, overload);
+        assertNull(cg.containsMethod("m1", "()V"));
+        assertSame(overload, cg.containsMethod("m1", "(I)V"));
+        assertSame(overload, cg.getMethodAt(1));
+        cg.removeMethod(cg.containsMethod("m2", "()V"));
+        assertNull(cg.containsMethod("m2", "()V"));
+        assertEquals(count - 1, cg.getMethods().length);
+        cg.setMethodAt(m1, 0);
+        assertNull(cg.containsMethod("m0", "()V"));
+        assertSame(m1, cg.containsMethod("m1", "()V"));
+        cg.setMethods(new Method[] {overload});
+        assertNull(cg.containsMethod("m1", "()V"));
+        assertSame(overload, cg.containsMethod("m1", "(I)V"));
+
+        final Field f3 = cg.containsField("f3");
+        assertSame(cg.getFields()[3], f3);
+        assertTrue(cg.containsField(f3));
+        final Field renamed = new FieldGen(Const.ACC_PRIVATE, Type.INT, "g3", cp).getField();
+        cg.replaceField(f3, renamed);
+        assertNull(cg.containsField("f3"));
+        assertFalse(cg.containsField(f3));
+        assertSame(renamed, cg.containsField("g3"));
+        cg.removeField(renamed);
+        assertNull(cg.containsField("g3"));
+        assertEquals(count - 1, cg.getFields().length);
+    }
+
+    @Test
+    public void testMemberIndexKeepsListOrder() throws Exception {
+        final ClassGen cg = new ClassGen("Members", "java.lang.Object", "Members.java", Const.ACC_PUBLIC, null);
+        final ConstantPoolGen cp = cg.getConstantPool();
+        // Class files may declare fields of the same name with different types
+        final Field xInt = new FieldGen(Const.ACC_PUBLIC, Type.INT, "x", cp).getField();
+        final Field xLong = new FieldGen(Const.ACC_PUBLIC, Type.LONG, "x", cp).getField();
+        cg.addField(xInt);
+        cg.addField(xLong);
+        assertSame(xInt, cg.containsField("x"));
+        final Field replacement = new FieldGen(Const.ACC_PRIVATE, Type.INT, "x", cp).getField();
+        cg.replaceField(xInt, replacement);
+        assertSame(replacement, cg.containsField("x"));
+        final Field renamed = new FieldGen(Const.ACC_PUBLIC, Type.INT, "y", cp).getField();
+        cg.replaceField(replacement, renamed);
+        assertSame(xLong, cg.containsField("x"));
+        cg.replaceField(renamed, xInt);
+        assertSame(xInt, cg.containsField("x"));
+        assertArrayEquals(new Field[] {xInt, xLong}, cg.getFields());
+    }
+
+    @Test
+    public void testMemberIndexPositions() throws Exception {
+        final ClassGen cg = new ClassGen("Members", "java.lang.Object", "Members.java", Const.ACC_PUBLIC, null);
+        final ConstantPoolGen cp = cg.getConstantPool();
+        final Method[] methods = new Method[4];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = new MethodGen(Const.ACC_ABSTRACT, Type.VOID, Type.NO_ARGS, null, "m" + i, "Members", null, cp).getMethod();
+            cg.addMethod(methods[i]);
+        }
+        final Method copy = new MethodGen(methods[3], "Members", cp).getMethod();
+        cg.removeMethod(methods[0]);
+        cg.replaceMethod(copy, methods[0]);
+        assertArrayEquals(new Method[] {methods[1], methods[2], methods[0]}, cg.getMethods());
+        // The same method twice: the first one is found
+        cg.setMethodAt(methods[0], 0);
+        cg.removeMethod(methods[0]);
+        assertArrayEquals(new Method[] {methods[2], methods[0]}, cg.getMethods());
+        cg.removeMethod(methods[0]);
+        assertArrayEquals(new Method[] {methods[2]}, cg.getMethods());
+        cg.removeMethod(methods[0]);
+        assertArrayEquals(new Method[] {methods[2]}, cg.getMethods());
+    }
+
+    @Test
+    public void testMemberIndexWithComparator() throws Exception {
+        final ClassGen cg = new ClassGen("Members", "java.lang.Object", "Members.java", Const.ACC_PUBLIC, null);
+        final ConstantPoolGen cp = cg.getConstantPool();
+        cg.addField(new FieldGen(Const.ACC_PUBLIC, Type.INT, "f", cp).getField());
+        final Field other = new FieldGen(Const.ACC_PUBLIC, Type.STRING, "g", cp).getField();
+        assertFalse(cg.containsField(other));
+        final BCELComparator comparator = Field.getComparator();
+        Field.setComparator(new BCELComparator() {
+
+            @Override
+            public boolean equals(final Object o1, final Object o2) {
+                return true;
+            }
+
+            @Override
+            public int hashCode(final Object o) {
+                return 0;
+            }
+        });
+        try {
+            assertTrue(cg.containsField(other));
+            cg.removeField(other);
+            assertEquals(0, cg.getFields().length);
+        } finally {
+            Field.setComparator(comparator);
+        }
+    }
+
+    @Test
+    public void testOriginalMethodsArePassedThrough() throws Exception {
+        final JavaClass jc = Repository.lookupClass(MethodGen.class);
+        final ClassGen cg = new ClassGen(jc);
+        cg.addField(new FieldGen(Const.ACC_PRIVATE, Type.INT, "addedField", cg.getConstantPool()).getField());
+        final Method[] methods = cg.getJavaClass().getMethods();
+        assertEquals(jc.getMethods().length, methods.length);
+        for (int i = 0; i < methods.length; i++) {
+            assertSame(jc.getMethods()[i], methods[i]);
+        }
+        final JavaClass parsed = new ClassParser(new ByteArrayInputStream(cg.getJavaClass().getBytes()), "MethodGen.class").parse();
+        for (int i = 0; i < methods.length; i++) {
+            assertEquals(methods[i].toString(), parsed.getMethods()[i].toString());
+            if (methods[i].getCode() != null) {
+                assertArrayEquals(methods[i].getCode().getCode(), parsed.getMethods()[i].getCode().getCode());
+            }
+        }
+        assertEquals("addedField", parsed.getFields()[parsed.getFields().length - 1].getName());
+    }
+
+    @Test
+    public void testTransformMethods() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final byte[] parallel = transform(executor);
+            assertArrayEquals(transform(Runnable::run), parallel);
+            final JavaClass original = Repository.lookupClass(InstructionList.class);
+            final JavaClass transformed = new ClassParser(new ByteArrayInputStream(parallel), "InstructionList.class").parse();
+            final ConstantPoolGen cp = new ConstantPoolGen(transformed.getConstantPool());
+            final Method[] methods = original.getMethods();
+            int i = 0;
+            for (final Method m : methods) {
+                if (m.getName().equals("toString")) {
+                    continue;
+                }
+                final Method t = transformed.getMethods()[i++];
+                assertEquals(m.toString(), t.toString());
+                final byte[] code = m.getCode().getCode();
+                if (m.getName().startsWith("get")) {
+                    assertArrayEquals(code, t.getCode().getCode());
+                    continue;
+                }
+                assertArrayEquals(code, Arrays.copyOf(t.getCode().getCode(), code.length), m::toString);
+                final Instruction[] added = new InstructionList(t.getCode().getCode()).getInstructions();
+                final LDC ldc = (LDC) added[added.length - 3];
+                assertEquals("transformed " + m.getName() + m.getSignature(), ldc.getValue(cp));
+            }
+            assertEquals(i, transformed.getMethods().length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTransformMethodsFailure() throws Exception {
+        final ClassGen cg = new ClassGen(Repository.lookupClass(InstructionList.class));
+        final Method[] methods = cg.getMethods();
+        final int size = cg.getConstantPool().getSize();
+        assertThrows(IllegalStateException.class, () -> cg.transformMethods(mg -> {
+            mg.getConstantPool().addString("failed " + mg.getName());
+            if (mg.getName().equals("toString")) {
+                throw new IllegalStateException();
+            }
+            return mg;
+        }, Runnable::run));
+        assertArrayEquals(methods, cg.getMethods());
+        assertEquals(size, cg.getConstantPool().getSize());
+        assertThrows(ClassGenException.class, () -> cg.transformMethods(mg -> new MethodGen(mg.getMethod(), cg.getClassName(), new ConstantPoolGen()), Runnable::run));
+        assertArrayEquals(methods, cg.getMethods());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.generic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.junit.jupiter.api.Test;
+
+public class CompactInstructionListTestCase {
+
+    private static int operand(final Instruction i, final InstructionHandle[] handles) {
+        if (i instanceof BranchInstruction) {
+            return Arrays.asList(handles).indexOf(((BranchInstruction) i).getTarget());
+        }
+        if (i instanceof IndexedInstruction) {
+            return ((IndexedInstruction) i).getIndex();
+        }
+        if (i instanceof ConstantPushInstruction && (i.getOpcode() == Const.BIPUSH || i.getOpcode() == Const.SIPUSH)) {
+            return ((ConstantPushInstruction) i).getValue().intValue();
+        }
+        if (i instanceof NEWARRAY) {
+            return ((NEWARRAY) i).getTypecode();
+        }
+        return 0;
+    }
+
+    @Test
+    public void testMatchesInstructionList() throws Exception {
+        for (final Class<?> cls : new Class<?>[] {InstructionList.class, MethodGen.class, Const.class}) {
+            final JavaClass jc = Repository.lookupClass(cls);
+            for (final Method m : jc.getMethods()) {
+                if (m.getCode() == null) {
+                    continue;
+                }
+                final InstructionList il = new InstructionList(m.getCode().getCode());
+                final InstructionHandle[] handles = il.getInstructionHandles();
+                final CompactInstructionList compact = new CompactInstructionList(m.getCode().getCode());
+                assertEquals(handles.length, compact.size(), m::toString);
+                assertEquals(m.getCode().getCode().length, compact.length());
+                for (int i = 0; i < handles.length; i++) {
+                    final Instruction instruction = handles[i].getInstruction();
+                    assertEquals(instruction.getOpcode(), compact.getOpcode(i));
+                    assertEquals(handles[i].getPosition(), compact.getPosition(i));
+                    assertEquals(i, compact.indexOf(compact.getPosition(i)));
+                    assertEquals(operand(instruction, handles), compact.getOperand(i), instruction::toString);
+                    assertEquals(instruction instanceof BranchInstruction ? compact.getOperand(i) : -1, compact.getTarget(i));
+                    if (instruction instanceof Select) {
+                        final InstructionHandle[] targets = ((Select) instruction).getTargets();
+                        assertEquals(targets.length, compact.getTargets(i).length);
+                        for (int j = 0; j < targets.length; j++) {
+                            assertEquals(Arrays.asList(handles).indexOf(targets[j]), compact.getTargets(i)[j]);
+                        }
+                    } else {
+                        assertEquals(0, compact.getTargets(i).length);
+                    }
+                    if (!(instruction instanceof BranchInstruction)) {
+                        assertEquals(instruction.toString(false), compact.getInstruction(i).toString(false));
+                    }
+                }
+                assertArrayEquals(m.getCode().getCode(), compact.getInstructionList().getByteCode());
+            }
+        }
+    }
+
+    @Test
+    public void testMethodGen() throws Exception {
+        final JavaClass jc = Repository.lookupClass(CompactInstructionListTestCase.class);
+        final ConstantPoolGen cp = new ConstantPoolGen(jc.getConstantPool());
+        for (final Method m : jc.getMethods()) {
+            final byte[] code = m.getCode().getCode();
+            final MethodGen lazy = new MethodGen(m, jc.getClassName(), cp, true);
+            assertArrayEquals(code, lazy.getCompactInstructionList().getByteCode());
+            assertArrayEquals(code, lazy.getMethod().getCode().getCode());
+            assertArrayEquals(code, new MethodGen(m, jc.getClassName(), cp).getCompactInstructionList().getByteCode());
+        }
+        assertNull(new MethodGen(Const.ACC_ABSTRACT, Type.VOID, Type.NO_ARGS, null, "m", "C", null, cp).getCompactInstructionList());
+    }
+
+    @Test
+    public void testWideAndMalformedCode() {
+        final InstructionList il = new InstructionList();
+        il.append(new ILOAD(300));
+        il.append(new IINC(2, 1000));
+        il.append(new BIPUSH((byte) -3));
+        il.append(InstructionConst.RETURN);
+        final CompactInstructionList compact = new CompactInstructionList(il);
+        assertEquals(4, compact.size());
+        assertEquals(Const.ILOAD, compact.getOpcode(0));
+        assertEquals(300, compact.getOperand(0));
+        assertEquals(Const.IINC, compact.getOpcode(1));
+        assertEquals(4, compact.getPosition(1));
+        assertEquals(2, compact.getOperand(1));
+        assertEquals(1000, ((IINC) compact.getInstruction(1)).getIncrement());
+        assertEquals(-3, compact.getOperand(2));
+        assertEquals(-1, compact.getTarget(3));
+        assertEquals(-1, compact.indexOf(1));
+        assertEquals(0, new CompactInstructionList(new byte[0]).size());
+        assertThrows(ClassGenException.class, () -> new CompactInstructionList(new byte[] {Const.NOP, Const.SIPUSH, 0}));
+        assertThrows(ClassGenException.class, () -> new CompactInstructionList(new byte[] {(byte) Const.GOTO, 0, 2}));
+        assertThrows(ClassGenException.class, () -> new CompactInstructionList(new byte[] {(byte) 0xcb}));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.generic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.BootstrapMethod;
+import org.apache.bcel.classfile.BootstrapMethods;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantInvokeDynamic;
+import org.apache.bcel.classfile.ConstantMethodref;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.junit.jupiter.api.Test;
+
+public class ConstantPoolGenTestCase {
+
+    @Test
+    public void testAddsAreFoundAfterGrowing() {
+        final ConstantPoolGen cp = new ConstantPoolGen();
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(cp.addMethodref("p.C" + i, "m" + i, "()V"), cp.addMethodref("p/C" + i, "m" + i, "()V"));
+            assertEquals(cp.addInteger(i), cp.lookupInteger(i));
+            assertEquals(cp.addString("s" + i), cp.lookupString("s" + i));
+        }
+        for (int i = 0; i < 2000; i++) {
+            final int index = cp.lookupMethodref("p.C" + i, "m" + i, "()V");
+            assertTrue(index > 0);
+            assertEquals(index, cp.addMethodref("p.C" + i, "m" + i, "()V"));
+            assertEquals(-1, cp.lookupInterfaceMethodref("p.C" + i, "m" + i, "()V"));
+            assertEquals(-1, cp.lookupFieldref("p.C" + i, "m" + i, "()V"));
+            assertTrue(cp.lookupClass("p.C" + i) > 0);
+            assertTrue(cp.lookupNameAndType("m" + i, "()V") > 0);
+        }
+    }
+
+    @Test
+    public void testDuplicatesResolveToFirstEntry() {
+        final Constant[] cs = {null, new ConstantUtf8("a"), new ConstantUtf8("()V"), new ConstantNameAndType(1, 2), new ConstantNameAndType(1, 2),
+            new ConstantUtf8("a"), new ConstantClass(1), new ConstantMethodref(6, 4), new ConstantMethodref(6, 3)};
+        final ConstantPoolGen cp = new ConstantPoolGen(cs);
+        assertEquals(1, cp.lookupUtf8("a"));
+        assertEquals(3, cp.lookupNameAndType("a", "()V"));
+        assertEquals(7, cp.lookupMethodref("a", "a", "()V"));
+        assertEquals(cs.length, cp.getSize());
+    }
+
+    @Test
+    public void testExistingConstantsAreFound() throws Exception {
+        final JavaClass jc = Repository.lookupClass(ConstantPoolGen.class);
+        final ConstantPoolGen cp = new ConstantPoolGen(jc.getConstantPool());
+        final int size = cp.getSize();
+        final int classIndex = cp.lookupClass("org.apache.bcel.classfile.ConstantUtf8");
+        assertTrue(classIndex > 0);
+        assertEquals(classIndex, cp.lookupClass("org/apache/bcel/classfile/ConstantUtf8"));
+        final int methodIndex = cp.lookupMethodref("org.apache.bcel.classfile.ConstantUtf8", "getBytes", "()Ljava/lang/String;");
+        assertTrue(methodIndex > 0);
+        assertEquals(methodIndex, cp.lookupMethodref("org/apache/bcel/classfile/ConstantUtf8", "getBytes", "()Ljava/lang/String;"));
+        assertEquals(methodIndex, cp.addMethodref("org.apache.bcel.classfile.ConstantUtf8", "getBytes", "()Ljava/lang/String;"));
+        assertEquals(classIndex, cp.addClass("org.apache.bcel.classfile.ConstantUtf8"));
+        assertTrue(cp.lookupFieldref("org.apache.bcel.generic.ConstantPoolGen", "constants", "[Lorg/apache/bcel/classfile/Constant;") > 0);
+        assertTrue(cp.lookupUtf8("Code") > 0);
+        assertEquals(size, cp.getSize());
+    }
+
+    @Test
+    public void testMergeFrom() throws Exception {
+        final JavaClass source = Repository.lookupClass(InstructionList.class);
+        final ConstantPool sourceCp = source.getConstantPool();
+        final ConstantPoolGen cp = new ConstantPoolGen(Repository.lookupClass(ConstantPoolGen.class).getConstantPool());
+        for (int i = 0; i < 300; i++) {
+            cp.addString("padding" + i);
+        }
+        final int size = cp.getSize();
+        final int[] map = cp.mergeFrom(sourceCp);
+        assertTrue(cp.getSize() > size);
+        final ConstantPool mergedCp = cp.getConstantPool();
+        for (int i = 1; i < map.length; i++) {
+            final Constant c = sourceCp.getConstant(i);
+            if (c == null) {
+                assertEquals(0, map[i]);
+            } else {
+                assertEquals(sourceCp.constantToString(c), mergedCp.constantToString(mergedCp.getConstant(map[i])));
+            }
+        }
+        final int merged = cp.getSize();
+        assertArrayEquals(map, cp.mergeFrom(sourceCp));
+        assertEquals(merged, cp.getSize());
+
+        for (final Method method : source.getMethods()) {
+            final MethodGen mg = new MethodGen(method, source.getClassName(), new ConstantPoolGen(sourceCp));
+            final InstructionList il = mg.getInstructionList();
+            if (il == null) {
+                continue;
+            }
+            final Instruction[] before = il.getInstructions();
+            il.replaceConstantPool(map);
+            final Instruction[] after = il.getInstructions();
+            for (int i = 0; i < before.length; i++) {
+                if (before[i] instanceof CPInstruction) {
+                    // LDC and LDC_W are chosen according to the new index
+                    assertEquals(before[i].toString(sourceCp).replace("ldc_w ", "ldc "), after[i].toString(mergedCp).replace("ldc_w ", "ldc "));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMergeFromBootstrapMethods() throws Exception {
+        final JavaClass source = Repository.lookupClass(ClassGenTestCase.class);
+        final ConstantPool sourceCp = source.getConstantPool();
+        BootstrapMethod[] bootstrapMethods = null;
+        for (final Attribute attribute : source.getAttributes()) {
+            if (attribute instanceof BootstrapMethods) {
+                bootstrapMethods = ((BootstrapMethods) attribute).getBootstrapMethods();
+            }
+        }
+        assertTrue(bootstrapMethods.length > 1);
+        assertThrows(ClassGenException.class, () -> new ConstantPoolGen().mergeFrom(sourceCp));
+
+        final ConstantPoolGen cp = new ConstantPoolGen();
+        final List<BootstrapMethod> merged = new ArrayList<>();
+        final int[] map = cp.mergeFrom(sourceCp, bootstrapMethods, merged);
+        final ConstantPool mergedCp = cp.getConstantPool();
+        int dynamic = 0;
+        for (int i = 1; i < map.length; i++) {
+            final Constant c = sourceCp.getConstantPool()[i];
+            if (c instanceof ConstantInvokeDynamic) {
+                final ConstantInvokeDynamic d = (ConstantInvokeDynamic) cp.getConstant(map[i]);
+                assertEquals(bootstrapMethods[((ConstantInvokeDynamic) c).getBootstrapMethodAttrIndex()].toString(sourceCp),
+                    merged.get(d.getBootstrapMethodAttrIndex()).toString(mergedCp));
+                assertEquals(sourceCp.constantToString(sourceCp.getConstant(((ConstantInvokeDynamic) c).getNameAndTypeIndex())),
+                    mergedCp.constantToString(mergedCp.getConstant(d.getNameAndTypeIndex())));
+                dynamic++;
+            } else if (c != null) {
+                assertEquals(sourceCp.constantToString(c), mergedCp.constantToString(mergedCp.getConstant(map[i])));
+            }
+        }
+        assertTrue(dynamic > 1);
+        assertEquals(bootstrapMethods.length, merged.size());
+
+        // Method handles, method types and dynamic constants are found again, like all others
+        final int size = cp.getSize();
+        assertArrayEquals(map, cp.mergeFrom(sourceCp, bootstrapMethods, merged));
+        assertEquals(size, cp.getSize());
+        assertEquals(bootstrapMethods.length, merged.size());
+        assertArrayEquals(map, new ConstantPoolGen(cp.getFinalConstantPool()).mergeFrom(sourceCp, bootstrapMethods, merged));
+    }
+
+    @Test
+    public void testNumbers() {
+        final ConstantPoolGen cp = new ConstantPoolGen();
+        final int nan = cp.addDouble(Double.NaN);
+        final int zero = cp.addDouble(0.0);
+        assertNotEquals(zero, cp.addDouble(-0.0));
+        assertEquals(nan, cp.lookupDouble(Double.NaN));
+        assertEquals(zero, cp.lookupDouble(0.0));
+        final int floatIndex = cp.addFloat(1f);
+        assertEquals(floatIndex, cp.lookupFloat(1f));
+        assertEquals(-1, cp.lookupInteger(Float.floatToIntBits(1f)));
+        final int longIndex = cp.addLong(1L << 40);
+        assertEquals(longIndex, cp.lookupLong(1L << 40));
+        assertEquals(-1, cp.lookupDouble(Double.longBitsToDouble(1L << 40)));
+        assertEquals(Const.CONSTANT_Long, cp.getConstant(new ConstantPoolGen(cp.getFinalConstantPool()).lookupLong(1L << 40)).getTag());
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.generic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.bcel.Const;
+import org.junit.jupiter.api.Test;
+
+public class InstructionListTestCase {
+
+    private static String opcodes(final InstructionList il) {
+        final StringBuilder buf = new StringBuilder();
+        for (final InstructionHandle ih : il) {
+            buf.append(Const.getOpcodeName(ih.getInstruction().getOpcode())).append(' ');
+        }
+        return buf.toString().trim();
+    }
+
+    @Test
+    public void testBatch() {
+        final InstructionList il = new InstructionList();
+        final InstructionHandle load = il.append(new ILOAD(5));
+        final InstructionHandle nop = il.append(InstructionConst.NOP);
+        final InstructionHandle pop = il.append(InstructionConst.POP);
+        final BranchHandle jump = il.append(new GOTO(nop));
+        final InstructionHandle ret = il.append(InstructionConst.RETURN);
+        final BranchHandle loop = il.append(new GOTO(jump));
+        final CodeExceptionGen handler = new CodeExceptionGen(load, pop, ret, null);
+        final LocalVariableGen local = new LocalVariableGen(5, "i", Type.INT, load, ret);
+        final AtomicInteger notifications = new AtomicInteger();
+        il.addObserver(list -> notifications.incrementAndGet());
+
+        final InstructionListBatch batch = il.batch();
+        batch.insert(load, InstructionConst.ICONST_0).insert(load, InstructionConst.POP);
+        batch.delete(nop).replace(pop, InstructionConst.POP2).append(pop, InstructionConst.DUP);
+        batch.replace(jump, new InstructionList()).delete(ret).delete(loop);
+        assertEquals("iload nop pop goto return goto", opcodes(il));
+        assertEquals(0, notifications.get());
+        batch.commit();
+
+        assertTrue(batch.isEmpty());
+        assertEquals(1, notifications.get());
+        assertEquals("iconst_0 pop iload pop2 dup", opcodes(il));
+        assertEquals(5, il.getLength());
+        final InstructionHandle pop2 = load.getNext();
+        final InstructionHandle dup = il.getEnd();
+        assertSame(load, handler.getStartPC());
+        assertSame(pop2, handler.getEndPC());
+        assertSame(dup, handler.getHandlerPC());
+        assertSame(dup, local.getEnd());
+        assertEquals(0, il.getStart().getTargeters().length);
+        assertNull(jump.getInstruction());
+        assertNull(dup.getNext());
+        assertSame(il.getStart(), dup.getPrev().getPrev().getPrev().getPrev());
+        il.setPositions(true);
+    }
+
+    @Test
+    public void testBatchKeepsRangeEnds() {
+        final InstructionList il = new InstructionList();
+        final InstructionHandle load = il.append(InstructionConst.ICONST_1);
+        final InstructionHandle store = il.append(new ISTORE(1));
+        final InstructionHandle last = il.append(InstructionConst.NOP);
+        final InstructionHandle ret = il.append(InstructionConst.RETURN);
+        final InstructionHandle handler = il.append(InstructionConst.ATHROW);
+        final CodeExceptionGen tryBlock = new CodeExceptionGen(load, last, handler, null);
+        final LocalVariableGen local = new LocalVariableGen(1, "i", Type.INT, store, last);
+
+        // Deleting the last instruction of the try block does not extend it to the return
+        il.batch().delete(last).commit();
+        assertEquals("iconst_1 istore_1 return athrow", opcodes(il));
+        assertSame(load, tryBlock.getStartPC());
+        assertSame(store, tryBlock.getEndPC());
+        assertSame(store, local.getEnd());
+        assertEquals(0, ret.getTargeters().length);
+
+        il.batch().replace(store, new InstructionList(new ISTORE(2))).append(store, InstructionConst.NOP).commit();
+        assertEquals("iconst_1 istore_2 nop return athrow", opcodes(il));
+        final InstructionHandle replacement = load.getNext();
+        assertSame(replacement, tryBlock.getEndPC());
+        assertSame(replacement, local.getStart());
+        assertSame(replacement, local.getEnd());
+
+        // Nothing of the range is left, so it is moved to the next instruction
+        il.batch().delete(load).delete(replacement).commit();
+        assertEquals("nop return athrow", opcodes(il));
+        assertSame(il.getStart(), tryBlock.getStartPC());
+        assertSame(il.getStart(), tryBlock.getEndPC());
+        assertSame(il.getStart(), local.getStart());
+        assertSame(il.getStart(), local.getEnd());
+        assertSame(handler, tryBlock.getHandlerPC());
+        il.setPositions(true);
+    }
+
+    @Test
+    public void testBatchRejectsForeignHandles() {
+        final InstructionList il = new InstructionList();
+        final InstructionHandle nop = il.append(InstructionConst.NOP);
+        final InstructionListBatch batch = il.batch().delete(nop).delete(new InstructionList(InstructionConst.NOP).getStart());
+        assertThrows(ClassGenException.class, batch::commit);
+        assertEquals("nop", opcodes(il));
+        assertThrows(ClassGenException.class, () -> il.batch().delete(nop).replace(nop, InstructionConst.POP));
+
+        final LocalVariableGen local = new LocalVariableGen(0, "o", Type.OBJECT, nop, nop);
+        assertThrows(ClassGenException.class, il.batch().delete(nop)::commit);
+        assertSame(nop, local.getStart());
+        il.batch().replace(nop, InstructionConst.POP).commit();
+        assertSame(il.getStart(), local.getStart());
+        assertSame(il.getStart(), local.getEnd());
+    }
+
+    @Test
+    public void testBatchInsertsEverywhere() {
+        final InstructionList il = new InstructionList();
+        final int count = 5000;
+        for (int i = 0; i < count; i++) {
+            il.append(new ILOAD(i));
+        }
+        final InstructionListBatch batch = il.batch();
+        for (final InstructionHandle ih : il) {
+            batch.insert(ih, InstructionConst.NOP);
+            batch.append(ih, InstructionConst.POP);
+        }
+        batch.commit();
+        assertEquals(3 * count, il.getLength());
+        int i = 0;
+        for (final InstructionHandle ih : il) {
+            assertEquals(i % 3 == 0 ? "NOP" : i % 3 == 1 ? "ILOAD" : "POP", ih.getInstruction().getClass().getSimpleName());
+            i++;
+        }
+        assertEquals(3 * count, i);
+    }
+
+    @Test
+    public void testSetPositionsChecksTargetHandles() {
+        final InstructionList il = new InstructionList();
+        final InstructionHandle target = il.append(InstructionConst.NOP);
+        il.append(new GOTO(target));
+        il.setPositions(true);
+
+        // The same instruction in another list does not make its handle a valid target
+        final InstructionList other = new InstructionList();
+        other.append(new GOTO(new InstructionList(InstructionConst.NOP).getStart()));
+        other.append(InstructionConst.NOP);
+        assertThrows(ClassGenException.class, () -> other.setPositions(true));
+    }
+
+    @Test
+    public void testSetPositionsWidensGoto() {
+        final InstructionList il = new InstructionList();
+        final InstructionHandle start = il.append(InstructionConst.NOP);
+        final int count = 40000;
+        for (int i = 0; i < count; i++) {
+            il.append(InstructionConst.NOP);
+        }
+        final BranchHandle back = il.append(new GOTO(start));
+        final InstructionHandle end = il.append(InstructionConst.RETURN);
+        final BranchHandle forward = il.insert(start, new GOTO(end));
+        final InstructionHandle[] cases = {start, end};
+        il.insert(start, new TABLESWITCH(new int[] {0, 1}, cases, end));
+        il.setPositions(true);
+        assertEquals(Const.GOTO_W, forward.getInstruction().getOpcode());
+        assertEquals(Const.GOTO_W, back.getInstruction().getOpcode());
+        final int[] positions = il.getInstructionPositions();
+        assertEquals(il.getLength(), positions.length);
+        int i = 0;
+        for (final InstructionHandle ih : il) {
+            assertEquals(positions[i++], ih.getPosition());
+        }
+        assertEquals(end.getPosition(), back.getPosition() + back.getInstruction().getLength());
+        final byte[] code = il.getByteCode();
+        assertArrayEquals(code, new InstructionList(code).getByteCode());
+    }
+}
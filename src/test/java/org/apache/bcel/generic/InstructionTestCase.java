@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.bcel.generic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.junit.jupiter.api.Test;
+
+public class InstructionTestCase {
+
+    @Test
+    public void testSharedDecodingPreservesByteCode() throws Exception {
+        final JavaClass jc = Repository.lookupClass(InstructionList.class);
+        for (final Method m : jc.getMethods()) {
+            if (m.getCode() == null) {
+                continue;
+            }
+            final byte[] code = m.getCode().getCode();
+            assertArrayEquals(code, new InstructionList(code, true).getByteCode(), m.toString());
+            assertArrayEquals(new InstructionList(code).getByteCode(), new InstructionList(code, true).getByteCode(), m.toString());
+        }
+    }
+
+    @Test
+    public void testSharedInstructions() {
+        final byte[] code = byteCode(new ILOAD(7), new ILOAD(7), new BIPUSH((byte) -3), new BIPUSH((byte) -3), new SIPUSH((short) 1000),
+            new SIPUSH((short) 1000), new LDC(5), new LDC(5));
+        final Instruction[] unshared = instructions(new InstructionList(code));
+        final Instruction[] shared = instructions(new InstructionList(code, true));
+        assertNotSame(unshared[0], unshared[1]);
+        assertSame(shared[0], shared[1]);
+        assertSame(shared[2], shared[3]);
+        assertNotSame(shared[4], shared[5]);
+        assertSame(shared[6], shared[7]);
+        for (int i = 0; i < shared.length; i++) {
+            assertEquals(unshared[i].toString(), shared[i].toString());
+        }
+    }
+
+    @Test
+    public void testSharedInstructionsAreImmutable() {
+        final byte[] code = byteCode(new ALOAD(1), new LDC(2));
+        final Instruction[] shared = instructions(new InstructionList(code, true));
+        assertThrows(ClassGenException.class, () -> ((ALOAD) shared[0]).setIndex(2));
+        assertThrows(ClassGenException.class, () -> ((LDC) shared[1]).setIndex(3));
+        final ALOAD copy = (ALOAD) shared[0].copy();
+        copy.setIndex(2);
+        assertEquals(1, ((ALOAD) shared[0]).getIndex());
+        assertEquals(2, copy.getIndex());
+    }
+
+    @Test
+    public void testReplaceConstantPoolOnSharedList() {
+        final ConstantPoolGen oldCp = new ConstantPoolGen();
+        final int index = oldCp.addString("shared");
+        final InstructionList il = new InstructionList(byteCode(new LDC(index)), true);
+        final ConstantPoolGen newCp = new ConstantPoolGen();
+        newCp.addString("other");
+        il.replaceConstantPool(oldCp, newCp);
+        final LDC ldc = (LDC) il.getStart().getInstruction();
+        assertEquals("shared", ldc.getValue(newCp));
+        assertEquals(newCp.lookupString("shared"), ldc.getIndex());
+        // The shared instance itself is left untouched.
+        assertEquals(index, ((LDC) new InstructionList(byteCode(new LDC(index)), true).getStart().getInstruction()).getIndex());
+    }
+
+    private static byte[] byteCode(final Instruction... instructions) {
+        final InstructionList il = new InstructionList();
+        for (final Instruction i : instructions) {
+            il.append(i);
+        }
+        return il.getByteCode();
+    }
+
+    private static Instruction[] instructions(final InstructionList il) {
+        final InstructionHandle[] ihs = il.getInstructionHandles();
+        final Instruction[] result = new Instruction[ihs.length];
+        for (int i = 0; i < ihs.length; i++) {
+            result[i] = ihs[i].getInstruction();
+        }
+        return result;
+    }
+}
@@ -17,20 +17,27 @@
 
 package org.apache.bcel.generic;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Attribute;
 import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.LocalVariableTypeTable;
 import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.SourceFile;
 import org.junit.jupiter.api.Test;
 
 public class MethodGenTestCase {
@@ -56,6 +63,24 @@ public class MethodGenTestCase {
         }
     }
 
+    public static class Generic {
+        @Deprecated
+        public <T extends Comparable<T>> List<T> sorted(@A final List<T> list) {
+            final List<T> copy = new ArrayList<>(list);
+            Collections.sort(copy);
+            return copy;
+        }
+    }
+
+    private static String localVariableTypes(final Method method) {
+        for (final Attribute attribute : method.getCode().getAttributes()) {
+            if (attribute instanceof LocalVariableTypeTable) {
+                return attribute.toString();
+            }
+        }
+        return null;
+    }
+
     private MethodGen getMethod(final Class<?> cls, final String name) throws ClassNotFoundException {
         final JavaClass jc = Repository.lookupClass(cls);
         final ConstantPoolGen cp = new ConstantPoolGen(jc.getConstantPool());
@@ -98,6 +123,99 @@ public class MethodGenTestCase {
         assertThrows(IllegalStateException.class, () -> testInvalidNullMethodBody("javax.mail.internet.MailDateFormat"));
     }
 
+    @Test
+    public void testLazyDecodingMatchesEagerDecoding() throws Exception {
+        final JavaClass jc = Repository.lookupClass(MethodGen.class);
+        final ConstantPoolGen cp = new ConstantPoolGen(jc.getConstantPool());
+        for (final Method method : jc.getMethods()) {
+            final MethodGen eager = new MethodGen(method, jc.getClassName(), cp);
+            final MethodGen lazy = new MethodGen(method, jc.getClassName(), cp, true);
+            assertEquals(eager.getMaxStack(), lazy.getMaxStack(), method::toString);
+            assertEquals(eager.getMaxLocals(), lazy.getMaxLocals(), method::toString);
+            assertEquals(eager.toString(), lazy.toString(), method::toString);
+            if (eager.getInstructionList() == null) {
+                assertNull(lazy.getInstructionList(), method::toString);
+                continue;
+            }
+            assertArrayEquals(eager.getInstructionList().getByteCode(), lazy.getInstructionList().getByteCode(), method::toString);
+            assertEquals(eager.getExceptionHandlers().length, lazy.getExceptionHandlers().length, method::toString);
+            assertEquals(eager.getLineNumbers().length, lazy.getLineNumbers().length, method::toString);
+            assertEquals(eager.getLocalVariables().length, lazy.getLocalVariables().length, method::toString);
+            assertEquals(eager.getMethod().getCode().toString(), lazy.getMethod().getCode().toString(), method::toString);
+        }
+    }
+
+    @Test
+    public void testLazyMethodPassesCodeThrough() throws Exception {
+        final JavaClass jc = Repository.lookupClass(MethodGen.class);
+        final ConstantPoolGen cp = new ConstantPoolGen(jc.getConstantPool());
+        for (final Method method : jc.getMethods()) {
+            final Method copy = new MethodGen(method, jc.getClassName(), cp, true).getMethod();
+            if (method.getCode() == null) {
+                assertNull(copy.getCode(), method::toString);
+                continue;
+            }
+            assertArrayEquals(method.getCode().getCode(), copy.getCode().getCode(), method::toString);
+            assertEquals(method.getCode().toString(), copy.getCode().toString(), method::toString);
+        }
+    }
+
+    @Test
+    public void testLazyMethodKeepsMaxStack() throws Exception {
+        final Method method = Repository.lookupClass(Foo.class).getMethods()[1];
+        final MethodGen mg = new MethodGen(method, Foo.class.getName(), new ConstantPoolGen(Repository.lookupClass(Foo.class).getConstantPool()), true);
+        mg.setMaxStack(42);
+        assertEquals(42, mg.getMethod().getCode().getMaxStack());
+        assertEquals(42, mg.getMaxStack());
+        assertNotNull(mg.getInstructionList());
+        assertEquals(42, mg.getMaxStack());
+        assertEquals("a", mg.getLocalVariables()[1].getName());
+    }
+
+    @Test
+    public void testLazyMethodSetMaxKeepsCodeUndecoded() throws Exception {
+        final Method method = Repository.lookupClass(Foo.class).getMethods()[1];
+        final MethodGen mg = new MethodGen(method, Foo.class.getName(), new ConstantPoolGen(Repository.lookupClass(Foo.class).getConstantPool()), true);
+        mg.setMaxStack(42);
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        assertTrue(mg.isCodeUndecoded());
+        final Method copy = mg.getMethod();
+        assertTrue(mg.isCodeUndecoded());
+        assertEquals(method.getCode().getMaxStack(), copy.getCode().getMaxStack());
+        assertEquals(method.getCode().getMaxLocals(), copy.getCode().getMaxLocals());
+        assertArrayEquals(method.getCode().getCode(), copy.getCode().getCode());
+    }
+
+    @Test
+    public void testReplaceConstantPool() throws Exception {
+        final JavaClass jc = Repository.lookupClass(Generic.class);
+        final MethodGen mg = getMethod(Generic.class, "sorted");
+        assertEquals(1, mg.getAnnotationsOnParameter(0).size());
+        final Method method = mg.getMethod();
+        final ConstantPoolGen cp = new ConstantPoolGen();
+        for (int i = 0; i < 300; i++) {
+            cp.addString("padding" + i);
+        }
+        mg.replaceConstantPool(cp, cp.mergeFrom(jc.getConstantPool()));
+        assertSame(cp, mg.getConstantPool());
+        final Method moved = mg.getMethod();
+        assertEquals(method.toString(), moved.toString());
+        assertEquals(method.getGenericSignature(), moved.getGenericSignature());
+        assertNotNull(localVariableTypes(method));
+        assertEquals(localVariableTypes(method), localVariableTypes(moved));
+        assertEquals(Arrays.toString(method.getAnnotationEntries()), Arrays.toString(moved.getAnnotationEntries()));
+        assertEquals(Arrays.toString(method.getParameterAnnotationEntries()[0].getAnnotationEntries()),
+            Arrays.toString(moved.getParameterAnnotationEntries()[0].getAnnotationEntries()));
+        assertEquals(method.getCode().toString().replaceAll("\\(\\d+\\)", ""), moved.getCode().toString().replaceAll("\\(\\d+\\)", ""));
+
+        mg.addAttribute(new SourceFile(cp.addUtf8("SourceFile"), 2, cp.addUtf8("Generic.java"), cp.getConstantPool()));
+        final int[] identity = new int[cp.getSize()];
+        Arrays.setAll(identity, i -> i);
+        assertThrows(ClassGenException.class, () -> mg.replaceConstantPool(new ConstantPoolGen(), identity));
+        assertSame(cp, mg.getConstantPool());
+    }
+
     @Test
     public void testRemoveLocalVariable() throws Exception {
         final MethodGen mg = getMethod(Foo.class, "bar");
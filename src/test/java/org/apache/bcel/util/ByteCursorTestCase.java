@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+
+import org.junit.jupiter.api.Test;
+
+public class ByteCursorTestCase {
+
+    private static final byte[] BYTES = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 1, (byte) 0xff, 0x7f};
+
+    @Test
+    public void testMatchesDataInputStream() throws Exception {
+        try (DataInputStream cursor = new DataInputStream(new ByteCursor(BYTES));
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(BYTES))) {
+            assertEquals(data.readInt(), cursor.readInt());
+            assertEquals(data.readShort(), cursor.readShort());
+            assertEquals(data.readByte(), cursor.readByte());
+            assertEquals(data.readUnsignedByte(), cursor.readUnsignedByte());
+            assertEquals(0, cursor.available());
+            assertEquals(-1, cursor.read());
+            assertThrows(EOFException.class, cursor::readByte);
+        }
+    }
+
+    @Test
+    public void testByteSequence() throws Exception {
+        try (ByteSequence bytes = new ByteSequence(BYTES)) {
+            assertEquals(0xcafebabe, bytes.readInt());
+            assertEquals(4, bytes.getIndex());
+            bytes.unreadByte();
+            assertEquals(0xbe, bytes.readUnsignedByte());
+            final byte[] rest = new byte[4];
+            bytes.readFully(rest);
+            assertArrayEquals(new byte[] {0, 1, (byte) 0xff, 0x7f}, rest);
+            assertThrows(EOFException.class, bytes::readByte);
+        }
+    }
+
+    @Test
+    public void testRangeAndMark() {
+        final ByteCursor cursor = new ByteCursor(BYTES, 2, 5);
+        assertEquals(5, cursor.available());
+        assertEquals(0xba, cursor.read());
+        cursor.mark(0);
+        final byte[] b = new byte[8];
+        assertEquals(4, cursor.read(b, 1, 7));
+        assertArrayEquals(new byte[] {0, (byte) 0xbe, 0, 1, (byte) 0xff, 0, 0, 0}, b);
+        assertEquals(5, cursor.getIndex());
+        assertEquals(-1, cursor.read());
+        assertEquals(-1, cursor.read(b, 0, 1));
+        cursor.reset();
+        assertEquals(1, cursor.getIndex());
+        assertEquals(4, cursor.skip(10));
+        assertEquals(0, cursor.available());
+        assertThrows(IndexOutOfBoundsException.class, () -> new ByteCursor(BYTES, 4, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.read(b, 4, 5));
+    }
+}
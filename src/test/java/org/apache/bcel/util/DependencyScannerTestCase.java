@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Utility;
+import org.junit.jupiter.api.Test;
+
+public class DependencyScannerTestCase {
+
+    private static final class Fixture {
+
+        private Map<String, List<Integer>> map;
+        private Thread.State[][] states;
+
+        int size(final Object o) {
+            return map.size() + states.length + o.hashCode();
+        }
+    }
+
+    private static Set<String> signatureTypes(final String signature) {
+        final Set<String> names = new TreeSet<>();
+        DependencyScanner.addSignatureTypes(signature, names);
+        return names;
+    }
+
+    @Test
+    public void testGetDependencies() throws Exception {
+        final Set<String> dependencies = DependencyScanner.getDependencies(Repository.lookupClass(Fixture.class).getBytes());
+        assertTrue(dependencies.containsAll(Arrays.asList("java.lang.Object", "java.util.Map", "java.util.List", "java.lang.String",
+            "java.lang.Integer", "java.lang.Thread$State", DependencyScannerTestCase.class.getName())), dependencies.toString());
+        assertFalse(dependencies.contains(Fixture.class.getName()));
+    }
+
+    @Test
+    public void testGetDependenciesContainsClassConstants() throws Exception {
+        for (final Class<?> clazz : new Class<?>[] {DependencyScanner.class, String.class, HashMap.class}) {
+            final JavaClass jc = Repository.lookupClass(clazz);
+            final Set<String> dependencies = DependencyScanner.getDependencies(jc.getBytes());
+            final ConstantPool cp = jc.getConstantPool();
+            for (final Constant constant : cp.getConstantPool()) {
+                if (constant instanceof ConstantClass) {
+                    final String name = ((ConstantClass) constant).getBytes(cp);
+                    if (name.charAt(0) != '[' && !name.equals(jc.getClassName().replace('.', '/'))) {
+                        assertTrue(dependencies.contains(Utility.compactClassName(name, false)), name);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        final Predicate<String> include = name -> name.startsWith("org.apache.bcel.util.");
+        final String root = DependencyScanner.class.getName();
+        final Map<String, Set<String>> result = new DependencyScanner(new ClassPath(System.getProperty("java.class.path")), 4).scan(include, root,
+            "does.not.Exist");
+        assertTrue(result.containsKey(root));
+        assertFalse(result.containsKey("does.not.Exist"));
+        for (final Map.Entry<String, Set<String>> entry : result.entrySet()) {
+            assertEquals(DependencyScanner.getDependencies(Repository.lookupClass(entry.getKey()).getBytes()), entry.getValue());
+            for (final String dependency : entry.getValue()) {
+                if (include.test(dependency)) {
+                    assertTrue(result.containsKey(dependency), dependency);
+                }
+            }
+        }
+        assertTrue(result.containsKey(ClassPath.class.getName()));
+        assertEquals(result.keySet(), new DependencyScanner(new ClassPath(System.getProperty("java.class.path")), 1).scan(include, root).keySet());
+    }
+
+    @Test
+    public void testSignatureTypes() {
+        assertEquals(new TreeSet<>(Arrays.asList("java.lang.Object", "pkg.Outer", "pkg.Outer$Inner", "java.lang.Exception")),
+            signatureTypes("<L:Ljava/lang/Object;>(TL;Lpkg/Outer<TL;>.Inner<*>;)V^Ljava/lang/Exception;"));
+        assertEquals(new TreeSet<>(Arrays.asList("java.lang.Comparable", "java.lang.Object", "java.util.List", "java.lang.Number")),
+            signatureTypes("<T::Ljava/lang/Comparable<-TT;>;>Ljava/lang/Object;Ljava/util/List<+Ljava/lang/Number;>;"));
+        assertEquals(new TreeSet<>(Arrays.asList("java.lang.String")), signatureTypes("([[ILjava/lang/String;J)[Ljava/lang/String;"));
+        assertTrue(signatureTypes("[[D").isEmpty());
+        assertThrows(ClassFormatException.class, () -> signatureTypes("(Ljava/lang/String"));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.CompactInstructionList;
+import org.apache.bcel.generic.IADD;
+import org.apache.bcel.generic.ILOAD;
+import org.apache.bcel.generic.ISTORE;
+import org.apache.bcel.generic.InstructionConst;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.junit.jupiter.api.Test;
+
+public class InstructionMatcherTestCase {
+
+    private static final String[] PATTERNS = {"LoadInstruction FieldInstruction", "ALOAD_0 (ALOAD|ILOAD)+ INVOKEVIRTUAL", "IfInstruction", "ICONST_0 IRETURN",
+        "GETFIELD ARRAYLENGTH? (IF_ICMPGE|IF_ICMPLT)", "InvokeInstruction POP"};
+
+    private static List<String> find(final InstructionList il, final String pattern) {
+        final List<String> matches = new ArrayList<>();
+        final InstructionHandle[] handles = il.getInstructionHandles();
+        for (final Iterator<InstructionHandle[]> it = new InstructionFinder(il).search(pattern); it.hasNext();) {
+            final InstructionHandle[] match = it.next();
+            final int start = Arrays.asList(handles).indexOf(match[0]);
+            matches.add(start + "-" + (start + match.length));
+        }
+        return matches;
+    }
+
+    @Test
+    public void testMatchesInstructionFinder() throws Exception {
+        final InstructionMatcher matcher = InstructionMatcher.compile(PATTERNS);
+        for (final Class<?> cls : new Class<?>[] {InstructionFinder.class, InstructionMatcher.class, ClassPath.class}) {
+            final JavaClass jc = Repository.lookupClass(cls);
+            for (final Method m : jc.getMethods()) {
+                if (m.getCode() == null) {
+                    continue;
+                }
+                final InstructionList il = new InstructionList(m.getCode().getCode());
+                final List<List<String>> byIndex = new ArrayList<>();
+                final List<List<String>> byHandle = new ArrayList<>();
+                for (int p = 0; p < PATTERNS.length; p++) {
+                    byIndex.add(new ArrayList<>());
+                    byHandle.add(new ArrayList<>());
+                }
+                matcher.search(m.getCode().getCode(), (p, start, end) -> byIndex.get(p).add(start + "-" + end));
+                final InstructionHandle[] handles = il.getInstructionHandles();
+                matcher.search(il, (p, first, last) -> byHandle.get(p).add(Arrays.asList(handles).indexOf(first) + "-"
+                    + (Arrays.asList(handles).indexOf(last) + 1)));
+                for (int p = 0; p < PATTERNS.length; p++) {
+                    final List<String> expected = find(il, PATTERNS[p]);
+                    assertEquals(expected, byIndex.get(p), PATTERNS[p]);
+                    assertEquals(expected, byHandle.get(p), PATTERNS[p]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLongestMatchAndOrder() {
+        final InstructionList il = new InstructionList();
+        il.append(new ILOAD(1));
+        il.append(new ILOAD(2));
+        il.append(new IADD());
+        il.append(new ISTORE(3));
+        il.append(InstructionConst.RETURN);
+        final CompactInstructionList code = new CompactInstructionList(il);
+        final InstructionMatcher matcher = InstructionMatcher.compile("(ILOAD|ILOAD IADD)", "iload* iadd istore", "ILOAD", "()", "Instruction*");
+        assertEquals(5, matcher.getPatternCount());
+        assertEquals("ILOAD", matcher.getPattern(2));
+        final List<String> matches = new ArrayList<>();
+        matcher.search(code, (p, start, end) -> matches.add(p + ":" + start + "-" + end));
+        assertEquals(Arrays.asList("0:0-1", "1:0-4", "2:0-1", "4:0-5", "0:1-3", "2:1-2"), matches);
+
+        final List<InstructionHandle> handles = new ArrayList<>();
+        InstructionMatcher.compile("ISTORE RETURN").search(il, (p, first, last) -> {
+            handles.add(first);
+            handles.add(last);
+        });
+        assertEquals(2, handles.size());
+        assertSame(il.getInstructionHandles()[3], handles.get(0));
+        assertSame(il.getEnd(), handles.get(1));
+    }
+
+    @Test
+    public void testLongRunIsReadOnce() {
+        final byte[] code = new byte[200_000];
+        Arrays.fill(code, (byte) Const.ILOAD_0);
+        final InstructionMatcher matcher = InstructionMatcher.compile("(ALOAD|ILOAD)+", "ILOAD ALOAD");
+        final List<String> matches = new ArrayList<>();
+        // Reading the run from each of its instructions would take minutes
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> matcher.search(code, (pattern, start, end) -> matches.add(pattern + ":" + start + "-" + end)));
+        assertEquals(Arrays.asList("0:0-" + code.length), matches);
+    }
+
+    @Test
+    public void testMalformedPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> InstructionMatcher.compile("ILOAD ("));
+        assertThrows(IllegalArgumentException.class, () -> InstructionMatcher.compile("ILOAD)"));
+        assertThrows(IllegalArgumentException.class, () -> InstructionMatcher.compile("ILOAD{2}"));
+        assertThrows(IllegalArgumentException.class, () -> InstructionMatcher.compile("NOSUCHINSTRUCTION"));
+    }
+
+    @Test
+    public void testStatesShared() {
+        final String[] patterns = new String[40];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = PATTERNS[i % PATTERNS.length] + " NOP";
+        }
+        final InstructionMatcher matcher = InstructionMatcher.compile(patterns);
+        assertEquals(40, matcher.getPatternCount());
+        assertEquals(InstructionMatcher.compile(Arrays.copyOf(patterns, PATTERNS.length)).getStateCount(), matcher.getStateCount());
+    }
+}
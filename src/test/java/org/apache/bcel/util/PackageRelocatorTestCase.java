@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.JavaClass;
+import org.junit.jupiter.api.Test;
+
+public class PackageRelocatorTestCase {
+
+    @Use("org.apache.bcel.util.ClassPath")
+    public static final class Fixture implements Supplier<String> {
+
+        public List<PackageRelocator> relocators = new ArrayList<>();
+
+        public List<@Use("org/apache/bcel/util/ClassPath") Object> used = new ArrayList<>();
+
+        @Override
+        public String get() {
+            return String.join(" ", ClassPath.class.getName(), "org.apache.bcel.util.ClassPath", "org/apache/bcel/util/ClassPath");
+        }
+    }
+
+    /**
+     * Loads the classes of the relocated package by relocating the original ones.
+     */
+    private static final class RelocatingClassLoader extends java.lang.ClassLoader {
+
+        private final PackageRelocator relocator;
+
+        RelocatingClassLoader(final PackageRelocator relocator) {
+            super(PackageRelocatorTestCase.class.getClassLoader());
+            this.relocator = relocator;
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            if (!name.startsWith(SHADED + ".")) {
+                throw new ClassNotFoundException(name);
+            }
+            final String original = PACKAGE + name.substring(SHADED.length());
+            try (InputStream in = getParent().getResourceAsStream(original.replace('.', '/') + ".class")) {
+                if (in == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                final byte[] bytes = relocator.relocate(bytes(in));
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (final IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE_USE)
+    public @interface Use {
+        String value();
+    }
+
+    private static final String PACKAGE = "org.apache.bcel.util";
+
+    private static final String SHADED = "shaded.util";
+
+    private static byte[] bytes(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static PackageRelocator relocator(final boolean relocateStrings) {
+        return new PackageRelocator(Collections.singletonMap(PACKAGE, SHADED), relocateStrings);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String run(final PackageRelocator relocator) throws Exception {
+        final Class<?> fixture = new RelocatingClassLoader(relocator).loadClass(SHADED + ".PackageRelocatorTestCase$Fixture");
+        assertEquals("java.util.List<shaded.util.PackageRelocator>", fixture.getField("relocators").getGenericType().getTypeName());
+        // Found only if the annotations refer to the relocated annotation type
+        final Class<? extends Annotation> use = (Class<? extends Annotation>) fixture.getClassLoader().loadClass(SHADED + ".PackageRelocatorTestCase$Use");
+        final AnnotatedType used = ((AnnotatedParameterizedType) fixture.getField("used").getAnnotatedType()).getAnnotatedActualTypeArguments()[0];
+        return String.join(" ", ((Supplier<String>) fixture.getConstructor().newInstance()).get(), value(fixture.getAnnotation(use)),
+            value(used.getAnnotation(use)));
+    }
+
+    private static String value(final Annotation annotation) throws Exception {
+        return (String) annotation.annotationType().getMethod("value").invoke(annotation);
+    }
+
+    @Test
+    public void testArchive() throws Exception {
+        final PackageRelocator relocator = relocator(false);
+        final byte[] classFile = Repository.lookupClass(ClassPath.class).getBytes();
+        final byte[] resource = "org.apache.bcel.util.ClassPath".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(archive)) {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write(resource);
+            out.putNextEntry(new ZipEntry("org/apache/bcel/util/ClassPath.class"));
+            out.write(classFile);
+            final ZipEntry stored = new ZipEntry("org/apache/bcel/util/resource.txt");
+            final CRC32 crc = new CRC32();
+            crc.update(resource);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(resource.length);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(resource);
+            out.putNextEntry(new ZipEntry("org/apache/bcel/Const.class"));
+            out.write(Repository.lookupClass(Const.class).getBytes());
+        }
+        final ByteArrayOutputStream relocated = new ByteArrayOutputStream();
+        relocator.relocate(new ByteArrayInputStream(archive.toByteArray()), relocated, 2);
+        final List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(relocated.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                final byte[] contents = bytes(in);
+                switch (entry.getName()) {
+                case "shaded/util/ClassPath.class":
+                    assertArrayEquals(relocator.relocate(classFile), contents);
+                    break;
+                case "shaded/util/resource.txt":
+                    assertEquals(ZipEntry.STORED, entry.getMethod());
+                    assertArrayEquals(resource, contents);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "shaded/util/ClassPath.class", "shaded/util/resource.txt", "org/apache/bcel/Const.class"),
+            names);
+    }
+
+    @Test
+    public void testClassFile() throws Exception {
+        final byte[] original = Repository.lookupClass(Fixture.class).getBytes();
+        final byte[] relocated = relocator(false).relocate(original);
+        final JavaClass jc = new ClassParser(new ByteArrayInputStream(relocated), "Fixture.class").parse();
+        assertEquals(SHADED + ".PackageRelocatorTestCase$Fixture", jc.getClassName());
+        int unrelocated = 0;
+        for (final Constant constant : jc.getConstantPool().getConstantPool()) {
+            if (constant instanceof ConstantUtf8 && ((ConstantUtf8) constant).getBytes().contains("org/apache/bcel/util")) {
+                unrelocated++;
+            }
+        }
+        // Only the string constant of the internal name, which shared its UTF-8 constant with the class constant
+        assertEquals(1, unrelocated);
+        assertSame(original, new PackageRelocator(Collections.singletonMap("com.example", "shaded.com.example"), true).relocate(original));
+    }
+
+    @Test
+    public void testLoadRelocated() throws Exception {
+        assertEquals("shaded.util.ClassPath org.apache.bcel.util.ClassPath org/apache/bcel/util/ClassPath org.apache.bcel.util.ClassPath org/apache/bcel/util/ClassPath",
+            run(relocator(false)));
+        assertEquals("shaded.util.ClassPath shaded.util.ClassPath shaded/util/ClassPath shaded.util.ClassPath shaded/util/ClassPath", run(relocator(true)));
+    }
+
+    @Test
+    public void testRelocateClassName() {
+        final PackageRelocator relocator = new PackageRelocator(Collections.singletonMap("com.example", "shaded"), false);
+        assertEquals("shaded.Plugin", relocator.relocateClassName("com.example.Plugin"));
+        assertEquals("shaded.impl.Plugin", relocator.relocateClassName("com.example.impl.Plugin"));
+        assertEquals("com.examples.Plugin", relocator.relocateClassName("com.examples.Plugin"));
+        assertEquals("com.example", relocator.relocateClassName("com.example"));
+        assertThrows(IllegalArgumentException.class, () -> new PackageRelocator(Collections.singletonMap("", "shaded"), false));
+    }
+
+    @Test
+    public void testRelocateSignature() {
+        final PackageRelocator relocator = new PackageRelocator(Collections.singletonMap("pkg", "shaded.pkg"), false);
+        assertEquals("<L:Lshaded/pkg/Bound;>(TL;Lshaded/pkg/Outer<TL;>.Inner<*>;[Lshaded/pkg/sub/A;)V^Lshaded/pkg/E;",
+            relocator.relocateSignature("<L:Lpkg/Bound;>(TL;Lpkg/Outer<TL;>.Inner<*>;[Lpkg/sub/A;)V^Lpkg/E;"));
+        assertEquals("<T::Ljava/lang/Comparable<-Lshaded/pkg/A;>;>Ljava/lang/Object;",
+            relocator.relocateSignature("<T::Ljava/lang/Comparable<-Lpkg/A;>;>Ljava/lang/Object;"));
+        final String unrelocated = "(Ljava/lang/String;Lpkgs/A;)V";
+        assertSame(unrelocated, relocator.relocateSignature(unrelocated));
+        assertThrows(ClassFormatException.class, () -> relocator.relocateSignature("(Lpkg/A"));
+        assertFalse(relocator.relocateSignature("Lpkg/A;").contains("Lpkg/"));
+    }
+}
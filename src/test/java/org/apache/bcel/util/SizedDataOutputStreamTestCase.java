@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.InstructionList;
+import org.junit.jupiter.api.Test;
+
+public class SizedDataOutputStreamTestCase {
+
+    private static byte[] readClass(final Class<?> cls) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = cls.getResourceAsStream(cls.getSimpleName() + ".class")) {
+            final byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0;) {
+                out.write(buf, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGetByteCode() throws Exception {
+        final JavaClass jc = new ClassParser(new ByteArrayInputStream(readClass(ClassGen.class)), "ClassGen.class").parse();
+        for (final Method m : jc.getMethods()) {
+            if (m.getCode() != null) {
+                assertArrayEquals(m.getCode().getCode(), new InstructionList(m.getCode().getCode()).getByteCode(), m::toString);
+            }
+        }
+        assertEquals(0, new InstructionList().getByteCode().length);
+    }
+
+    @Test
+    public void testGetBytes() throws Exception {
+        for (final Class<?> cls : new Class<?>[] {ClassGen.class, JavaClass.class, SizedDataOutputStreamTestCase.class, Object.class, String.class}) {
+            final byte[] bytes = readClass(cls);
+            assertArrayEquals(bytes, new ClassParser(new ByteArrayInputStream(bytes), cls.getName()).parse().getBytes(), cls::getName);
+        }
+    }
+
+    @Test
+    public void testToByteArray() throws Exception {
+        try (SizedDataOutputStream out = new SizedDataOutputStream(4)) {
+            out.writeInt(0xCAFEBABE);
+            final byte[] exact = out.toByteArray();
+            assertArrayEquals(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}, exact);
+            assertSame(exact, out.toByteArray());
+            out.writeUTF("growing");
+            assertEquals(4 + 2 + 7, out.toByteArray().length);
+            assertEquals((byte) 0xCA, exact[0]);
+        }
+        try (SizedDataOutputStream out = new SizedDataOutputStream(16)) {
+            out.writeShort(1);
+            assertArrayEquals(new byte[] {0, 1}, out.toByteArray());
+        }
+    }
+}
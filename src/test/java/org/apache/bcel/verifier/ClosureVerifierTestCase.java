@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.bcel.verifier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.verifier.tests.TestArrayAccess01;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ClosureVerifierTestCase {
+
+    private static final String[] FIXTURES = {"TestArray01", "TestArrayAccess01", "TestLegalInvokeInterface01", "TestLegalInvokeSpecial01",
+        "TestLegalInvokeSpecial02", "TestLegalInvokeStatic01", "TestLegalInvokeVirtual01", "TestLegalInvokeVirtual02", "TestReturn02"};
+
+    @AfterEach
+    public void tearDown() {
+        Repository.clearCache();
+    }
+
+    @Test
+    public void testCycle() {
+        // The nested classes and the outer class refer to each other.
+        final String name = ClosureVerifier.class.getName();
+        final Map<String, VerificationCache.Entry> results = new ClosureVerifier(2, n -> n.startsWith(name)).verify(name);
+        assertEquals(Arrays.asList(name, name + "$1", name + "$Task"), Arrays.asList(results.keySet().toArray()));
+    }
+
+    @Test
+    public void testMissingClass() {
+        final Map<String, VerificationCache.Entry> results = new ClosureVerifier(1, n -> false).verify("does.not.Exist");
+        assertEquals(1, results.size());
+        final VerificationCache.Entry entry = results.get("does.not.Exist");
+        assertEquals(VerificationResult.VERIFIED_REJECTED, entry.getPass1().getStatus());
+        assertFalse(entry.isOK());
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        final String[] classNames = new String[FIXTURES.length];
+        for (int i = 0; i < classNames.length; i++) {
+            classNames[i] = AbstractVerifierTestCase.TEST_PACKAGE + FIXTURES[i];
+        }
+        final Map<String, VerificationCache.Entry> results = new ClosureVerifier(4, n -> n.startsWith(AbstractVerifierTestCase.TEST_PACKAGE))
+            .verify(classNames);
+        assertTrue(results.keySet().containsAll(Arrays.asList(classNames)));
+        for (final Map.Entry<String, VerificationCache.Entry> result : results.entrySet()) {
+            final VerificationCache.Entry entry = result.getValue();
+            final VerificationCache.Entry expected = new VerificationCache().verify(result.getKey());
+            assertEquals(expected.isOK(), entry.isOK(), result.getKey());
+            assertEquals(expected.getMethodCount(), entry.getMethodCount(), result.getKey());
+            assertArrayEquals(expected.getMessages(), entry.getMessages(), result.getKey());
+        }
+    }
+
+    @Test
+    public void testRootOnly() {
+        final String name = TestArrayAccess01.class.getName();
+        final Map<String, VerificationCache.Entry> results = new ClosureVerifier(1, n -> false).verify(name, name);
+        assertEquals(1, results.size());
+        assertTrue(results.get(name).isOK());
+        assertSame(VerificationResult.VR_OK, results.get(name).getPass3b(0));
+    }
+}
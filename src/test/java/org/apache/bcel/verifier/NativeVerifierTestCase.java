@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.bcel.verifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.InstructionConst;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NativeVerifierTestCase {
+
+    @TempDir
+    public File tempDir;
+
+    private static byte[] createClass(final String className, final boolean valid) {
+        final ClassGen cg = new ClassGen(className, "java.lang.Object", className + ".java", Const.ACC_PUBLIC, null);
+        final InstructionList il = new InstructionList();
+        il.append(valid ? InstructionConst.ACONST_NULL : InstructionConst.ICONST_0);
+        il.append(InstructionConst.ARETURN);
+        final MethodGen mg = new MethodGen(Const.ACC_PUBLIC | Const.ACC_STATIC, Type.OBJECT, Type.NO_ARGS, null, "get", className, il, cg.getConstantPool());
+        mg.setMaxStack();
+        cg.addMethod(mg.getMethod());
+        return cg.getJavaClass().getBytes();
+    }
+
+    @Test
+    public void testVerifyJar() throws Exception {
+        final File jar = new File(tempDir, "test.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("pkg/Good.class"));
+            out.write(createClass("pkg.Good", true));
+            out.putNextEntry(new ZipEntry("pkg/Bad.class"));
+            out.write(createClass("pkg.Bad", false));
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write(new byte[0]);
+        }
+        final Map<String, VerificationResult> results = NativeVerifier.verifyJar(jar, ClassLoader.getSystemClassLoader(), 2);
+        assertEquals(2, results.size());
+        assertSame(VerificationResult.VR_OK, results.get("pkg.Good"));
+        final VerificationResult bad = results.get("pkg.Bad");
+        assertEquals(VerificationResult.VERIFIED_REJECTED, bad.getStatus());
+        assertTrue(bad.getMessage().contains("VerifyError"), bad.getMessage());
+    }
+}
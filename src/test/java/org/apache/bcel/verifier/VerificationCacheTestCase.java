@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.bcel.verifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.InstructionConst;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.Type;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VerificationCacheTestCase {
+
+    private static final String CLASS_NAME = AbstractVerifierTestCase.TEST_PACKAGE + "TestArrayAccess01";
+
+    /**
+     * Creates a class with a method taking the given type, which the constant pool names in descriptors only.
+     */
+    private static JavaClass createClassTaking(final String className, final String parameterClassName) {
+        final ClassGen cg = new ClassGen(className, "java.lang.Object", className + ".java", Const.ACC_PUBLIC | Const.ACC_SUPER, null);
+        final InstructionList il = new InstructionList(InstructionConst.RETURN);
+        final MethodGen mg = new MethodGen(Const.ACC_PUBLIC | Const.ACC_STATIC, Type.VOID, new Type[] {new ObjectType(parameterClassName)},
+            new String[] {"arg"}, "m", className, il, cg.getConstantPool());
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        cg.addMethod(mg.getMethod());
+        // Long and double constants are followed by an unused entry of the constant pool
+        cg.getConstantPool().addLong(1L);
+        cg.getConstantPool().addDouble(2.0);
+        return cg.getJavaClass();
+    }
+
+    @TempDir
+    public File tempDir;
+
+    @AfterEach
+    public void tearDown() {
+        Repository.clearCache();
+    }
+
+    @Test
+    public void testFingerprintChangesWithDependency() throws Exception {
+        final VerificationCache cache = new VerificationCache();
+        final JavaClass jc = Repository.lookupClass(CLASS_NAME);
+        final String before = cache.fingerprint(jc);
+        assertEquals(before, cache.fingerprint(jc));
+
+        final JavaClass object = Repository.lookupClass("java.lang.Object").copy();
+        object.setMinor(object.getMinor() + 1);
+        Repository.addClass(object);
+        assertEquals(before, cache.fingerprint(jc));
+        cache.clear();
+        assertNotEquals(before, cache.fingerprint(jc));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        final File file = new File(tempDir, "verifier.cache");
+        final VerificationCache cache = new VerificationCache();
+        final VerificationCache.Entry first = cache.verify(CLASS_NAME);
+        assertFalse(first.isCached());
+        assertTrue(first.isOK());
+        assertTrue(cache.verify(CLASS_NAME).isCached());
+        cache.save(file);
+
+        final VerificationCache loaded = VerificationCache.load(file);
+        assertEquals(1, loaded.size());
+        final VerificationCache.Entry entry = loaded.lookup(Repository.lookupClass(CLASS_NAME));
+        assertNotNull(entry);
+        assertTrue(entry.isCached());
+        assertEquals(first.getFingerprint(), entry.getFingerprint());
+        assertEquals(first.getMethodCount(), entry.getMethodCount());
+        assertSame(VerificationResult.VR_OK, entry.getPass1());
+        assertSame(VerificationResult.VR_OK, entry.getPass3b(0));
+    }
+
+    @Test
+    public void testDescriptorOnlyDependency() throws Exception {
+        final JavaClass parameter = new ClassGen("DescriptorOnlyParameter", "java.lang.Object", "DescriptorOnlyParameter.java",
+            Const.ACC_PUBLIC | Const.ACC_SUPER, null).getJavaClass();
+        Repository.addClass(parameter);
+        final JavaClass jc = createClassTaking("DescriptorOnly", parameter.getClassName());
+        Repository.addClass(jc);
+        final VerificationCache cache = new VerificationCache();
+        assertTrue(cache.verify(jc.getClassName()).isOK());
+        assertNotNull(cache.lookup(jc));
+
+        // Any change of the parameter class, e.g. of its hierarchy, may change the results of assignability checks
+        final JavaClass changed = parameter.copy();
+        changed.setMinor(changed.getMinor() + 1);
+        Repository.addClass(changed);
+        // Digests are memoized until the session ends
+        assertNotNull(cache.lookup(jc));
+        cache.save(new File(tempDir, "cache.bin"));
+        assertNull(cache.lookup(jc));
+        assertFalse(cache.verify(jc.getClassName()).isCached());
+    }
+
+    @Test
+    public void testLongAndDoubleConstants() throws Exception {
+        final JavaClass jc = createClassTaking("WithLongConstant", "java.lang.String");
+        Repository.addClass(jc);
+        final VerificationCache cache = new VerificationCache();
+        assertNotNull(cache.fingerprint(jc));
+        assertFalse(cache.verify(jc.getClassName()).isCached());
+        assertTrue(cache.verify(jc.getClassName()).isCached());
+    }
+
+    @Test
+    public void testLoadMissingFile() throws Exception {
+        assertEquals(0, VerificationCache.load(new File(tempDir, "missing.cache")).size());
+    }
+
+    @Test
+    public void testChangedClassIsVerifiedAgain() throws Exception {
+        final VerificationCache cache = new VerificationCache();
+        cache.verify(CLASS_NAME);
+        final JavaClass changed = Repository.lookupClass(CLASS_NAME).copy();
+        changed.setMinor(changed.getMinor() + 1);
+        Repository.addClass(changed);
+        assertNull(cache.lookup(changed));
+    }
+}
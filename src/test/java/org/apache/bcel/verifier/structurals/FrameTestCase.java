@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bcel.verifier.structurals;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.bcel.generic.ObjectType;
+import org.junit.jupiter.api.Test;
+
+public class FrameTestCase {
+
+    @Test
+    public void testThisIsPerThread() throws Exception {
+        final UninitializedObjectType other = new UninitializedObjectType(ObjectType.getInstance("Other"));
+        final UninitializedObjectType mine = new UninitializedObjectType(ObjectType.getInstance("Mine"));
+        try {
+            CompletableFuture.runAsync(() -> Frame.setThis(other)).get();
+            // Not set by this thread: the last value set by any thread
+            assertSame(other, Frame.getThis());
+            Frame.setThis(mine);
+            CompletableFuture.runAsync(() -> Frame.setThis(null)).get();
+            assertSame(mine, Frame.getThis());
+            Frame.setThis(null);
+            assertNull(Frame.getThis());
+            Frame.clearThis();
+            CompletableFuture.runAsync(() -> Frame.setThis(other)).get();
+            assertSame(other, Frame.getThis());
+        } finally {
+            Frame.setThis(null);
+            Frame.clearThis();
+        }
+    }
+}